@@ -0,0 +1,46 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Collector that hands every record to a JMH {@link Blackhole}, so that the work of the UDFs cannot be removed by the
+ * JIT compiler.
+ */
+public final class BlackholeCollector implements Collector<Record> {
+
+	private Blackhole blackhole;
+
+	/**
+	 * Sets the blackhole of the current benchmark invocation and returns this collector.
+	 */
+	public BlackholeCollector into(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		return this;
+	}
+
+	@Override
+	public void collect(Record record) {
+		this.blackhole.consume(record);
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,97 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.Value;
+
+/**
+ * Synthetic input of the benchmarks: Zipf distributed documents over a fixed vocabulary and the matching
+ * {@link TermDictionary} file.
+ */
+public final class Documents {
+
+	/**
+	 * Number of distinct terms of the generated documents.
+	 */
+	public static final int VOCABULARY_SIZE = 100000;
+
+	private Documents() {
+	}
+
+	/**
+	 * Returns a generator for the benchmark vocabulary. Generators with the same seed produce the same documents.
+	 */
+	public static ZipfGenerator generator(long seed) {
+		return new ZipfGenerator(VOCABULARY_SIZE, 1.0, seed);
+	}
+
+	/**
+	 * Creates (docId, document contents) input records of the {@link DocumentInputFormat} with the given number of
+	 * terms each.
+	 */
+	public static Record[] create(int numDocuments, int documentLength) {
+		ZipfGenerator generator = generator(42);
+
+		Record[] documents = new Record[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			documents[i] = DocumentInputFormat.createRecord(generator.nextDocument(i, documentLength));
+		}
+		return documents;
+	}
+
+	/**
+	 * Returns a record with the given fields. Record has constructors for up to two fields only.
+	 */
+	public static Record record(Value... fields) {
+		Record record = new Record(fields.length);
+		for (int i = 0; i < fields.length; i++) {
+			record.setField(i, fields[i]);
+		}
+		return record;
+	}
+
+	/**
+	 * Writes a dictionary with one "term id" line per vocabulary term (ID = rank) to a temporary file and returns its
+	 * path.
+	 */
+	public static String writeDictionary() throws IOException {
+		ZipfGenerator generator = generator(42);
+
+		File file = File.createTempFile("dictionary", ".txt");
+		file.deleteOnExit();
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (int rank = 0; rank < generator.vocabularySize(); rank++) {
+				writer.write(generator.term(rank));
+				writer.write(' ');
+				writer.write(Integer.toString(rank));
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		return file.toURI().toString();
+	}
+}
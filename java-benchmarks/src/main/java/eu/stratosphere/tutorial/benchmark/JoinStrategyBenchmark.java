@@ -0,0 +1,360 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Compares the two strategies of the {@link TfIdfMatcher} join for different numbers of subtasks (see
+ * {@link TfIdfPlan#configureJoinStrategy}): repartitioning both inputs by term, and broadcasting the (term, df,
+ * numDocuments) records into a hash table on every subtask, against which the local (docId, term, tf) records are
+ * probed.
+ * <p>
+ * The subtasks run one after the other in a single thread. Records that change their subtask are shipped through
+ * byte buffers with the serialization of their fields, as the network would, so the benchmark measures the
+ * serialization and join work of the whole job; the main method also prints the number of shipped bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JoinStrategyBenchmark {
+
+	private static final int DOCUMENT_LENGTH = 200;
+
+	@Param({ "2000", "20000" })
+	public int numDocuments;
+
+	@Param({ "1", "4", "16", "64" })
+	public int numSubtasks;
+
+	private Record[] dfRecords;
+
+	private Record[] tfRecords;
+
+	@Setup
+	public void setup() throws Exception {
+		this.tfRecords = createTfRecords(this.numDocuments, DOCUMENT_LENGTH);
+		this.dfRecords = createDfRecords(this.tfRecords, this.numDocuments);
+	}
+
+	@Benchmark
+	public double repartitionJoin() throws Exception {
+		return new Job(this.dfRecords, this.tfRecords, this.numSubtasks).repartition();
+	}
+
+	@Benchmark
+	public double broadcastJoin() throws Exception {
+		return new Job(this.dfRecords, this.tfRecords, this.numSubtasks).broadcast();
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A single run of the join. Source subtask i holds every record whose index modulo the number of subtasks is i.
+	 */
+	static final class Job {
+
+		private final Record[] dfRecords;
+
+		private final Record[] tfRecords;
+
+		private final int numSubtasks;
+
+		// records per target subtask that stay on their subtask
+		private final List<List<Record>> localDf = new ArrayList<List<Record>>();
+
+		private final List<List<Record>> localTf = new ArrayList<List<Record>>();
+
+		// serialized records per target subtask
+		private final ByteArrayOutputStream[] dfChannels;
+
+		private final ByteArrayOutputStream[] tfChannels;
+
+		long shippedBytes;
+
+		Job(Record[] dfRecords, Record[] tfRecords, int numSubtasks) {
+			this.dfRecords = dfRecords;
+			this.tfRecords = tfRecords;
+			this.numSubtasks = numSubtasks;
+
+			this.dfChannels = new ByteArrayOutputStream[numSubtasks];
+			this.tfChannels = new ByteArrayOutputStream[numSubtasks];
+			for (int i = 0; i < numSubtasks; i++) {
+				this.localDf.add(new ArrayList<Record>());
+				this.localTf.add(new ArrayList<Record>());
+				this.dfChannels[i] = new ByteArrayOutputStream();
+				this.tfChannels[i] = new ByteArrayOutputStream();
+			}
+		}
+
+		/**
+		 * Ships both inputs to the subtask of the hash of their term and joins every partition.
+		 */
+		double repartition() throws Exception {
+			for (int i = 0; i < this.dfRecords.length; i++) {
+				Record record = this.dfRecords[i];
+				ship(record, i % this.numSubtasks, partition(record.getField(0, StringValue.class)), true);
+			}
+			for (int i = 0; i < this.tfRecords.length; i++) {
+				Record record = this.tfRecords[i];
+				ship(record, i % this.numSubtasks, partition(record.getField(1, StringValue.class)), false);
+			}
+			return join();
+		}
+
+		/**
+		 * Ships the document frequency records to all subtasks and joins them with the local term frequency records.
+		 */
+		double broadcast() throws Exception {
+			for (int i = 0; i < this.dfRecords.length; i++) {
+				for (int target = 0; target < this.numSubtasks; target++) {
+					ship(this.dfRecords[i], i % this.numSubtasks, target, true);
+				}
+			}
+			for (int i = 0; i < this.tfRecords.length; i++) {
+				this.localTf.get(i % this.numSubtasks).add(this.tfRecords[i]);
+			}
+			return join();
+		}
+
+		private int partition(StringValue term) {
+			return (TermIntMap.hash(term.getCharArray(), 0, term.length()) & Integer.MAX_VALUE) % this.numSubtasks;
+		}
+
+		private void ship(Record record, int source, int target, boolean df) throws IOException {
+			if (source == target) {
+				(df ? this.localDf : this.localTf).get(target).add(record);
+				return;
+			}
+
+			DataOutputStream out = new DataOutputStream((df ? this.dfChannels : this.tfChannels)[target]);
+			if (df) {
+				record.getField(0, StringValue.class).write(out);
+				record.getField(1, IntValue.class).write(out);
+				record.getField(2, LongValue.class).write(out);
+			} else {
+				record.getField(0, IntValue.class).write(out);
+				record.getField(1, StringValue.class).write(out);
+				record.getField(2, IntValue.class).write(out);
+			}
+			out.flush();
+		}
+
+		/**
+		 * Receives the shipped records of every subtask, builds the hash table of its document frequency records and
+		 * probes it with its term frequency records. Returns the sum of all tf-idf weights.
+		 */
+		private double join() throws Exception {
+			TfIdfMatcher matcher = new TfIdfMatcher();
+			matcher.open(new Configuration());
+			SumCollector collector = new SumCollector();
+
+			for (int subtask = 0; subtask < this.numSubtasks; subtask++) {
+				List<Record> dfRecords = this.localDf.get(subtask);
+				List<Record> tfRecords = this.localTf.get(subtask);
+
+				DataInputStream dfIn = receive(this.dfChannels[subtask]);
+				while (dfIn.available() > 0) {
+					StringValue term = new StringValue();
+					IntValue df = new IntValue();
+					LongValue numDocuments = new LongValue();
+					term.read(dfIn);
+					df.read(dfIn);
+					numDocuments.read(dfIn);
+					dfRecords.add(Documents.record(term, df, numDocuments));
+				}
+
+				DataInputStream tfIn = receive(this.tfChannels[subtask]);
+				while (tfIn.available() > 0) {
+					IntValue docId = new IntValue();
+					StringValue term = new StringValue();
+					IntValue tf = new IntValue();
+					docId.read(tfIn);
+					term.read(tfIn);
+					tf.read(tfIn);
+					tfRecords.add(Documents.record(docId, term, tf));
+				}
+
+				TermIntMap table = new TermIntMap(dfRecords.size());
+				for (int i = 0; i < dfRecords.size(); i++) {
+					StringValue term = dfRecords.get(i).getField(0, StringValue.class);
+					table.put(term.getCharArray(), 0, term.length(), i);
+				}
+
+				for (Record tfRecord : tfRecords) {
+					int entry = table.get(tfRecord.getField(1, StringValue.class), -1);
+					if (entry >= 0) {
+						// the matcher replaces the tf by the tf-idf, so the shared input records are joined as copies
+						matcher.join(dfRecords.get(entry), tfRecord.createCopy(), collector);
+					}
+				}
+			}
+			return collector.sum;
+		}
+
+		private DataInputStream receive(ByteArrayOutputStream channel) {
+			this.shippedBytes += channel.size();
+			return new DataInputStream(new ByteArrayInputStream(channel.toByteArray()));
+		}
+	}
+
+	/**
+	 * Adds up the tf-idf weights of the joined records.
+	 */
+	private static final class SumCollector implements Collector<Record> {
+
+		private final DoubleValue weight = new DoubleValue();
+
+		double sum;
+
+		@Override
+		public void collect(Record record) {
+			this.sum += record.getField(2, this.weight).getValue();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates the (docId, term, tf) records of the generated documents with the {@link TermFrequencyMapper}.
+	 */
+	static Record[] createTfRecords(int numDocuments, int documentLength) throws Exception {
+		TermFrequencyMapper mapper = new TermFrequencyMapper();
+		mapper.open(new Configuration());
+
+		final List<Record> records = new ArrayList<Record>();
+		Collector<Record> collector = new Collector<Record>() {
+			@Override
+			public void collect(Record record) {
+				records.add(Documents.record(new IntValue(record.getField(0, IntValue.class).getValue()),
+					new StringValue(record.getField(1, StringValue.class)),
+					new IntValue(record.getField(2, IntValue.class).getValue())));
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		for (Record document : Documents.create(numDocuments, documentLength)) {
+			mapper.map(document, collector);
+		}
+		return records.toArray(new Record[records.size()]);
+	}
+
+	/**
+	 * Creates the (term, df, numDocuments) records of the given term frequency records.
+	 */
+	static Record[] createDfRecords(Record[] tfRecords, int numDocuments) {
+		TermIntMap dfs = new TermIntMap();
+		for (Record record : tfRecords) {
+			StringValue term = record.getField(1, StringValue.class);
+			dfs.add(term.getCharArray(), 0, term.length(), 1);
+		}
+
+		Record[] records = new Record[dfs.size()];
+		for (int i = 0; i < dfs.size(); i++) {
+			records[i] = Documents.record(new StringValue(dfs.keyToString(i)), new IntValue(dfs.value(i)),
+				new LongValue(numDocuments));
+		}
+		return records;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Prints the time and the shipped bytes of both strategies and checks that they compute the same weights.
+	 * <p>
+	 * Usage: ([numSubtasks]...)
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] parallelisms = { 1, 4, 16, 64 };
+		if (args.length > 0) {
+			parallelisms = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				parallelisms[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		for (int numDocuments : new int[] { 2000, 20000 }) {
+			Record[] tfRecords = createTfRecords(numDocuments, DOCUMENT_LENGTH);
+			Record[] dfRecords = createDfRecords(tfRecords, numDocuments);
+			System.out.println(String.format("%d documents: %d df records, %d tf records", numDocuments,
+				dfRecords.length, tfRecords.length));
+
+			for (int numSubtasks : parallelisms) {
+				long[] times = new long[2];
+				long[] bytes = new long[2];
+				double[] sums = new double[2];
+
+				for (int run = 0; run < 6; run++) {
+					for (int strategy = 0; strategy < 2; strategy++) {
+						Job job = new Job(dfRecords, tfRecords, numSubtasks);
+						long start = System.nanoTime();
+						sums[strategy] = strategy == 0 ? job.repartition() : job.broadcast();
+						if (run >= 3) {
+							times[strategy] += System.nanoTime() - start;
+						}
+						bytes[strategy] = job.shippedBytes;
+					}
+				}
+
+				if (Math.abs(sums[0] - sums[1]) > 1e-6 * Math.abs(sums[0])) {
+					throw new IllegalStateException("Repartition sum " + sums[0] + ", broadcast sum " + sums[1]);
+				}
+				System.out.println(String.format("%5d subtasks: repartition %7.1f ms %7.2f MB shipped, "
+					+ "broadcast %7.1f ms %7.2f MB shipped", numSubtasks, times[0] / 3e6, bytes[0] / 1e6,
+					times[1] / 3e6, bytes[1] / 1e6));
+			}
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Collector that keeps the collected records, for UDFs that do not reuse their output records.
+ */
+final class ListCollector implements Collector<Record> {
+
+	final List<Record> records = new ArrayList<Record>();
+
+	@Override
+	public void collect(Record record) {
+		this.records.add(record);
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,120 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.DocumentCountMapper;
+import eu.stratosphere.tutorial.task3.FrequencyMapper;
+import eu.stratosphere.types.Record;
+
+/**
+ * Throughput of the mappers in documents per second, for documents of different lengths and with or without a term
+ * dictionary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MapperBenchmark {
+
+	private static final int NUM_DOCUMENTS = 64;
+
+	/**
+	 * Number of terms per document.
+	 */
+	@Param({ "10", "100", "1000", "10000" })
+	public int documentLength;
+
+	/**
+	 * Whether the mappers encode the terms with a {@link TermDictionary}.
+	 */
+	@Param({ "false", "true" })
+	public boolean dictionary;
+
+	private Record[] documents;
+
+	private int next;
+
+	private final BlackholeCollector collector = new BlackholeCollector();
+
+	private final DocumentFrequencyMapper dfMapper = new DocumentFrequencyMapper();
+
+	private final TermFrequencyMapper tfMapper = new TermFrequencyMapper();
+
+	private final FrequencyMapper frequencyMapper = new FrequencyMapper();
+
+	private final DocumentCountMapper countMapper = new DocumentCountMapper();
+
+	@Setup
+	public void setup() throws Exception {
+		this.documents = Documents.create(NUM_DOCUMENTS, this.documentLength);
+
+		Configuration parameters = new Configuration();
+		if (this.dictionary) {
+			parameters.setString(TermDictionary.PATH_PARAMETER, Documents.writeDictionary());
+		}
+
+		this.dfMapper.open(parameters);
+		this.tfMapper.open(parameters);
+		this.frequencyMapper.open(parameters);
+		this.countMapper.open(parameters);
+	}
+
+	private Record nextDocument() {
+		Record document = this.documents[this.next];
+		this.next = (this.next + 1) % NUM_DOCUMENTS;
+		return document;
+	}
+
+	@Benchmark
+	public void documentFrequencyMapper(Blackhole blackhole) {
+		this.dfMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void termFrequencyMapper(Blackhole blackhole) {
+		this.tfMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void frequencyMapper(Blackhole blackhole) {
+		this.frequencyMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void documentCountMapper(Blackhole blackhole) {
+		this.countMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+}
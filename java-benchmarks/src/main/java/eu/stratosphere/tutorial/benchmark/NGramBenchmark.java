@@ -0,0 +1,229 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.stratosphere.api.common.Plan;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.LocalExecutorSession;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Throughput of the document and term frequency mappers in documents per second when they emit the n-grams of 1 to
+ * n tokens (see {@link NGrams}) instead of the single terms, with the n-gram text or the 64 bit n-gram ID as key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NGramBenchmark {
+
+	private static final int NUM_DOCUMENTS = 64;
+
+	private static final int DOCUMENT_LENGTH = 1000;
+
+	/**
+	 * Maximum number of tokens of the n-grams.
+	 */
+	@Param({ "1", "2", "3" })
+	public int ngrams;
+
+	/**
+	 * Whether the mappers emit the n-gram IDs instead of the n-gram text.
+	 */
+	@Param({ "false", "true" })
+	public boolean hashed;
+
+	private Record[] documents;
+
+	private int next;
+
+	private final BlackholeCollector collector = new BlackholeCollector();
+
+	private final DocumentFrequencyMapper dfMapper = new DocumentFrequencyMapper();
+
+	private final TermFrequencyMapper tfMapper = new TermFrequencyMapper();
+
+	@Setup
+	public void setup() throws Exception {
+		this.documents = Documents.create(NUM_DOCUMENTS, DOCUMENT_LENGTH);
+
+		Configuration parameters = parameters(this.ngrams, this.hashed);
+		this.dfMapper.open(parameters);
+		this.tfMapper.open(parameters);
+	}
+
+	private Record nextDocument() {
+		Record document = this.documents[this.next];
+		this.next = (this.next + 1) % NUM_DOCUMENTS;
+		return document;
+	}
+
+	@Benchmark
+	public void documentFrequencyMapper(Blackhole blackhole) {
+		this.dfMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void termFrequencyMapper(Blackhole blackhole) {
+		this.tfMapper.map(nextDocument(), this.collector.into(blackhole));
+	}
+
+	/**
+	 * Returns the mapper parameters that {@link NGrams#configure} sets for the options "-ngrams=[n]" and
+	 * "-hashNgrams".
+	 */
+	static Configuration parameters(int ngrams, boolean hashed) {
+		Configuration parameters = new Configuration();
+		parameters.setInteger(NGrams.MIN_SIZE, 1);
+		parameters.setInteger(NGrams.MAX_SIZE, ngrams);
+		parameters.setBoolean(NGrams.HASHED, hashed);
+		return parameters;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Counts the (n-gram, 1) records emitted by the document frequency mapper and the bytes of their keys, which are
+	 * shuffled to the reducers.
+	 */
+	private static final class KeyCounter implements Collector<Record> {
+
+		private final StringValue term = new StringValue();
+
+		private final LongValue ngramId = new LongValue();
+
+		private final boolean hashed;
+
+		long numRecords;
+
+		long keyBytes;
+
+		KeyCounter(boolean hashed) {
+			this.hashed = hashed;
+		}
+
+		@Override
+		public void collect(Record record) {
+			this.numRecords++;
+			if (this.hashed) {
+				record.getField(0, this.ngramId);
+				this.keyBytes += 8;
+			} else {
+				// length prefix and one byte per ASCII char
+				this.keyBytes += record.getField(0, this.term).length() + 1;
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Prints the throughput of the document frequency mapper and the number and key bytes of the emitted records for
+	 * n-grams of up to 1, 2, and 3 tokens, with and without hashing. With the argument "plans", it also runs the tf-idf
+	 * plan for every setting in a {@link LocalExecutorSession}, after an unmeasured warm-up run, and prints its runtime.
+	 * <p>
+	 * Usage: ([plans])
+	 */
+	public static void main(String[] args) throws Exception {
+		Record[] documents = Documents.create(NUM_DOCUMENTS, DOCUMENT_LENGTH);
+
+		for (int ngrams = 1; ngrams <= 3; ngrams++) {
+			for (boolean hashed : new boolean[] { false, true }) {
+				DocumentFrequencyMapper mapper = new DocumentFrequencyMapper();
+				mapper.open(parameters(ngrams, hashed));
+
+				KeyCounter counter = null;
+				long time = Long.MAX_VALUE;
+				for (int run = 0; run < 100; run++) {
+					counter = new KeyCounter(hashed);
+					long start = System.nanoTime();
+					for (Record document : documents) {
+						mapper.map(document, counter);
+					}
+					time = Math.min(time, System.nanoTime() - start);
+				}
+
+				System.out.println(String.format(
+					"n <= %d, %-6s %9.0f documents/s, %7.1f records/document, %6.1f key bytes/record", ngrams,
+					hashed ? "hashed" : "text", documents.length / (time / 1e9),
+					(double) counter.numRecords / documents.length, (double) counter.keyBytes / counter.numRecords));
+			}
+		}
+
+		if (args.length >= 1 && args[0].equals("plans")) {
+			runPlans();
+		}
+	}
+
+	private static void runPlans() throws Exception {
+		String inputPath = Util.createTempDir("ngrams/input");
+		ZipfGenerator generator = Documents.generator(42);
+		for (int i = 0; i < 4; i++) {
+			StringBuilder lines = new StringBuilder();
+			for (int docId = 1000 * i; docId < 1000 * i + 1000; docId++) {
+				lines.append(generator.nextDocument(docId, 100)).append('\n');
+			}
+			Util.createTempFile("ngrams/input/" + i + ".txt", lines.toString());
+		}
+
+		LocalExecutorSession session = LocalExecutorSession.start();
+		try {
+			// the first plan of a session loads and compiles the runtime, which would be counted for n <= 1
+			session.run(new TfIdfPlan().getPlan(inputPath, Util.createTempDir("ngrams/warmup"), "4"));
+
+			for (int ngrams = 1; ngrams <= 3; ngrams++) {
+				for (boolean hashed : new boolean[] { false, true }) {
+					String outputPath = Util.createTempDir("ngrams/" + ngrams + (hashed ? "-hashed" : ""));
+					String[] planArgs = hashed
+						? new String[] { inputPath, outputPath, "4", "-ngrams=" + ngrams, "-hashNgrams" }
+						: new String[] { inputPath, outputPath, "4", "-ngrams=" + ngrams };
+					Plan plan = new TfIdfPlan().getPlan(planArgs);
+					System.out.println(String.format("tf-idf, n <= %d, %-6s %s", ngrams, hashed ? "hashed" : "text",
+						session.run(plan)));
+				}
+			}
+		} finally {
+			session.close();
+			Util.deleteAllTempFiles();
+		}
+	}
+}
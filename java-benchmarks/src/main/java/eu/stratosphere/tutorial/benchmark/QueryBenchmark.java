@@ -0,0 +1,252 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.tutorial.query.ScoredDocument;
+import eu.stratosphere.tutorial.query.SimilarityIndex;
+import eu.stratosphere.tutorial.task4.WeightVectorPlan;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Latency of top-10 queries against a {@link SimilarityIndex} over a generated corpus, with one and with four threads
+ * sharing the index. The sample time mode reports the latency percentiles (p0.50, p0.99, ...) of the single queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueryBenchmark {
+
+	private static final int K = 10;
+
+	private static final int QUERY_LENGTH = 10;
+
+	@Param({ "10000", "50000" })
+	public int numDocuments;
+
+	private SimilarityIndex index;
+
+	private String[] queries;
+
+	@Setup
+	public void setup() {
+		this.index = createIndex(SimilarityBenchmark.createTfIdfRecords(this.numDocuments));
+		this.queries = createQueries(1024, QUERY_LENGTH);
+	}
+
+	/**
+	 * Cycles through the queries, every benchmark thread on its own position.
+	 */
+	@State(Scope.Thread)
+	public static class QueryCursor {
+
+		private int next;
+
+		String next(String[] queries) {
+			return queries[this.next++ & (queries.length - 1)];
+		}
+	}
+
+	@Benchmark
+	public List<ScoredDocument> query(QueryCursor cursor) {
+		return this.index.query(cursor.next(this.queries), K);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public List<ScoredDocument> concurrentQuery(QueryCursor cursor) {
+		return this.index.query(cursor.next(this.queries), K);
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Builds the index from the (docId, term, tf-idf, df) records of the documents. Stop words are skipped, as they are
+	 * removed by the mappers of {@link WeightVectorPlan}.
+	 */
+	public static SimilarityIndex createIndex(Record[][] documents) {
+		StopWords stopWords = StopWords.getDefault();
+		StringValue termHolder = new StringValue();
+		DoubleValue weightHolder = new DoubleValue();
+
+		SimilarityIndex.Builder builder = new SimilarityIndex.Builder();
+		for (int i = 0; i < documents.length; i++) {
+			builder.addDocument(i);
+			for (Record record : documents[i]) {
+				StringValue term = record.getField(1, termHolder);
+				if (stopWords.contains(term.getCharArray(), 0, term.length())) {
+					continue;
+				}
+				builder.addTerm(term.getCharArray(), 0, term.length(), record.getField(2, weightHolder).getValue());
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Creates query texts of Zipf distributed terms of the corpus vocabulary, including stop words. The ranks are drawn
+	 * from a generator with a different seed than the corpus, whose vocabulary is the same only for the stop words.
+	 */
+	public static String[] createQueries(int numQueries, int queryLength) {
+		ZipfGenerator vocabulary = Documents.generator(42);
+		ZipfGenerator ranks = Documents.generator(7);
+
+		String[] queries = new String[numQueries];
+		for (int i = 0; i < numQueries; i++) {
+			StringBuilder query = new StringBuilder();
+			for (int j = 0; j < queryLength; j++) {
+				query.append(j == 0 ? "" : " ").append(vocabulary.term(ranks.nextRank()));
+			}
+			queries[i] = query.toString();
+		}
+		return queries;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Checks some queries against an exhaustive cosine computation and prints the p50/p99 query latency of concurrent
+	 * threads sharing the index.
+	 * <p>
+	 * Usage: ([numDocuments]) ([numThreads])
+	 */
+	public static void main(String[] args) throws Exception {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 50000;
+		int numThreads = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+
+		Record[][] documents = SimilarityBenchmark.createTfIdfRecords(numDocuments);
+		final SimilarityIndex index = createIndex(documents);
+		final String[] queries = createQueries(1024, QUERY_LENGTH);
+
+		for (int i = 0; i < 20; i++) {
+			check(index, documents, queries[i]);
+		}
+
+		for (int run = 0; run < 3; run++) {
+			final int queriesPerThread = 20000;
+			final long[][] latencies = new long[numThreads][queriesPerThread];
+
+			Thread[] threads = new Thread[numThreads];
+			for (int t = 0; t < numThreads; t++) {
+				final long[] threadLatencies = latencies[t];
+				final int offset = 97 * t;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < queriesPerThread; i++) {
+							String query = queries[(offset + i) & (queries.length - 1)];
+							long start = System.nanoTime();
+							index.query(query, K);
+							threadLatencies[i] = System.nanoTime() - start;
+						}
+					}
+				};
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			long[] all = new long[numThreads * queriesPerThread];
+			for (int t = 0; t < numThreads; t++) {
+				System.arraycopy(latencies[t], 0, all, t * queriesPerThread, queriesPerThread);
+			}
+			Arrays.sort(all);
+			System.out.println(String.format("%d documents, %d threads: p50 %.1f us, p99 %.1f us, max %.1f us",
+				numDocuments, numThreads, all[all.length / 2] / 1000.0, all[all.length * 99 / 100] / 1000.0,
+				all[all.length - 1] / 1000.0));
+		}
+	}
+
+	/**
+	 * Fails if the index returns other documents or scores than an exhaustive computation of all cosine similarities.
+	 */
+	private static void check(SimilarityIndex index, Record[][] documents, String query) {
+		// query vector, weighted as by the index
+		Map<String, Double> queryWeights = new HashMap<String, Double>();
+		for (String term : query.split(" ")) {
+			int df = index.getDocumentFrequency(term);
+			if (df > 0) {
+				Double weight = queryWeights.get(term);
+				double idf = Math.log((double) index.numDocuments() / df);
+				queryWeights.put(term, (weight == null ? 0 : weight) + idf);
+			}
+		}
+		double queryNorm = 0;
+		for (double weight : queryWeights.values()) {
+			queryNorm += weight * weight;
+		}
+		queryNorm = Math.sqrt(queryNorm);
+
+		StopWords stopWords = StopWords.getDefault();
+		double[] scores = new double[documents.length];
+		for (int i = 0; i < documents.length; i++) {
+			double dot = 0;
+			double norm = 0;
+			for (Record record : documents[i]) {
+				StringValue term = record.getField(1, StringValue.class);
+				if (stopWords.contains(term.getCharArray(), 0, term.length())) {
+					continue;
+				}
+				double weight = record.getField(2, DoubleValue.class).getValue();
+				Double queryWeight = queryWeights.get(term.getValue());
+				dot += queryWeight == null ? 0 : queryWeight * weight;
+				norm += weight * weight;
+			}
+			scores[i] = dot == 0 ? 0 : dot / queryNorm / Math.sqrt(norm);
+		}
+
+		List<ScoredDocument> result = index.query(query, K);
+		double[] expected = scores.clone();
+		Arrays.sort(expected);
+		for (int i = 0; i < result.size(); i++) {
+			ScoredDocument document = result.get(i);
+			if (Math.abs(document.getScore() - expected[expected.length - 1 - i]) > 1e-9
+				|| Math.abs(document.getScore() - scores[document.getDocId()]) > 1e-9) {
+				throw new IllegalStateException("Query '" + query + "': unexpected result " + result);
+			}
+		}
+		if (result.size() < K && expected[expected.length - 1 - result.size()] > 0) {
+			throw new IllegalStateException("Query '" + query + "': missing results " + result);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.dictionary.TermIdDecoder;
+import eu.stratosphere.tutorial.task3.DocumentCountCross;
+import eu.stratosphere.tutorial.task3.FrequencyMapper;
+import eu.stratosphere.tutorial.task3.TaggedRecordFilter;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Throughput of the UDFs that transform a single record (or pair of records) in records per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RecordFunctionBenchmark {
+
+	private final BlackholeCollector collector = new BlackholeCollector();
+
+	private final IntValue dfTag = new IntValue(FrequencyMapper.DOCUMENT_FREQUENCY);
+
+	private final Record taggedRecord = new Record(new StringValue("stratosphere"), new IntValue(1));
+
+	private final Record dfRecord = new Record(new StringValue("stratosphere"), new IntValue(3));
+
+	private final Record countRecord = new Record(new LongValue(1000));
+
+	private final Record dfCountRecord = Documents.record(new StringValue("stratosphere"), new IntValue(3),
+		new LongValue(1000));
+
+	private final IntValue tf = new IntValue(2);
+
+	private final Record tfRecord = Documents.record(new IntValue(1), new StringValue("stratosphere"), this.tf);
+
+	private final IntValue termId = new IntValue(1234);
+
+	private final Record encodedRecord = Documents.record(new IntValue(1), this.termId, new DoubleValue(0.5));
+
+	private final TaggedRecordFilter filter = new TaggedRecordFilter();
+
+	private final DocumentCountCross countCross = new DocumentCountCross();
+
+	private final TfIdfMatcher matcher = new TfIdfMatcher();
+
+	private final TermIdDecoder decoder = new TermIdDecoder();
+
+	@Setup
+	public void setup() throws Exception {
+		Configuration filterParameters = new Configuration();
+		filterParameters.setInteger(TaggedRecordFilter.TAG, FrequencyMapper.DOCUMENT_FREQUENCY);
+		this.filter.open(filterParameters);
+
+		this.countCross.open(new Configuration());
+		this.matcher.open(new Configuration());
+
+		Configuration decoderParameters = new Configuration();
+		decoderParameters.setString(TermDictionary.PATH_PARAMETER, Documents.writeDictionary());
+		decoderParameters.setInteger(TermIdDecoder.FIELD_PARAMETER, 1);
+		this.decoder.open(decoderParameters);
+	}
+
+	@Benchmark
+	public void taggedRecordFilter(Blackhole blackhole) {
+		// the filter strips the tag of the selected records
+		this.taggedRecord.setField(2, this.dfTag);
+		this.filter.map(this.taggedRecord, this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void documentCountCross(Blackhole blackhole) throws Exception {
+		this.countCross.cross(this.dfRecord, this.countRecord, this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void tfIdfMatcher(Blackhole blackhole) throws Exception {
+		// the matcher replaces the tf by the tf-idf weight
+		this.tfRecord.setField(2, this.tf);
+		this.matcher.join(this.dfCountRecord, this.tfRecord, this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void termIdDecoder(Blackhole blackhole) {
+		// the decoder replaces the term ID by the term
+		this.encodedRecord.setField(1, this.termId);
+		this.decoder.map(this.encodedRecord, this.collector.into(blackhole));
+	}
+}
@@ -0,0 +1,53 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.Iterator;
+
+import eu.stratosphere.types.Record;
+
+/**
+ * Iterates the same records again after every {@link #reset()}, as the runtime does for the records of a group.
+ */
+public final class RecordIterator implements Iterator<Record> {
+
+	private final Record[] records;
+
+	private int next;
+
+	public RecordIterator(Record[] records) {
+		this.records = records;
+	}
+
+	public RecordIterator reset() {
+		this.next = 0;
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return this.next < this.records.length;
+	}
+
+	@Override
+	public Record next() {
+		return this.records[this.next++];
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
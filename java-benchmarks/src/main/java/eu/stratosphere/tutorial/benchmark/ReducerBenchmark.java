@@ -0,0 +1,147 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermIdReducer;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.task3.DocumentCountReducer;
+import eu.stratosphere.tutorial.task4.WeightVectorReducer;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Throughput of the reducers in groups per second, for groups of different sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReducerBenchmark {
+
+	/**
+	 * Number of records per group.
+	 */
+	@Param({ "1", "10", "100", "1000" })
+	public int groupSize;
+
+	private final BlackholeCollector collector = new BlackholeCollector();
+
+	private final IntValue one = new IntValue(1);
+
+	private final LongValue oneDocument = new LongValue(1);
+
+	// (term, 1) records of a single term
+	private Record[] dfGroup;
+
+	private RecordIterator dfIterator;
+
+	// (1) records of the document count
+	private Record[] countGroup;
+
+	private RecordIterator countIterator;
+
+	// (docId, term, tf-idf) records of a single document
+	private RecordIterator weightIterator;
+
+	// (term, df) records of distinct terms
+	private Record[] termGroup;
+
+	private RecordIterator termIterator;
+
+	private final DocumentFrequencyReducer dfReducer = new DocumentFrequencyReducer();
+
+	private final DocumentCountReducer countReducer = new DocumentCountReducer();
+
+	private final WeightVectorReducer weightVectorReducer = new WeightVectorReducer();
+
+	private final TermIdReducer termIdReducer = new TermIdReducer();
+
+	@Setup
+	public void setup() throws Exception {
+		ZipfGenerator generator = Documents.generator(42);
+
+		this.dfGroup = new Record[this.groupSize];
+		this.countGroup = new Record[this.groupSize];
+		this.termGroup = new Record[this.groupSize];
+		Record[] weightGroup = new Record[this.groupSize];
+
+		for (int i = 0; i < this.groupSize; i++) {
+			StringValue term = new StringValue(generator.term(i));
+
+			this.dfGroup[i] = new Record(new StringValue(generator.term(0)), this.one);
+			this.countGroup[i] = new Record(this.oneDocument);
+			this.termGroup[i] = new Record(term, new IntValue(generator.nextRank() + 1));
+			weightGroup[i] = Documents.record(new IntValue(1), term, new DoubleValue(1.0 / (i + 1)));
+		}
+
+		this.dfIterator = new RecordIterator(this.dfGroup);
+		this.countIterator = new RecordIterator(this.countGroup);
+		this.weightIterator = new RecordIterator(weightGroup);
+		this.termIterator = new RecordIterator(this.termGroup);
+
+		this.dfReducer.open(new Configuration());
+		this.countReducer.open(new Configuration());
+		this.weightVectorReducer.open(new Configuration());
+		this.termIdReducer.open(new Configuration());
+	}
+
+	@Benchmark
+	public void documentFrequencyReducer(Blackhole blackhole) throws Exception {
+		// the reducer replaces the count of the last record by the sum
+		for (Record record : this.dfGroup) {
+			record.setField(1, this.one);
+		}
+		this.dfReducer.reduce(this.dfIterator.reset(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void documentCountReducer(Blackhole blackhole) throws Exception {
+		for (Record record : this.countGroup) {
+			record.setField(0, this.oneDocument);
+		}
+		this.countReducer.reduce(this.countIterator.reset(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void weightVectorReducer(Blackhole blackhole) throws Exception {
+		this.weightVectorReducer.reduce(this.weightIterator.reset(), this.collector.into(blackhole));
+	}
+
+	@Benchmark
+	public void termIdReducer(Blackhole blackhole) throws Exception {
+		this.termIdReducer.reduce(this.termIterator.reset(), this.collector.into(blackhole));
+	}
+}
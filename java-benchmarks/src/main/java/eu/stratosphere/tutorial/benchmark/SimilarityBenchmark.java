@@ -0,0 +1,295 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task5.CandidatePairReducer;
+import eu.stratosphere.tutorial.task5.CosineCross;
+import eu.stratosphere.tutorial.task5.SimilarityVector;
+import eu.stratosphere.tutorial.task5.SimilarityVectorReducer;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.types.Value;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Scaling of the similarity join with prefix filtering ({@link SimilarityVectorReducer} and
+ * {@link CandidatePairReducer}) compared with the brute-force {@link CosineCross} over all pairs, on generated corpora
+ * of different sizes. The shuffles of the plan are simulated by grouping in memory.
+ * <p>
+ * A tenth of the documents are near duplicates of other documents with some terms replaced, so that the corpora
+ * contain similar pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class SimilarityBenchmark {
+
+	private static final int DOCUMENT_LENGTH = 100;
+
+	private static final double THRESHOLD = 0.8;
+
+	@Param({ "1000", "2000", "4000" })
+	public int numDocuments;
+
+	// (docId, term, tf-idf, df) records per document
+	private Record[][] documents;
+
+	@Setup
+	public void setup() {
+		this.documents = createTfIdfRecords(this.numDocuments);
+	}
+
+	@Benchmark
+	public Set<Long> prefixFiltering() throws Exception {
+		return prefixFiltering(this.documents, THRESHOLD);
+	}
+
+	@Benchmark
+	public Set<Long> bruteForce() throws Exception {
+		return bruteForce(this.documents, THRESHOLD);
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Runs the prefix filtering reducers and returns the similar pairs as (docId1 &lt;&lt; 32 | docId2).
+	 */
+	public static Set<Long> prefixFiltering(Record[][] documents, double threshold) throws Exception {
+		SimilarityVectorReducer vectorReducer = new SimilarityVectorReducer();
+		vectorReducer.open(parameters(threshold, true));
+
+		// group the (termKey, vector) records by term
+		final Map<Long, List<Record>> groups = new HashMap<Long, List<Record>>();
+		Collector<Record> grouper = new Collector<Record>() {
+			@Override
+			public void collect(Record record) {
+				long term = record.getField(0, LongValue.class).getValue();
+				List<Record> group = groups.get(term);
+				if (group == null) {
+					group = new ArrayList<Record>();
+					groups.put(term, group);
+				}
+				group.add(copy(new LongValue(term), record));
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		for (Record[] document : documents) {
+			vectorReducer.reduce(iterator(document), grouper);
+		}
+
+		CandidatePairReducer pairReducer = new CandidatePairReducer();
+		pairReducer.open(parameters(threshold, true));
+
+		ListCollector pairs = new ListCollector();
+		for (List<Record> group : groups.values()) {
+			pairReducer.reduce(group.iterator(), pairs);
+		}
+		return pairs.pairs;
+	}
+
+	/**
+	 * Runs the brute-force cross and returns the similar pairs as (docId1 &lt;&lt; 32 | docId2).
+	 */
+	public static Set<Long> bruteForce(Record[][] documents, double threshold) throws Exception {
+		SimilarityVectorReducer vectorReducer = new SimilarityVectorReducer();
+		vectorReducer.open(parameters(threshold, false));
+
+		final List<Record> vectors = new ArrayList<Record>();
+		Collector<Record> collector = new Collector<Record>() {
+			@Override
+			public void collect(Record record) {
+				vectors.add(copy(new IntValue(record.getField(0, IntValue.class).getValue()), record));
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		for (Record[] document : documents) {
+			vectorReducer.reduce(iterator(document), collector);
+		}
+
+		CosineCross cross = new CosineCross();
+		cross.open(parameters(threshold, false));
+
+		ListCollector pairs = new ListCollector();
+		for (Record vector1 : vectors) {
+			for (Record vector2 : vectors) {
+				cross.cross(vector1, vector2, pairs);
+			}
+		}
+		return pairs.pairs;
+	}
+
+	/**
+	 * Creates the (docId, term, tf-idf, df) records of Zipf distributed documents, a tenth of which are near
+	 * duplicates of other documents.
+	 */
+	public static Record[][] createTfIdfRecords(int numDocuments) {
+		ZipfGenerator generator = Documents.generator(42);
+		Random random = new Random(42);
+
+		int[][] terms = new int[numDocuments][];
+		for (int i = 0; i < numDocuments; i++) {
+			terms[i] = new int[DOCUMENT_LENGTH];
+			if (i > 0 && random.nextInt(10) == 0) {
+				int original = random.nextInt(i);
+				for (int j = 0; j < DOCUMENT_LENGTH; j++) {
+					terms[i][j] = random.nextInt(10) == 0 ? generator.nextRank() : terms[original][j];
+				}
+			} else {
+				for (int j = 0; j < DOCUMENT_LENGTH; j++) {
+					terms[i][j] = generator.nextRank();
+				}
+			}
+		}
+
+		// term frequencies and document frequencies
+		List<Map<Integer, Integer>> tfs = new ArrayList<Map<Integer, Integer>>();
+		Map<Integer, Integer> dfs = new HashMap<Integer, Integer>();
+		for (int[] document : terms) {
+			Map<Integer, Integer> tf = new HashMap<Integer, Integer>();
+			for (int term : document) {
+				Integer count = tf.get(term);
+				tf.put(term, count == null ? 1 : count + 1);
+			}
+			for (Integer term : tf.keySet()) {
+				Integer df = dfs.get(term);
+				dfs.put(term, df == null ? 1 : df + 1);
+			}
+			tfs.add(tf);
+		}
+
+		Record[][] documents = new Record[numDocuments][];
+		for (int i = 0; i < numDocuments; i++) {
+			List<Record> records = new ArrayList<Record>();
+			for (Map.Entry<Integer, Integer> tf : tfs.get(i).entrySet()) {
+				int df = dfs.get(tf.getKey());
+				records.add(Documents.record(new IntValue(i), new StringValue(generator.term(tf.getKey())),
+					new DoubleValue(tf.getValue() * Math.log((double) numDocuments / df)), new IntValue(df)));
+			}
+			documents[i] = records.toArray(new Record[records.size()]);
+		}
+		return documents;
+	}
+
+	private static Configuration parameters(double threshold, boolean prefixFilter) {
+		Configuration parameters = new Configuration();
+		parameters.setString(SimilarityVectorReducer.THRESHOLD, Double.toString(threshold));
+		parameters.setBoolean(SimilarityVectorReducer.PREFIX_FILTER, prefixFilter);
+		return parameters;
+	}
+
+	private static RecordIterator iterator(Record[] records) {
+		return new RecordIterator(records);
+	}
+
+	/**
+	 * Copies a (key, vector) record, as the shuffle would.
+	 */
+	private static Record copy(Value key, Record record) {
+		SimilarityVector vector = new SimilarityVector();
+		vector.copyFrom(record.getField(1, SimilarityVector.class));
+		return new Record(key, vector);
+	}
+
+	/**
+	 * Collects the (docId1, docId2, similarity) records as pairs.
+	 */
+	private static class ListCollector implements Collector<Record> {
+
+		final Set<Long> pairs = new HashSet<Long>();
+
+		@Override
+		public void collect(Record record) {
+			long docId1 = record.getField(0, IntValue.class).getValue();
+			long docId2 = record.getField(1, IntValue.class).getValue();
+			if (!this.pairs.add(docId1 << 32 | docId2)) {
+				throw new IllegalStateException("Pair (" + docId1 + ", " + docId2 + ") emitted twice");
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Prints the time and the number of similar pairs of both approaches and checks that they find the same pairs.
+	 * <p>
+	 * Usage: ([numDocuments]...)
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] sizes = { 1000, 2000, 4000, 8000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		for (int numDocuments : sizes) {
+			Record[][] documents = createTfIdfRecords(numDocuments);
+
+			long start = System.nanoTime();
+			Set<Long> prefixPairs = prefixFiltering(documents, THRESHOLD);
+			long prefixTime = (System.nanoTime() - start) / 1000000;
+
+			start = System.nanoTime();
+			Set<Long> bruteForcePairs = bruteForce(documents, THRESHOLD);
+			long bruteForceTime = (System.nanoTime() - start) / 1000000;
+
+			if (!prefixPairs.equals(bruteForcePairs)) {
+				throw new IllegalStateException("Prefix filtering found " + prefixPairs.size() + " pairs, brute force "
+					+ bruteForcePairs.size());
+			}
+			System.out.println(String.format("%6d documents: %5d pairs, prefix filtering %6d ms, brute force %6d ms",
+				numDocuments, prefixPairs.size(), prefixTime, bruteForceTime));
+		}
+	}
+}
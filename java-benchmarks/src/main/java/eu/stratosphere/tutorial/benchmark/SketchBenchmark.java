@@ -0,0 +1,158 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.sketch.CountMinSketch;
+import eu.stratosphere.tutorial.sketch.HeavyHitters;
+import eu.stratosphere.tutorial.sketch.SketchMapper;
+import eu.stratosphere.tutorial.sketch.SketchMergeReducer;
+import eu.stratosphere.tutorial.sketch.SketchTfIdfCross;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Compares the approximate idf of the {@link SketchTfIdfCross} with the exact idf of all terms of a generated Zipf
+ * corpus, and the bytes shipped by the {@link SketchMapper}s with the bytes shipped by the combined document frequency
+ * mappers. This is not a JMH benchmark; it is run with its main method.
+ */
+public final class SketchBenchmark {
+
+	private SketchBenchmark() {
+	}
+
+	/**
+	 * Prints the idf errors and the shipped bytes.
+	 * <p>
+	 * Usage: ([numDocuments]) ([numPartitions]) ([epsilon]) ([heavyHitters])
+	 */
+	public static void main(String[] args) throws Exception {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+		int numPartitions = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+		String epsilon = args.length >= 3 ? args[2] : SketchMapper.DEFAULT_EPSILON;
+		int numHeavyHitters = args.length >= 4 ? Integer.parseInt(args[3]) : SketchMapper.DEFAULT_HEAVY_HITTERS;
+
+		Configuration parameters = new Configuration();
+		parameters.setString(SketchMapper.EPSILON, epsilon);
+		parameters.setInteger(SketchMapper.HEAVY_HITTERS, numHeavyHitters);
+
+		ZipfGenerator generator = new ZipfGenerator(100000, 1.0, 42);
+		StopWords stopWords = StopWords.getDefault();
+		Tokenizer tokenizer = new Tokenizer();
+		TermIntMap documentTerms = new TermIntMap();
+		TermIntMap exact = new TermIntMap();
+		TermIntMap partitionTerms = new TermIntMap();
+
+		ListCollector sketches = new ListCollector();
+
+		// exact document frequencies and the (term, df) records of the combined document frequency mappers
+		long exactBytes = 0;
+		int docId = 0;
+		for (int partition = 0; partition < numPartitions; partition++) {
+			SketchMapper mapper = new SketchMapper();
+			mapper.open(parameters);
+			partitionTerms.clear();
+			for (; docId < (long) numDocuments * (partition + 1) / numPartitions; docId++) {
+				Record document = DocumentInputFormat.createRecord(generator.nextDocument(docId, 100));
+				mapper.map(document, sketches);
+
+				StringValue body = document.getField(1, StringValue.class);
+				tokenizer.reset(body, 0, body.length());
+				documentTerms.clear();
+				while (tokenizer.next()) {
+					if (!stopWords.contains(tokenizer.buffer(), 0, tokenizer.length())) {
+						documentTerms.put(tokenizer.buffer(), 0, tokenizer.length(), 1);
+					}
+				}
+				for (int i = 0; i < documentTerms.size(); i++) {
+					exact.add(documentTerms.keyChars(), documentTerms.keyOffset(i), documentTerms.keyLength(i), 1);
+					partitionTerms.add(documentTerms.keyChars(), documentTerms.keyOffset(i), documentTerms.keyLength(i),
+						1);
+				}
+			}
+			mapper.close();
+
+			// a string value has a length byte and a byte per ASCII char, the count an int
+			for (int i = 0; i < partitionTerms.size(); i++) {
+				exactBytes += 1 + partitionTerms.keyLength(i) + 4;
+			}
+		}
+
+		long sketchBytes = 0;
+		for (Record record : sketches.records) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			record.getField(0, CountMinSketch.class).write(out);
+			record.getField(1, HeavyHitters.class).write(out);
+			out.close();
+			sketchBytes += bytes.size() + 8;
+		}
+
+		ListCollector merged = new ListCollector();
+		new SketchMergeReducer().reduce(sketches.records.iterator(), merged);
+		Record sketchRecord = merged.records.get(0);
+		CountMinSketch sketch = sketchRecord.getField(0, CountMinSketch.class);
+
+		SketchTfIdfCross cross = new SketchTfIdfCross();
+		cross.open(parameters);
+
+		// idf = tf-idf of a single occurrence, the weighted error is the mean over all (term, document) pairs
+		ListCollector tfIdfs = new ListCollector();
+		IntValue one = new IntValue(1);
+		double sumError = 0;
+		double sumWeightedError = 0;
+		double maxError = 0;
+		int numExact = 0;
+		for (int i = 0; i < exact.size(); i++) {
+			StringValue term = new StringValue();
+			exact.copyKeyTo(i, term);
+			Record tfRecord = new Record(3);
+			tfRecord.setField(0, new IntValue(0));
+			tfRecord.setField(1, term);
+			tfRecord.setField(2, one);
+			cross.cross(tfRecord, sketchRecord, tfIdfs);
+
+			double idf = tfIdfs.records.get(tfIdfs.records.size() - 1).getField(2, DoubleValue.class).getValue();
+			double error = Math.log((double) numDocuments / exact.value(i)) - idf;
+			sumError += error;
+			sumWeightedError += error * exact.value(i);
+			maxError = Math.max(maxError, error);
+			if (error == 0) {
+				numExact++;
+			}
+		}
+
+		long numPairs = 0;
+		for (int i = 0; i < exact.size(); i++) {
+			numPairs += exact.value(i);
+		}
+
+		System.out.println(String.format("%d documents in %d partitions, %d distinct terms, %s, error bound %.1f",
+			numDocuments, numPartitions, exact.size(), sketch, sketch.getErrorBound()));
+		System.out.println(String.format("idf error: mean %.4f, weighted %.4f, max %.4f, %.1f%% of the terms exact",
+			sumError / exact.size(), sumWeightedError / numPairs, maxError, 100.0 * numExact / exact.size()));
+		System.out.println(String.format("shipped: exact (combined) %d KB, sketches %d KB", exactBytes / 1024,
+			sketchBytes / 1024));
+	}
+}
@@ -0,0 +1,411 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.skew.TermSalting;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Compares the document frequency reduce with and without salting of the hot terms (see {@link TermSalting}) on a
+ * Zipf distributed corpus.
+ * <p>
+ * The mappers keep all terms, so that the most frequent Zipf ranks play the role of the hot terms of a domain, which
+ * occur in most documents. The (term, 1) records are hash partitioned to the subtasks without a combiner, and every
+ * subtask sorts and reduces its partition, one after the other in a single thread. The benchmark methods measure the
+ * total work; the main method prints the runtime of every subtask, whose maximum is the runtime of the reduce.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SkewBenchmark {
+
+	private static final int NUM_DOCUMENTS = 20000;
+
+	private static final int DOCUMENT_LENGTH = 100;
+
+	@Param({ "16", "64" })
+	public int numSubtasks;
+
+	private Record[] unsaltedRecords;
+
+	private Record[] saltedRecords;
+
+	@Setup
+	public void setup() throws Exception {
+		Record[] documents = createDocuments(NUM_DOCUMENTS);
+		this.unsaltedRecords = map(documents, null, 0);
+		this.saltedRecords = map(documents, sampleHotTerms(this.numSubtasks), this.numSubtasks);
+	}
+
+	@Benchmark
+	public int unsalted() throws Exception {
+		return new Job(this.unsaltedRecords, this.numSubtasks).run().size();
+	}
+
+	@Benchmark
+	public int salted() throws Exception {
+		return new Job(this.saltedRecords, this.numSubtasks).run().size();
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A single run of the reduce: the salted reduce is followed by the merge reduce of the partial sums if the records
+	 * have salts.
+	 */
+	static final class Job {
+
+		private final Record[] records;
+
+		private final int numSubtasks;
+
+		// nanoseconds per subtask of the first and the merge reduce
+		final long[] reduceTimes;
+
+		final long[] mergeTimes;
+
+		final int[] reduceRecords;
+
+		Job(Record[] records, int numSubtasks) {
+			this.records = records;
+			this.numSubtasks = numSubtasks;
+			this.reduceTimes = new long[numSubtasks];
+			this.mergeTimes = new long[numSubtasks];
+			this.reduceRecords = new int[numSubtasks];
+		}
+
+		/**
+		 * Runs the job and returns the document frequency of every term.
+		 */
+		TermIntMap run() throws Exception {
+			boolean salted = this.records[0].getNumFields() > 2;
+
+			List<List<Record>> partitions = partition(Arrays.asList(this.records), salted);
+			for (int subtask = 0; subtask < this.numSubtasks; subtask++) {
+				this.reduceRecords[subtask] = partitions.get(subtask).size();
+			}
+
+			final TermIntMap dfs = new TermIntMap();
+			final List<Record> partialSums = new ArrayList<Record>();
+			Collector<Record> collector = new Collector<Record>() {
+				@Override
+				public void collect(Record record) {
+					if (record.getNumFields() > 2) {
+						partialSums.add(Documents.record(record.getField(0, StringValue.class),
+							new IntValue(record.getField(1, IntValue.class).getValue()),
+							record.getField(2, IntValue.class)));
+					} else {
+						StringValue term = record.getField(0, StringValue.class);
+						dfs.put(term.getCharArray(), 0, term.length(), record.getField(1, IntValue.class).getValue());
+					}
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+
+			reduce(partitions, salted, collector, this.reduceTimes);
+			if (salted) {
+				// the merge reduce groups by term only and emits the final (term, df) records
+				for (Record partialSum : partialSums) {
+					partialSum.setNumFields(2);
+				}
+				reduce(partition(partialSums, false), false, collector, this.mergeTimes);
+			}
+			return dfs;
+		}
+
+		private List<List<Record>> partition(List<Record> records, boolean salted) {
+			List<List<Record>> partitions = new ArrayList<List<Record>>();
+			for (int i = 0; i < this.numSubtasks; i++) {
+				partitions.add(new ArrayList<Record>());
+			}
+			for (Record record : records) {
+				StringValue term = record.getField(0, StringValue.class);
+				int hash = TermIntMap.hash(term.getCharArray(), 0, term.length());
+				if (salted) {
+					hash = 31 * hash + record.getField(2, IntValue.class).getValue();
+					hash ^= hash >>> 16;
+					hash *= 0x85ebca6b;
+					hash ^= hash >>> 13;
+				}
+				// the copy stands for the deserialized record of the receiver
+				partitions.get((hash & Integer.MAX_VALUE) % this.numSubtasks).add(record.createCopy());
+			}
+			return partitions;
+		}
+
+		/**
+		 * Sorts every partition by the key and calls the reducer for every group.
+		 */
+		private void reduce(List<List<Record>> partitions, final boolean salted, Collector<Record> collector,
+				long[] times) throws Exception {
+			DocumentFrequencyReducer reducer = new DocumentFrequencyReducer();
+			reducer.open(new Configuration());
+
+			Comparator<Record> keyOrder = new Comparator<Record>() {
+				@Override
+				public int compare(Record record1, Record record2) {
+					StringValue term1 = record1.getField(0, StringValue.class);
+					StringValue term2 = record2.getField(0, StringValue.class);
+					int c = compareTerms(term1, term2);
+					if (c != 0 || !salted) {
+						return c;
+					}
+					return record1.getField(2, IntValue.class).getValue()
+						- record2.getField(2, IntValue.class).getValue();
+				}
+			};
+
+			for (int subtask = 0; subtask < partitions.size(); subtask++) {
+				List<Record> partition = partitions.get(subtask);
+
+				long start = System.nanoTime();
+				Collections.sort(partition, keyOrder);
+				int from = 0;
+				while (from < partition.size()) {
+					int to = from + 1;
+					while (to < partition.size() && keyOrder.compare(partition.get(from), partition.get(to)) == 0) {
+						to++;
+					}
+					Record[] group = partition.subList(from, to).toArray(new Record[to - from]);
+					reducer.reduce(new RecordIterator(group), collector);
+					from = to;
+				}
+				times[subtask] = System.nanoTime() - start;
+			}
+		}
+	}
+
+	private static int compareTerms(StringValue term1, StringValue term2) {
+		char[] chars1 = term1.getCharArray();
+		char[] chars2 = term2.getCharArray();
+		int length = Math.min(term1.length(), term2.length());
+		for (int i = 0; i < length; i++) {
+			if (chars1[i] != chars2[i]) {
+				return chars1[i] - chars2[i];
+			}
+		}
+		return term1.length() - term2.length();
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private static List<String> lines(int numDocuments) {
+		ZipfGenerator generator = Documents.generator(42);
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < numDocuments; i++) {
+			lines.add(generator.nextDocument(i, DOCUMENT_LENGTH));
+		}
+		return lines;
+	}
+
+	/**
+	 * Creates the (docId, document contents) records of the generated corpus.
+	 */
+	static Record[] createDocuments(int numDocuments) {
+		List<String> lines = lines(numDocuments);
+		Record[] documents = new Record[lines.size()];
+		for (int i = 0; i < documents.length; i++) {
+			documents[i] = DocumentInputFormat.createRecord(lines.get(i));
+		}
+		return documents;
+	}
+
+	/**
+	 * Runs the sampling pre-pass over the generated corpus, written to a temporary file, with the default share of
+	 * the given number of subtasks.
+	 */
+	static String[] sampleHotTerms(int numSubtasks) throws Exception {
+		File file = File.createTempFile("documents", ".txt");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (String line : lines(NUM_DOCUMENTS)) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		return TermSalting.sampleHotTerms(file.toURI().toString(), noStopWords(), null, TermSalting.SAMPLE_SIZE,
+			0.25 / numSubtasks);
+	}
+
+	/**
+	 * Runs the {@link DocumentFrequencyMapper} without stop words, salting the given hot terms if there are any, and
+	 * returns copies of the emitted records.
+	 */
+	static Record[] map(Record[] documents, String[] hotTerms, int numSalts) throws Exception {
+		File stopWords = File.createTempFile("stopwords", ".txt");
+		stopWords.deleteOnExit();
+
+		Configuration parameters = new Configuration();
+		parameters.setString(StopWords.PATH_PARAMETER, stopWords.toURI().toString());
+		if (hotTerms != null && hotTerms.length > 0) {
+			parameters.setString(DocumentFrequencyMapper.HOT_TERMS, TermSalting.hotTermsParameter(hotTerms));
+			parameters.setInteger(DocumentFrequencyMapper.NUM_SALTS, numSalts);
+		}
+
+		DocumentFrequencyMapper mapper = new DocumentFrequencyMapper();
+		mapper.open(parameters);
+
+		final List<Record> records = new ArrayList<Record>();
+		Collector<Record> collector = new Collector<Record>() {
+			@Override
+			public void collect(Record record) {
+				Record copy = new Record(new StringValue(record.getField(0, StringValue.class)), new IntValue(1));
+				if (record.getNumFields() > 2) {
+					copy.setField(2, new IntValue(record.getField(2, IntValue.class).getValue()));
+				}
+				records.add(copy);
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		for (Record document : documents) {
+			mapper.map(document, collector);
+		}
+		return records.toArray(new Record[records.size()]);
+	}
+
+	private static StopWords noStopWords() {
+		return new StopWords(Collections.<String> emptyList());
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Prints the sampled hot terms and the reduce runtime of every subtask with and without salting, and checks that
+	 * both compute the same document frequencies. The copied records of the corpus need a heap of about 3 GB (-Xmx3g).
+	 * <p>
+	 * Usage: ([numSubtasks]...)
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] parallelisms = { 16, 64 };
+		if (args.length > 0) {
+			parallelisms = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				parallelisms[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Record[] documents = createDocuments(NUM_DOCUMENTS);
+		Record[] unsaltedRecords = map(documents, null, 0);
+
+		for (int numSubtasks : parallelisms) {
+			String[] hotTerms = sampleHotTerms(numSubtasks);
+			Record[] saltedRecords = map(documents, hotTerms, numSubtasks);
+			System.out.println(String.format("%d subtasks, %d (term, 1) records, %d hot terms: %s", numSubtasks,
+				unsaltedRecords.length, hotTerms.length, Arrays.toString(Arrays.copyOf(hotTerms,
+					Math.min(hotTerms.length, 8))).replace("]", hotTerms.length > 8 ? ", ...]" : "]")));
+
+			Job unsalted = null;
+			Job salted = null;
+			for (int run = 0; run < 5; run++) {
+				unsalted = new Job(unsaltedRecords, numSubtasks);
+				TermIntMap unsaltedDfs = unsalted.run();
+				salted = new Job(saltedRecords, numSubtasks);
+				TermIntMap saltedDfs = salted.run();
+
+				if (run == 0) {
+					check(unsaltedDfs, saltedDfs);
+				}
+			}
+
+			print("unsalted  reduce", unsalted.reduceTimes, unsalted.reduceRecords);
+			print("salted    reduce", salted.reduceTimes, salted.reduceRecords);
+			print("salted    merge ", salted.mergeTimes, null);
+			System.out.println(String.format("slowest subtask: unsalted %.1f ms, salted %.1f ms (reduce + merge)",
+				max(unsalted.reduceTimes) / 1e6, (max(salted.reduceTimes) + max(salted.mergeTimes)) / 1e6));
+		}
+	}
+
+	private static void check(TermIntMap expected, TermIntMap actual) {
+		if (expected.size() != actual.size()) {
+			throw new IllegalStateException(expected.size() + " terms without salting, " + actual.size() + " with");
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			int df = actual.get(expected.keyChars(), expected.keyOffset(i), expected.keyLength(i), -1);
+			if (df != expected.value(i)) {
+				throw new IllegalStateException("Document frequency of " + expected.keyToString(i) + " is " + df
+					+ " with salting, " + expected.value(i) + " without");
+			}
+		}
+	}
+
+	private static void print(String name, long[] times, int[] records) {
+		StringBuilder line = new StringBuilder(name).append(" ms:");
+		for (long time : times) {
+			line.append(String.format(" %5.1f", time / 1e6));
+		}
+		System.out.println(line);
+		if (records != null) {
+			int maxRecords = 0;
+			long sum = 0;
+			for (int count : records) {
+				maxRecords = Math.max(maxRecords, count);
+				sum += count;
+			}
+			System.out.println(String.format("%s records: max %d, mean %d", name, maxRecords, sum / records.length));
+		}
+	}
+
+	private static long max(long[] values) {
+		long max = 0;
+		for (long value : values) {
+			max = Math.max(max, value);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,155 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.pruning.BloomFilter;
+import eu.stratosphere.tutorial.pruning.BloomFilterMapper;
+import eu.stratosphere.tutorial.pruning.BloomFilterMergeReducer;
+import eu.stratosphere.tutorial.pruning.DocumentFrequencyFilter;
+import eu.stratosphere.tutorial.pruning.SemiJoinFilterCross;
+import eu.stratosphere.tutorial.pruning.TopTermsReducer;
+import eu.stratosphere.tutorial.pruning.VocabularyPruning;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Prunes the vocabulary of a generated Zipf corpus with the stages of {@link VocabularyPruning}, driving the UDFs
+ * directly. This is not a JMH benchmark; it is run with its main method.
+ */
+public final class VocabularyPruningBenchmark {
+
+	private VocabularyPruningBenchmark() {
+	}
+
+	/**
+	 * Prints how many terms and term frequency records are kept, and how many records of pruned terms pass the filter.
+	 * <p>
+	 * Usage: ([numDocuments]) ([minDf]) ([maxDfRatio]) ([maxVocabulary])
+	 */
+	public static void main(String[] args) throws Exception {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 10000;
+		int minDf = args.length >= 2 ? Integer.parseInt(args[1]) : 2;
+		String maxDfRatio = args.length >= 3 ? args[2] : "0.5";
+		int maxVocabulary = args.length >= 4 ? Integer.parseInt(args[3]) : 20000;
+
+		Configuration parameters = new Configuration();
+		parameters.setInteger(DocumentFrequencyFilter.MIN_DF, minDf);
+		parameters.setString(DocumentFrequencyFilter.MAX_DF_RATIO, maxDfRatio);
+		parameters.setInteger(TopTermsReducer.MAX_TERMS, maxVocabulary);
+		parameters.setInteger(BloomFilterMapper.NUM_BITS, 10 * maxVocabulary);
+
+		// (docId, term, tf) records and document frequencies
+		ZipfGenerator generator = new ZipfGenerator(100000, 1.0, 42);
+		StopWords stopWords = StopWords.getDefault();
+		Tokenizer tokenizer = new Tokenizer();
+		TermIntMap termFrequencies = new TermIntMap();
+		TermIntMap documentFrequencies = new TermIntMap();
+		List<Record> tfRecords = new ArrayList<Record>();
+		for (int docId = 0; docId < numDocuments; docId++) {
+			StringValue document = new StringValue(generator.nextDocument(docId, 100));
+			tokenizer.reset(document, Util.indexOf(document, ',', 0) + 1, document.length());
+			termFrequencies.clear();
+			while (tokenizer.next()) {
+				if (!stopWords.contains(tokenizer.buffer(), 0, tokenizer.length())) {
+					termFrequencies.add(tokenizer.buffer(), 0, tokenizer.length(), 1);
+				}
+			}
+			for (int i = 0; i < termFrequencies.size(); i++) {
+				documentFrequencies.add(termFrequencies.keyChars(), termFrequencies.keyOffset(i),
+					termFrequencies.keyLength(i), 1);
+				StringValue term = new StringValue();
+				termFrequencies.copyKeyTo(i, term);
+				Record tfRecord = new Record(3);
+				tfRecord.setField(0, new IntValue(docId));
+				tfRecord.setField(1, term);
+				tfRecord.setField(2, new IntValue(termFrequencies.value(i)));
+				tfRecords.add(tfRecord);
+			}
+		}
+
+		ListCollector dfRecords = new ListCollector();
+		for (int i = 0; i < documentFrequencies.size(); i++) {
+			StringValue term = new StringValue();
+			documentFrequencies.copyKeyTo(i, term);
+			Record dfRecord = new Record(3);
+			dfRecord.setField(0, term);
+			dfRecord.setField(1, new IntValue(documentFrequencies.value(i)));
+			dfRecord.setField(2, new LongValue(numDocuments));
+			dfRecords.collect(dfRecord);
+		}
+
+		// pruning
+		ListCollector filtered = new ListCollector();
+		DocumentFrequencyFilter dfFilter = new DocumentFrequencyFilter();
+		dfFilter.open(parameters);
+		for (Record record : dfRecords.records) {
+			dfFilter.map(record, filtered);
+		}
+
+		ListCollector kept = new ListCollector();
+		TopTermsReducer topTerms = new TopTermsReducer();
+		topTerms.open(parameters);
+		topTerms.reduce(filtered.records.iterator(), kept);
+
+		Set<String> keptTerms = new HashSet<String>();
+		ListCollector filters = new ListCollector();
+		BloomFilterMapper filterMapper = new BloomFilterMapper();
+		filterMapper.open(parameters);
+		for (Record record : kept.records) {
+			keptTerms.add(record.getField(0, StringValue.class).getValue());
+			filterMapper.map(record, filters);
+		}
+		filterMapper.close();
+
+		ListCollector merged = new ListCollector();
+		new BloomFilterMergeReducer().reduce(filters.records.iterator(), merged);
+		BloomFilter filter = merged.records.get(0).getField(0, BloomFilter.class);
+
+		// semi-join
+		ListCollector passed = new ListCollector();
+		SemiJoinFilterCross semiJoin = new SemiJoinFilterCross();
+		semiJoin.open(parameters);
+		for (Record record : tfRecords) {
+			semiJoin.cross(record, merged.records.get(0), passed);
+		}
+
+		int falsePositives = 0;
+		for (Record record : passed.records) {
+			if (!keptTerms.contains(record.getField(1, StringValue.class).getValue())) {
+				falsePositives++;
+			}
+		}
+
+		System.out.println(String.format("%d documents, min df %d, max df ratio %s, max vocabulary %d", numDocuments,
+			minDf, maxDfRatio, maxVocabulary));
+		System.out.println(String.format("terms: %d, after df filter %d, after top terms %d", dfRecords.records.size(),
+			filtered.records.size(), kept.records.size()));
+		System.out.println(String.format("tf records: %d, after semi-join %d (%.1f%%), %d false positives, %s",
+			tfRecords.size(), passed.records.size(), 100.0 * passed.records.size() / tfRecords.size(), falsePositives,
+			filter));
+	}
+}
@@ -0,0 +1,99 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.tutorial.task4.WeightVector;
+
+/**
+ * Serialization throughput of {@link WeightVector} in vectors per second, for vectors of different sizes and both
+ * weight precisions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WeightVectorBenchmark {
+
+	/**
+	 * Number of terms per vector.
+	 */
+	@Param({ "10", "100", "1000" })
+	public int numTerms;
+
+	@Param({ "false", "true" })
+	public boolean singlePrecision;
+
+	private final WeightVector vector = new WeightVector();
+
+	private final WeightVector target = new WeightVector();
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream out = new DataOutputStream(this.bytes);
+
+	private ByteArrayInputStream serialized;
+
+	private DataInputStream in;
+
+	@Setup
+	public void setup() throws IOException {
+		ZipfGenerator generator = Documents.generator(42);
+
+		this.vector.setDocId(1);
+		this.vector.setSinglePrecision(this.singlePrecision);
+		for (int i = 0; i < this.numTerms; i++) {
+			this.vector.add(generator.term(generator.nextRank()), 1.0 / (i + 1));
+		}
+
+		this.vector.write(this.out);
+		this.serialized = new ByteArrayInputStream(this.bytes.toByteArray());
+		this.in = new DataInputStream(this.serialized);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		this.bytes.reset();
+		this.vector.write(this.out);
+		return this.bytes.size();
+	}
+
+	@Benchmark
+	public WeightVector read() throws IOException {
+		this.serialized.reset();
+		this.target.read(this.in);
+		return this.target;
+	}
+}
@@ -0,0 +1,135 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import eu.stratosphere.api.java.record.io.FileOutputFormat;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.core.fs.FileInputSplit;
+import eu.stratosphere.tutorial.io.WeightVectorFile;
+import eu.stratosphere.tutorial.io.WeightVectorInputFormat;
+import eu.stratosphere.tutorial.io.WeightVectorOutputFormat;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+
+/**
+ * Writes generated vectors with the {@link WeightVectorOutputFormat} into two files, reads them back sequentially with
+ * the {@link WeightVectorInputFormat} and by docId with the {@link WeightVectorFile}, and compares the size with the
+ * text written by the {@link eu.stratosphere.tutorial.task4.WeightVectorPlan}. This is not a JMH benchmark; it is run
+ * with its main method.
+ */
+public final class WeightVectorFileBenchmark {
+
+	private WeightVectorFileBenchmark() {
+	}
+
+	/**
+	 * Prints the size of the text and the binary output and the time per lookup.
+	 * <p>
+	 * Usage: ([numDocuments]) ([blockSize])
+	 */
+	public static void main(String[] args) throws Exception {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+		int blockSize = args.length >= 2 ? Integer.parseInt(args[1]) : 64 * 1024;
+
+		File directory = File.createTempFile("vectors", "");
+		directory.delete();
+		directory.mkdirs();
+		directory.deleteOnExit();
+
+		// documents of 100 terms with tf-idf like weights, in random docId order
+		ZipfGenerator generator = new ZipfGenerator(100000, 1.0, 42);
+		Random random = new Random(42);
+		WeightVector[] vectors = new WeightVector[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			vectors[i] = new WeightVector();
+			vectors[i].setDocId(10 * i + random.nextInt(10));
+			for (int j = 0; j < 100; j++) {
+				int rank = generator.nextRank();
+				vectors[i].add(generator.term(rank), (1 + random.nextInt(3)) * Math.log(100000.0 / (rank + 1)));
+			}
+		}
+		for (int i = numDocuments - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			WeightVector vector = vectors[i];
+			vectors[i] = vectors[j];
+			vectors[j] = vector;
+		}
+
+		long textBytes = 0;
+		for (int task = 1; task <= 2; task++) {
+			Configuration parameters = new Configuration();
+			String path = new File(directory, String.valueOf(task)).toURI().toString();
+			parameters.setString(FileOutputFormat.FILE_PARAMETER_KEY, path);
+			parameters.setInteger(WeightVectorOutputFormat.BLOCK_SIZE, blockSize);
+			WeightVectorOutputFormat output = new WeightVectorOutputFormat();
+			output.configure(parameters);
+			output.open(task);
+			for (int i = task - 1; i < numDocuments; i += 2) {
+				output.writeRecord(new Record(new IntValue(vectors[i].getDocId()), vectors[i]));
+				textBytes += (vectors[i].getDocId() + " " + vectors[i] + "\n").getBytes("UTF-8").length;
+			}
+			output.close();
+		}
+
+		long binaryBytes = 0;
+		for (File file : directory.listFiles()) {
+			file.deleteOnExit();
+			binaryBytes += file.length();
+		}
+
+		// more splits are requested than there are files, but every file must be read as one split
+		WeightVectorInputFormat input = new WeightVectorInputFormat();
+		input.setFilePath(directory.toURI().toString());
+		FileInputSplit[] splits = input.createInputSplits(8);
+		if (splits.length != 2 || splits[0].getStart() != 0 || splits[1].getStart() != 0) {
+			throw new IllegalStateException("Expected one split per file: " + Arrays.toString(splits));
+		}
+		int numRead = 0;
+		for (FileInputSplit split : splits) {
+			input.open(split);
+			Record record = new Record();
+			while (!input.reachedEnd() && input.nextRecord(record)) {
+				numRead++;
+			}
+			input.close();
+		}
+		if (numRead != numDocuments) {
+			throw new IllegalStateException("Read " + numRead + " of " + numDocuments + " vectors");
+		}
+
+		WeightVectorFile file = WeightVectorFile.open(directory.toURI().toString());
+		WeightVector vector = new WeightVector();
+		long start = System.nanoTime();
+		for (int i = 0; i < numDocuments; i++) {
+			WeightVector expected = vectors[random.nextInt(numDocuments)];
+			if (!file.get(expected.getDocId(), vector) || !vector.toString().equals(expected.toString())) {
+				throw new IllegalStateException("Wrong vector for document " + expected.getDocId());
+			}
+		}
+		long lookupTime = System.nanoTime() - start;
+		if (file.get(-1, vector)) {
+			throw new IllegalStateException("Found a document that does not exist");
+		}
+		file.close();
+
+		System.out.println(String.format("%d documents, %d byte blocks: text %d KB, binary %d KB, %.1f us per lookup",
+			numDocuments, blockSize, textBytes / 1024, binaryBytes / 1024, lookupTime / 1000.0 / numDocuments));
+	}
+}
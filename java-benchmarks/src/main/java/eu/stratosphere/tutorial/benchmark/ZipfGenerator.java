@@ -0,0 +1,135 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import eu.stratosphere.tutorial.util.Util;
+
+/**
+ * Generates synthetic documents in the input format "docId,document contents" whose terms follow a Zipf distribution,
+ * as the terms of natural language text do: the term of rank k occurs with a probability proportional to 1 / k^s.
+ * <p>
+ * The most frequent terms are the default stop words, followed by random lower case words, so that the stop word
+ * filter of the mappers removes a realistic share of the tokens.
+ */
+public final class ZipfGenerator {
+
+	private final String[] vocabulary;
+
+	// cumulative probabilities of the ranks
+	private final double[] cdf;
+
+	private final Random random;
+
+	/**
+	 * Creates a generator over a vocabulary of the given size.
+	 *
+	 * @param vocabularySize
+	 *        Number of distinct terms
+	 * @param exponent
+	 *        Zipf exponent s, about 1 for natural language
+	 * @param seed
+	 *        Seed of the vocabulary and of the generated documents
+	 */
+	public ZipfGenerator(int vocabularySize, double exponent, long seed) {
+		this.random = new Random(seed);
+
+		String[] stopWords = Util.STOP_WORDS.toArray(new String[Util.STOP_WORDS.size()]);
+		Arrays.sort(stopWords);
+
+		this.vocabulary = new String[vocabularySize];
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			if (rank < stopWords.length) {
+				this.vocabulary[rank] = stopWords[rank];
+			} else {
+				char[] term = new char[3 + this.random.nextInt(8)];
+				for (int i = 0; i < term.length; i++) {
+					term[i] = (char) ('a' + this.random.nextInt(26));
+				}
+				this.vocabulary[rank] = new String(term);
+			}
+		}
+
+		this.cdf = new double[vocabularySize];
+		double sum = 0;
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			sum += 1.0 / Math.pow(rank + 1, exponent);
+			this.cdf[rank] = sum;
+		}
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			this.cdf[rank] /= sum;
+		}
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 */
+	public int vocabularySize() {
+		return this.vocabulary.length;
+	}
+
+	/**
+	 * Returns the term of the given rank, starting with 0 for the most frequent term.
+	 */
+	public String term(int rank) {
+		return this.vocabulary[rank];
+	}
+
+	/**
+	 * Draws the rank of the next term.
+	 */
+	public int nextRank() {
+		int index = Arrays.binarySearch(this.cdf, this.random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, this.cdf.length - 1);
+	}
+
+	/**
+	 * Generates a document "docId,term term ..." with the given number of terms.
+	 */
+	public String nextDocument(int docId, int numTerms) {
+		StringBuilder document = new StringBuilder().append(docId).append(',');
+		for (int i = 0; i < numTerms; i++) {
+			if (i > 0) {
+				document.append(' ');
+			}
+			document.append(this.vocabulary[nextRank()]);
+		}
+		return document.toString();
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		ZipfGenerator generator = new ZipfGenerator(100000, 1.0, 42);
+
+		System.out.println(generator.nextDocument(1, 20));
+
+		// the frequency of rank k should be about (1 / k) / H(n), H(100000) = 12.09
+		int numSamples = 1000000;
+		int[] counts = new int[5];
+		for (int i = 0; i < numSamples; i++) {
+			int rank = generator.nextRank();
+			if (rank < counts.length) {
+				counts[rank]++;
+			}
+		}
+		for (int rank = 0; rank < counts.length; rank++) {
+			System.out.println(String.format("%-8s %.4f (expected %.4f)", generator.term(rank),
+				(double) counts[rank] / numSamples, 1.0 / (rank + 1) / 12.09));
+		}
+	}
+}
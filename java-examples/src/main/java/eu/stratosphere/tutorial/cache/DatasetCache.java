@@ -0,0 +1,423 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.cache;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+
+import eu.stratosphere.api.common.operators.FileDataSink;
+import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.GenericDataSink;
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.core.fs.FSDataInputStream;
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyPlan;
+import eu.stratosphere.tutorial.task2.TermFrequencyPlan;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.task4.WeightVectorPlan;
+import eu.stratosphere.tutorial.util.LocalExecutorSession;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.Util;
+
+/**
+ * Cache of intermediate datasets that several plans compute from the same input, such as the (term, df) records of
+ * the document frequency reducer and the (docId, term, tf) records of the term frequency mapper, enabled with the
+ * option "-cache=[cacheDir]".
+ * <p>
+ * A dataset is stored in the binary format of the {@link DatasetOutputFormat} under
+ * "[cacheDir]/[inputKey]-[inputState]/[name]-[fingerprint]". The input key is a hash of the input path, the input state
+ * a hash of the path, length and modification time of every input file, and the fingerprint a hash of the name, the
+ * input files, and the configuration of the operators that produce the dataset. So the datasets of several inputs and
+ * configurations share one cache directory, and a changed input or configuration leads to a new entry. A plan first
+ * asks the cache for a dataset:
+ *
+ * <pre>
+ * Operator dfRecords = cache.read(DatasetCache.DOCUMENT_FREQUENCIES, config);
+ * if (dfRecords == null) {
+ *     dfRecords = cache.write(DatasetCache.DOCUMENT_FREQUENCIES, config, dfReducer);
+ * }
+ * ...
+ * Plan plan = new Plan(cache.sinks(sink), "...");
+ * </pre>
+ *
+ * On a hit it reads the cached records instead of running the producing operators; on a miss the records of the
+ * producer are written to the cache by an additional sink of the plan. Only a dataset whose files are all complete is
+ * a hit, so the datasets of failed jobs are computed again. The cache is checked while the plan is built.
+ * <p>
+ * The entries of the previous states of an input are stale. They are deleted by the sink that completes the first
+ * entry of the new state, not while a plan is built, so the entries of the current state are never deleted under a
+ * running plan.
+ */
+public final class DatasetCache {
+
+	/**
+	 * Name of the (term, df) records of the document frequency reducer.
+	 */
+	public static final String DOCUMENT_FREQUENCIES = "df";
+
+	/**
+	 * Name of the (docId, term, tf) records of the term frequency mapper.
+	 */
+	public static final String TERM_FREQUENCIES = "tf";
+
+	/**
+	 * Name of the (count) record of the document count reducer.
+	 */
+	public static final String DOCUMENT_COUNT = "count";
+
+	// changes the fingerprints of all entries when the format of the cached records changes
+	private static final String VERSION = "1";
+
+	private final String cacheDir;
+
+	private final String inputPath;
+
+	private final int numSubtasks;
+
+	private final List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+
+	// path, length and modification time of the input files, computed once
+	private String inputDescription;
+
+	private String stateDir;
+
+	private DatasetCache(String cacheDir, String inputPath, int numSubtasks) {
+		this.cacheDir = cacheDir;
+		this.inputPath = inputPath;
+		this.numSubtasks = numSubtasks;
+	}
+
+	/**
+	 * Creates the cache of the datasets of the given input in the directory of the option "-cache=[cacheDir]". Without
+	 * the option the cache is disabled.
+	 */
+	public static DatasetCache fromArgs(String inputPath, int numSubtasks, String[] args) {
+		return new DatasetCache(Util.getOption(args, "-cache", null), inputPath, numSubtasks);
+	}
+
+	public boolean isEnabled() {
+		return this.cacheDir != null;
+	}
+
+	/**
+	 * Returns the configuration of the mappers that tokenize the documents: the stop words of the option
+	 * "-stopWords=[path]" and the term dictionary the mappers encode the terms with, or null, identified by the length
+	 * and modification time of their files, and the {@link NGrams} options.
+	 */
+	public String[] mapperConfig(String[] args, String dictionaryPath) {
+		if (!isEnabled()) {
+			return new String[0];
+		}
+		String stopWordsPath = Util.getOption(args, "-stopWords", null);
+		try {
+			return new String[] {
+				"stopWords=" + (stopWordsPath == null ? "default" : describeFiles(stopWordsPath)),
+				"dictionary=" + (dictionaryPath == null ? "none" : describeFiles(dictionaryPath)),
+				"ngrams=" + Util.getOption(args, "-ngrams", "1") + (NGrams.isHashed(args) ? " hashed" : "") };
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read the files of the mapper configuration", e);
+		}
+	}
+
+	/**
+	 * Returns a source of the cached dataset of the given name and configuration, or null if the cache has no
+	 * complete dataset with its fingerprint.
+	 */
+	public Operator read(String name, String... config) {
+		if (!isEnabled()) {
+			return null;
+		}
+		String fingerprint = fingerprint(name, config);
+		String path = entryPath(name, fingerprint);
+		try {
+			if (!isComplete(path, fingerprint)) {
+				return null;
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read the cache " + this.cacheDir, e);
+		}
+
+		FileDataSource source = new FileDataSource(new DatasetInputFormat(), path, "Cached " + name);
+		source.setParameter(DatasetOutputFormat.FINGERPRINT, fingerprint);
+		return source;
+	}
+
+	/**
+	 * Adds a sink that writes the records of the producer to the cache and returns the producer.
+	 */
+	public Operator write(String name, String[] config, Operator producer) {
+		if (!isEnabled()) {
+			return producer;
+		}
+		String fingerprint = fingerprint(name, config);
+
+		FileDataSink sink = new FileDataSink(DatasetOutputFormat.class, entryPath(name, fingerprint), producer,
+			"Cache " + name);
+		sink.setParameter(DatasetOutputFormat.FINGERPRINT, fingerprint);
+		sink.setParameter(DatasetOutputFormat.NUM_FILES, this.numSubtasks);
+		sink.setDegreeOfParallelism(this.numSubtasks);
+		this.sinks.add(sink);
+		return producer;
+	}
+
+	/**
+	 * Returns the given sink of the plan together with the sinks that write datasets to the cache.
+	 */
+	public List<GenericDataSink> sinks(GenericDataSink sink) {
+		List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+		sinks.add(sink);
+		sinks.addAll(this.sinks);
+		return sinks;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	String fingerprint(String name, String... config) {
+		String[] values = new String[config.length + 3];
+		values[0] = VERSION;
+		values[1] = name;
+		values[2] = inputDescription();
+		System.arraycopy(config, 0, values, 3, config.length);
+		return hash(values);
+	}
+
+	private String inputDescription() {
+		if (this.inputDescription == null) {
+			try {
+				this.inputDescription = describeFiles(this.inputPath);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot list the input " + this.inputPath, e);
+			}
+		}
+		return this.inputDescription;
+	}
+
+	private String entryPath(String name, String fingerprint) {
+		if (this.stateDir == null) {
+			this.stateDir = this.cacheDir + "/" + hash(this.inputPath) + "-" + hash(VERSION, inputDescription());
+		}
+		return this.stateDir + "/" + name + "-" + fingerprint;
+	}
+
+	/**
+	 * Returns 16 hex digits of the SHA-1 hash of the values, separated by line breaks.
+	 */
+	private static String hash(String... values) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (int i = 0; i < values.length; i++) {
+			digest.update(((i == 0 ? "" : "\n") + values[i]).getBytes(Charsets.UTF_8));
+		}
+
+		// 64 bits are plenty to tell the few entries of a cache directory apart
+		byte[] hash = digest.digest();
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(hash[i] & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Returns the path, length and modification time of the given file, or of the files of the given directory.
+	 */
+	private static String describeFiles(String path) throws IOException {
+		StringBuilder description = new StringBuilder();
+		for (FileStatus file : listFiles(new Path(path))) {
+			description.append(file.getPath()).append(' ').append(file.getLen()).append(' ')
+				.append(file.getModificationTime()).append('\n');
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Returns the visible files of the given file or directory, ordered by path.
+	 */
+	private static List<FileStatus> listFiles(Path path) throws IOException {
+		FileSystem fs = FileSystem.get(path.toUri());
+		FileStatus status = fs.getFileStatus(path);
+		FileStatus[] candidates = status.isDir() ? fs.listStatus(path) : new FileStatus[] { status };
+
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		for (FileStatus file : candidates) {
+			String name = file.getPath().getName();
+			if (!file.isDir() && !name.startsWith(".") && !name.startsWith("_")) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files, new Comparator<FileStatus>() {
+			@Override
+			public int compare(FileStatus file1, FileStatus file2) {
+				return file1.getPath().toString().compareTo(file2.getPath().toString());
+			}
+		});
+		return files;
+	}
+
+	/**
+	 * Returns true if the entry exists and has as many files as its sink wrote, all with the given fingerprint and a
+	 * trailer.
+	 */
+	static boolean isComplete(String entryPath, String fingerprint) throws IOException {
+		Path path = new Path(entryPath);
+		FileSystem fs = FileSystem.get(path.toUri());
+		if (!fs.exists(path)) {
+			return false;
+		}
+
+		List<FileStatus> files = listFiles(path);
+		for (FileStatus file : files) {
+			// header (magic, fingerprint, number of files) and trailer (end, number of records, magic)
+			long trailerOffset = file.getLen() - 13;
+			if (trailerOffset < 4 + 2 + fingerprint.length() + 4) {
+				return false;
+			}
+
+			FSDataInputStream stream = fs.open(file.getPath());
+			try {
+				DataInputStream in = new DataInputStream(stream);
+				if (in.readInt() != DatasetOutputFormat.MAGIC || !in.readUTF().equals(fingerprint)
+						|| in.readInt() != files.size()) {
+					return false;
+				}
+
+				stream.seek(trailerOffset);
+				if (in.readByte() != DatasetOutputFormat.END_OF_RECORDS) {
+					return false;
+				}
+				in.readLong(); // number of records
+				if (in.readInt() != DatasetOutputFormat.MAGIC) {
+					return false;
+				}
+			} finally {
+				stream.close();
+			}
+		}
+		return !files.isEmpty();
+	}
+
+	/**
+	 * Deletes the directories of the other states of the input of the given "[inputKey]-[inputState]" directory.
+	 */
+	static void deleteStaleStates(Path stateDir) throws IOException {
+		String name = stateDir.getName();
+		int separator = name.indexOf('-');
+		if (separator < 0) {
+			return;
+		}
+		String inputKey = name.substring(0, separator + 1);
+
+		FileSystem fs = FileSystem.get(stateDir.toUri());
+		for (FileStatus dir : fs.listStatus(stateDir.getParent())) {
+			// the local file system lists directories with a trailing slash, which Path.getName returns as ""
+			String dirPath = dir.getPath().toUri().getPath();
+			if (dirPath.endsWith("/")) {
+				dirPath = dirPath.substring(0, dirPath.length() - 1);
+			}
+			String dirName = dirPath.substring(dirPath.lastIndexOf('/') + 1);
+			if (dir.isDir() && dirName.startsWith(inputKey) && !dirName.equals(name)) {
+				fs.delete(dir.getPath(), true);
+			}
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Runs the document frequency and term frequency plans, which fill the cache, the document frequency plan with
+	 * bigrams and on another input, whose entries go to the same cache, then the tf-idf and weight vector plans, which
+	 * read the cached datasets, and the tf-idf plan again after a document changed, which computes them again and
+	 * deletes the stale entries of the input. Prints the runtime of every plan and checks the entries of the cache.
+	 */
+	public static void main(String[] args) throws Exception {
+		String inputPath = Util.createTempDir("cached/input");
+		Util.createTempFile("cached/input/1.txt", "1,Big Hello to Stratosphere! :-)");
+		Util.createTempFile("cached/input/2.txt", "2,Hello to Big Big Data.");
+		String otherInputPath = Util.createTempDir("cached/other");
+		Util.createTempFile("cached/other/1.txt", "1,Another input in the same cache.");
+
+		String cacheDir = Util.createTempDir("cached/cache");
+		String outputPath = Util.createTempDir("cached/results");
+		String cache = "-cache=" + cacheDir;
+
+		LocalExecutorSession session = LocalExecutorSession.start();
+		try {
+			// computes and caches df and tf
+			System.out.println(session.run(new DocumentFrequencyPlan().getPlan(inputPath, outputPath + "/df", "1",
+				cache)));
+			System.out.println(session.run(new TermFrequencyPlan().getPlan(inputPath, outputPath + "/tf", "1",
+				cache)));
+
+			// another configuration and another input keep the entries of the first ones
+			System.out.println(session.run(new DocumentFrequencyPlan().getPlan(inputPath, outputPath + "/bigrams",
+				"1", cache, "-ngrams=2")));
+			System.out.println(session.run(new DocumentFrequencyPlan().getPlan(otherInputPath, outputPath + "/other",
+				"1", cache)));
+
+			// reads df and tf, computes and caches the document count
+			System.out.println(session.run(new TfIdfPlan().getPlan(inputPath, outputPath + "/tfidf1", "1", cache)));
+
+			// reads all three datasets and does not read the documents
+			System.out.println(session.run(new WeightVectorPlan().getPlan(inputPath, outputPath + "/vectors", "1",
+				cache)));
+			checkEntries(cacheDir, 2, 5);
+
+			// a changed document invalidates all datasets of its input, which are deleted once the first new one is
+			// complete
+			Thread.sleep(1000);
+			Util.createTempFile("cached/input/2.txt", "2,Hello to Big Big Data from Stratosphere.");
+			System.out.println(session.run(new TfIdfPlan().getPlan(inputPath, outputPath + "/tfidf2", "1", cache)));
+			checkEntries(cacheDir, 2, 4);
+		} finally {
+			session.close();
+		}
+
+		System.out.println("Writing output to " + outputPath);
+
+		//Util.deleteAllTempFiles();
+	}
+
+	private static void checkEntries(String cacheDir, int numStates, int numEntries) {
+		File[] states = new File(URI.create(cacheDir)).listFiles();
+		List<String> entries = new ArrayList<String>();
+		for (File state : states) {
+			for (String entry : state.list()) {
+				entries.add(state.getName() + "/" + entry);
+			}
+		}
+		Collections.sort(entries);
+		System.out.println("cache entries: " + entries);
+		if (states.length != numStates || entries.size() != numEntries) {
+			throw new IllegalStateException("Expected " + numEntries + " entries of " + numStates + " input states");
+		}
+	}
+}
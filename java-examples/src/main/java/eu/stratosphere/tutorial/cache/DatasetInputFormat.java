@@ -0,0 +1,79 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.cache;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.core.fs.FileInputSplit;
+import eu.stratosphere.tutorial.io.WholeFileInputFormat;
+import eu.stratosphere.types.Record;
+
+/**
+ * Reads the records of the files written by the {@link DatasetOutputFormat}. The records are not aligned with split
+ * boundaries, so every file is read as a single split, see {@link WholeFileInputFormat}. A file with another
+ * fingerprint than the parameter {@link DatasetOutputFormat#FINGERPRINT} fails the task, as the cache has been replaced
+ * while the job was running.
+ */
+public class DatasetInputFormat extends WholeFileInputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	private String fingerprint;
+
+	private transient DataInputStream in;
+
+	private transient boolean end;
+
+	@Override
+	public void configure(Configuration parameters) {
+		super.configure(parameters);
+		this.fingerprint = parameters.getString(DatasetOutputFormat.FINGERPRINT, null);
+	}
+
+	@Override
+	public void open(FileInputSplit split) throws IOException {
+		super.open(split);
+		this.in = new DataInputStream(new BufferedInputStream(this.stream, 64 * 1024));
+		if (this.in.readInt() != DatasetOutputFormat.MAGIC) {
+			throw new IOException("Not a cached dataset: " + split.getPath());
+		}
+		String fingerprint = this.in.readUTF();
+		if (this.fingerprint != null && !this.fingerprint.equals(fingerprint)) {
+			throw new IOException("Cached dataset " + split.getPath() + " has the fingerprint " + fingerprint
+				+ " instead of " + this.fingerprint);
+		}
+		this.in.readInt(); // number of files
+		this.end = this.in.readByte() == DatasetOutputFormat.END_OF_RECORDS;
+	}
+
+	@Override
+	public boolean reachedEnd() {
+		return this.end;
+	}
+
+	@Override
+	public boolean nextRecord(Record record) throws IOException {
+		if (this.end) {
+			return false;
+		}
+
+		record.read(this.in);
+		this.end = this.in.readByte() == DatasetOutputFormat.END_OF_RECORDS;
+		return true;
+	}
+}
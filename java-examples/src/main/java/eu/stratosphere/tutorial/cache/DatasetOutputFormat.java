@@ -0,0 +1,115 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import eu.stratosphere.api.java.record.io.FileOutputFormat;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.types.Record;
+
+/**
+ * Writes the records of a cached dataset in their serialized binary form, which is read back by the
+ * {@link DatasetInputFormat} without parsing.
+ * <p>
+ * File layout, all numbers big-endian:
+ * <pre>
+ * header    int {@link #MAGIC}, UTF fingerprint, int numFiles
+ * record*   byte 1, serialized record
+ * trailer   byte 0, long numRecords, int {@link #MAGIC}
+ * </pre>
+ * Every file of the dataset carries its fingerprint and the number of files written by the sink, so that
+ * {@link DatasetCache} recognizes datasets of other inputs as well as datasets of failed jobs, which lack files or
+ * trailers. The subtask that completes the dataset deletes the stale datasets of the previous states of the input, see
+ * {@link DatasetCache#deleteStaleStates(Path)}.
+ */
+public class DatasetOutputFormat extends FileOutputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Parameter key of the fingerprint of the dataset.
+	 */
+	public static final String FINGERPRINT = "dataset.cache.fingerprint";
+
+	/**
+	 * Parameter key of the number of files of the dataset, i.e. the degree of parallelism of the sink.
+	 */
+	public static final String NUM_FILES = "dataset.cache.files";
+
+	/**
+	 * First and last int of every file.
+	 */
+	public static final int MAGIC = 0x44534331;
+
+	static final int RECORD = 1;
+
+	static final int END_OF_RECORDS = 0;
+
+	private String fingerprint;
+
+	private int numFiles;
+
+	private transient DataOutputStream out;
+
+	private transient long numRecords;
+
+	@Override
+	public void configure(Configuration parameters) {
+		super.configure(parameters);
+		this.fingerprint = parameters.getString(FINGERPRINT, "");
+		this.numFiles = parameters.getInteger(NUM_FILES, 1);
+	}
+
+	@Override
+	public void open(int taskNumber) throws IOException {
+		super.open(taskNumber);
+		this.out = new DataOutputStream(new BufferedOutputStream(this.stream, 64 * 1024));
+		this.out.writeInt(MAGIC);
+		this.out.writeUTF(this.fingerprint);
+		this.out.writeInt(this.numFiles);
+		this.numRecords = 0;
+	}
+
+	@Override
+	public void writeRecord(Record record) throws IOException {
+		this.out.writeByte(RECORD);
+		record.write(this.out);
+		this.numRecords++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (this.out != null) {
+				this.out.writeByte(END_OF_RECORDS);
+				this.out.writeLong(this.numRecords);
+				this.out.writeInt(MAGIC);
+				this.out.flush();
+			}
+		} finally {
+			this.out = null;
+			super.close();
+		}
+
+		// the other subtasks may still be writing, so only one that finds all files complete deletes the stale states
+		if (DatasetCache.isComplete(this.outputFilePath.toString(), this.fingerprint)) {
+			DatasetCache.deleteStaleStates(this.outputFilePath.getParent());
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.dictionary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.tutorial.util.TermIntMap;
+
+/**
+ * In-memory view of the term dictionary written by {@link TermDictionaryPlan}. The dictionary maps every distinct term
+ * of the corpus to a dense integer ID in [0, size).
+ * <p>
+ * The dictionary file has one "term id" pair per line. It is loaded by the UDFs in their open method, so it must be
+ * readable from every TaskManager (e.g. on HDFS or a shared file system).
+ */
+public class TermDictionary {
+
+	/**
+	 * Parameter key of the dictionary path. If set, the mappers emit IntValue term IDs instead of StringValue terms.
+	 */
+	public static final String PATH_PARAMETER = "term.dictionary.path";
+
+	private final TermIntMap ids;
+
+	private final String[] terms;
+
+	private TermDictionary(TermIntMap ids, String[] terms) {
+		this.ids = ids;
+		this.terms = terms;
+	}
+
+	/**
+	 * Returns the ID of the term, or -1 if the term is not part of the dictionary.
+	 */
+	public int getId(String term) {
+		return getId(term.toCharArray(), 0, term.length());
+	}
+
+	/**
+	 * Returns the ID of the term given by the chars <code>[offset, offset + length)</code>, or -1 if the term is not
+	 * part of the dictionary.
+	 */
+	public int getId(char[] chars, int offset, int length) {
+		return this.ids.get(chars, offset, length, -1);
+	}
+
+	/**
+	 * Returns the term with the given ID.
+	 */
+	public String getTerm(int id) {
+		return this.terms[id];
+	}
+
+	/**
+	 * Returns the number of terms in the dictionary.
+	 */
+	public int size() {
+		return this.terms.length;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Loads the dictionary from a file or from a directory of files, as written by {@link TermDictionaryPlan}.
+	 */
+	public static TermDictionary load(String path) throws IOException {
+		Path dictionaryPath = new Path(path);
+		FileSystem fs = FileSystem.get(dictionaryPath.toUri());
+
+		FileStatus status = fs.getFileStatus(dictionaryPath);
+		FileStatus[] files = status.isDir() ? fs.listStatus(dictionaryPath) : new FileStatus[] { status };
+
+		TermIntMap ids = new TermIntMap();
+		List<String> terms = new ArrayList<String>();
+
+		for (FileStatus file : files) {
+			if (file.isDir()) {
+				continue;
+			}
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int separator = line.lastIndexOf(' ');
+					if (separator < 0) {
+						continue;
+					}
+
+					String term = line.substring(0, separator);
+					int id = Integer.parseInt(line.substring(separator + 1));
+
+					ids.put(term.toCharArray(), 0, term.length(), id);
+					while (terms.size() <= id) {
+						terms.add(null);
+					}
+					terms.set(id, term);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		return new TermDictionary(ids, terms.toArray(new String[terms.size()]));
+	}
+}
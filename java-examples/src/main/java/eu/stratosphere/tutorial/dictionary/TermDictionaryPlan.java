@@ -0,0 +1,121 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.dictionary;
+
+import eu.stratosphere.api.common.Plan;
+import eu.stratosphere.api.common.Program;
+import eu.stratosphere.api.common.ProgramDescription;
+import eu.stratosphere.api.common.operators.FileDataSink;
+import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.java.record.io.CsvOutputFormat;
+import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Plan that builds the {@link TermDictionary} of a corpus.
+ * <p>
+ * Every distinct term gets a dense integer ID. When the dictionary is passed to {@link TfIdfPlan} or the weight vector
+ * plan with "-dictionary=[dictionaryPath]", all shuffles, the document frequency reduce and the tf-idf join run on
+ * IntValue term IDs and the terms are only decoded again right before the results are written.
+ */
+public class TermDictionaryPlan implements Program, ProgramDescription {
+
+	@Override
+	public String getDescription() {
+		return "Usage: [inputPath] [dictionaryPath] ([numSubtasks]) ([-stopWords=[path]])";
+	}
+
+	@Override
+	public Plan getPlan(String... args) {
+
+		String inputPath = args.length >= 1 ? args[0] : "";
+		String dictionaryPath = args.length >= 2 ? args[1] : "";
+		int numSubtasks = Util.getNumSubtasks(args);
+
+		FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
+
+		// - Distinct terms -------------------------------------------------------------------------------------------
+
+		MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
+			.input(source)
+			.name("Document Frequency Mapper")
+			.build();
+		StopWords.configure(dfMapper, args);
+
+		ReduceOperator dfReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, StringValue.class, 0)
+			.input(dfMapper)
+			.name("Document Frequency Reducer")
+			.build();
+
+		// - Dense term IDs -------------------------------------------------------------------------------------------
+
+		ReduceOperator idReducer = ReduceOperator.builder(TermIdReducer.class)
+			.input(dfReducer)
+			.name("Term ID Reducer")
+			.build();
+		idReducer.setDegreeOfParallelism(1);
+
+		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, dictionaryPath, idReducer, "Term Dictionary");
+		CsvOutputFormat.configureRecordFormat(sink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(StringValue.class, 0) // term
+			.field(IntValue.class, 1); // term ID
+		sink.setDegreeOfParallelism(1);
+
+		Plan plan = new Plan(sink, "Term Dictionary Computation");
+		plan.setDefaultParallelism(numSubtasks);
+
+		return plan;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Write test input to temporary directory
+		String inputPath = Util.createTempDir("input");
+
+		Util.createTempFile("input/1.txt", "1,Big Hello to Stratosphere! :-)");
+		Util.createTempFile("input/2.txt", "2,Hello to Big Big Data.");
+
+		// Output
+		String dictionaryPath = Util.createTempDir("dictionary");
+		String outputPath = Util.createTempDir("results");
+
+		// Dictionary should be (in any order):
+		// big 0
+		// data 1
+		// hello 2
+		// stratosphere 3
+
+		System.out.println("Reading input from " + inputPath);
+		System.out.println("Writing dictionary to " + dictionaryPath);
+
+		Util.executePlan(new TermDictionaryPlan().getPlan(inputPath, dictionaryPath));
+
+		// Tf-Idf on term IDs, decoded to terms before writing the results
+		System.out.println("Writing output to " + outputPath);
+
+		Util.executePlan(new TfIdfPlan().getPlan(inputPath, outputPath, "1", "-dictionary=" + dictionaryPath));
+
+		//Util.deleteAllTempFiles();
+	}
+}
@@ -0,0 +1,73 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.dictionary;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Replaces the IntValue term ID in a given field by the StringValue term of the {@link TermDictionary}.
+ */
+public class TermIdDecoder extends MapFunction {
+
+	/**
+	 * Parameter key of the field that holds the term ID.
+	 */
+	public static final String FIELD_PARAMETER = "term.decoder.field";
+
+	private TermDictionary dictionary;
+
+	private int field;
+
+	private final StringValue term = new StringValue();
+
+	/**
+	 * Appends a decoder for the given field to the input, or returns the input itself if no dictionary is used.
+	 */
+	public static Operator decode(Operator input, int field, String dictionaryPath) {
+		if (dictionaryPath == null) {
+			return input;
+		}
+
+		MapOperator decoder = MapOperator.builder(TermIdDecoder.class)
+			.input(input)
+			.name("Term Decoder")
+			.build();
+		decoder.setParameter(TermDictionary.PATH_PARAMETER, dictionaryPath);
+		decoder.setParameter(FIELD_PARAMETER, field);
+		return decoder;
+	}
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.dictionary = TermDictionary.load(parameters.getString(TermDictionary.PATH_PARAMETER, null));
+		this.field = parameters.getInteger(FIELD_PARAMETER, 0);
+	}
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		int id = record.getField(this.field, IntValue.class).getValue();
+
+		this.term.setValue(this.dictionary.getTerm(id));
+		record.setField(this.field, this.term);
+		collector.collect(record);
+	}
+}
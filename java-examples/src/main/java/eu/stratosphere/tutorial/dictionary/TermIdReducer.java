@@ -0,0 +1,48 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.dictionary;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.FunctionAnnotation.ConstantFields;
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer assigns a dense ID to every distinct term.
+ * <p>
+ * It is used as a global (key-less) reduce with a degree of parallelism of one, so the reduce method is called exactly
+ * once with the (term, df) records of all terms and replaces the document frequency by the ID.
+ */
+@ConstantFields(0)
+public class TermIdReducer extends ReduceFunction {
+
+	private final IntValue id = new IntValue();
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		int nextId = 0;
+
+		while (records.hasNext()) {
+			Record record = records.next();
+
+			this.id.setValue(nextId++);
+			record.setField(1, this.id);
+			collector.collect(record);
+		}
+	}
+}
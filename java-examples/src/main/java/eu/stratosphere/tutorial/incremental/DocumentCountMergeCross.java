@@ -0,0 +1,42 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.incremental;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.api.java.record.functions.FunctionAnnotation.ConstantFieldsFirst;
+import eu.stratosphere.tutorial.task3.DocumentCountReducer;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Adds the number of new documents from the {@link DocumentCountReducer} to the stored (numDocuments) record of the
+ * previous runs, which gives the single (previousNumDocuments, numDocuments) record.
+ */
+@ConstantFieldsFirst(0)
+public class DocumentCountMergeCross extends CrossFunction {
+
+	private final LongValue numDocuments = new LongValue();
+
+	@Override
+	public void cross(Record storedRecord, Record countRecord, Collector<Record> collector) throws Exception {
+		long previous = storedRecord.getField(0, LongValue.class).getValue();
+		long count = countRecord.getField(0, LongValue.class).getValue();
+
+		this.numDocuments.setValue(previous + count);
+		storedRecord.setField(1, this.numDocuments);
+		collector.collect(storedRecord);
+	}
+}
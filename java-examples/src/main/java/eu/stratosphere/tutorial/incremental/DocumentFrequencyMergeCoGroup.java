@@ -0,0 +1,75 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.incremental;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.CoGroupFunction;
+import eu.stratosphere.api.java.record.functions.FunctionAnnotation.ConstantFieldsFirst;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Merges the stored (term, df, emittedDf, emittedNumDocuments) records of the previous runs with the (term, df)
+ * records of the new documents from the {@link DocumentFrequencyReducer} into (term, df, emittedDf,
+ * emittedNumDocuments) records. The emitted fields are the document frequency and the number of documents of the idf
+ * that the stored weights of the term were last emitted with, see {@link IdfChangeCross}.
+ * <p>
+ * Terms that occur only in the stored table or only in the new documents have a single group, the emitted document
+ * frequency of a new term is 0.
+ */
+@ConstantFieldsFirst(0)
+public class DocumentFrequencyMergeCoGroup extends CoGroupFunction {
+
+	private final IntValue holder = new IntValue();
+
+	private final IntValue df = new IntValue();
+
+	private final IntValue emittedDf = new IntValue();
+
+	private final LongValue emittedNumDocuments = new LongValue();
+
+	@Override
+	public void coGroup(Iterator<Record> storedRecords, Iterator<Record> newRecords, Collector<Record> collector)
+			throws Exception {
+		Record record = null;
+
+		int df = 0;
+		int emittedDf = 0;
+		long emittedNumDocuments = 0;
+		while (storedRecords.hasNext()) {
+			record = storedRecords.next();
+			df += record.getField(1, this.holder).getValue();
+			emittedDf = record.getField(2, this.holder).getValue();
+			emittedNumDocuments = record.getField(3, LongValue.class).getValue();
+		}
+
+		while (newRecords.hasNext()) {
+			record = newRecords.next();
+			df += record.getField(1, this.holder).getValue();
+		}
+
+		this.df.setValue(df);
+		this.emittedDf.setValue(emittedDf);
+		this.emittedNumDocuments.setValue(emittedNumDocuments);
+		record.setField(1, this.df);
+		record.setField(2, this.emittedDf);
+		record.setField(3, this.emittedNumDocuments);
+		collector.collect(record);
+	}
+}
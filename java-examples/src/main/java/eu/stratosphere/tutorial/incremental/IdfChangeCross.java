@@ -0,0 +1,142 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.incremental;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task3.DocumentCountCross;
+import eu.stratosphere.tutorial.task3.TaggedRecordFilter;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * The incremental counterpart of {@link DocumentCountCross}: attaches the total number of documents to the merged
+ * document frequency of every term and decides whether the inverse document frequency of the term changed.
+ * <p>
+ * The first input has (term, df, emittedDf, emittedNumDocuments) records of the {@link DocumentFrequencyMergeCoGroup},
+ * the second input the single (previousNumDocuments, numDocuments) record of the {@link DocumentCountMergeCross}. In
+ * the first run, without stored state, the inputs are the plain (term, df) and (numDocuments) records and every term
+ * counts as changed.
+ * <p>
+ * The change is measured against the idf log(emittedNumDocuments / emittedDf) that the stored weights of the term were
+ * last emitted with, not against the idf of the previous run, so that a term whose idf drifts by less than the
+ * tolerance in every batch is emitted again once the drift adds up. The emitted fields are reset to the current df
+ * and number of documents only when the term is emitted again.
+ * <p>
+ * The records are tagged in their last field, so that a {@link TaggedRecordFilter} can split them into two logical
+ * outputs, both in the (term, df, numDocuments) format of {@link TfIdfMatcher}, followed by the emitted fields for the
+ * stored state:
+ * <ul>
+ * <li>(term, df, numDocuments, emittedDf, emittedNumDocuments, {@link #ALL}) for every term</li>
+ * <li>(term, df, numDocuments, emittedDf, emittedNumDocuments, {@link #CHANGED}) for every term whose idf changed by
+ * more than the relative {@link #TOLERANCE}</li>
+ * </ul>
+ */
+public class IdfChangeCross extends CrossFunction {
+
+	/**
+	 * Parameter key of the relative idf change above which the weights of a term are emitted again, e.g. "0.05" for 5%.
+	 */
+	public static final String TOLERANCE = "incremental.idf.tolerance";
+
+	/**
+	 * Tag of the records of all terms.
+	 */
+	public static final int ALL = 0;
+
+	/**
+	 * Tag of the records of the terms with changed idf.
+	 */
+	public static final int CHANGED = 1;
+
+	private final Record result = new Record(6);
+
+	private final StringValue term = new StringValue();
+
+	private final IntValue holder = new IntValue();
+
+	private final IntValue df = new IntValue();
+
+	private final LongValue numDocuments = new LongValue();
+
+	private final IntValue emittedDf = new IntValue();
+
+	private final LongValue emittedNumDocuments = new LongValue();
+
+	private final IntValue allTag = new IntValue(ALL);
+
+	private final IntValue changedTag = new IntValue(CHANGED);
+
+	private double tolerance;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.tolerance = Double.parseDouble(parameters.getString(TOLERANCE, "0.0"));
+	}
+
+	@Override
+	public void cross(Record dfRecord, Record countRecord, Collector<Record> collector) throws Exception {
+		int df = dfRecord.getField(1, this.holder).getValue();
+		int emittedDf = 0;
+		long emittedNumDocuments = 0;
+		if (dfRecord.getNumFields() > 2) {
+			emittedDf = dfRecord.getField(2, this.holder).getValue();
+			emittedNumDocuments = dfRecord.getField(3, LongValue.class).getValue();
+		}
+
+		long numDocuments = countRecord.getField(countRecord.getNumFields() - 1, LongValue.class).getValue();
+
+		boolean changed = isChanged(emittedDf, emittedNumDocuments, df, numDocuments, this.tolerance);
+		if (changed) {
+			emittedDf = df;
+			emittedNumDocuments = numDocuments;
+		}
+
+		this.df.setValue(df);
+		this.numDocuments.setValue(numDocuments);
+		this.emittedDf.setValue(emittedDf);
+		this.emittedNumDocuments.setValue(emittedNumDocuments);
+		this.result.setField(0, dfRecord.getField(0, this.term));
+		this.result.setField(1, this.df);
+		this.result.setField(2, this.numDocuments);
+		this.result.setField(3, this.emittedDf);
+		this.result.setField(4, this.emittedNumDocuments);
+
+		this.result.setField(5, this.allTag);
+		collector.collect(this.result);
+
+		if (changed) {
+			this.result.setField(5, this.changedTag);
+			collector.collect(this.result);
+		}
+	}
+
+	/**
+	 * Returns true if the idf log(numDocuments / df) differs from the emitted idf by more than the relative tolerance.
+	 * Terms that were never emitted are always changed.
+	 */
+	static boolean isChanged(int emittedDf, long emittedNumDocuments, int df, long numDocuments, double tolerance) {
+		if (emittedDf == 0) {
+			return true;
+		}
+		double emittedIdf = Math.log((double) emittedNumDocuments / emittedDf);
+		double idf = Math.log((double) numDocuments / df);
+		return Math.abs(idf - emittedIdf) > tolerance * emittedIdf;
+	}
+}
@@ -0,0 +1,352 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.incremental;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import eu.stratosphere.api.common.Plan;
+import eu.stratosphere.api.common.Program;
+import eu.stratosphere.api.common.ProgramDescription;
+import eu.stratosphere.api.common.operators.FileDataSink;
+import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.GenericDataSink;
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.io.CsvInputFormat;
+import eu.stratosphere.api.java.record.io.CsvOutputFormat;
+import eu.stratosphere.api.java.record.operators.CoGroupOperator;
+import eu.stratosphere.api.java.record.operators.CrossOperator;
+import eu.stratosphere.api.java.record.operators.JoinOperator;
+import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.compiler.PactCompiler;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.DocumentCountMapper;
+import eu.stratosphere.tutorial.task3.DocumentCountReducer;
+import eu.stratosphere.tutorial.task3.TaggedRecordFilter;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Incremental variant of {@link TfIdfPlan}, which processes only a new batch of documents and merges it into the
+ * state of the previous runs.
+ * <p>
+ * The state is a directory with three tables that every run reads from "-state=[path]" and writes, merged with the new
+ * batch, to "-newState=[path]":
+ * <ul>
+ * <li>df: one "term df emittedDf emittedNumDocuments" line per term, where the last two fields are the document
+ * frequency and the number of documents of the idf that the weights of the term were last emitted with</li>
+ * <li>count: the number of documents</li>
+ * <li>tf: one "docId term tf" line per term of every document, needed to emit the weights of previous documents
+ * again</li>
+ * </ul>
+ * Without "-state" the run starts from empty state. The output has (docId, term, tf-idf) records for all terms of the
+ * new documents, and for the terms of the previous documents whose idf changed by more than "-tolerance" (relative,
+ * default 0) since the weights were last emitted, which replace the previously emitted weights of the same (docId,
+ * term).
+ */
+public class IncrementalTfIdfPlan implements Program, ProgramDescription {
+
+	@Override
+	public String getDescription() {
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) [-newState=[statePath]] ([-state=[statePath]])"
+			+ " ([-tolerance=[relativeIdfChange]]) ([-stopWords=[path]]) ([-broadcastJoin])";
+	}
+
+	@Override
+	public Plan getPlan(String... args) {
+
+		String inputPath = args.length >= 1 ? args[0] : "";
+		String outputPath = args.length >= 2 ? args[1] : "";
+		int numSubtasks = Util.getNumSubtasks(args);
+
+		String statePath = Util.getOption(args, "-state", null);
+		String newStatePath = Util.getOption(args, "-newState", null);
+		if (newStatePath == null) {
+			throw new IllegalArgumentException("Missing option -newState=[statePath]");
+		}
+
+		FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "New Documents");
+
+		// - Task 1 and 2 on the new Documents ------------------------------------------------------------------------
+
+		MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
+			.input(source)
+			.name("Document Frequency Mapper")
+			.build();
+		StopWords.configure(dfMapper, args);
+
+		ReduceOperator dfReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, StringValue.class, 0)
+			.input(dfMapper)
+			.name("Document Frequency Reducer")
+			.build();
+
+		MapOperator tfMapper = MapOperator.builder(TermFrequencyMapper.class)
+			.input(source)
+			.name("Term Frequency Mapper")
+			.build();
+		StopWords.configure(tfMapper, args);
+
+		MapOperator countMapper = MapOperator.builder(DocumentCountMapper.class)
+			.input(source)
+			.name("Document Count Mapper")
+			.build();
+
+		ReduceOperator countReducer = ReduceOperator.builder(DocumentCountReducer.class)
+			.input(countMapper)
+			.name("Document Count Reducer")
+			.build();
+
+		// - Merge with the stored State ------------------------------------------------------------------------------
+
+		Operator df;
+		Operator count;
+		int countField;
+		FileDataSource storedTf = null;
+
+		if (statePath == null) {
+			df = dfReducer;
+			count = countReducer;
+			countField = 0;
+		} else {
+			FileDataSource storedDf = new FileDataSource(new CsvInputFormat(), statePath + "/df",
+				"Stored Document Frequencies");
+			CsvInputFormat.configureRecordFormat(storedDf)
+				.recordDelimiter('\n')
+				.fieldDelimiter(' ')
+				.field(StringValue.class, 0) // term
+				.field(IntValue.class, 1) // df
+				.field(IntValue.class, 2) // emitted df
+				.field(LongValue.class, 3); // emitted number of documents
+
+			FileDataSource storedCount = new FileDataSource(new CsvInputFormat(), statePath + "/count",
+				"Stored Document Count");
+			CsvInputFormat.configureRecordFormat(storedCount)
+				.recordDelimiter('\n')
+				.fieldDelimiter(' ')
+				.field(LongValue.class, 0); // number of documents
+
+			storedTf = new FileDataSource(new CsvInputFormat(), statePath + "/tf", "Stored Term Frequencies");
+			CsvInputFormat.configureRecordFormat(storedTf)
+				.recordDelimiter('\n')
+				.fieldDelimiter(' ')
+				.field(IntValue.class, 0) // document ID
+				.field(StringValue.class, 1) // term
+				.field(IntValue.class, 2); // tf
+
+			df = CoGroupOperator.builder(DocumentFrequencyMergeCoGroup.class, StringValue.class, 0, 0)
+				.input1(storedDf)
+				.input2(dfReducer)
+				.name("Document Frequency Merge")
+				.build();
+
+			count = CrossOperator.builder(DocumentCountMergeCross.class)
+				.input1(storedCount)
+				.input2(countReducer)
+				.name("Document Count Merge")
+				.build();
+			countField = 1;
+		}
+
+		// the single count record is broadcast, the document frequency records stay where they are
+		CrossOperator idfChange = CrossOperator.builder(IdfChangeCross.class)
+			.input1(df)
+			.input2(count)
+			.name("Idf Change Cross")
+			.build();
+		idfChange.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		idfChange.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT, PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+		idfChange.setParameter(IdfChangeCross.TOLERANCE, Util.getOption(args, "-tolerance", "0.0"));
+
+		MapOperator allDf = TaggedRecordFilter.select(idfChange, IdfChangeCross.ALL, "All Document Frequencies");
+
+		// - Task 3: Tf-Idf of the new Documents and of the changed Terms ---------------------------------------------
+
+		JoinOperator newDocumentMatcher = JoinOperator.builder(TfIdfMatcher.class, StringValue.class, 0, 1)
+			.input1(allDf)
+			.input2(tfMapper)
+			.name("Tf-Idf Matcher (New Documents)")
+			.build();
+		TfIdfPlan.configureJoinStrategy(newDocumentMatcher, args);
+
+		List<Operator> weights = new ArrayList<Operator>();
+		weights.add(newDocumentMatcher);
+
+		List<Operator> tf = new ArrayList<Operator>();
+		tf.add(tfMapper);
+
+		if (storedTf != null) {
+			MapOperator changedDf = TaggedRecordFilter.select(idfChange, IdfChangeCross.CHANGED,
+				"Changed Document Frequencies");
+
+			JoinOperator changedTermMatcher = JoinOperator.builder(TfIdfMatcher.class, StringValue.class, 0, 1)
+				.input1(changedDf)
+				.input2(storedTf)
+				.name("Tf-Idf Matcher (Changed Terms)")
+				.build();
+			TfIdfPlan.configureJoinStrategy(changedTermMatcher, args);
+			weights.add(changedTermMatcher);
+			tf.add(storedTf);
+		}
+
+		// - Sinks ----------------------------------------------------------------------------------------------------
+
+		List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+
+		FileDataSink weightSink = new FileDataSink(CsvOutputFormat.class, outputPath, weights, "Tf-Idf Weights");
+		CsvOutputFormat.configureRecordFormat(weightSink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(IntValue.class, 0) // document ID
+			.field(StringValue.class, 1) // term
+			.field(DoubleValue.class, 2); // tf-idf
+		sinks.add(weightSink);
+
+		FileDataSink dfSink = new FileDataSink(CsvOutputFormat.class, newStatePath + "/df", allDf,
+			"Document Frequency State");
+		CsvOutputFormat.configureRecordFormat(dfSink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(StringValue.class, 0) // term
+			.field(IntValue.class, 1) // df
+			.field(IntValue.class, 3) // emitted df
+			.field(LongValue.class, 4); // emitted number of documents
+		sinks.add(dfSink);
+
+		FileDataSink countSink = new FileDataSink(CsvOutputFormat.class, newStatePath + "/count", count,
+			"Document Count State");
+		CsvOutputFormat.configureRecordFormat(countSink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(LongValue.class, countField); // number of documents
+		sinks.add(countSink);
+
+		FileDataSink tfSink = new FileDataSink(CsvOutputFormat.class, newStatePath + "/tf", tf,
+			"Term Frequency State");
+		CsvOutputFormat.configureRecordFormat(tfSink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(IntValue.class, 0) // document ID
+			.field(StringValue.class, 1) // term
+			.field(IntValue.class, 2); // tf
+		sinks.add(tfSink);
+
+		Plan plan = new Plan(sinks, "Incremental Tf-Idf Computation");
+		plan.setDefaultParallelism(numSubtasks);
+
+		return plan;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Write test input to temporary directory
+		String firstBatch = Util.createTempDir("batch1");
+		Util.createTempFile("batch1/1.txt", "1,Big Hello to Stratosphere! :-)");
+		Util.createTempFile("batch1/2.txt", "2,Hello to Big Big Data.");
+
+		String secondBatch = Util.createTempDir("batch2");
+		Util.createTempFile("batch2/3.txt", "3,Big Data with Stratosphere.");
+
+		// Output
+		// Replace this with your own paths, e.g. "file:///path/to/results/"
+		String firstOutput = Util.createTempDir("results1");
+		String firstState = Util.createTempDir("state1");
+		String secondOutput = Util.createTempDir("results2");
+		String secondState = Util.createTempDir("state2");
+
+		// Results of the first run should be the same as in task 3
+		Util.executePlan(new IncrementalTfIdfPlan().getPlan(firstBatch, firstOutput, "1",
+			"-newState=" + firstState));
+
+		// Results of the second run should be all weights of document 3 and the weights of the terms whose idf changed
+		// by more than 25% in the documents 1 and 2: "hello" (0.0 -> 0.40...), "data" and "stratosphere" (0.69... ->
+		// 0.40...), but not "big" (0.0 -> 0.0):
+		// 3 big 0.0
+		// 3 data 0.40...
+		// 3 stratosphere 0.40...
+		// 1 hello 0.40...
+		// 1 stratosphere 0.40...
+		// 2 hello 0.40...
+		// 2 data 0.40...
+		Util.executePlan(new IncrementalTfIdfPlan().getPlan(secondBatch, secondOutput, "1",
+			"-state=" + firstState, "-newState=" + secondState, "-tolerance=0.25"));
+
+		// An empty batch emits no weights and carries the state over unchanged
+		String emptyBatch = Util.createTempDir("batch3");
+		Util.createTempFile("batch3/4.txt", "");
+		String thirdOutput = Util.createTempDir("results3");
+		String thirdState = Util.createTempDir("state3");
+		Util.executePlan(new IncrementalTfIdfPlan().getPlan(emptyBatch, thirdOutput, "1",
+			"-state=" + secondState, "-newState=" + thirdState, "-tolerance=0.25"));
+		for (String table : new String[] { "df", "count", "tf" }) {
+			if (!readSortedLines(thirdState + "/" + table).equals(readSortedLines(secondState + "/" + table))) {
+				throw new IllegalStateException("The empty batch changed the " + table + " state");
+			}
+		}
+
+		// The idf of "rare" drifts by less than 25% in every batch, log(4) -> log(5) -> log(6), but by 29% since its
+		// weight was emitted in the first run, so the third run emits it again
+		String[] driftBatches = { Util.createTempDir("drift1"), Util.createTempDir("drift2"),
+			Util.createTempDir("drift3") };
+		Util.createTempFile("drift1/1.txt", "1,rare\n2,common\n3,common\n4,common");
+		Util.createTempFile("drift2/5.txt", "5,common");
+		Util.createTempFile("drift3/6.txt", "6,common");
+		String driftState = null;
+		for (int run = 0; run < driftBatches.length; run++) {
+			String output = Util.createTempDir("drift" + (run + 1) + "-results");
+			String newState = Util.createTempDir("drift" + (run + 1) + "-state");
+			String[] planArgs = driftState == null
+				? new String[] { driftBatches[run], output, "1", "-newState=" + newState, "-tolerance=0.25" }
+				: new String[] { driftBatches[run], output, "1", "-state=" + driftState, "-newState=" + newState,
+					"-tolerance=0.25" };
+			Util.executePlan(new IncrementalTfIdfPlan().getPlan(planArgs));
+			driftState = newState;
+
+			boolean emitted = false;
+			for (String line : readSortedLines(output)) {
+				emitted |= line.startsWith("1 rare ");
+			}
+			if (emitted != (run != 1)) {
+				throw new IllegalStateException("The weight of \"rare\" was " + (emitted ? "" : "not ")
+					+ "emitted in run " + (run + 1));
+			}
+		}
+
+		System.out.println("Writing output to " + firstOutput + ", " + secondOutput + " and " + thirdOutput);
+
+		//Util.deleteAllTempFiles();
+	}
+
+	private static List<String> readSortedLines(String path) throws IOException {
+		List<String> lines = Files.readLines(new File(URI.create(path)), Charsets.UTF_8);
+		Collections.sort(lines);
+		return lines;
+	}
+}
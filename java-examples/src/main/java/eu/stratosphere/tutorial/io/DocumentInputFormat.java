@@ -0,0 +1,199 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.io;
+
+import eu.stratosphere.api.java.record.io.DelimitedInputFormat;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Reads documents in the format "docId,document contents", one per line, as (docId, body) records with an IntValue
+ * document ID and a StringValue body.
+ * <p>
+ * The document ID is parsed straight from the line bytes and the UTF-8 body is decoded into a reused char buffer, so
+ * no intermediate Strings are created. The body is everything after the first comma, including further commas.
+ * Lines without a numeric "docId," prefix are skipped.
+ * <p>
+ * Like every {@link DelimitedInputFormat}, the format splits large files at line boundaries, so a single file with
+ * many documents is read in parallel by all subtasks.
+ */
+public class DocumentInputFormat extends DelimitedInputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	private final IntValue docId = new IntValue();
+
+	private final StringValue body = new StringValue();
+
+	private char[] chars = new char[256];
+
+	@Override
+	public boolean readRecord(Record target, byte[] bytes, int offset, int numBytes) {
+		int end = offset + numBytes;
+		if (end > offset && bytes[end - 1] == '\r') {
+			end--;
+		}
+
+		// document ID
+		int i = offset;
+		boolean negative = i < end && bytes[i] == '-';
+		if (negative) {
+			i++;
+		}
+		int start = i;
+		long id = 0;
+		for (; i < end && bytes[i] != ','; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9 || id > Integer.MAX_VALUE) {
+				return false;
+			}
+			id = id * 10 + digit;
+		}
+		if (i == start || i == end || id > Integer.MAX_VALUE) {
+			return false;
+		}
+		this.docId.setValue((int) (negative ? -id : id));
+
+		// body after the comma
+		int length = decode(bytes, i + 1, end);
+		this.body.setValue(this.chars, 0, length);
+
+		target.setField(0, this.docId);
+		target.setField(1, this.body);
+		return true;
+	}
+
+	/**
+	 * Decodes the UTF-8 bytes <code>[from, to)</code> into the char buffer and returns the number of chars. Malformed
+	 * sequences are replaced by U+FFFD.
+	 */
+	private int decode(byte[] bytes, int from, int to) {
+		if (this.chars.length < to - from) {
+			this.chars = new char[Math.max(to - from, 2 * this.chars.length)];
+		}
+		char[] chars = this.chars;
+
+		int length = 0;
+		int i = from;
+		while (i < to) {
+			int b = bytes[i++];
+			if (b >= 0) {
+				chars[length++] = (char) b;
+				continue;
+			}
+
+			int numContinuation;
+			int codePoint;
+			if ((b & 0xe0) == 0xc0) {
+				numContinuation = 1;
+				codePoint = b & 0x1f;
+			} else if ((b & 0xf0) == 0xe0) {
+				numContinuation = 2;
+				codePoint = b & 0x0f;
+			} else if ((b & 0xf8) == 0xf0) {
+				numContinuation = 3;
+				codePoint = b & 0x07;
+			} else {
+				chars[length++] = '\uFFFD';
+				continue;
+			}
+
+			int j = 0;
+			for (; j < numContinuation && i < to && (bytes[i] & 0xc0) == 0x80; j++) {
+				codePoint = (codePoint << 6) | (bytes[i++] & 0x3f);
+			}
+			if (j < numContinuation) {
+				chars[length++] = '\uFFFD';
+			} else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				// a 4 byte sequence yields a surrogate pair, which still fits into the buffer
+				chars[length++] = Character.highSurrogate(codePoint);
+				chars[length++] = Character.lowSurrogate(codePoint);
+			} else {
+				chars[length++] = (char) codePoint;
+			}
+		}
+		return length;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Parses a "docId,document contents" line into the given holders, like {@link #readRecord(Record, byte[], int,
+	 * int)} does for the line bytes. Returns false if the line has no numeric document ID prefix.
+	 */
+	public static boolean parse(CharSequence line, IntValue docId, StringValue body) {
+		int i = 0;
+		boolean negative = i < line.length() && line.charAt(i) == '-';
+		if (negative) {
+			i++;
+		}
+		int start = i;
+		long id = 0;
+		for (; i < line.length() && line.charAt(i) != ','; i++) {
+			int digit = line.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || id > Integer.MAX_VALUE) {
+				return false;
+			}
+			id = id * 10 + digit;
+		}
+		if (i == start || i == line.length() || id > Integer.MAX_VALUE) {
+			return false;
+		}
+
+		docId.setValue((int) (negative ? -id : id));
+		body.setValue(line, i + 1, line.length() - i - 1);
+		return true;
+	}
+
+	/**
+	 * Creates a new (docId, body) record from a "docId,document contents" line, for tests and benchmarks.
+	 */
+	public static Record createRecord(CharSequence line) {
+		IntValue docId = new IntValue();
+		StringValue body = new StringValue();
+		if (!parse(line, docId, body)) {
+			throw new IllegalArgumentException("Not a document: '" + line + "'");
+		}
+		return new Record(docId, body);
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws Exception {
+		String[] lines = {
+			"1,Big Hello to Stratosphere! :-)",
+			"2,Hello, Big Data, and everything after the second comma\r",
+			"3,Gr\u00fc\u00dfe aus \u6771\u4eac \ud83d\ude00",
+			"-4,",
+			"no document ID",
+			"5 ,space before the comma",
+			"99999999999,too large"
+		};
+
+		// results should be the lines themselves, with the body after the first comma, and the last three skipped
+		DocumentInputFormat format = new DocumentInputFormat();
+		Record record = new Record();
+		for (String line : lines) {
+			byte[] bytes = line.getBytes("UTF-8");
+			if (format.readRecord(record, bytes, 0, bytes.length)) {
+				System.out.println(record.getField(0, IntValue.class).getValue() + " [" + record.getField(1,
+					StringValue.class) + "]");
+			} else {
+				System.out.println("skipped [" + line + "]");
+			}
+		}
+	}
+}
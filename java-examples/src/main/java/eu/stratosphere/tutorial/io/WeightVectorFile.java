@@ -0,0 +1,234 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import eu.stratosphere.core.fs.FSDataInputStream;
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.tutorial.util.IndexedSortable;
+import eu.stratosphere.tutorial.util.QuickSort;
+
+/**
+ * Random access by docId to the vectors of a file, or of a directory of files, written by the
+ * {@link WeightVectorOutputFormat}.
+ * <p>
+ * Opening reads only the index footers. A lookup finds the document by binary search in the merged index, then reads
+ * and decompresses its block, and deserializes the vector from its offset in the block. The last block is cached, so
+ * lookups of documents in the same block, e.g. in docId order, decompress it only once.
+ * <p>
+ * A file is not thread-safe; every thread should open its own.
+ */
+public final class WeightVectorFile implements Closeable {
+
+	private final FSDataInputStream[] streams;
+
+	private final DataInputStream[] inputs;
+
+	// index entries of all files, sorted by docId
+	private final int[] docIds;
+
+	private final int[] files;
+
+	private final long[] blockOffsets;
+
+	private final int[] blockPositions;
+
+	private final WeightVectorInputFormat.Block block = new WeightVectorInputFormat.Block();
+
+	private int blockFile = -1;
+
+	private long blockOffset = -1;
+
+	private WeightVectorFile(FSDataInputStream[] streams, int numEntries) {
+		this.streams = streams;
+		this.inputs = new DataInputStream[streams.length];
+		for (int i = 0; i < streams.length; i++) {
+			this.inputs[i] = new DataInputStream(streams[i]);
+		}
+		this.docIds = new int[numEntries];
+		this.files = new int[numEntries];
+		this.blockOffsets = new long[numEntries];
+		this.blockPositions = new int[numEntries];
+	}
+
+	/**
+	 * Returns the number of documents.
+	 */
+	public int size() {
+		return this.docIds.length;
+	}
+
+	/**
+	 * Returns the docId of the i-th document in ascending docId order.
+	 */
+	public int getDocId(int i) {
+		return this.docIds[i];
+	}
+
+	/**
+	 * Reads the vector of the document into the target vector. Returns false if the file has no such document.
+	 */
+	public boolean get(int docId, WeightVector target) throws IOException {
+		int low = 0;
+		int high = this.docIds.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (this.docIds[middle] < docId) {
+				low = middle + 1;
+			} else if (this.docIds[middle] > docId) {
+				high = middle - 1;
+			} else {
+				read(middle, target);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void read(int entry, WeightVector target) throws IOException {
+		int file = this.files[entry];
+		long offset = this.blockOffsets[entry];
+
+		if (file != this.blockFile || offset != this.blockOffset) {
+			this.blockFile = -1;
+			this.streams[file].seek(offset);
+			if (!this.block.read(this.inputs[file])) {
+				throw new IOException("No block at offset " + offset);
+			}
+			this.blockFile = file;
+			this.blockOffset = offset;
+		}
+
+		this.block.seek(this.blockPositions[entry]);
+		target.read(this.block.input());
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.block.release();
+		IOException exception = null;
+		for (FSDataInputStream stream : this.streams) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Opens a file or a directory of files written by the {@link WeightVectorOutputFormat} and reads their indexes.
+	 */
+	public static WeightVectorFile open(String path) throws IOException {
+		Path filePath = new Path(path);
+		FileSystem fs = FileSystem.get(filePath.toUri());
+
+		FileStatus status = fs.getFileStatus(filePath);
+		FileStatus[] candidates = status.isDir() ? fs.listStatus(filePath) : new FileStatus[] { status };
+
+		int numFiles = 0;
+		FileStatus[] files = new FileStatus[candidates.length];
+		for (FileStatus file : candidates) {
+			// files starting with "." or "_" are incomplete or hidden, as for the input formats
+			String name = file.getPath().getName();
+			if (!file.isDir() && !name.startsWith(".") && !name.startsWith("_")) {
+				files[numFiles++] = file;
+			}
+		}
+
+		FSDataInputStream[] streams = new FSDataInputStream[numFiles];
+		try {
+			// trailer: long indexOffset, int magic
+			long[] indexOffsets = new long[numFiles];
+			int numEntries = 0;
+			for (int i = 0; i < numFiles; i++) {
+				streams[i] = fs.open(files[i].getPath());
+				DataInputStream in = new DataInputStream(streams[i]);
+
+				streams[i].seek(files[i].getLen() - 12);
+				indexOffsets[i] = in.readLong();
+				if (in.readInt() != WeightVectorOutputFormat.MAGIC) {
+					throw new IOException("Not a weight vector file: " + files[i].getPath());
+				}
+				streams[i].seek(indexOffsets[i]);
+				numEntries += in.readInt();
+			}
+
+			final WeightVectorFile file = new WeightVectorFile(streams, numEntries);
+			int entry = 0;
+			for (int i = 0; i < numFiles; i++) {
+				streams[i].seek(indexOffsets[i]);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(streams[i], 64 * 1024));
+				int size = in.readInt();
+				for (int j = 0; j < size; j++, entry++) {
+					file.docIds[entry] = in.readInt();
+					file.files[entry] = i;
+					file.blockOffsets[entry] = in.readLong();
+					file.blockPositions[entry] = in.readInt();
+				}
+			}
+			QuickSort.sort(new IndexedSortable() {
+				@Override
+				public int compare(int i, int j) {
+					int[] docIds = file.docIds;
+					return docIds[i] < docIds[j] ? -1 : docIds[i] == docIds[j] ? 0 : 1;
+				}
+
+				@Override
+				public void swap(int i, int j) {
+					file.swap(i, j);
+				}
+			}, 0, numEntries - 1);
+			return file;
+		} catch (IOException e) {
+			for (FSDataInputStream stream : streams) {
+				if (stream != null) {
+					stream.close();
+				}
+			}
+			throw e;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int docId = this.docIds[i];
+		this.docIds[i] = this.docIds[j];
+		this.docIds[j] = docId;
+
+		int file = this.files[i];
+		this.files[i] = this.files[j];
+		this.files[j] = file;
+
+		long blockOffset = this.blockOffsets[i];
+		this.blockOffsets[i] = this.blockOffsets[j];
+		this.blockOffsets[j] = blockOffset;
+
+		int blockPosition = this.blockPositions[i];
+		this.blockPositions[i] = this.blockPositions[j];
+		this.blockPositions[j] = blockPosition;
+	}
+}
@@ -0,0 +1,174 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import eu.stratosphere.core.fs.FileInputSplit;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+
+/**
+ * Reads the (docId, {@link WeightVector}) records of the files written by the {@link WeightVectorOutputFormat}, block
+ * by block. The blocks are not aligned with split boundaries, so every file is read as a single split.
+ */
+public class WeightVectorInputFormat extends WholeFileInputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	private final IntValue docId = new IntValue();
+
+	private final WeightVector vector = new WeightVector();
+
+	private transient DataInputStream in;
+
+	private transient Block block;
+
+	private transient boolean end;
+
+	@Override
+	public void open(FileInputSplit split) throws IOException {
+		super.open(split);
+		this.in = new DataInputStream(new BufferedInputStream(this.stream, 64 * 1024));
+		this.block = new Block();
+		this.end = !this.block.read(this.in);
+	}
+
+	@Override
+	public boolean reachedEnd() {
+		return this.end;
+	}
+
+	@Override
+	public boolean nextRecord(Record record) throws IOException {
+		if (this.end) {
+			return false;
+		}
+
+		this.vector.read(this.block.input());
+		this.docId.setValue(this.vector.getDocId());
+		record.setField(0, this.docId);
+		record.setField(1, this.vector);
+
+		if (this.block.isExhausted()) {
+			this.end = !this.block.read(this.in);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.block != null) {
+			this.block.release();
+		}
+		super.close();
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * A decompressed block, whose serialized vectors are read through {@link #input()}. The buffers are reused for
+	 * all blocks.
+	 */
+	static final class Block {
+
+		private final Inflater inflater = new Inflater();
+
+		private byte[] compressed = new byte[0];
+
+		private BlockInput bytes = new BlockInput(new byte[0]);
+
+		private DataInputStream input = new DataInputStream(this.bytes);
+
+		/**
+		 * Reads and decompresses the next block at the current position of the stream. Returns false at the end of
+		 * the blocks.
+		 */
+		boolean read(DataInputStream in) throws IOException {
+			int compressedLength = in.readInt();
+			if (compressedLength == WeightVectorOutputFormat.END_OF_BLOCKS) {
+				return false;
+			}
+			int length = in.readInt();
+
+			if (this.compressed.length < compressedLength) {
+				this.compressed = new byte[compressedLength];
+			}
+			in.readFully(this.compressed, 0, compressedLength);
+
+			if (this.bytes.array().length < length) {
+				this.bytes = new BlockInput(new byte[length]);
+				this.input = new DataInputStream(this.bytes);
+			}
+
+			this.inflater.reset();
+			this.inflater.setInput(this.compressed, 0, compressedLength);
+			try {
+				if (this.inflater.inflate(this.bytes.array(), 0, length) != length) {
+					throw new IOException("Corrupt block: expected " + length + " bytes");
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt block", e);
+			}
+			this.bytes.reset(length);
+			return true;
+		}
+
+		/**
+		 * Moves to the given position in the block.
+		 */
+		void seek(int position) {
+			this.bytes.seek(position);
+		}
+
+		DataInputStream input() {
+			return this.input;
+		}
+
+		boolean isExhausted() {
+			return this.bytes.available() == 0;
+		}
+
+		void release() {
+			this.inflater.end();
+		}
+	}
+
+	private static final class BlockInput extends ByteArrayInputStream {
+
+		BlockInput(byte[] bytes) {
+			super(bytes);
+		}
+
+		byte[] array() {
+			return this.buf;
+		}
+
+		void reset(int length) {
+			this.pos = 0;
+			this.count = length;
+		}
+
+		void seek(int position) {
+			this.pos = position;
+		}
+	}
+}
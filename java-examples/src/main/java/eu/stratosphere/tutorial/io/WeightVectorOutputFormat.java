@@ -0,0 +1,239 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import eu.stratosphere.api.java.record.io.FileOutputFormat;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.tutorial.util.IndexedSortable;
+import eu.stratosphere.tutorial.util.QuickSort;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+
+/**
+ * Writes (docId, {@link WeightVector}) records to a binary file of Deflate compressed blocks with a docId index
+ * footer, which is read back by the {@link WeightVectorInputFormat} or searched by docId with a
+ * {@link WeightVectorFile}.
+ * <p>
+ * File layout, all numbers big-endian:
+ * <pre>
+ * block*    int compressedLength, int uncompressedLength, Deflate compressed serialized vectors
+ * end       int -1
+ * index     int numEntries, (int docId, long blockOffset, int offsetInBlock)* sorted by docId
+ * trailer   long indexOffset, int {@link #MAGIC}
+ * </pre>
+ * The vectors are serialized with {@link WeightVector#write(java.io.DataOutput)}, including the docId of the record
+ * and the precision of the vector. A block is compressed once it holds at least {@link #BLOCK_SIZE} bytes, so smaller
+ * blocks speed up lookups by docId at the cost of compression. The index is kept in memory until the file is closed,
+ * at 16 bytes per document.
+ */
+public class WeightVectorOutputFormat extends FileOutputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Parameter key of the uncompressed size of a block in bytes.
+	 */
+	public static final String BLOCK_SIZE = "weightvector.output.blocksize";
+
+	/**
+	 * Parameter key of the Deflate compression level, from 1 (fastest) to 9 (smallest).
+	 */
+	public static final String COMPRESSION_LEVEL = "weightvector.output.level";
+
+	/**
+	 * Last int of every file.
+	 */
+	public static final int MAGIC = 0x57564631;
+
+	static final int END_OF_BLOCKS = -1;
+
+	private int blockSize;
+
+	private int compressionLevel;
+
+	private transient DataOutputStream out;
+
+	private transient BlockBuffer block;
+
+	private transient DataOutputStream blockOut;
+
+	private transient Deflater deflater;
+
+	private transient byte[] compressed;
+
+	// position of the next block in the file
+	private transient long position;
+
+	private transient int[] docIds;
+
+	private transient long[] blockOffsets;
+
+	private transient int[] blockPositions;
+
+	private transient int numEntries;
+
+	@Override
+	public void configure(Configuration parameters) {
+		super.configure(parameters);
+		this.blockSize = parameters.getInteger(BLOCK_SIZE, 64 * 1024);
+		this.compressionLevel = parameters.getInteger(COMPRESSION_LEVEL, Deflater.BEST_SPEED);
+	}
+
+	@Override
+	public void open(int taskNumber) throws IOException {
+		super.open(taskNumber);
+		this.out = new DataOutputStream(new BufferedOutputStream(this.stream, 64 * 1024));
+		this.block = new BlockBuffer(this.blockSize + this.blockSize / 2);
+		this.blockOut = new DataOutputStream(this.block);
+		this.deflater = new Deflater(this.compressionLevel);
+		this.compressed = new byte[this.blockSize];
+		this.position = 0;
+
+		this.docIds = new int[1024];
+		this.blockOffsets = new long[1024];
+		this.blockPositions = new int[1024];
+		this.numEntries = 0;
+	}
+
+	@Override
+	public void writeRecord(Record record) throws IOException {
+		int docId = record.getField(0, IntValue.class).getValue();
+		WeightVector vector = record.getField(1, WeightVector.class);
+
+		if (this.numEntries == this.docIds.length) {
+			int capacity = 2 * this.numEntries;
+
+			int[] docIds = new int[capacity];
+			System.arraycopy(this.docIds, 0, docIds, 0, this.numEntries);
+			this.docIds = docIds;
+
+			long[] blockOffsets = new long[capacity];
+			System.arraycopy(this.blockOffsets, 0, blockOffsets, 0, this.numEntries);
+			this.blockOffsets = blockOffsets;
+
+			int[] blockPositions = new int[capacity];
+			System.arraycopy(this.blockPositions, 0, blockPositions, 0, this.numEntries);
+			this.blockPositions = blockPositions;
+		}
+		this.docIds[this.numEntries] = docId;
+		this.blockOffsets[this.numEntries] = this.position;
+		this.blockPositions[this.numEntries] = this.block.size();
+		this.numEntries++;
+
+		vector.setDocId(docId);
+		vector.write(this.blockOut);
+		if (this.block.size() >= this.blockSize) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (this.out != null) {
+				if (this.block.size() > 0) {
+					writeBlock();
+				}
+				this.out.writeInt(END_OF_BLOCKS);
+				long indexOffset = this.position + 4;
+
+				QuickSort.sort(new IndexedSortable() {
+					@Override
+					public int compare(int i, int j) {
+						int[] docIds = WeightVectorOutputFormat.this.docIds;
+						return docIds[i] < docIds[j] ? -1 : docIds[i] == docIds[j] ? 0 : 1;
+					}
+
+					@Override
+					public void swap(int i, int j) {
+						WeightVectorOutputFormat.this.swap(i, j);
+					}
+				}, 0, this.numEntries - 1);
+				this.out.writeInt(this.numEntries);
+				for (int i = 0; i < this.numEntries; i++) {
+					this.out.writeInt(this.docIds[i]);
+					this.out.writeLong(this.blockOffsets[i]);
+					this.out.writeInt(this.blockPositions[i]);
+				}
+				this.out.writeLong(indexOffset);
+				this.out.writeInt(MAGIC);
+				this.out.flush();
+			}
+		} finally {
+			if (this.deflater != null) {
+				this.deflater.end();
+			}
+			this.out = null;
+			super.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		this.deflater.reset();
+		this.deflater.setInput(this.block.array(), 0, this.block.size());
+		this.deflater.finish();
+
+		int length = 0;
+		while (!this.deflater.finished()) {
+			if (length == this.compressed.length) {
+				byte[] compressed = new byte[2 * this.compressed.length];
+				System.arraycopy(this.compressed, 0, compressed, 0, length);
+				this.compressed = compressed;
+			}
+			length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+		}
+
+		this.out.writeInt(length);
+		this.out.writeInt(this.block.size());
+		this.out.write(this.compressed, 0, length);
+		this.position += 8 + length;
+		this.block.reset();
+	}
+
+	private void swap(int i, int j) {
+		int docId = this.docIds[i];
+		this.docIds[i] = this.docIds[j];
+		this.docIds[j] = docId;
+
+		long blockOffset = this.blockOffsets[i];
+		this.blockOffsets[i] = this.blockOffsets[j];
+		this.blockOffsets[j] = blockOffset;
+
+		int blockPosition = this.blockPositions[i];
+		this.blockPositions[i] = this.blockPositions[j];
+		this.blockPositions[j] = blockPosition;
+	}
+
+	/**
+	 * Byte array output stream with access to its array, so that a block is compressed without copying it.
+	 */
+	static final class BlockBuffer extends ByteArrayOutputStream {
+
+		BlockBuffer(int capacity) {
+			super(capacity);
+		}
+
+		byte[] array() {
+			return this.buf;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.api.java.record.io.FileInputFormat;
+import eu.stratosphere.core.fs.BlockLocation;
+import eu.stratosphere.core.fs.FileInputSplit;
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+
+/**
+ * File input format for binary files whose records are not aligned with split boundaries. Every file of the input
+ * path becomes a single split that covers the whole file, regardless of the requested number of splits. As with
+ * the other file input formats, files whose names start with "." or "_" are skipped.
+ */
+public abstract class WholeFileInputFormat extends FileInputFormat {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public FileInputSplit[] createInputSplits(int minNumSplits) throws IOException {
+		Path path = this.filePath;
+		FileSystem fs = path.getFileSystem();
+
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		FileStatus status = fs.getFileStatus(path);
+		if (status.isDir()) {
+			for (FileStatus file : fs.listStatus(path)) {
+				String name = file.getPath().getName();
+				if (!file.isDir() && !name.startsWith(".") && !name.startsWith("_")) {
+					files.add(file);
+				}
+			}
+		} else {
+			files.add(status);
+		}
+
+		FileInputSplit[] splits = new FileInputSplit[files.size()];
+		for (int i = 0; i < splits.length; i++) {
+			FileStatus file = files.get(i);
+			BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, file.getLen());
+			String[] hosts = blocks.length > 0 ? blocks[0].getHosts() : new String[0];
+			splits[i] = new FileInputSplit(i, file.getPath(), 0, file.getLen(), hosts);
+		}
+		return splits;
+	}
+}
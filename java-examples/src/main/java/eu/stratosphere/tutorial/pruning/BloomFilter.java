@@ -0,0 +1,162 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.tutorial.sketch.CountMinSketch;
+import eu.stratosphere.types.Value;
+
+/**
+ * Bloom filter over 64 bit term keys (see {@link CountMinSketch#key(char[], int, int)}). A key that was added is
+ * always contained, other keys are contained with the false positive rate
+ * <code>(1 - e^(-numHashes * n / numBits))^numHashes</code> after n keys were added, about 1% for 10 bits and 7
+ * hashes per key.
+ * <p>
+ * Filters of the same size are merged by or-ing their bits.
+ */
+public class BloomFilter implements Value {
+
+	private static final long serialVersionUID = 1L;
+
+	private long[] bits = new long[0];
+
+	private int numBits;
+
+	private int numHashes;
+
+	/**
+	 * Creates an empty filter without bits, which takes the size of the first merged filter.
+	 */
+	public BloomFilter() {
+	}
+
+	public BloomFilter(int numBits, int numHashes) {
+		if (numBits <= 0 || numHashes <= 0) {
+			throw new IllegalArgumentException("Invalid filter size: " + numBits + " bits, " + numHashes + " hashes");
+		}
+		this.bits = new long[(numBits + 63) >>> 6];
+		this.numBits = numBits;
+		this.numHashes = numHashes;
+	}
+
+	public int getNumBits() {
+		return this.numBits;
+	}
+
+	public int getNumHashes() {
+		return this.numHashes;
+	}
+
+	public void add(long key) {
+		int h1 = (int) key;
+		int h2 = (int) (key >>> 32);
+		for (int i = 0; i < this.numHashes; i++) {
+			int bit = index(h1 + i * h2);
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Returns false if the key was certainly not added, true if it was probably added.
+	 */
+	public boolean mightContain(long key) {
+		int h1 = (int) key;
+		int h2 = (int) (key >>> 32);
+		for (int i = 0; i < this.numHashes; i++) {
+			int bit = index(h1 + i * h2);
+			if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the keys of the other filter, which must have the same size unless this filter is empty.
+	 */
+	public void merge(BloomFilter other) {
+		if (this.numBits == 0) {
+			this.numBits = other.numBits;
+			this.numHashes = other.numHashes;
+			if (this.bits.length != other.bits.length) {
+				this.bits = new long[other.bits.length];
+			}
+			System.arraycopy(other.bits, 0, this.bits, 0, other.bits.length);
+			return;
+		}
+		if (this.numBits != other.numBits || this.numHashes != other.numHashes) {
+			throw new IllegalArgumentException("Cannot merge a filter of " + other.numBits + " bits into a filter of "
+				+ this.numBits + " bits");
+		}
+		for (int i = 0; i < this.bits.length; i++) {
+			this.bits[i] |= other.bits[i];
+		}
+	}
+
+	/**
+	 * Resets the filter to an empty filter without bits.
+	 */
+	public void clear() {
+		this.numBits = 0;
+		this.numHashes = 0;
+	}
+
+	/**
+	 * Returns the share of set bits, from which the false positive rate is <code>ratio^numHashes</code>.
+	 */
+	public double fillRatio() {
+		long set = 0;
+		for (int i = 0; i < (this.numBits + 63) >>> 6; i++) {
+			set += Long.bitCount(this.bits[i]);
+		}
+		return this.numBits == 0 ? 0 : (double) set / this.numBits;
+	}
+
+	private int index(int hash) {
+		return (hash & Integer.MAX_VALUE) % this.numBits;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.numBits);
+		out.writeInt(this.numHashes);
+		for (int i = 0; i < (this.numBits + 63) >>> 6; i++) {
+			out.writeLong(this.bits[i]);
+		}
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.numBits = in.readInt();
+		this.numHashes = in.readInt();
+		int numWords = (this.numBits + 63) >>> 6;
+		if (this.bits.length != numWords) {
+			this.bits = new long[numWords];
+		}
+		for (int i = 0; i < numWords; i++) {
+			this.bits[i] = in.readLong();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BloomFilter[" + this.numBits + " bits, " + this.numHashes + " hashes]";
+	}
+}
@@ -0,0 +1,93 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.sketch.CountMinSketch;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This mapper adds the terms of the (term, ...) records of its partition to a {@link BloomFilter} and emits the filter
+ * as a single record when the partition is done.
+ * <p>
+ * The terms are IntValue IDs if the {@link TermDictionary#PATH_PARAMETER} is set, LongValue n-gram IDs if
+ * {@link NGrams#HASHED} is set, StringValues otherwise.
+ */
+public class BloomFilterMapper extends MapFunction {
+
+	/**
+	 * Parameter key of the number of bits of the filter.
+	 */
+	public static final String NUM_BITS = "pruning.bloom.bits";
+
+	/**
+	 * Parameter key of the number of hashes per term.
+	 */
+	public static final String NUM_HASHES = "pruning.bloom.hashes";
+
+	private BloomFilter filter;
+
+	private boolean termIds;
+
+	private boolean hashed;
+
+	private Collector<Record> collector;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.filter = new BloomFilter(parameters.getInteger(NUM_BITS, 1 << 23), parameters.getInteger(NUM_HASHES, 7));
+		this.termIds = parameters.getString(TermDictionary.PATH_PARAMETER, null) != null;
+		this.hashed = parameters.getBoolean(NGrams.HASHED, false);
+		this.collector = null;
+	}
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		this.filter.add(termKey(record, 0, this.termIds, this.hashed));
+		this.collector = collector;
+	}
+
+	/**
+	 * Emits the (filter) record of the partition, if it contained any terms.
+	 */
+	@Override
+	public void close() throws Exception {
+		if (this.collector != null) {
+			this.collector.collect(new Record(this.filter));
+			this.collector = null;
+		}
+	}
+
+	/**
+	 * Returns the 64 bit key of the term in the given field. The ID of a hashed n-gram already is the key of its chars.
+	 */
+	static long termKey(Record record, int field, boolean termIds, boolean hashed) {
+		if (hashed) {
+			return record.getField(field, LongValue.class).getValue();
+		}
+		if (termIds) {
+			return CountMinSketch.key(record.getField(field, IntValue.class).getValue());
+		}
+		StringValue term = record.getField(field, StringValue.class);
+		return CountMinSketch.key(term.getCharArray(), 0, term.length());
+	}
+}
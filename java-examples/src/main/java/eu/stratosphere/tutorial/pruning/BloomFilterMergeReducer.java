@@ -0,0 +1,52 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.api.java.record.operators.ReduceOperator.Combinable;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer merges the (filter) records of all {@link BloomFilterMapper} partitions into a single filter.
+ * <p>
+ * It is used as a global (key-less) reduce. The runtime calls a global reduce also for an empty input, when the
+ * pruning keeps no terms. Then no filter is emitted, so that the {@link SemiJoinFilterCross} drops all records.
+ */
+@Combinable
+public class BloomFilterMergeReducer extends ReduceFunction {
+
+	private final BloomFilter filter = new BloomFilter();
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		Record record = null;
+
+		this.filter.clear();
+		while (records.hasNext()) {
+			record = records.next();
+			this.filter.merge(record.getField(0, BloomFilter.class));
+		}
+		if (record == null) {
+			// an empty filter has no bits to index
+			return;
+		}
+
+		record.setField(0, this.filter);
+		collector.collect(record);
+	}
+}
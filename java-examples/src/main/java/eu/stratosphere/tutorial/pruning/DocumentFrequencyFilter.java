@@ -0,0 +1,61 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This mapper drops the (term, df, numDocuments) records of terms that occur in too few or in too many documents.
+ * <p>
+ * Terms below the {@link #MIN_DF} are mostly typos and IDs, terms above the {@link #MAX_DF_RATIO} of all documents
+ * are as good as stop words: both add little to the similarity of documents, but many records to the tf-idf join.
+ */
+public class DocumentFrequencyFilter extends MapFunction {
+
+	/**
+	 * Parameter key of the minimum number of documents a term must occur in.
+	 */
+	public static final String MIN_DF = "pruning.df.min";
+
+	/**
+	 * Parameter key of the maximum share of all documents a term may occur in, as a String.
+	 */
+	public static final String MAX_DF_RATIO = "pruning.df.maxratio";
+
+	private int minDf;
+
+	private double maxDfRatio;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.minDf = parameters.getInteger(MIN_DF, 1);
+		this.maxDfRatio = Double.parseDouble(parameters.getString(MAX_DF_RATIO, "1.0"));
+	}
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		int df = record.getField(1, IntValue.class).getValue();
+		long numDocuments = record.getField(2, LongValue.class).getValue();
+
+		if (df >= this.minDf && df <= this.maxDfRatio * numDocuments) {
+			collector.collect(record);
+		}
+	}
+}
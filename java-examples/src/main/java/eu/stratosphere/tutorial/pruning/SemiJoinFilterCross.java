@@ -0,0 +1,61 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This cross forwards the (docId, term, tf) records whose term is contained in the broadcast {@link BloomFilter} of
+ * the kept vocabulary, and drops all others before they are shipped to the tf-idf join. The few false positives are
+ * dropped by the join.
+ * <p>
+ * The filter is deserialized only once. The terms are IntValue IDs if the {@link TermDictionary#PATH_PARAMETER} is
+ * set, LongValue n-gram IDs if {@link NGrams#HASHED} is set, StringValues otherwise.
+ */
+public class SemiJoinFilterCross extends CrossFunction {
+
+	private final BloomFilter filter = new BloomFilter();
+
+	private boolean loaded;
+
+	private boolean termIds;
+
+	private boolean hashed;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.termIds = parameters.getString(TermDictionary.PATH_PARAMETER, null) != null;
+		this.hashed = parameters.getBoolean(NGrams.HASHED, false);
+		this.loaded = false;
+	}
+
+	@Override
+	public void cross(Record tfRecord, Record filterRecord, Collector<Record> collector) throws Exception {
+		if (!this.loaded) {
+			this.filter.clear();
+			this.filter.merge(filterRecord.getField(0, BloomFilter.class));
+			this.loaded = true;
+		}
+
+		if (this.filter.mightContain(BloomFilterMapper.termKey(tfRecord, 1, this.termIds, this.hashed))) {
+			collector.collect(tfRecord);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.api.java.record.operators.ReduceOperator.Combinable;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.util.IndexedSortable;
+import eu.stratosphere.tutorial.util.MinHeap;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer keeps the {@link #MAX_TERMS} (term, df, ...) records with the highest document frequencies, which
+ * limits the vocabulary of the weight vectors. Terms with the same document frequency at the limit are kept or dropped
+ * arbitrarily.
+ * <p>
+ * It is used as a global (key-less) reduce. Because it is combinable, every subtask only ships its own top terms, and
+ * the final reduce selects from at most <code>MAX_TERMS</code> records per subtask.
+ */
+@Combinable
+public class TopTermsReducer extends ReduceFunction {
+
+	/**
+	 * Parameter key of the maximum number of terms.
+	 */
+	public static final String MAX_TERMS = "pruning.terms.max";
+
+	private int maxTerms;
+
+	// min-heap by document frequency of copies of the kept records
+	private Record[] heap = new Record[0];
+
+	private int[] dfs = new int[0];
+
+	private int size;
+
+	private transient IndexedSortable byDf;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.maxTerms = parameters.getInteger(MAX_TERMS, Integer.MAX_VALUE);
+		this.byDf = new IndexedSortable() {
+			@Override
+			public int compare(int i, int j) {
+				int[] dfs = TopTermsReducer.this.dfs;
+				return dfs[i] < dfs[j] ? -1 : dfs[i] == dfs[j] ? 0 : 1;
+			}
+
+			@Override
+			public void swap(int i, int j) {
+				Record[] heap = TopTermsReducer.this.heap;
+				Record record = heap[i];
+				heap[i] = heap[j];
+				heap[j] = record;
+
+				int[] dfs = TopTermsReducer.this.dfs;
+				int df = dfs[i];
+				dfs[i] = dfs[j];
+				dfs[j] = df;
+			}
+		};
+	}
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		this.size = 0;
+		while (records.hasNext()) {
+			Record record = records.next();
+			int df = record.getField(1, IntValue.class).getValue();
+
+			if (this.size < this.maxTerms) {
+				ensureCapacity(this.size + 1);
+				record.copyTo(this.heap[this.size]);
+				this.dfs[this.size] = df;
+				MinHeap.siftUp(this.byDf, this.size++);
+			} else if (this.maxTerms > 0 && df > this.dfs[0]) {
+				record.copyTo(this.heap[0]);
+				this.dfs[0] = df;
+				MinHeap.siftDown(this.byDf, 0, this.size);
+			}
+		}
+
+		for (int i = 0; i < this.size; i++) {
+			collector.collect(this.heap[i]);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (this.heap.length < capacity) {
+			Record[] heap = new Record[Math.max(capacity, 2 * this.heap.length)];
+			System.arraycopy(this.heap, 0, heap, 0, this.heap.length);
+			for (int i = this.heap.length; i < heap.length; i++) {
+				heap[i] = new Record();
+			}
+			this.heap = heap;
+
+			int[] dfs = new int[heap.length];
+			System.arraycopy(this.dfs, 0, dfs, 0, this.dfs.length);
+			this.dfs = dfs;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.pruning;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.operators.CrossOperator;
+import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.compiler.PactCompiler;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.Util;
+
+/**
+ * Builds the vocabulary pruning stages of the tf-idf plans.
+ * <p>
+ * The (term, df, numDocuments) records are pruned with the options "-minDf=[count]" and "-maxDfRatio=[ratio]" (see
+ * {@link DocumentFrequencyFilter}) and "-maxVocabulary=[numTerms]" (see {@link TopTermsReducer}). The kept terms are
+ * collected in a broadcast {@link BloomFilter}, which drops the (docId, term, tf) records of pruned terms right after
+ * the term frequency mapper, so that they are neither shipped to the tf-idf join nor added to the weight vectors.
+ * <p>
+ * The filter has 10 bits per term if the vocabulary size is limited, and 2^23 bits (1 MB) otherwise, which keeps the
+ * false positive rate at about 1% up to 800,000 kept terms.
+ */
+public final class VocabularyPruning {
+
+	private static final int DEFAULT_NUM_BITS = 1 << 23;
+
+	private VocabularyPruning() {
+	}
+
+	/**
+	 * Returns true if any of the pruning options is set.
+	 */
+	public static boolean isEnabled(String[] args) {
+		return Util.getOption(args, "-minDf", null) != null || Util.getOption(args, "-maxDfRatio", null) != null
+			|| Util.getOption(args, "-maxVocabulary", null) != null;
+	}
+
+	/**
+	 * Appends the pruning stages to the (term, df, numDocuments) records, or returns the input itself if pruning is
+	 * not enabled.
+	 */
+	public static Operator prune(Operator dfRecords, String[] args) {
+		if (!isEnabled(args)) {
+			return dfRecords;
+		}
+
+		Operator pruned = dfRecords;
+		if (Util.getOption(args, "-minDf", null) != null || Util.getOption(args, "-maxDfRatio", null) != null) {
+			pruned = MapOperator.builder(DocumentFrequencyFilter.class)
+				.input(pruned)
+				.name("Document Frequency Filter")
+				.build();
+			pruned.setParameter(DocumentFrequencyFilter.MIN_DF, Integer.parseInt(Util.getOption(args, "-minDf", "1")));
+			pruned.setParameter(DocumentFrequencyFilter.MAX_DF_RATIO, Util.getOption(args, "-maxDfRatio", "1.0"));
+		}
+		String maxVocabulary = Util.getOption(args, "-maxVocabulary", null);
+		if (maxVocabulary != null) {
+			pruned = ReduceOperator.builder(TopTermsReducer.class)
+				.input(pruned)
+				.name("Top Terms Reducer")
+				.build();
+			pruned.setParameter(TopTermsReducer.MAX_TERMS, Integer.parseInt(maxVocabulary));
+		}
+		return pruned;
+	}
+
+	/**
+	 * Appends the semi-join filter with the terms of the pruned (term, ...) records to the (docId, term, tf) records,
+	 * or returns the term frequency records themselves if pruning is not enabled.
+	 */
+	public static Operator semiJoin(Operator tfRecords, Operator terms, String dictionaryPath, String[] args) {
+		if (!isEnabled(args)) {
+			return tfRecords;
+		}
+
+		String maxVocabulary = Util.getOption(args, "-maxVocabulary", null);
+		int numBits = maxVocabulary == null ? DEFAULT_NUM_BITS : Math.max(64, 10 * Integer.parseInt(maxVocabulary));
+
+		MapOperator filterMapper = MapOperator.builder(BloomFilterMapper.class)
+			.input(terms)
+			.name("Bloom Filter Mapper")
+			.build();
+		filterMapper.setParameter(BloomFilterMapper.NUM_BITS, numBits);
+
+		ReduceOperator filterReducer = ReduceOperator.builder(BloomFilterMergeReducer.class)
+			.input(filterMapper)
+			.name("Bloom Filter Reducer")
+			.build();
+
+		// the single filter is broadcast, the term frequency records stay where they are
+		CrossOperator semiJoin = CrossOperator.builder(SemiJoinFilterCross.class)
+			.input1(tfRecords)
+			.input2(filterReducer)
+			.name("Semi-Join Filter")
+			.build();
+		semiJoin.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		semiJoin.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT, PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+
+		if (dictionaryPath != null) {
+			filterMapper.setParameter(TermDictionary.PATH_PARAMETER, dictionaryPath);
+			semiJoin.setParameter(TermDictionary.PATH_PARAMETER, dictionaryPath);
+		}
+		if (NGrams.isHashed(args)) {
+			filterMapper.setParameter(NGrams.HASHED, true);
+			semiJoin.setParameter(NGrams.HASHED, true);
+		}
+		return semiJoin;
+	}
+}
@@ -0,0 +1,43 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.query;
+
+/**
+ * A document of a query result with its cosine similarity to the query.
+ */
+public final class ScoredDocument {
+
+	private final int docId;
+
+	private final double score;
+
+	public ScoredDocument(int docId, double score) {
+		this.docId = docId;
+		this.score = score;
+	}
+
+	public int getDocId() {
+		return this.docId;
+	}
+
+	public double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public String toString() {
+		return this.docId + ":" + this.score;
+	}
+}
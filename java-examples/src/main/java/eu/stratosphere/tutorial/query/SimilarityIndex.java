@@ -0,0 +1,419 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.query;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.tutorial.task4.WeightVectorPlan;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+
+/**
+ * In-memory inverted index over the tf-idf weight vectors written by {@link WeightVectorPlan}, which answers top-k
+ * queries for the documents most similar to an ad-hoc text.
+ * <p>
+ * The postings of all terms are stored in three primitive arrays: the postings of term t are the entries
+ * <code>[offsets[t], offsets[t + 1])</code> of the document and weight arrays. The weights are divided by the norm
+ * of their document, so the score of a document is the cosine similarity with the query.
+ * <p>
+ * A query is tokenized with the {@link Tokenizer} of the mappers and weighted as in {@link TfIdfMatcher}, i.e. with
+ * <code>tf * log(N / df)</code>, where N is the number of indexed documents and df is the length of the posting list
+ * of the term. Stop words and other terms that do not occur in the corpus have no posting list and are skipped.
+ * <p>
+ * The index is immutable after {@link Builder#build()}. Every thread queries with its own scratch space, so any number
+ * of threads may query the same index concurrently.
+ */
+public final class SimilarityIndex {
+
+	// maps every term to its index into the posting offsets
+	private final TermIntMap terms;
+
+	private final int[] postingOffsets;
+
+	// document indexes and normalized weights of the postings
+	private final int[] postingDocuments;
+
+	private final double[] postingWeights;
+
+	// document IDs by document index
+	private final int[] docIds;
+
+	private final ThreadLocal<Searcher> searchers = new ThreadLocal<Searcher>() {
+		@Override
+		protected Searcher initialValue() {
+			return new Searcher(SimilarityIndex.this.docIds.length);
+		}
+	};
+
+	private SimilarityIndex(TermIntMap terms, int[] postingOffsets, int[] postingDocuments, double[] postingWeights,
+			int[] docIds) {
+		this.terms = terms;
+		this.postingOffsets = postingOffsets;
+		this.postingDocuments = postingDocuments;
+		this.postingWeights = postingWeights;
+		this.docIds = docIds;
+	}
+
+	/**
+	 * Returns the number of indexed documents.
+	 */
+	public int numDocuments() {
+		return this.docIds.length;
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 */
+	public int numTerms() {
+		return this.postingOffsets.length - 1;
+	}
+
+	/**
+	 * Returns the number of documents that contain the term.
+	 */
+	public int getDocumentFrequency(String term) {
+		int t = this.terms.get(term.toCharArray(), 0, term.length(), -1);
+		return t < 0 ? 0 : this.postingOffsets[t + 1] - this.postingOffsets[t];
+	}
+
+	/**
+	 * Returns the at most k documents with the highest cosine similarity to the text, in descending order of their
+	 * similarity. Documents without a common term are never returned.
+	 */
+	public List<ScoredDocument> query(String text, int k) {
+		char[] chars = text.toCharArray();
+		return query(chars, 0, chars.length, k);
+	}
+
+	/**
+	 * Returns the at most k documents with the highest cosine similarity to the chars <code>[from, to)</code>, in
+	 * descending order of their similarity.
+	 */
+	public List<ScoredDocument> query(char[] text, int from, int to, int k) {
+		Searcher searcher = this.searchers.get();
+		int size = searcher.search(text, from, to, k);
+
+		List<ScoredDocument> result = new ArrayList<ScoredDocument>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(new ScoredDocument(this.docIds[searcher.resultDocuments[i]], searcher.resultScores[i]));
+		}
+		return result;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Scratch space of a single thread. The score array has an entry per document; only the entries of the documents
+	 * that were hit by the current query are reset afterwards, so a query costs time proportional to its postings.
+	 */
+	private final class Searcher {
+
+		private final Tokenizer tokenizer = new Tokenizer();
+
+		private final TermIntMap queryTerms = new TermIntMap();
+
+		private final double[] scores;
+
+		private final int[] hits;
+
+		private final TopKHeap heap = new TopKHeap();
+
+		private int[] resultDocuments = new int[16];
+
+		private double[] resultScores = new double[16];
+
+		Searcher(int numDocuments) {
+			this.scores = new double[numDocuments];
+			this.hits = new int[numDocuments];
+		}
+
+		/**
+		 * Runs a query and returns the number of results, which are written to the result arrays.
+		 */
+		int search(char[] text, int from, int to, int k) {
+			final TermIntMap terms = SimilarityIndex.this.terms;
+			final int[] offsets = SimilarityIndex.this.postingOffsets;
+			final int[] documents = SimilarityIndex.this.postingDocuments;
+			final double[] weights = SimilarityIndex.this.postingWeights;
+			final double numDocuments = SimilarityIndex.this.docIds.length;
+
+			// term frequencies of the query
+			this.queryTerms.clear();
+			this.tokenizer.reset(text, from, to);
+			while (this.tokenizer.next()) {
+				this.queryTerms.add(this.tokenizer.buffer(), 0, this.tokenizer.length(), 1);
+			}
+
+			// tf-idf weights of the known query terms, normalized at the end
+			double norm = 0;
+			int numHits = 0;
+			for (int i = 0; i < this.queryTerms.size(); i++) {
+				int t = terms.get(this.queryTerms.keyChars(), this.queryTerms.keyOffset(i),
+					this.queryTerms.keyLength(i), -1);
+				if (t < 0) {
+					continue;
+				}
+
+				int start = offsets[t];
+				int end = offsets[t + 1];
+				double weight = this.queryTerms.value(i) * Math.log(numDocuments / (end - start));
+				if (weight == 0) {
+					continue;
+				}
+				norm += weight * weight;
+
+				for (int p = start; p < end; p++) {
+					if (weights[p] == 0) {
+						continue;
+					}
+					int document = documents[p];
+					if (this.scores[document] == 0) {
+						this.hits[numHits++] = document;
+					}
+					this.scores[document] += weight * weights[p];
+				}
+			}
+
+			norm = Math.sqrt(norm);
+
+			this.heap.reset(k);
+			for (int i = 0; i < numHits; i++) {
+				int document = this.hits[i];
+				this.heap.offer(document, this.scores[document] / norm);
+				this.scores[document] = 0;
+			}
+
+			int size = this.heap.size();
+			if (size > this.resultDocuments.length) {
+				this.resultDocuments = new int[size];
+				this.resultScores = new double[size];
+			}
+			this.heap.drainDescending(this.resultDocuments, this.resultScores);
+			return size;
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Collects the weighted terms of the documents and builds the posting arrays. Every document must be added once.
+	 */
+	public static final class Builder {
+
+		private final TermIntMap terms = new TermIntMap();
+
+		// (term, document, weight) of all postings in the order they are added
+		private int[] postingTerms = new int[1024];
+
+		private int[] postingDocuments = new int[1024];
+
+		private double[] postingWeights = new double[1024];
+
+		private int numPostings;
+
+		private int[] docIds = new int[64];
+
+		private double[] norms = new double[64];
+
+		private int numDocuments;
+
+		/**
+		 * Starts a new document. The following calls of {@link #addTerm(char[], int, int, double)} add its terms.
+		 */
+		public Builder addDocument(int docId) {
+			if (this.numDocuments == this.docIds.length) {
+				int[] docIds = new int[2 * this.numDocuments];
+				System.arraycopy(this.docIds, 0, docIds, 0, this.numDocuments);
+				this.docIds = docIds;
+
+				double[] norms = new double[2 * this.numDocuments];
+				System.arraycopy(this.norms, 0, norms, 0, this.numDocuments);
+				this.norms = norms;
+			}
+			this.docIds[this.numDocuments++] = docId;
+			return this;
+		}
+
+		/**
+		 * Adds a term of the current document given by the chars <code>[offset, offset + length)</code>.
+		 */
+		public Builder addTerm(char[] chars, int offset, int length, double weight) {
+			if (this.numDocuments == 0) {
+				throw new IllegalStateException("No document has been started");
+			}
+
+			int term = this.terms.get(chars, offset, length, -1);
+			if (term < 0) {
+				term = this.terms.size();
+				this.terms.put(chars, offset, length, term);
+			}
+
+			if (this.numPostings == this.postingTerms.length) {
+				int capacity = 2 * this.numPostings;
+
+				int[] postingTerms = new int[capacity];
+				System.arraycopy(this.postingTerms, 0, postingTerms, 0, this.numPostings);
+				this.postingTerms = postingTerms;
+
+				int[] postingDocuments = new int[capacity];
+				System.arraycopy(this.postingDocuments, 0, postingDocuments, 0, this.numPostings);
+				this.postingDocuments = postingDocuments;
+
+				double[] postingWeights = new double[capacity];
+				System.arraycopy(this.postingWeights, 0, postingWeights, 0, this.numPostings);
+				this.postingWeights = postingWeights;
+			}
+
+			int document = this.numDocuments - 1;
+			this.postingTerms[this.numPostings] = term;
+			this.postingDocuments[this.numPostings] = document;
+			this.postingWeights[this.numPostings] = weight;
+			this.numPostings++;
+			this.norms[document] += weight * weight;
+			return this;
+		}
+
+		/**
+		 * Adds a document with all terms of its weight vector.
+		 */
+		public Builder add(WeightVector vector) {
+			addDocument(vector.getDocId());
+			for (int i = 0; i < vector.size(); i++) {
+				addTerm(vector.getTermChars(), vector.getTermOffset(i), vector.getTermLength(i), vector.getWeight(i));
+			}
+			return this;
+		}
+
+		/**
+		 * Sorts the postings by term and normalizes their weights.
+		 */
+		public SimilarityIndex build() {
+			int numTerms = this.terms.size();
+
+			// counting sort by term, which keeps the postings of a term in document order
+			int[] offsets = new int[numTerms + 1];
+			for (int i = 0; i < this.numPostings; i++) {
+				offsets[this.postingTerms[i] + 1]++;
+			}
+			for (int t = 0; t < numTerms; t++) {
+				offsets[t + 1] += offsets[t];
+			}
+
+			int[] next = new int[numTerms];
+			System.arraycopy(offsets, 0, next, 0, numTerms);
+
+			int[] documents = new int[this.numPostings];
+			double[] weights = new double[this.numPostings];
+			for (int i = 0; i < this.numPostings; i++) {
+				int document = this.postingDocuments[i];
+				int p = next[this.postingTerms[i]]++;
+				documents[p] = document;
+				weights[p] = this.norms[document] > 0 ? this.postingWeights[i] / Math.sqrt(this.norms[document]) : 0;
+			}
+
+			int[] docIds = new int[this.numDocuments];
+			System.arraycopy(this.docIds, 0, docIds, 0, this.numDocuments);
+
+			return new SimilarityIndex(this.terms, offsets, documents, weights, docIds);
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Loads the index from a file or from a directory of files with lines "docId term:weight,term:weight,...", as
+	 * written by {@link WeightVectorPlan}.
+	 */
+	public static SimilarityIndex load(String path) throws IOException {
+		Path indexPath = new Path(path);
+		FileSystem fs = FileSystem.get(indexPath.toUri());
+
+		FileStatus status = fs.getFileStatus(indexPath);
+		FileStatus[] files = status.isDir() ? fs.listStatus(indexPath) : new FileStatus[] { status };
+
+		Builder builder = new Builder();
+
+		for (FileStatus file : files) {
+			// files starting with "." or "_" are incomplete or hidden, as for the input formats
+			String name = file.getPath().getName();
+			if (file.isDir() || name.startsWith(".") || name.startsWith("_")) {
+				continue;
+			}
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					parseLine(line, builder);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Adds the document of a line "docId term:weight,term:weight,..." to the builder.
+	 */
+	static void parseLine(String line, Builder builder) {
+		int separator = line.indexOf(' ');
+		if (separator < 0) {
+			return;
+		}
+
+		char[] chars = line.toCharArray();
+		builder.addDocument(Integer.parseInt(line.substring(0, separator)));
+
+		int start = separator + 1;
+		while (start < chars.length) {
+			int end = line.indexOf(',', start);
+			if (end < 0) {
+				end = chars.length;
+			}
+
+			int colon = line.lastIndexOf(':', end - 1);
+			if (colon > start) {
+				builder.addTerm(chars, start, colon - start, Double.parseDouble(line.substring(colon + 1, end)));
+			}
+			start = end + 1;
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		// output of the WeightVectorPlan example with a third document
+		Builder builder = new Builder();
+		parseLine("1 big:0.0,hello:0.0,stratosphere:0.4054651081081644", builder);
+		parseLine("2 hello:0.0,big:0.8109302162163288,data:1.0986122886681098", builder);
+		parseLine("3 data:0.4054651081081644,stratosphere:0.4054651081081644", builder);
+		SimilarityIndex index = builder.build();
+
+		// Results should be: [2:0.89..., 3:0.31...] and [1:1.0, 3:0.70...]
+		System.out.println(index.query("Big Big Data!", 10));
+		System.out.println(index.query("stratosphere", 2));
+	}
+}
@@ -0,0 +1,97 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.query;
+
+import eu.stratosphere.tutorial.util.IndexedSortable;
+import eu.stratosphere.tutorial.util.MinHeap;
+
+/**
+ * Bounded min-heap on primitive arrays that keeps the k entries with the highest scores.
+ * <p>
+ * The root is the entry with the lowest score, so a new entry only has to be compared with the root: if it scores
+ * higher, it replaces the root. Instances are reused across queries with {@link #reset(int)} and are not thread-safe.
+ */
+final class TopKHeap implements IndexedSortable {
+
+	private int[] ids = new int[16];
+
+	private double[] scores = new double[16];
+
+	private int capacity;
+
+	private int size;
+
+	/**
+	 * Empties the heap and sets the number of entries to keep.
+	 */
+	void reset(int k) {
+		if (k > this.ids.length) {
+			this.ids = new int[k];
+			this.scores = new double[k];
+		}
+		this.capacity = k;
+		this.size = 0;
+	}
+
+	/**
+	 * Offers an entry, which is kept if the heap is not full or if it scores higher than the lowest entry.
+	 */
+	void offer(int id, double score) {
+		if (this.size < this.capacity) {
+			this.ids[this.size] = id;
+			this.scores[this.size] = score;
+			MinHeap.siftUp(this, this.size++);
+		} else if (this.capacity > 0 && score > this.scores[0]) {
+			this.ids[0] = id;
+			this.scores[0] = score;
+			MinHeap.siftDown(this, 0, this.size);
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes the entries and writes them to the arrays in descending order of their scores.
+	 */
+	void drainDescending(int[] ids, double[] scores) {
+		for (int i = this.size - 1; i >= 0; i--) {
+			ids[i] = this.ids[0];
+			scores[i] = this.scores[0];
+
+			this.size--;
+			this.ids[0] = this.ids[this.size];
+			this.scores[0] = this.scores[this.size];
+			MinHeap.siftDown(this, 0, this.size);
+		}
+	}
+
+	@Override
+	public int compare(int i, int j) {
+		return Double.compare(this.scores[i], this.scores[j]);
+	}
+
+	@Override
+	public void swap(int i, int j) {
+		int id = this.ids[i];
+		this.ids[i] = this.ids[j];
+		this.ids[j] = id;
+
+		double score = this.scores[i];
+		this.scores[i] = this.scores[j];
+		this.scores[j] = score;
+	}
+}
@@ -0,0 +1,304 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.sketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.Value;
+
+/**
+ * Count-Min sketch of the document frequencies of terms: a table of <code>depth</code> rows of <code>width</code>
+ * counters, in which every term increments one counter per row. The estimate of a term is the minimum of its counters,
+ * which is never below the true count and, with a probability of at least 1 - delta, exceeds it by at most
+ * epsilon * total, where total is the sum of all counts and
+ * <code>width = ceil(e / epsilon)</code>, <code>depth = ceil(ln(1 / delta))</code>.
+ * <p>
+ * Terms are identified by a 64 bit key (see {@link #key(char[], int, int)}), whose two halves are combined into the
+ * row hashes. Sketches of the same dimensions are merged by adding their counters, so the size of a sketch only
+ * depends on epsilon and delta and not on the number of distinct terms. The counters are serialized as varints.
+ */
+public class CountMinSketch implements Value {
+
+	private static final long serialVersionUID = 1L;
+
+	private int width;
+
+	private int depth;
+
+	private int[] counters = new int[0];
+
+	private long total;
+
+	private byte[] buffer = new byte[0];
+
+	/**
+	 * Creates an empty sketch without dimensions, which takes the dimensions of the first merged sketch.
+	 */
+	public CountMinSketch() {
+	}
+
+	/**
+	 * Creates a sketch for the given error bounds.
+	 *
+	 * @param epsilon
+	 *        Maximum overestimation relative to the total count
+	 * @param delta
+	 *        Probability that the overestimation of a term exceeds the bound
+	 */
+	public CountMinSketch(double epsilon, double delta) {
+		if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+			throw new IllegalArgumentException("Invalid error bounds: epsilon " + epsilon + ", delta " + delta);
+		}
+		this.width = (int) Math.ceil(Math.E / epsilon);
+		this.depth = (int) Math.ceil(Math.log(1 / delta));
+		this.counters = new int[this.width * this.depth];
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Returns the sum of all added counts.
+	 */
+	public long getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Returns the bound by which an estimate exceeds the true count with a probability of at least 1 - delta.
+	 */
+	public double getErrorBound() {
+		return this.width == 0 ? 0 : Math.E / this.width * this.total;
+	}
+
+	/**
+	 * Adds the count to the term with the given key.
+	 */
+	public void add(long key, int count) {
+		int h1 = (int) key;
+		int h2 = (int) (key >>> 32);
+		for (int row = 0; row < this.depth; row++) {
+			this.counters[row * this.width + index(h1 + row * h2)] += count;
+		}
+		this.total += count;
+	}
+
+	/**
+	 * Returns the estimated count of the term with the given key, which is at least its true count.
+	 */
+	public int estimate(long key) {
+		int h1 = (int) key;
+		int h2 = (int) (key >>> 32);
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < this.depth; row++) {
+			estimate = Math.min(estimate, this.counters[row * this.width + index(h1 + row * h2)]);
+		}
+		return this.depth == 0 ? 0 : estimate;
+	}
+
+	/**
+	 * Adds the counters of the other sketch, which must have the same dimensions unless this sketch is empty.
+	 */
+	public void merge(CountMinSketch other) {
+		if (this.width == 0 && this.total == 0) {
+			this.width = other.width;
+			this.depth = other.depth;
+			if (this.counters.length != other.counters.length) {
+				this.counters = new int[other.counters.length];
+			}
+			System.arraycopy(other.counters, 0, this.counters, 0, other.counters.length);
+			this.total = other.total;
+			return;
+		}
+		if (this.width != other.width || this.depth != other.depth) {
+			throw new IllegalArgumentException("Cannot merge a " + other.depth + "x" + other.width + " sketch into a "
+				+ this.depth + "x" + this.width + " sketch");
+		}
+		for (int i = 0; i < this.counters.length; i++) {
+			this.counters[i] += other.counters[i];
+		}
+		this.total += other.total;
+	}
+
+	/**
+	 * Resets the sketch to an empty sketch without dimensions.
+	 */
+	public void clear() {
+		this.width = 0;
+		this.depth = 0;
+		this.total = 0;
+	}
+
+	private int index(int hash) {
+		return (hash & Integer.MAX_VALUE) % this.width;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the 64 bit key of the term given by the chars <code>[offset, offset + length)</code>.
+	 */
+	public static long key(char[] chars, int offset, int length) {
+		// FNV-1a followed by the MurmurHash3 finalizer
+		long h = 0xcbf29ce484222325L;
+		for (int i = offset; i < offset + length; i++) {
+			h = (h ^ chars[i]) * 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Returns the 64 bit key of a term ID.
+	 */
+	public static long key(int termId) {
+		return mix(termId);
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		int numCounters = this.width * this.depth;
+		if (this.buffer.length < 5 * numCounters) {
+			this.buffer = new byte[5 * numCounters];
+		}
+
+		int position = 0;
+		for (int i = 0; i < numCounters; i++) {
+			int value = this.counters[i];
+			while ((value & ~0x7f) != 0) {
+				this.buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.buffer[position++] = (byte) value;
+		}
+
+		out.writeInt(this.width);
+		out.writeInt(this.depth);
+		out.writeLong(this.total);
+		out.writeInt(position);
+		out.write(this.buffer, 0, position);
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.width = in.readInt();
+		this.depth = in.readInt();
+		this.total = in.readLong();
+		int numBytes = in.readInt();
+		if (this.width < 0 || this.depth < 0 || numBytes < 0) {
+			throw new IOException("Malformed count-min sketch: " + this.depth + "x" + this.width + ", " + numBytes
+				+ " bytes");
+		}
+		this.buffer = Util.readFully(in, this.buffer, numBytes);
+
+		// every counter takes 1 to 5 bytes, so the counters are not allocated for a corrupt size either
+		long numCounters = (long) this.width * this.depth;
+		if (numCounters > numBytes || 5 * numCounters < numBytes) {
+			throw new IOException("Malformed count-min sketch: " + numCounters + " counters in " + numBytes + " bytes");
+		}
+		if (this.counters.length != numCounters) {
+			this.counters = new int[(int) numCounters];
+		}
+
+		int position = 0;
+		for (int i = 0; i < numCounters; i++) {
+			int value = 0;
+			for (int shift = 0;; shift += 7) {
+				if (position == numBytes || shift == 35) {
+					throw new IOException("Malformed count-min sketch: counter at byte " + position);
+				}
+				byte b = this.buffer[position++];
+				value |= (b & 0x7f) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			this.counters[i] = value;
+		}
+		if (position != numBytes) {
+			throw new IOException("Malformed count-min sketch: " + (numBytes - position) + " trailing bytes");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CountMinSketch[" + this.depth + "x" + this.width + ", total " + this.total + "]";
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		// 1. Round trip into a reused instance
+		CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+		for (int termId = 0; termId < 1000; termId++) {
+			sketch.add(key(termId), termId % 7 == 0 ? 100000 : 1);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sketch.write(new DataOutputStream(bytes));
+		CountMinSketch copy = new CountMinSketch();
+		for (int i = 0; i < 2; i++) {
+			copy.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		}
+		for (int termId = 0; termId < 1000; termId++) {
+			if (copy.estimate(key(termId)) != sketch.estimate(key(termId))) {
+				throw new IllegalStateException("Estimate of term " + termId + " changed by the round trip");
+			}
+		}
+		System.out.println("OK   " + copy + ", " + bytes.size() + " bytes");
+
+		// 2. Corrupt lengths fail with an IOException instead of allocating their buffers
+		int[][] malformed = {
+			{ 272, 5, Integer.MAX_VALUE },
+			{ Integer.MAX_VALUE, Integer.MAX_VALUE, 4 },
+			{ 2, 2, 3 } };
+		for (int[] header : malformed) {
+			ByteArrayOutputStream corrupt = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(corrupt);
+			out.writeInt(header[0]);
+			out.writeInt(header[1]);
+			out.writeLong(0);
+			out.writeInt(header[2]);
+			out.write(new byte[] { 1, 2, 3, 4 });
+			try {
+				copy.read(new DataInputStream(new ByteArrayInputStream(corrupt.toByteArray())));
+				throw new IllegalStateException("Read a malformed sketch: " + copy);
+			} catch (IOException e) {
+				System.out.println("OK   " + e);
+			}
+		}
+	}
+}
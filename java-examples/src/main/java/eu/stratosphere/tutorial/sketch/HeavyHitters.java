@@ -0,0 +1,297 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.tutorial.util.IndexedSortable;
+import eu.stratosphere.tutorial.util.MinHeap;
+import eu.stratosphere.tutorial.util.QuickSort;
+import eu.stratosphere.types.Value;
+
+/**
+ * The terms with the highest document frequencies of one or more partitions, with their exact counts.
+ * <p>
+ * Every partition offers the exact local document frequencies of all its terms (see {@link #offer(long, int)}) and
+ * keeps the top <code>capacity</code> terms. Merged lists add up the counts of the same term and remember in how many
+ * of the partition lists the term occurs: a term that occurs in all of them has its exact global count (see
+ * {@link #isExact(int)}), which replaces the estimate of the {@link CountMinSketch} for the most frequent terms.
+ * <p>
+ * After {@link #finish()} and after every merge the entries are sorted by key, so they can be looked up with
+ * {@link #indexOf(long)}.
+ */
+public class HeavyHitters implements Value {
+
+	private static final long serialVersionUID = 1L;
+
+	private int capacity;
+
+	private int size;
+
+	private long[] keys = new long[0];
+
+	private int[] counts = new int[0];
+
+	// number of partition lists that contain the entry
+	private int[] lists = new int[0];
+
+	private int numLists;
+
+	// orders of the entries, created on first use because deserialized instances skip the field initializers
+	private transient IndexedSortable byKey;
+
+	private transient IndexedSortable byCount;
+
+	private transient IndexedSortable byCountDescending;
+
+	public HeavyHitters() {
+	}
+
+	public HeavyHitters(int capacity) {
+		setCapacity(capacity);
+	}
+
+	/**
+	 * Empties the list and sets the number of terms to keep.
+	 */
+	public void setCapacity(int capacity) {
+		clear();
+		this.capacity = capacity;
+		ensureCapacity(capacity);
+	}
+
+	public void clear() {
+		this.size = 0;
+		this.numLists = 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public long getKey(int i) {
+		return this.keys[i];
+	}
+
+	public int getCount(int i) {
+		return this.counts[i];
+	}
+
+	/**
+	 * Returns true if the count of the entry is exact, because every merged partition list contains the term.
+	 */
+	public boolean isExact(int i) {
+		return this.lists[i] == this.numLists;
+	}
+
+	/**
+	 * Offers the exact count of a term of the local partition. The list keeps the terms with the highest counts in a
+	 * min-heap until {@link #finish()} is called.
+	 */
+	public void offer(long key, int count) {
+		if (this.size < this.capacity) {
+			this.keys[this.size] = key;
+			this.counts[this.size] = count;
+			MinHeap.siftUp(byCount(), this.size++);
+		} else if (this.capacity > 0 && count > this.counts[0]) {
+			this.keys[0] = key;
+			this.counts[0] = count;
+			MinHeap.siftDown(byCount(), 0, this.size);
+		}
+	}
+
+	/**
+	 * Ends the offer phase of a partition and sorts the entries by key.
+	 */
+	public void finish() {
+		this.numLists = 1;
+		for (int i = 0; i < this.size; i++) {
+			this.lists[i] = 1;
+		}
+		QuickSort.sort(byKey(), 0, this.size - 1);
+	}
+
+	/**
+	 * Merges the entries of the other list and keeps the entries with the highest counts.
+	 */
+	public void merge(HeavyHitters other) {
+		int capacity = Math.max(this.capacity, other.capacity);
+
+		long[] keys = new long[this.size + other.size];
+		int[] counts = new int[keys.length];
+		int[] lists = new int[keys.length];
+		int size = 0;
+
+		// both lists are sorted by key
+		int i = 0;
+		int j = 0;
+		while (i < this.size || j < other.size) {
+			if (j == other.size || (i < this.size && this.keys[i] < other.keys[j])) {
+				keys[size] = this.keys[i];
+				counts[size] = this.counts[i];
+				lists[size++] = this.lists[i++];
+			} else if (i == this.size || other.keys[j] < this.keys[i]) {
+				keys[size] = other.keys[j];
+				counts[size] = other.counts[j];
+				lists[size++] = other.lists[j++];
+			} else {
+				keys[size] = this.keys[i];
+				counts[size] = this.counts[i] + other.counts[j];
+				lists[size++] = this.lists[i++] + other.lists[j++];
+			}
+		}
+
+		this.keys = keys;
+		this.counts = counts;
+		this.lists = lists;
+		this.size = size;
+		this.capacity = capacity;
+		this.numLists += other.numLists;
+
+		if (this.size > this.capacity) {
+			// keep the entries with the highest counts: sort by count, truncate and restore the key order
+			QuickSort.sort(byCountDescending(), 0, this.size - 1);
+			this.size = this.capacity;
+			QuickSort.sort(byKey(), 0, this.size - 1);
+		}
+	}
+
+	/**
+	 * Returns the index of the entry with the given key, or -1.
+	 */
+	public int indexOf(long key) {
+		int low = 0;
+		int high = this.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (this.keys[middle] < key) {
+				low = middle + 1;
+			} else if (this.keys[middle] > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private void ensureCapacity(int capacity) {
+		if (this.keys.length < capacity) {
+			this.keys = new long[capacity];
+			this.counts = new int[capacity];
+			this.lists = new int[capacity];
+		}
+	}
+
+	private IndexedSortable byKey() {
+		if (this.byKey == null) {
+			this.byKey = new Entries() {
+				@Override
+				public int compare(int i, int j) {
+					long[] keys = HeavyHitters.this.keys;
+					return keys[i] < keys[j] ? -1 : keys[i] == keys[j] ? 0 : 1;
+				}
+			};
+		}
+		return this.byKey;
+	}
+
+	private IndexedSortable byCount() {
+		if (this.byCount == null) {
+			this.byCount = new Entries() {
+				@Override
+				public int compare(int i, int j) {
+					int[] counts = HeavyHitters.this.counts;
+					return counts[i] < counts[j] ? -1 : counts[i] == counts[j] ? 0 : 1;
+				}
+			};
+		}
+		return this.byCount;
+	}
+
+	private IndexedSortable byCountDescending() {
+		if (this.byCountDescending == null) {
+			this.byCountDescending = new Entries() {
+				@Override
+				public int compare(int i, int j) {
+					int[] counts = HeavyHitters.this.counts;
+					return counts[i] > counts[j] ? -1 : counts[i] == counts[j] ? 0 : 1;
+				}
+			};
+		}
+		return this.byCountDescending;
+	}
+
+	/**
+	 * Swaps the entries in the parallel arrays, for the orders that compare them.
+	 */
+	private abstract class Entries implements IndexedSortable {
+
+		@Override
+		public void swap(int i, int j) {
+			long[] keys = HeavyHitters.this.keys;
+			long key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+
+			int[] counts = HeavyHitters.this.counts;
+			int count = counts[i];
+			counts[i] = counts[j];
+			counts[j] = count;
+
+			int[] lists = HeavyHitters.this.lists;
+			int numLists = lists[i];
+			lists[i] = lists[j];
+			lists[j] = numLists;
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.capacity);
+		out.writeInt(this.numLists);
+		out.writeInt(this.size);
+		for (int i = 0; i < this.size; i++) {
+			out.writeLong(this.keys[i]);
+			out.writeInt(this.counts[i]);
+			out.writeInt(this.lists[i]);
+		}
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.capacity = in.readInt();
+		this.numLists = in.readInt();
+		int size = in.readInt();
+		ensureCapacity(Math.max(size, this.capacity));
+		for (int i = 0; i < size; i++) {
+			this.keys[i] = in.readLong();
+			this.counts[i] = in.readInt();
+			this.lists[i] = in.readInt();
+		}
+		this.size = size;
+	}
+
+	@Override
+	public String toString() {
+		return "HeavyHitters[" + this.size + " of " + this.capacity + ", " + this.numLists + " lists]";
+	}
+}
@@ -0,0 +1,153 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.sketch;
+
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Counts the document frequencies of the terms of its partition and emits them as a single (sketch, heavyHitters,
+ * numDocuments) record when the partition is done, instead of one (term, 1) record per distinct term and document.
+ * <p>
+ * The terms are extracted as by the {@link eu.stratosphere.tutorial.task1.DocumentFrequencyMapper}. The exact local
+ * document frequencies are kept in a map until {@link #close()}, where they are added to a {@link CountMinSketch} and
+ * offered to the {@link HeavyHitters}. The local map grows with the vocabulary of the partition, but the shipped record
+ * only with the configured error bounds.
+ * <p>
+ * With a term dictionary the terms are identified by the keys of their IDs, otherwise by the keys of their chars, see
+ * {@link CountMinSketch#key(char[], int, int)}.
+ */
+public class SketchMapper extends MapFunction {
+
+	/**
+	 * Parameter key of the maximum overestimation of a document frequency, relative to the sum of all document
+	 * frequencies.
+	 */
+	public static final String EPSILON = "sketch.epsilon";
+
+	/**
+	 * Parameter key of the probability that the overestimation of a term exceeds the bound.
+	 */
+	public static final String DELTA = "sketch.delta";
+
+	/**
+	 * Parameter key of the number of most frequent terms whose document frequencies are counted exactly.
+	 */
+	public static final String HEAVY_HITTERS = "sketch.heavyhitters";
+
+	public static final String DEFAULT_EPSILON = "0.0001";
+
+	public static final String DEFAULT_DELTA = "0.01";
+
+	public static final int DEFAULT_HEAVY_HITTERS = 1000;
+
+	private final Tokenizer tokenizer = new Tokenizer();
+
+	private final TermIntMap documentTerms = new TermIntMap();
+
+	// local document frequencies of the partition
+	private final TermIntMap documentFrequencies = new TermIntMap();
+
+	private final LongValue numDocuments = new LongValue();
+
+	private final Record result = new Record(3);
+
+	private CountMinSketch sketch;
+
+	private HeavyHitters heavyHitters;
+
+	private StopWords stopWords;
+
+	private TermDictionary dictionary;
+
+	private Collector<Record> collector;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.stopWords = StopWords.fromParameters(parameters);
+		String dictionaryPath = parameters.getString(TermDictionary.PATH_PARAMETER, null);
+		this.dictionary = dictionaryPath == null ? null : TermDictionary.load(dictionaryPath);
+
+		this.sketch = new CountMinSketch(Double.parseDouble(parameters.getString(EPSILON, DEFAULT_EPSILON)),
+			Double.parseDouble(parameters.getString(DELTA, DEFAULT_DELTA)));
+		this.heavyHitters = new HeavyHitters(parameters.getInteger(HEAVY_HITTERS, DEFAULT_HEAVY_HITTERS));
+		this.documentFrequencies.clear();
+		this.numDocuments.setValue(0);
+		this.collector = null;
+	}
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		StringValue body = record.getField(1, StringValue.class);
+		this.tokenizer.reset(body, 0, body.length());
+
+		this.documentTerms.clear();
+		while (this.tokenizer.next()) {
+			if (!this.stopWords.contains(this.tokenizer.buffer(), 0, this.tokenizer.length())) {
+				this.documentTerms.put(this.tokenizer.buffer(), 0, this.tokenizer.length(), 1);
+			}
+		}
+		for (int i = 0; i < this.documentTerms.size(); i++) {
+			this.documentFrequencies.add(this.documentTerms.keyChars(), this.documentTerms.keyOffset(i),
+				this.documentTerms.keyLength(i), 1);
+		}
+
+		this.numDocuments.setValue(this.numDocuments.getValue() + 1);
+		this.collector = collector;
+	}
+
+	/**
+	 * Emits the (sketch, heavyHitters, numDocuments) record of the partition, if it contained any documents.
+	 */
+	@Override
+	public void close() throws Exception {
+		if (this.collector == null) {
+			return;
+		}
+
+		for (int i = 0; i < this.documentFrequencies.size(); i++) {
+			long key;
+			if (this.dictionary == null) {
+				key = CountMinSketch.key(this.documentFrequencies.keyChars(), this.documentFrequencies.keyOffset(i),
+					this.documentFrequencies.keyLength(i));
+			} else {
+				int id = this.dictionary.getId(this.documentFrequencies.keyChars(),
+					this.documentFrequencies.keyOffset(i), this.documentFrequencies.keyLength(i));
+				if (id < 0) {
+					continue;
+				}
+				key = CountMinSketch.key(id);
+			}
+			int df = this.documentFrequencies.value(i);
+			this.sketch.add(key, df);
+			this.heavyHitters.offer(key, df);
+		}
+		this.heavyHitters.finish();
+
+		this.result.setField(0, this.sketch);
+		this.result.setField(1, this.heavyHitters);
+		this.result.setField(2, this.numDocuments);
+		this.collector.collect(this.result);
+		this.collector = null;
+	}
+}
@@ -0,0 +1,67 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.sketch;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.api.java.record.operators.ReduceOperator.Combinable;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer merges the (sketch, heavyHitters, numDocuments) records of all {@link SketchMapper} partitions into a
+ * single record.
+ * <p>
+ * It is used as a global (key-less) reduce, like the {@link eu.stratosphere.tutorial.task3.DocumentCountReducer}. The
+ * records have a fixed size, so the reduce only handles one small record per mapper subtask. For an empty input it
+ * emits an empty sketch and a document count of 0.
+ */
+@Combinable
+public class SketchMergeReducer extends ReduceFunction {
+
+	private final CountMinSketch sketch = new CountMinSketch();
+
+	private final HeavyHitters heavyHitters = new HeavyHitters();
+
+	private final LongValue numDocuments = new LongValue();
+
+	private final Record emptyRecord = new Record(3);
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		Record record = null;
+		long sum = 0;
+
+		this.sketch.clear();
+		this.heavyHitters.clear();
+		while (records.hasNext()) {
+			record = records.next();
+			this.sketch.merge(record.getField(0, CountMinSketch.class));
+			this.heavyHitters.merge(record.getField(1, HeavyHitters.class));
+			sum += record.getField(2, LongValue.class).getValue();
+		}
+		if (record == null) {
+			record = this.emptyRecord;
+		}
+
+		this.numDocuments.setValue(sum);
+		record.setField(0, this.sketch);
+		record.setField(1, this.heavyHitters);
+		record.setField(2, this.numDocuments);
+		collector.collect(record);
+	}
+}
@@ -0,0 +1,108 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.sketch;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This cross computes the tf-idf weight of every (docId, term, tf) record with the approximate document frequency of
+ * the term, which it looks up in the merged (sketch, heavyHitters, numDocuments) record of the
+ * {@link SketchMergeReducer}. It replaces the document frequency reduce and the {@link TfIdfMatcher}, so the term
+ * frequency records are not shipped at all.
+ * <p>
+ * The document frequency of a term is its exact count if it is a heavy hitter of all partitions, otherwise the
+ * estimate of the sketch, which overestimates it by at most epsilon times the sum of all document frequencies (with a
+ * probability of 1 - delta). Overestimates only lower the idf of rare terms. The sum is much larger than the number
+ * of documents, so the estimate is capped at the number of documents, which keeps the idf and the weights
+ * non-negative, as the prefix bounds of the {@link eu.stratosphere.tutorial.task5.SimilarityPlan} assume.
+ * <p>
+ * The merged record is deserialized only once. The terms are IntValue IDs if the {@link TermDictionary#PATH_PARAMETER}
+ * is set, StringValues otherwise. Like the matcher, the cross emits (docId, term, tf-idf, df) records with the
+ * {@link TfIdfMatcher#EMIT_DOCUMENT_FREQUENCY} parameter.
+ */
+public class SketchTfIdfCross extends CrossFunction {
+
+	private final CountMinSketch sketch = new CountMinSketch();
+
+	private final HeavyHitters heavyHitters = new HeavyHitters();
+
+	private final DoubleValue tfIdf = new DoubleValue();
+
+	private final IntValue documentFrequency = new IntValue();
+
+	private double numDocuments;
+
+	private boolean loaded;
+
+	private boolean termIds;
+
+	private boolean emitDocumentFrequency;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.termIds = parameters.getString(TermDictionary.PATH_PARAMETER, null) != null;
+		this.emitDocumentFrequency = parameters.getBoolean(TfIdfMatcher.EMIT_DOCUMENT_FREQUENCY, false);
+		this.loaded = false;
+	}
+
+	@Override
+	public void cross(Record tfRecord, Record sketchRecord, Collector<Record> collector) throws Exception {
+		if (!this.loaded) {
+			this.sketch.clear();
+			this.sketch.merge(sketchRecord.getField(0, CountMinSketch.class));
+			this.heavyHitters.clear();
+			this.heavyHitters.merge(sketchRecord.getField(1, HeavyHitters.class));
+			this.numDocuments = sketchRecord.getField(2, LongValue.class).getValue();
+			this.loaded = true;
+		}
+
+		long key;
+		if (this.termIds) {
+			key = CountMinSketch.key(tfRecord.getField(1, IntValue.class).getValue());
+		} else {
+			StringValue term = tfRecord.getField(1, StringValue.class);
+			key = CountMinSketch.key(term.getCharArray(), 0, term.length());
+		}
+
+		int df = documentFrequency(key);
+		double tf = tfRecord.getField(2, IntValue.class).getValue();
+
+		// the (docId, term, tf) record is reused as (docId, term, tf-idf) result
+		this.tfIdf.setValue(tf * Math.log(this.numDocuments / df));
+		tfRecord.setField(2, this.tfIdf);
+		if (this.emitDocumentFrequency) {
+			this.documentFrequency.setValue(df);
+			tfRecord.setField(3, this.documentFrequency);
+		}
+		collector.collect(tfRecord);
+	}
+
+	private int documentFrequency(long key) {
+		int index = this.heavyHitters.indexOf(key);
+		if (index >= 0 && this.heavyHitters.isExact(index)) {
+			return this.heavyHitters.getCount(index);
+		}
+		return (int) Math.min(Math.max(1, this.sketch.estimate(key)), this.numDocuments);
+	}
+}
@@ -0,0 +1,301 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.skew;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.core.fs.FSDataInputStream;
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Key;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Builds the skew-resistant document frequency reduce of the option "-salts=[count]".
+ * <p>
+ * The (term, 1) records of a hot term all go to the subtask of the term, which becomes the straggler of the reduce. A
+ * sampling pre-pass, run by the client while the plan is built, reads about {@link #SAMPLE_SIZE} documents from
+ * evenly spaced positions of the input files and selects the terms whose share of the sampled (term, 1) records is at
+ * least the option "-hotShare=[share]" (default 1 / (4 * numSubtasks)). The {@link DocumentFrequencyMapper} spreads
+ * the records of these terms over the given number of salts, a first reduce sums the (term, salt) groups, and a
+ * second reduce adds up the at most count partial sums of every term.
+ */
+public final class TermSalting {
+
+	/**
+	 * Number of documents read by the sampling pre-pass.
+	 */
+	public static final int SAMPLE_SIZE = 10000;
+
+	/**
+	 * Maximum number of hot terms, which are passed to the mappers in their parameters.
+	 */
+	public static final int MAX_HOT_TERMS = 100;
+
+	// consecutive documents read at every sampled position
+	private static final int DOCUMENTS_PER_POSITION = 20;
+
+	private TermSalting() {
+	}
+
+	/**
+	 * Returns true if the option "-salts=[count]" is set.
+	 */
+	public static boolean isEnabled(String[] args) {
+		return Util.getOption(args, "-salts", null) != null;
+	}
+
+	/**
+	 * Builds the document frequency reduce of the (term, 1) records of the mapper, with salting of the hot terms of the
+	 * input if the option is set. Returns the operator that emits the (term, df) records.
+	 */
+	public static Operator reduce(Operator dfMapper, String inputPath, int numSubtasks, String[] args) {
+		Class<? extends Key> termType = NGrams.termType(args);
+		String[] hotTerms = new String[0];
+		if (isEnabled(args)) {
+			double defaultShare = 0.25 / Math.max(numSubtasks, 1);
+			double minShare = Double.parseDouble(Util.getOption(args, "-hotShare", Double.toString(defaultShare)));
+			String stopWordsPath = Util.getOption(args, "-stopWords", null);
+			try {
+				StopWords stopWords = stopWordsPath == null ? StopWords.getDefault() : StopWords.load(stopWordsPath);
+				hotTerms = sampleHotTerms(inputPath, stopWords, NGrams.fromArgs(args), SAMPLE_SIZE, minShare);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot sample the input " + inputPath, e);
+			}
+		}
+
+		if (hotTerms.length == 0) {
+			return ReduceOperator.builder(DocumentFrequencyReducer.class, termType, 0)
+				.input(dfMapper)
+				.name("Document Frequency Reducer")
+				.build();
+		}
+
+		dfMapper.setParameter(DocumentFrequencyMapper.HOT_TERMS, hotTermsParameter(hotTerms));
+		dfMapper.setParameter(DocumentFrequencyMapper.NUM_SALTS, Integer.parseInt(Util.getOption(args, "-salts", "")));
+
+		ReduceOperator saltedReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, termType, 0)
+			.keyField(IntValue.class, 2)
+			.input(dfMapper)
+			.name("Salted Document Frequency Reducer")
+			.build();
+
+		// the input has one record per (term, salt) group, so this reduce is cheap and free of skew
+		return ReduceOperator.builder(DocumentFrequencyReducer.class, termType, 0)
+			.input(saltedReducer)
+			.name("Document Frequency Merge Reducer")
+			.build();
+	}
+
+	/**
+	 * Returns the value of the {@link DocumentFrequencyMapper#HOT_TERMS} parameter for the given terms, one per line.
+	 */
+	public static String hotTermsParameter(String[] hotTerms) {
+		StringBuilder terms = new StringBuilder();
+		for (String hotTerm : hotTerms) {
+			terms.append(terms.length() == 0 ? "" : "\n").append(hotTerm);
+		}
+		return terms.toString();
+	}
+
+	/**
+	 * Reads about <code>sampleSize</code> documents of the input, a file or a directory of files, and returns the
+	 * terms with at least the given share of the (term, 1) records of the sample, most frequent first.
+	 * <p>
+	 * The documents are tokenized as by the {@link DocumentFrequencyMapper}, so with an n-gram window the terms are the
+	 * n-grams of the window, which the mapper matches before it hashes them. A null window samples the tokens.
+	 */
+	public static String[] sampleHotTerms(String inputPath, StopWords stopWords, NGrams ngrams, int sampleSize,
+			double minShare) throws IOException {
+		Path path = new Path(inputPath);
+		FileSystem fs = FileSystem.get(path.toUri());
+
+		FileStatus status = fs.getFileStatus(path);
+		FileStatus[] candidates = status.isDir() ? fs.listStatus(path) : new FileStatus[] { status };
+
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		long totalLength = 0;
+		for (FileStatus file : candidates) {
+			String name = file.getPath().getName();
+			if (!file.isDir() && !name.startsWith(".") && !name.startsWith("_") && file.getLen() > 0) {
+				files.add(file);
+				totalLength += file.getLen();
+			}
+		}
+
+		Tokenizer tokenizer = new Tokenizer();
+		TermIntMap documentTerms = new TermIntMap();
+		TermIntMap counts = new TermIntMap();
+		IntValue docId = new IntValue();
+		StringValue body = new StringValue();
+		long numRecords = 0;
+
+		int numPositions = Math.max(1, sampleSize / DOCUMENTS_PER_POSITION);
+		for (FileStatus file : files) {
+			int filePositions = (int) Math.max(1, Math.round((double) numPositions * file.getLen() / totalLength));
+
+			FSDataInputStream stream = fs.open(file.getPath());
+			try {
+				for (int position = 0; position < filePositions; position++) {
+					long offset = file.getLen() * position / filePositions;
+					stream.seek(offset);
+					BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+					if (offset > 0) {
+						// skip the rest of the line at the position
+						reader.readLine();
+					}
+
+					String line;
+					for (int i = 0; i < DOCUMENTS_PER_POSITION && (line = reader.readLine()) != null; i++) {
+						if (!DocumentInputFormat.parse(line, docId, body)) {
+							continue;
+						}
+
+						documentTerms.clear();
+						if (ngrams != null) {
+							ngrams.reset();
+						}
+						tokenizer.reset(body, 0, body.length());
+						while (tokenizer.next()) {
+							if (stopWords.contains(tokenizer.buffer(), 0, tokenizer.length())) {
+								continue;
+							}
+							if (ngrams == null) {
+								documentTerms.put(tokenizer.buffer(), 0, tokenizer.length(), 1);
+							} else {
+								ngrams.add(tokenizer.buffer(), 0, tokenizer.length());
+								for (int n = 0; n < ngrams.size(); n++) {
+									documentTerms.put(ngrams.buffer(), ngrams.offset(n), ngrams.length(n), 1);
+								}
+							}
+						}
+						for (int j = 0; j < documentTerms.size(); j++) {
+							counts.add(documentTerms.keyChars(), documentTerms.keyOffset(j), documentTerms.keyLength(j),
+								1);
+						}
+						numRecords += documentTerms.size();
+					}
+				}
+			} finally {
+				stream.close();
+			}
+		}
+
+		// the most frequent terms above the share
+		Integer[] entries = new Integer[counts.size()];
+		int numHot = 0;
+		for (int i = 0; i < counts.size(); i++) {
+			if (counts.value(i) >= minShare * numRecords) {
+				entries[numHot++] = i;
+			}
+		}
+		final TermIntMap sampleCounts = counts;
+		Arrays.sort(entries, 0, numHot, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer entry1, Integer entry2) {
+				return sampleCounts.value(entry2) - sampleCounts.value(entry1);
+			}
+		});
+
+		String[] hotTerms = new String[Math.min(numHot, MAX_HOT_TERMS)];
+		for (int i = 0; i < hotTerms.length; i++) {
+			hotTerms[i] = counts.keyToString(entries[i]);
+		}
+		return hotTerms;
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Samples the hot bigrams of documents of which every second one contains "big data", runs the
+	 * {@link DocumentFrequencyMapper} with them and 2 salts, and checks that the records of "big data" take both salts.
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] words = { "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "theta", "kappa" };
+		Random random = new Random(42);
+		StringBuilder lines = new StringBuilder();
+		List<Record> documents = new ArrayList<Record>();
+		for (int docId = 0; docId < 500; docId++) {
+			StringBuilder body = new StringBuilder(docId % 2 == 0 ? "big data" : "");
+			for (int i = 0; i < 8; i++) {
+				body.append(' ').append(words[random.nextInt(words.length)]);
+			}
+			lines.append(docId).append(',').append(body).append('\n');
+			documents.add(new Record(new IntValue(docId), new StringValue(body)));
+		}
+		String inputPath = Util.createTempFile("salting/documents.txt", lines.toString());
+
+		NGrams bigrams = NGrams.fromArgs(new String[] { "-ngrams=2-2" });
+		String[] hotTerms = sampleHotTerms(inputPath, StopWords.getDefault(), bigrams, SAMPLE_SIZE, 0.05);
+		System.out.println("hot terms: " + Arrays.toString(hotTerms));
+		if (!Arrays.asList(hotTerms).contains("big data")) {
+			throw new IllegalStateException("\"big data\" was not sampled as a hot term");
+		}
+
+		Configuration parameters = new Configuration();
+		parameters.setInteger(NGrams.MIN_SIZE, bigrams.minSize());
+		parameters.setInteger(NGrams.MAX_SIZE, bigrams.maxSize());
+		parameters.setString(DocumentFrequencyMapper.HOT_TERMS, hotTermsParameter(hotTerms));
+		parameters.setInteger(DocumentFrequencyMapper.NUM_SALTS, 2);
+		DocumentFrequencyMapper mapper = new DocumentFrequencyMapper();
+		mapper.open(parameters);
+
+		final int[] salts = new int[2];
+		Collector<Record> collector = new Collector<Record>() {
+			@Override
+			public void collect(Record record) {
+				if (record.getField(0, StringValue.class).getValue().equals("big data")) {
+					salts[record.getField(2, IntValue.class).getValue()]++;
+				}
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		for (Record document : documents) {
+			mapper.map(document, collector);
+		}
+		mapper.close();
+
+		System.out.println(String.format("\"big data\" records: %d with salt 0, %d with salt 1", salts[0], salts[1]));
+		if (salts[1] == 0) {
+			throw new IllegalStateException("The hot term \"big data\" was not salted");
+		}
+		Util.deleteAllTempFiles();
+	}
+}
@@ -0,0 +1,101 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.streaming;
+
+import eu.stratosphere.tutorial.util.TermIntMap;
+
+/**
+ * Thread-safe map from terms to primitive int counters.
+ * <p>
+ * The terms are spread over a fixed number of {@link TermIntMap} segments by the high bits of their hash (the
+ * segments themselves use the low bits), and every segment is guarded by its own lock. Threads that count different
+ * terms therefore rarely wait for each other, and neither the keys nor the counters are boxed.
+ */
+public final class ConcurrentTermCounter {
+
+	private final TermIntMap[] segments;
+
+	private final int shift;
+
+	/**
+	 * Creates a counter with at least the given number of segments, which is rounded up to a power of two.
+	 */
+	public ConcurrentTermCounter(int concurrency) {
+		int numSegments = Integer.highestOneBit(Math.max(concurrency, 2) * 2 - 1);
+
+		this.segments = new TermIntMap[numSegments];
+		for (int i = 0; i < numSegments; i++) {
+			this.segments[i] = new TermIntMap();
+		}
+		this.shift = 32 - Integer.numberOfTrailingZeros(numSegments);
+	}
+
+	/**
+	 * Atomically adds delta to the counter of the term given by the chars <code>[offset, offset + length)</code>.
+	 * Terms that are not contained yet start with a counter of 0.
+	 *
+	 * @return the new value of the counter
+	 */
+	public int add(char[] chars, int offset, int length, int delta) {
+		TermIntMap segment = segment(chars, offset, length);
+		synchronized (segment) {
+			return segment.add(chars, offset, length, delta);
+		}
+	}
+
+	/**
+	 * Returns the counter of the term given by the chars <code>[offset, offset + length)</code>, or 0 if the term is
+	 * not contained.
+	 */
+	public int get(char[] chars, int offset, int length) {
+		TermIntMap segment = segment(chars, offset, length);
+		synchronized (segment) {
+			return segment.get(chars, offset, length, 0);
+		}
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 */
+	public int size() {
+		int size = 0;
+		for (TermIntMap segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns a copy of all counters in a single map. The segments are copied one after the other, so the copy is only
+	 * a consistent snapshot if no thread adds concurrently.
+	 */
+	public TermIntMap copy() {
+		TermIntMap copy = new TermIntMap(size());
+		for (TermIntMap segment : this.segments) {
+			synchronized (segment) {
+				for (int i = 0; i < segment.size(); i++) {
+					copy.put(segment.keyChars(), segment.keyOffset(i), segment.keyLength(i), segment.value(i));
+				}
+			}
+		}
+		return copy;
+	}
+
+	private TermIntMap segment(char[] chars, int offset, int length) {
+		return this.segments[TermIntMap.hash(chars, offset, length) >>> this.shift];
+	}
+}
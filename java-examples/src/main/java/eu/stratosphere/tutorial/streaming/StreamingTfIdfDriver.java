@@ -0,0 +1,597 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.streaming;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.query.SimilarityIndex;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task4.WeightVector;
+import eu.stratosphere.tutorial.task4.WeightVectorPlan;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Long-running driver that tails an input directory and publishes the tf-idf weight vectors of new documents within
+ * seconds, instead of running a plan over the whole corpus.
+ * <p>
+ * New files in the input directory (one "docId,document contents" line per document) are picked up with a
+ * {@link java.nio.file.WatchService} and tokenized by a pool of threads, each driving its own
+ * {@link TermFrequencyMapper}. The document frequencies of all documents seen so far are kept in a
+ * {@link ConcurrentTermCounter}. For every input file the driver writes a file of the same name with one
+ * "docId term:weight,..." line per document to the output directory, in the format of {@link WeightVectorPlan}, so
+ * the output directory can be loaded by {@link SimilarityIndex#load(String)}. The weights are computed as in
+ * {@link TfIdfMatcher} with the document frequencies and document count at the time the document arrives; the weights
+ * of earlier documents are not updated.
+ * <p>
+ * Producers should write a file under a name starting with "." or "_", which is ignored, and rename it when it is
+ * complete. Output files are published the same way.
+ * <p>
+ * The document frequencies, the document count and the names of the processed files are periodically written to a
+ * snapshot file, from which the driver resumes after a restart. A snapshot only contains files whose output has been
+ * published completely. If a file fails, its documents are subtracted from the counts again, so that it is counted
+ * only once when it is picked up again by a later scan or after a restart.
+ */
+public class StreamingTfIdfDriver {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String SNAPSHOT_FILE = "snapshot";
+
+	private final Path inputDirectory;
+
+	private final Path outputDirectory;
+
+	private final Path snapshotDirectory;
+
+	private final long snapshotIntervalMillis;
+
+	private final Configuration parameters;
+
+	private final ConcurrentTermCounter documentFrequencies = new ConcurrentTermCounter(64);
+
+	private final AtomicLong numDocuments = new AtomicLong();
+
+	private final Set<String> processedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final Set<String> submittedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	// files are processed under the read lock, snapshots are taken under the write lock
+	private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+	private final ExecutorService workers;
+
+	private final ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor();
+
+	private final ThreadLocal<DocumentProcessor> processors = new ThreadLocal<DocumentProcessor>();
+
+	private WatchService watchService;
+
+	private Thread watcher;
+
+	/**
+	 * Creates a driver with the given directories.
+	 *
+	 * @param numThreads
+	 *        Number of threads that process new files
+	 * @param snapshotIntervalMillis
+	 *        Time between two snapshots
+	 * @param parameters
+	 *        Parameters of the mappers, e.g. {@link StopWords#PATH_PARAMETER}
+	 */
+	public StreamingTfIdfDriver(String inputDirectory, String outputDirectory, String snapshotDirectory,
+			int numThreads, long snapshotIntervalMillis, Configuration parameters) {
+		this.inputDirectory = Paths.get(inputDirectory);
+		this.outputDirectory = Paths.get(outputDirectory);
+		this.snapshotDirectory = Paths.get(snapshotDirectory);
+		this.snapshotIntervalMillis = snapshotIntervalMillis;
+		this.parameters = parameters;
+		this.workers = Executors.newFixedThreadPool(numThreads);
+	}
+
+	/**
+	 * Restores the last snapshot, processes the files that are already in the input directory and starts watching it.
+	 */
+	public void start() throws IOException {
+		Files.createDirectories(this.inputDirectory);
+		Files.createDirectories(this.outputDirectory);
+		Files.createDirectories(this.snapshotDirectory);
+
+		restore();
+
+		// the directory is registered before it is scanned, so no file is missed
+		this.watchService = this.inputDirectory.getFileSystem().newWatchService();
+		this.inputDirectory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE);
+		scan();
+
+		this.watcher = new Thread("Input Directory Watcher") {
+			@Override
+			public void run() {
+				watch();
+			}
+		};
+		this.watcher.start();
+
+		this.snapshotter.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					snapshot();
+				} catch (IOException e) {
+					System.err.println("Snapshot failed: " + e);
+				}
+			}
+		}, this.snapshotIntervalMillis, this.snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops watching, finishes the submitted files and takes a final snapshot.
+	 */
+	public void stop() throws IOException, InterruptedException {
+		this.watchService.close();
+		this.watcher.join();
+
+		this.workers.shutdown();
+		this.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+		this.snapshotter.shutdown();
+		this.snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		snapshot();
+	}
+
+	/**
+	 * Returns the number of documents processed so far.
+	 */
+	public long getNumDocuments() {
+		return this.numDocuments.get();
+	}
+
+	/**
+	 * Returns the number of files that have been submitted but not been processed yet.
+	 */
+	public int getNumPendingFiles() {
+		return this.submittedFiles.size() - this.processedFiles.size();
+	}
+
+	// - Watching -----------------------------------------------------------------------------------------------------
+
+	private void watch() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = this.watchService.take();
+			} catch (InterruptedException e) {
+				return;
+			} catch (ClosedWatchServiceException e) {
+				return;
+			}
+
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					scan();
+				} else {
+					submit(this.inputDirectory.resolve((Path) event.context()));
+				}
+			}
+			if (!key.reset()) {
+				return;
+			}
+		}
+	}
+
+	private void scan() {
+		try {
+			DirectoryStream<Path> files = Files.newDirectoryStream(this.inputDirectory);
+			try {
+				for (Path file : files) {
+					submit(file);
+				}
+			} finally {
+				files.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to list " + this.inputDirectory + ": " + e);
+		}
+	}
+
+	private void submit(final Path file) {
+		final String name = file.getFileName().toString();
+		if (name.startsWith(".") || name.startsWith("_") || !Files.isRegularFile(file)
+			|| this.processedFiles.contains(name) || !this.submittedFiles.add(name)) {
+			return;
+		}
+
+		this.workers.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					processor().process(file);
+				} catch (Exception e) {
+					System.err.println("Failed to process " + file + ": " + e);
+					StreamingTfIdfDriver.this.submittedFiles.remove(name);
+				}
+			}
+		});
+	}
+
+	private DocumentProcessor processor() throws Exception {
+		DocumentProcessor processor = this.processors.get();
+		if (processor == null) {
+			processor = new DocumentProcessor();
+			this.processors.set(processor);
+		}
+		return processor;
+	}
+
+	// - Processing ---------------------------------------------------------------------------------------------------
+
+	/**
+	 * Tokenizes the documents of a file with a {@link TermFrequencyMapper} and publishes their weight vectors. Every
+	 * worker thread has its own processor.
+	 */
+	private final class DocumentProcessor implements Collector<Record> {
+
+		private final TermFrequencyMapper mapper = new TermFrequencyMapper();
+
+		// (docId, body) input record of the mapper
+		private final IntValue lineDocId = new IntValue();
+
+		private final StringValue body = new StringValue();
+
+		private final Record document = new Record(2);
+
+		// (term, tf) of the current document, collected from the mapper
+		private final TermIntMap terms = new TermIntMap();
+
+		private final IntValue docId = new IntValue();
+
+		private final StringValue term = new StringValue();
+
+		private final IntValue termFrequency = new IntValue();
+
+		private final WeightVector vector = new WeightVector();
+
+		private final StringBuilder output = new StringBuilder();
+
+		// document frequency increments and number of documents of the current file, subtracted again if it fails
+		private final TermIntMap fileTerms = new TermIntMap();
+
+		private long fileDocuments;
+
+		DocumentProcessor() throws Exception {
+			this.mapper.open(StreamingTfIdfDriver.this.parameters);
+		}
+
+		void process(Path file) throws IOException {
+			List<String> lines = Files.readAllLines(file, UTF_8);
+			String name = file.getFileName().toString();
+
+			this.output.setLength(0);
+			this.fileTerms.clear();
+			this.fileDocuments = 0;
+
+			// the file is counted, published and marked as processed under the read lock, so a snapshot either
+			// contains all of it or nothing
+			StreamingTfIdfDriver.this.stateLock.readLock().lock();
+			Path temporary = StreamingTfIdfDriver.this.outputDirectory.resolve("." + name);
+			boolean published = false;
+			try {
+				for (String line : lines) {
+					if (!line.isEmpty()) {
+						processDocument(line, file);
+					}
+				}
+
+				BufferedWriter writer = Files.newBufferedWriter(temporary, UTF_8);
+				try {
+					writer.append(this.output);
+				} finally {
+					writer.close();
+				}
+				Files.move(temporary, StreamingTfIdfDriver.this.outputDirectory.resolve(name),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				StreamingTfIdfDriver.this.processedFiles.add(name);
+				published = true;
+			} finally {
+				if (!published) {
+					rollBack();
+					Files.deleteIfExists(temporary);
+				}
+				StreamingTfIdfDriver.this.stateLock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Subtracts the counts of the current file, which has not been published.
+		 */
+		private void rollBack() {
+			for (int i = 0; i < this.fileTerms.size(); i++) {
+				StreamingTfIdfDriver.this.documentFrequencies.add(this.fileTerms.keyChars(), this.fileTerms.keyOffset(i),
+					this.fileTerms.keyLength(i), -this.fileTerms.value(i));
+			}
+			StreamingTfIdfDriver.this.numDocuments.addAndGet(-this.fileDocuments);
+			this.fileTerms.clear();
+			this.fileDocuments = 0;
+		}
+
+		private void processDocument(String line, Path file) {
+			this.terms.clear();
+			this.docId.setValue(-1);
+
+			if (!DocumentInputFormat.parse(line, this.lineDocId, this.body)) {
+				System.err.println("Skipping malformed document in " + file + ": " + line);
+				return;
+			}
+			this.document.setField(0, this.lineDocId);
+			this.document.setField(1, this.body);
+			this.mapper.map(this.document, this);
+
+			double numDocuments = StreamingTfIdfDriver.this.numDocuments.incrementAndGet();
+			this.fileDocuments++;
+			if (this.terms.size() == 0) {
+				return;
+			}
+
+			// the document frequencies include the current document, as in the batch plan
+			this.vector.clear();
+			this.vector.setDocId(this.docId.getValue());
+			for (int i = 0; i < this.terms.size(); i++) {
+				char[] chars = this.terms.keyChars();
+				int offset = this.terms.keyOffset(i);
+				int length = this.terms.keyLength(i);
+
+				int df = StreamingTfIdfDriver.this.documentFrequencies.add(chars, offset, length, 1);
+				this.fileTerms.add(chars, offset, length, 1);
+				this.vector.add(chars, offset, length, this.terms.value(i) * Math.log(numDocuments / df));
+			}
+
+			this.output.append(this.docId.getValue()).append(' ').append(this.vector).append('\n');
+		}
+
+		/**
+		 * Receives the (docId, term, tf) records of the mapper.
+		 */
+		@Override
+		public void collect(Record record) {
+			this.docId.setValue(record.getField(0, IntValue.class).getValue());
+			StringValue term = record.getField(1, this.term);
+			int tf = record.getField(2, this.termFrequency).getValue();
+			this.terms.put(term.getCharArray(), 0, term.length(), tf);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// - Snapshots ----------------------------------------------------------------------------------------------------
+
+	/**
+	 * Writes the document frequencies, the document count and the names of the processed files to the snapshot file,
+	 * which is replaced atomically.
+	 */
+	public void snapshot() throws IOException {
+		TermIntMap documentFrequencies;
+		long numDocuments;
+		List<String> files;
+
+		this.stateLock.writeLock().lock();
+		try {
+			documentFrequencies = this.documentFrequencies.copy();
+			numDocuments = this.numDocuments.get();
+			files = new ArrayList<String>(this.processedFiles);
+		} finally {
+			this.stateLock.writeLock().unlock();
+		}
+
+		Path temporary = this.snapshotDirectory.resolve("." + SNAPSHOT_FILE);
+		BufferedWriter writer = Files.newBufferedWriter(temporary, UTF_8);
+		try {
+			writer.append("count ").append(Long.toString(numDocuments)).append('\n');
+			for (String file : files) {
+				writer.append("file ").append(file).append('\n');
+			}
+			for (int i = 0; i < documentFrequencies.size(); i++) {
+				if (documentFrequencies.value(i) == 0) {
+					// only counted by files that failed
+					continue;
+				}
+				writer.append("df ").append(documentFrequencies.keyToString(i)).append(' ')
+					.append(Integer.toString(documentFrequencies.value(i))).append('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		Files.move(temporary, this.snapshotDirectory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void restore() throws IOException {
+		Path snapshot = this.snapshotDirectory.resolve(SNAPSHOT_FILE);
+		if (!Files.exists(snapshot)) {
+			return;
+		}
+
+		BufferedReader reader = Files.newBufferedReader(snapshot, UTF_8);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("count ")) {
+					this.numDocuments.set(Long.parseLong(line.substring(6)));
+				} else if (line.startsWith("file ")) {
+					this.processedFiles.add(line.substring(5));
+					this.submittedFiles.add(line.substring(5));
+				} else if (line.startsWith("df ")) {
+					int separator = line.lastIndexOf(' ');
+					char[] term = line.substring(3, separator).toCharArray();
+					int df = Integer.parseInt(line.substring(separator + 1));
+					this.documentFrequencies.add(term, 0, term.length, df);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Runs the driver until the JVM is shut down, after which a final snapshot is taken.
+	 * <p>
+	 * Usage: [inputDirectory] [outputDirectory] [snapshotDirectory] ([-snapshotInterval=[seconds]])
+	 * ([-threads=[numThreads]]) ([-stopWords=[path]])
+	 * <p>
+	 * Without arguments, a demo runs on temporary directories.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			demo();
+			return;
+		}
+
+		Configuration parameters = new Configuration();
+		String stopWords = Util.getOption(args, "-stopWords", null);
+		if (stopWords != null) {
+			parameters.setString(StopWords.PATH_PARAMETER, stopWords);
+		}
+
+		final StreamingTfIdfDriver driver = new StreamingTfIdfDriver(args[0], args[1], args[2],
+			Integer.parseInt(Util.getOption(args, "-threads", Integer.toString(
+				Runtime.getRuntime().availableProcessors()))),
+			1000L * Integer.parseInt(Util.getOption(args, "-snapshotInterval", "60")), parameters);
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					driver.stop();
+				} catch (Exception e) {
+					System.err.println("Failed to stop: " + e);
+				}
+			}
+		});
+		driver.start();
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	private static void demo() throws Exception {
+		File directory = Files.createTempDirectory("streaming").toFile();
+		String input = new File(directory, "input").getPath();
+		String output = new File(directory, "output").getPath();
+		String snapshots = new File(directory, "snapshots").getPath();
+
+		StreamingTfIdfDriver driver = new StreamingTfIdfDriver(input, output, snapshots, 2, 1000, new Configuration());
+		driver.start();
+		write(input, "1.txt", "1,Big Hello to Stratosphere! :-)");
+		awaitDocuments(driver, 1);
+		write(input, "2.txt", "2,Hello to Big Big Data.");
+		awaitDocuments(driver, 2);
+		driver.stop();
+
+		// a restarted driver continues with the document frequencies of the snapshot
+		driver = new StreamingTfIdfDriver(input, output, snapshots, 2, 1000, new Configuration());
+		driver.start();
+		write(input, "3.txt", "3,Big Data with Stratosphere.");
+		awaitDocuments(driver, 3);
+		driver.stop();
+
+		// a file whose output cannot be published, because a directory is in the way, is not counted
+		Path blocker = Files.createDirectories(Paths.get(output, "4.txt", "blocker"));
+		write(input, "4.txt", "4,Big Big Data.");
+		driver = new StreamingTfIdfDriver(input, output, snapshots, 2, 1000, new Configuration());
+		driver.start();
+		awaitDocuments(driver, 3);
+		driver.stop();
+		if (driver.getNumDocuments() != 3) {
+			throw new IllegalStateException(driver.getNumDocuments() + " documents counted after a failed file");
+		}
+
+		// and is counted once when it is processed again after a restart
+		Files.delete(blocker);
+		Files.delete(blocker.getParent());
+		driver = new StreamingTfIdfDriver(input, output, snapshots, 2, 1000, new Configuration());
+		driver.start();
+		awaitDocuments(driver, 4);
+		driver.stop();
+		if (driver.getNumDocuments() != 4) {
+			throw new IllegalStateException(driver.getNumDocuments() + " documents counted after the restart");
+		}
+
+		// Results should be:
+		// 1.txt: 1 big:0.0,hello:0.0,stratosphere:0.0 (the first document alone)
+		// 2.txt: 2 hello:0.0,big:0.0,data:0.69...
+		// 3.txt: 3 big:0.0,data:0.40...,stratosphere:0.40...
+		// 4.txt: 4 big:0.0,data:0.28...
+		for (String name : new String[] { "1.txt", "2.txt", "3.txt", "4.txt" }) {
+			for (String line : Files.readAllLines(Paths.get(output, name), UTF_8)) {
+				System.out.println(name + ": " + line);
+			}
+		}
+		System.out.println("Snapshot in " + snapshots);
+	}
+
+	/**
+	 * Writes a file under a temporary name and renames it, as producers should.
+	 */
+	private static void write(String directory, String name, String contents) throws IOException {
+		Path temporary = Paths.get(directory, "." + name);
+		Files.write(temporary, contents.getBytes(UTF_8));
+		Files.move(temporary, Paths.get(directory, name), StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void awaitDocuments(StreamingTfIdfDriver driver, long numDocuments) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while ((driver.getNumDocuments() < numDocuments || driver.getNumPendingFiles() > 0)
+			&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
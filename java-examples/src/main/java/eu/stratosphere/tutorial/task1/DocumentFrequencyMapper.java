@@ -15,15 +15,20 @@
 package eu.stratosphere.tutorial.task1;
 
 import eu.stratosphere.api.java.record.functions.MapFunction;
-import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.OperatorMetrics;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
 import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
 import eu.stratosphere.types.Record;
 import eu.stratosphere.types.StringValue;
 import eu.stratosphere.util.Collector;
 
-import java.util.HashSet;
-import java.util.StringTokenizer;
-
 /**
  * This mapper is part of the document frequency computation.
  * <p/>
@@ -42,15 +47,95 @@ import java.util.StringTokenizer;
  * total). "Hello" has a document frequency of 1, because it only appears in document 2.
  * <p/>
  * The map method will be called independently for each document.
+ * <p/>
+ * With the {@link #HOT_TERMS} and {@link #NUM_SALTS} parameters the mapper emits (term, 1, salt) records, see
+ * {@link eu.stratosphere.tutorial.skew.TermSalting}: the records of the hot terms get the salts 0 to NUM_SALTS - 1 in
+ * turn, all other records the salt 0.
+ * <p/>
+ * With the {@link NGrams} parameters the terms are the n-grams of the document instead of its tokens, as text or as
+ * 64 bit IDs.
  */
 public class DocumentFrequencyMapper extends MapFunction {
 
+    /**
+     * Parameter key of the hot terms, one per line because n-grams contain spaces, whose records are spread over
+     * {@link #NUM_SALTS} salts.
+     */
+    public static final String HOT_TERMS = "df.salt.terms";
+
+    /**
+     * Parameter key of the number of salts of the hot terms. If set, the mapper appends the salt to every record.
+     */
+    public static final String NUM_SALTS = "df.salt.count";
+
     // ----------------------------------------------------------------------------------------------------------------
 
+    private final Tokenizer tokenizer = new Tokenizer();
+
+    private final TermIntMap repeatWords = new TermIntMap();
+
+    // output holders, reused for every emitted record
+    private final Record result = new Record(2);
+
+    private final StringValue term = new StringValue();
+
+    private final IntValue termId = new IntValue();
+
+    private final LongValue ngramId = new LongValue();
+
+    private final IntValue one = new IntValue(1);
+
+    private final IntValue salt = new IntValue();
+
+    private StopWords stopWords;
+
+    private TermDictionary dictionary;
+
+    private NGrams ngrams;
+
+    private boolean hashed;
+
+    private final TermIntMap hotTerms = new TermIntMap();
+
+    private int numSalts;
+
+    private int nextSalt;
+
+    private final OperatorMetrics metrics = new OperatorMetrics("DocumentFrequencyMapper");
+
+    /**
+     * Loads the stop words and, if the plan uses one, the term dictionary. In the latter case the mapper emits
+     * (termId, 1) records.
+     */
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        stopWords = StopWords.fromParameters(parameters);
+        String dictionaryPath = parameters.getString(TermDictionary.PATH_PARAMETER, null);
+        dictionary = dictionaryPath == null ? null : TermDictionary.load(dictionaryPath);
+        ngrams = NGrams.fromParameters(parameters);
+        hashed = parameters.getBoolean(NGrams.HASHED, false);
+
+        metrics.open(this);
+
+        numSalts = parameters.getInteger(NUM_SALTS, 0);
+        hotTerms.clear();
+        for (String hotTerm : parameters.getString(HOT_TERMS, "").split("\n")) {
+            if (!hotTerm.isEmpty()) {
+                hotTerms.put(hotTerm.toCharArray(), 0, hotTerm.length(), 1);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        metrics.close();
+    }
+
     /**
      * Splits the document into terms and emits a PactRecord (term, 1) for each term of the document.
      * <p/>
-     * Each input document has the format "docId, document contents".
+     * Each input document is a (docId, document contents) record of the {@link DocumentInputFormat}, read from a line
+     * "docId,document contents".
      * <p/>
      * Example:
      * <p/>
@@ -71,33 +156,72 @@ public class DocumentFrequencyMapper extends MapFunction {
      */
     @Override
     public void map(Record record, Collector<Record> collector) {
-        // Document with format "docId, document contents"
-        String document = record.getField(0, StringValue.class).toString();
-
-        // need to avoid the docId
-        String data[] = document.split(",");
-        document = data[1];
+        metrics.begin();
+        collector = metrics.count(collector);
 
-        //1,Big Hello to Stratosphere! :-)   ->    1 big hello to stratosphere
-        document = document.replaceAll("\\W", " ").toLowerCase();
+        // Document with format (docId, document contents), see DocumentInputFormat
+        StringValue body = record.getField(1, StringValue.class);
+        metrics.recordIn();
+        metrics.chars(body.length());
 
-        StringTokenizer tokenizer = new StringTokenizer(document);
-
-        HashSet<String> stopWords = Util.STOP_WORDS;
-        HashSet<String> repeatWords = new HashSet<String>();
+        //Big Hello to Stratosphere! :-)   ->    big hello to stratosphere
+        tokenizer.reset(body, 0, body.length());
 
         //not to occur same word more than one time in a document
-        while (tokenizer.hasMoreElements()) {
-            String word = tokenizer.nextToken();
-            repeatWords.add(word);
+        repeatWords.clear();
+        if (ngrams != null) {
+            ngrams.reset();
         }
-
-        for(String word : repeatWords){
+        int tokens = 0;
+        while (tokenizer.next()) {
+            tokens++;
             //to check whether avoided words are there
-            if (stopWords.contains(word.toString())) {
+            if (stopWords.contains(tokenizer.buffer(), 0, tokenizer.length())) {
                 continue;
             }
-            collector.collect(new Record(new StringValue(word), new IntValue(1)));
+            if (ngrams == null) {
+                repeatWords.put(tokenizer.buffer(), 0, tokenizer.length(), 1);
+            } else {
+                ngrams.add(tokenizer.buffer(), 0, tokenizer.length());
+                for (int n = 0; n < ngrams.size(); n++) {
+                    repeatWords.put(ngrams.buffer(), ngrams.offset(n), ngrams.length(n), 1);
+                }
+            }
         }
+        metrics.tokens(tokens);
+
+        for (int i = 0; i < repeatWords.size(); i++) {
+            if (hashed) {
+                ngramId.setValue(NGrams.id(repeatWords.keyChars(), repeatWords.keyOffset(i), repeatWords.keyLength(i)));
+                result.setField(0, ngramId);
+            } else if (dictionary == null) {
+                repeatWords.copyKeyTo(i, term);
+                result.setField(0, term);
+            } else {
+                int id = dictionary.getId(repeatWords.keyChars(), repeatWords.keyOffset(i), repeatWords.keyLength(i));
+                if (id < 0) {
+                    // reported by the metrics, a stale dictionary silently changes the frequencies otherwise
+                    metrics.unknownTerm();
+                    continue;
+                }
+                termId.setValue(id);
+                result.setField(0, termId);
+            }
+            result.setField(1, one);
+            if (numSalts > 0) {
+                // the hot terms take the salts in turn, so each of their (term, salt) groups gets an equal share
+                int hot = hotTerms.get(repeatWords.keyChars(), repeatWords.keyOffset(i), repeatWords.keyLength(i), 0);
+                if (hot != 0) {
+                    salt.setValue(nextSalt);
+                    nextSalt = nextSalt + 1 == numSalts ? 0 : nextSalt + 1;
+                } else {
+                    salt.setValue(0);
+                }
+                result.setField(2, salt);
+            }
+            collector.collect(result);
+        }
+
+        metrics.end();
     }
-}
\ No newline at end of file
+}
@@ -19,13 +19,16 @@ import eu.stratosphere.api.common.Program;
 import eu.stratosphere.api.common.ProgramDescription;
 import eu.stratosphere.api.common.operators.FileDataSink;
 import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.Operator;
 import eu.stratosphere.api.java.record.io.CsvOutputFormat;
-import eu.stratosphere.api.java.record.io.TextInputFormat;
 import eu.stratosphere.api.java.record.operators.MapOperator;
-import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.tutorial.cache.DatasetCache;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.skew.TermSalting;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.StopWords;
 import eu.stratosphere.tutorial.util.Util;
 import eu.stratosphere.types.IntValue;
-import eu.stratosphere.types.StringValue;
 
 /**
  * Task 1: Plan for document frequency computation.
@@ -34,7 +37,8 @@ public class DocumentFrequencyPlan implements Program, ProgramDescription {
 
 	@Override
 	public String getDescription() {
-		return "Usage: [inputPath] [outputPath] ([numSubtasks])";
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) ([-stopWords=[path]]) ([-salts=[count]])"
+			+ " ([-hotShare=[share]]) ([-cache=[cacheDir]]) ([-ngrams=[n]|[min]-[max]]) ([-hashNgrams])";
 	}
 
 	@Override
@@ -42,30 +46,36 @@ public class DocumentFrequencyPlan implements Program, ProgramDescription {
 
 		String inputPath = args.length >= 1 ? args[0] : "";
 		String outputPath = args.length >= 2 ? args[1] : "";
-		int numSubtasks = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+		int numSubtasks = Util.getNumSubtasks(args);
 
-		FileDataSource source = new FileDataSource(new TextInputFormat(), inputPath, "Input Documents");
+		DatasetCache cache = DatasetCache.fromArgs(inputPath, numSubtasks, args);
+		String[] mapperConfig = cache.mapperConfig(args, null);
 
 		// - Task 1: Document Frequency -------------------------------------------------------------------------------
 
-		MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
-			.input(source)
-			.name("Document Frequency Mapper")
-			.build();
+		Operator dfReducer = cache.read(DatasetCache.DOCUMENT_FREQUENCIES, mapperConfig);
+		if (dfReducer == null) {
+			FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
 
-		ReduceOperator dfReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, StringValue.class, 0)
-			.input(dfMapper)
-			.name("Document Frequency Reducer")
-			.build();
+			MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
+				.input(source)
+				.name("Document Frequency Mapper")
+				.build();
+			StopWords.configure(dfMapper, args);
+			NGrams.configure(dfMapper, args);
+
+			dfReducer = cache.write(DatasetCache.DOCUMENT_FREQUENCIES, mapperConfig,
+				TermSalting.reduce(dfMapper, inputPath, numSubtasks, args));
+		}
 
 		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, dfReducer, "Document Frequencies");
 		CsvOutputFormat.configureRecordFormat(sink)
 			.recordDelimiter('\n')
 			.fieldDelimiter(' ')
-			.field(StringValue.class, 0) // term
+			.field(NGrams.termType(args), 0) // term, or n-gram ID
 			.field(IntValue.class, 1); // document frequency
 
-		Plan plan = new Plan(sink, "Document Frequency Computation");
+		Plan plan = new Plan(cache.sinks(sink), "Document Frequency Computation");
 		plan.setDefaultParallelism(numSubtasks);
 
 		return plan;
@@ -35,6 +35,8 @@ import eu.stratosphere.util.Collector;
 @ConstantFields(0)
 public class DocumentFrequencyReducer extends ReduceFunction {
 
+	private final IntValue documentFrequency = new IntValue();
+
 	// ----------------------------------------------------------------------------------------------------------------
 
 	/**
@@ -55,7 +57,8 @@ public class DocumentFrequencyReducer extends ReduceFunction {
             int count = record.getField(1, IntValue.class).getValue();
             sum += count;
         }
-        record.setField(1,new IntValue(sum));
+        documentFrequency.setValue(sum);
+        record.setField(1, documentFrequency);
         collector.collect(record);
 
 	}
@@ -15,15 +15,20 @@
 package eu.stratosphere.tutorial.task2;
 
 import eu.stratosphere.api.java.record.functions.MapFunction;
-import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.OperatorMetrics;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
 import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
 import eu.stratosphere.types.Record;
 import eu.stratosphere.types.StringValue;
 import eu.stratosphere.util.Collector;
 
-import java.util.*;
-
-
 /**
  * This mapper computes the term frequency for each term in a document.
  * <p>
@@ -40,65 +45,125 @@ import java.util.*;
  * The term frequency of "Big" in document 1 is 3 and 1 in document 2.
  * <p>
  * The map method will be called independently for each document.
+ * <p>
+ * With the {@link NGrams} parameters the terms are the n-grams of the document instead of its tokens, as text or as
+ * 64 bit IDs.
  */
 public class TermFrequencyMapper extends MapFunction {
 
 	// ----------------------------------------------------------------------------------------------------------------
 
-	/**
-	 * Splits the document into terms and emits a PactRecord (docId, term, tf) for each term of the document.
-	 * <p>
-	 * Each input document has the format "docId, document contents".
-	 */
     private final Record result = new Record(3);  //define 3 parameter Record
 
-	@Override
-	public void map(Record record, Collector<Record> collector) {
-        // Document with format "docId, document contents"
-        String document = record.getField(0, StringValue.class).toString();
+    private final Tokenizer tokenizer = new Tokenizer();
 
-        // need to avoid the docId
-        String data[] = document.split(",");
-        int docID = Integer.parseInt(data[0]);
+    private final TermIntMap terms = new TermIntMap();
 
-        //String docID = data[0];
-        document = data[1];
+    private final IntValue docId = new IntValue();
 
-        //1,Big Hello to Stratosphere! :-)   ->    1 big hello to stratosphere
-        document = document.replaceAll("\\W", " ").toLowerCase();
+    private final StringValue term = new StringValue();
 
-        StringTokenizer tokenizer = new StringTokenizer(document);
-        HashSet<String> stopWords = Util.STOP_WORDS;
-        Map<String,Integer> map = new HashMap<String,Integer>();   //to identify the frequency of each word in the document
+    private final IntValue termId = new IntValue();
 
-        int co = 1;
-        while (tokenizer.hasMoreElements()) {
+    private final LongValue ngramId = new LongValue();
 
-            String word = tokenizer.nextToken();
-            if (stopWords.contains(word.toString())) {
-                continue;
-            }
+    private final IntValue termFrequency = new IntValue();
+
+    private StopWords stopWords;
+
+    private TermDictionary dictionary;
+
+    private NGrams ngrams;
+
+    private boolean hashed;
+
+    private final OperatorMetrics metrics = new OperatorMetrics("TermFrequencyMapper");
 
-            if(map.containsKey(word)){     //if the word added previously increment the count by one
-                co++;
-                map.put(word,co);
+    /**
+     * Loads the stop words and, if the plan uses one, the term dictionary. In the latter case the mapper emits
+     * (docId, termId, tf) records.
+     */
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        stopWords = StopWords.fromParameters(parameters);
+        String dictionaryPath = parameters.getString(TermDictionary.PATH_PARAMETER, null);
+        dictionary = dictionaryPath == null ? null : TermDictionary.load(dictionaryPath);
+        ngrams = NGrams.fromParameters(parameters);
+        hashed = parameters.getBoolean(NGrams.HASHED, false);
+        metrics.open(this);
+    }
+
+    @Override
+    public void close() throws Exception {
+        metrics.close();
+    }
+
+	/**
+	 * Splits the document into terms and emits a PactRecord (docId, term, tf) for each term of the document.
+	 * <p>
+	 * Each input document is a (docId, document contents) record of the {@link DocumentInputFormat}.
+	 */
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+        metrics.begin();
+        collector = metrics.count(collector);
+
+        // Document with format (docId, document contents), see DocumentInputFormat
+        int docID = record.getField(0, IntValue.class).getValue();
+        StringValue body = record.getField(1, StringValue.class);
+        metrics.recordIn();
+        metrics.chars(body.length());
+
+        //Big Hello to Stratosphere! :-)   ->    big hello to stratosphere
+        tokenizer.reset(body, 0, body.length());
+
+        //to identify the frequency of each word in the document
+        terms.clear();
+        if (ngrams != null) {
+            ngrams.reset();
+        }
+        int tokens = 0;
+        while (tokenizer.next()) {
+            tokens++;
+            if (stopWords.contains(tokenizer.buffer(), 0, tokenizer.length())) {
+                continue;
             }
-            else {                  //add a new word to the map
-                co = 1;
-                map.put(word,co);
+            if (ngrams == null) {
+                terms.add(tokenizer.buffer(), 0, tokenizer.length(), 1);
+            } else {
+                ngrams.add(tokenizer.buffer(), 0, tokenizer.length());
+                for (int n = 0; n < ngrams.size(); n++) {
+                    terms.add(ngrams.buffer(), ngrams.offset(n), ngrams.length(n), 1);
+                }
             }
         }
-
-        Iterator iterator = map.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry pairs = (Map.Entry)iterator.next();
-            String word = pairs.getKey().toString();
-            int occur = Integer.parseInt(pairs.getValue().toString());
-
-            result.setField(0,new IntValue(docID));
-            result.setField(1, new StringValue(word));
-            result.setField(2, new IntValue(occur));
+        metrics.tokens(tokens);
+
+        docId.setValue(docID);
+
+        for (int i = 0; i < terms.size(); i++) {
+            result.setField(0, docId);
+            if (hashed) {
+                ngramId.setValue(NGrams.id(terms.keyChars(), terms.keyOffset(i), terms.keyLength(i)));
+                result.setField(1, ngramId);
+            } else if (dictionary == null) {
+                terms.copyKeyTo(i, term);
+                result.setField(1, term);
+            } else {
+                int id = dictionary.getId(terms.keyChars(), terms.keyOffset(i), terms.keyLength(i));
+                if (id < 0) {
+                    // reported by the metrics, a stale dictionary silently changes the frequencies otherwise
+                    metrics.unknownTerm();
+                    continue;
+                }
+                termId.setValue(id);
+                result.setField(1, termId);
+            }
+            termFrequency.setValue(terms.value(i));
+            result.setField(2, termFrequency);
             collector.collect(result);
         }
+
+        metrics.end();
     }
-}
\ No newline at end of file
+}
@@ -19,12 +19,15 @@ import eu.stratosphere.api.common.Program;
 import eu.stratosphere.api.common.ProgramDescription;
 import eu.stratosphere.api.common.operators.FileDataSink;
 import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.Operator;
 import eu.stratosphere.api.java.record.io.CsvOutputFormat;
-import eu.stratosphere.api.java.record.io.TextInputFormat;
 import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.tutorial.cache.DatasetCache;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.StopWords;
 import eu.stratosphere.tutorial.util.Util;
 import eu.stratosphere.types.IntValue;
-import eu.stratosphere.types.StringValue;
 
 /**
  * Task 2: Plan for term frequency computation.
@@ -33,7 +36,8 @@ public class TermFrequencyPlan implements Program, ProgramDescription {
 
 	@Override
 	public String getDescription() {
-		return "Usage: [inputPath] [outputPath] ([numSubtasks])";
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) ([-stopWords=[path]]) ([-cache=[cacheDir]])"
+			+ " ([-ngrams=[n]|[min]-[max]]) ([-hashNgrams])";
 	}
 
 	@Override
@@ -41,26 +45,35 @@ public class TermFrequencyPlan implements Program, ProgramDescription {
 
 		String inputPath = args.length >= 1 ? args[0] : "";
 		String outputPath = args.length >= 2 ? args[1] : "";
-		int numSubtasks = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+		int numSubtasks = Util.getNumSubtasks(args);
 
-		FileDataSource source = new FileDataSource(new TextInputFormat(), inputPath, "Input Documents");
+		DatasetCache cache = DatasetCache.fromArgs(inputPath, numSubtasks, args);
+		String[] mapperConfig = cache.mapperConfig(args, null);
 
 		// - Task 2: Term Frequency -----------------------------------------------------------------------------------
 
-		MapOperator tfMapper = MapOperator.builder(TermFrequencyMapper.class)
-			.input(source)
-			.name("Term Frequency Mapper")
-			.build();
+		Operator tfMapper = cache.read(DatasetCache.TERM_FREQUENCIES, mapperConfig);
+		if (tfMapper == null) {
+			FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
+
+			tfMapper = MapOperator.builder(TermFrequencyMapper.class)
+				.input(source)
+				.name("Term Frequency Mapper")
+				.build();
+			StopWords.configure(tfMapper, args);
+			NGrams.configure(tfMapper, args);
+			cache.write(DatasetCache.TERM_FREQUENCIES, mapperConfig, tfMapper);
+		}
 
 		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, tfMapper, "Term Frequencies");
 		CsvOutputFormat.configureRecordFormat(sink)
 			.recordDelimiter('\n')
 			.fieldDelimiter(' ')
 			.field(IntValue.class, 0) // document ID
-			.field(StringValue.class, 1) // term d
+			.field(NGrams.termType(args), 1) // term, or n-gram ID
 			.field(IntValue.class, 2); // term frequency
 
-		Plan plan = new Plan(sink, "Term Frequency Computation");
+		Plan plan = new Plan(cache.sinks(sink), "Term Frequency Computation");
 		plan.setDefaultParallelism(numSubtasks);
 
 		return plan;
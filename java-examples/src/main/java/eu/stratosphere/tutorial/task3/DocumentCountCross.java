@@ -0,0 +1,38 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task3;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.api.java.record.functions.FunctionAnnotation.ConstantFieldsFirst;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Attaches the total number of documents to every (term, df) record, which gives the (term, df, numDocuments) records
+ * that {@link TfIdfMatcher} needs for the inverse document frequency.
+ * <p>
+ * The second input is the single (numDocuments) record of the {@link DocumentCountReducer}, which is broadcast to all
+ * subtasks.
+ */
+@ConstantFieldsFirst({ 0, 1 })
+public class DocumentCountCross extends CrossFunction {
+
+	@Override
+	public void cross(Record dfRecord, Record countRecord, Collector<Record> collector) throws Exception {
+		dfRecord.setField(2, countRecord.getField(0, LongValue.class));
+		collector.collect(dfRecord);
+	}
+}
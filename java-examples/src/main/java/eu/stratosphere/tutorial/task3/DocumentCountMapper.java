@@ -0,0 +1,34 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task3;
+
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This mapper is part of the document count computation. It emits a record (1) for each document, which the
+ * {@link DocumentCountReducer} adds up.
+ */
+public class DocumentCountMapper extends MapFunction {
+
+	private final Record one = new Record(new LongValue(1));
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		collector.collect(this.one);
+	}
+}
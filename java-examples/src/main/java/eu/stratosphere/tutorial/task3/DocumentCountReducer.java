@@ -0,0 +1,56 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task3;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.api.java.record.operators.ReduceOperator.Combinable;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer adds up the (count) records emitted by {@link DocumentCountMapper} to the total number of documents.
+ * <p>
+ * It is used as a global (key-less) reduce. Because it is combinable, every mapper subtask only ships a single partial
+ * count. The runtime calls a global reduce also for an empty input, which gives a count of 0, so that the
+ * {@link eu.stratosphere.tutorial.incremental.IncrementalTfIdfPlan} carries its stored state over an empty batch.
+ */
+@Combinable
+public class DocumentCountReducer extends ReduceFunction {
+
+	private final LongValue count = new LongValue();
+
+	private final Record emptyCount = new Record(1);
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		Record record = null;
+		long sum = 0;
+
+		while (records.hasNext()) {
+			record = records.next();
+			sum += record.getField(0, LongValue.class).getValue();
+		}
+		if (record == null) {
+			record = this.emptyCount;
+		}
+
+		this.count.setValue(sum);
+		record.setField(0, this.count);
+		collector.collect(record);
+	}
+}
@@ -0,0 +1,189 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task3;
+
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.OperatorMetrics;
+import eu.stratosphere.tutorial.util.StopWords;
+import eu.stratosphere.tutorial.util.TermIntMap;
+import eu.stratosphere.tutorial.util.Tokenizer;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.types.Value;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This mapper fuses {@link DocumentFrequencyMapper} and {@link TermFrequencyMapper}: every document is tokenized only
+ * once and both kinds of records are emitted from that single pass.
+ * <p>
+ * The records are tagged in their last field, so that a {@link TaggedRecordFilter} can split them into the two logical
+ * outputs again:
+ * <ul>
+ * <li>(term, 1, {@link #DOCUMENT_FREQUENCY}) for each distinct term of the document</li>
+ * <li>(docId, term, tf, {@link #TERM_FREQUENCY}) for each distinct term of the document</li>
+ * </ul>
+ * Like the two mappers, it emits n-grams with the {@link NGrams} parameters.
+ */
+public class FrequencyMapper extends MapFunction {
+
+	/**
+	 * Tag of the (term, 1) document frequency records.
+	 */
+	public static final int DOCUMENT_FREQUENCY = 0;
+
+	/**
+	 * Tag of the (docId, term, tf) term frequency records.
+	 */
+	public static final int TERM_FREQUENCY = 1;
+
+	private final Tokenizer tokenizer = new Tokenizer();
+
+	private final TermIntMap termCounts = new TermIntMap();
+
+	private final StringValue term = new StringValue();
+
+	private final IntValue termId = new IntValue();
+
+	private final LongValue ngramId = new LongValue();
+
+	private final IntValue docId = new IntValue();
+
+	private final IntValue termFrequency = new IntValue();
+
+	private final IntValue one = new IntValue(1);
+
+	private final IntValue dfTag = new IntValue(DOCUMENT_FREQUENCY);
+
+	private final IntValue tfTag = new IntValue(TERM_FREQUENCY);
+
+	private final Record dfRecord = new Record(3);
+
+	private final Record tfRecord = new Record(4);
+
+	private StopWords stopWords;
+
+	private TermDictionary dictionary;
+
+	private NGrams ngrams;
+
+	private boolean hashed;
+
+	private final OperatorMetrics metrics = new OperatorMetrics("FrequencyMapper");
+
+	/**
+	 * Loads the stop words and, if the plan uses one, the term dictionary. In the latter case the mapper emits term IDs
+	 * instead of terms.
+	 */
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.stopWords = StopWords.fromParameters(parameters);
+		String dictionaryPath = parameters.getString(TermDictionary.PATH_PARAMETER, null);
+		this.dictionary = dictionaryPath == null ? null : TermDictionary.load(dictionaryPath);
+		this.ngrams = NGrams.fromParameters(parameters);
+		this.hashed = parameters.getBoolean(NGrams.HASHED, false);
+		this.metrics.open(this);
+	}
+
+	@Override
+	public void close() throws Exception {
+		this.metrics.close();
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Splits the document into terms and emits a document frequency and a term frequency record for each distinct
+	 * term of the document.
+	 * <p>
+	 * Each input document is a (docId, document contents) record of the {@link DocumentInputFormat}.
+	 */
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		this.metrics.begin();
+		collector = this.metrics.count(collector);
+
+		this.docId.setValue(record.getField(0, IntValue.class).getValue());
+		StringValue body = record.getField(1, StringValue.class);
+		this.metrics.recordIn();
+		this.metrics.chars(body.length());
+
+		this.tokenizer.reset(body, 0, body.length());
+		this.termCounts.clear();
+		if (this.ngrams != null) {
+			this.ngrams.reset();
+		}
+
+		int tokens = 0;
+		while (this.tokenizer.next()) {
+			tokens++;
+			if (this.stopWords.contains(this.tokenizer.buffer(), 0, this.tokenizer.length())) {
+				continue;
+			}
+			if (this.ngrams == null) {
+				this.termCounts.add(this.tokenizer.buffer(), 0, this.tokenizer.length(), 1);
+			} else {
+				this.ngrams.add(this.tokenizer.buffer(), 0, this.tokenizer.length());
+				for (int n = 0; n < this.ngrams.size(); n++) {
+					this.termCounts.add(this.ngrams.buffer(), this.ngrams.offset(n), this.ngrams.length(n), 1);
+				}
+			}
+		}
+		this.metrics.tokens(tokens);
+
+		for (int i = 0; i < this.termCounts.size(); i++) {
+			Value term;
+			if (this.hashed) {
+				this.ngramId.setValue(NGrams.id(this.termCounts.keyChars(), this.termCounts.keyOffset(i),
+					this.termCounts.keyLength(i)));
+				term = this.ngramId;
+			} else if (this.dictionary == null) {
+				this.termCounts.copyKeyTo(i, this.term);
+				term = this.term;
+			} else {
+				int id = this.dictionary.getId(this.termCounts.keyChars(), this.termCounts.keyOffset(i),
+					this.termCounts.keyLength(i));
+				if (id < 0) {
+					// reported by the metrics, a stale dictionary silently changes the frequencies otherwise
+					this.metrics.unknownTerm();
+					continue;
+				}
+				this.termId.setValue(id);
+				term = this.termId;
+			}
+
+			this.dfRecord.setField(0, term);
+			this.dfRecord.setField(1, this.one);
+			this.dfRecord.setField(2, this.dfTag);
+			collector.collect(this.dfRecord);
+
+			this.termFrequency.setValue(this.termCounts.value(i));
+			this.tfRecord.setField(0, this.docId);
+			this.tfRecord.setField(1, term);
+			this.tfRecord.setField(2, this.termFrequency);
+			this.tfRecord.setField(3, this.tfTag);
+			collector.collect(this.tfRecord);
+		}
+
+		this.metrics.end();
+	}
+}
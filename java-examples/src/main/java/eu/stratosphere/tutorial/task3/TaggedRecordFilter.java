@@ -0,0 +1,64 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task3;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.functions.MapFunction;
+import eu.stratosphere.api.java.record.operators.MapOperator;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Selects the records of a tagging UDF, such as {@link FrequencyMapper}, that carry a given tag in their last field and
+ * forwards them without the tag.
+ */
+public class TaggedRecordFilter extends MapFunction {
+
+	/**
+	 * Parameter key of the tag to select.
+	 */
+	public static final String TAG = "tagged.filter.tag";
+
+	private int tag;
+
+	/**
+	 * Creates a filter operator that selects the records with the given tag from the input.
+	 */
+	public static MapOperator select(Operator input, int tag, String name) {
+		MapOperator filter = MapOperator.builder(TaggedRecordFilter.class)
+			.input(input)
+			.name(name)
+			.build();
+		filter.setParameter(TAG, tag);
+		return filter;
+	}
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.tag = parameters.getInteger(TAG, -1);
+	}
+
+	@Override
+	public void map(Record record, Collector<Record> collector) {
+		int tagField = record.getNumFields() - 1;
+
+		if (record.getField(tagField, IntValue.class).getValue() == this.tag) {
+			record.setNumFields(tagField);
+			collector.collect(record);
+		}
+	}
+}
@@ -15,49 +15,71 @@
 package eu.stratosphere.tutorial.task3;
 
 import eu.stratosphere.api.java.record.functions.JoinFunction;
-import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.util.OperatorMetrics;
 import eu.stratosphere.types.DoubleValue;
 import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
 import eu.stratosphere.types.Record;
-import eu.stratosphere.types.StringValue;
 import eu.stratosphere.util.Collector;
 
 /**
  * This matcher computes the tf-idf weight of every term by combining the results of the previous document and term
  * frequency computation.
+ * <p>
+ * The document frequency records have the format (term, df, numDocuments), see {@link DocumentCountCross}. With the
+ * {@link #EMIT_DOCUMENT_FREQUENCY} parameter the matcher emits (docId, term, tf-idf, df) records.
  */
 public class TfIdfMatcher extends JoinFunction {
 
+    /**
+     * Parameter key of the flag to append the document frequency of the term to the emitted records.
+     */
+    public static final String EMIT_DOCUMENT_FREQUENCY = "tfidf.emit.df";
+
+    private final DoubleValue tfIdf = new DoubleValue();
+
+    private boolean emitDocumentFrequency;
+
+    private final OperatorMetrics metrics = new OperatorMetrics("TfIdfMatcher");
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        emitDocumentFrequency = parameters.getBoolean(EMIT_DOCUMENT_FREQUENCY, false);
+        metrics.open(this);
+    }
+
+    @Override
+    public void close() throws Exception {
+        metrics.close();
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
 
     /**
      * Computes the Tf-Idf weight of every term by combining the results of the previous document and term
      * frequency computations.
      */
-    private final Record result = new Record(3);  //define 3 parameter Record
-
     @Override
     public void join(Record dfRecord, Record tfRecord, Collector<Record> collector) throws Exception {
+        metrics.begin();
+        metrics.recordIn();
         // Implement your solution here
-        String wordDf = dfRecord.getField(0, StringValue.class).toString();
-        double docFreq = Double.parseDouble(dfRecord.getField(1, IntValue.class).toString());
-
-        IntValue docID = tfRecord.getField(0, IntValue.class);
-        String wordTf = tfRecord.getField(1, StringValue.class).toString();
-        double termFeq = Double.parseDouble(tfRecord.getField(2, IntValue.class).toString());
+        double docFreq = dfRecord.getField(1, IntValue.class).getValue();
+        double termFeq = tfRecord.getField(2, IntValue.class).getValue();
 
-        double tf_idf = 0;
+        double numDocuments = dfRecord.getField(2, LongValue.class).getValue();
 
-        if (wordDf.equals(wordTf)) {
-            String word = wordDf;
-            tf_idf = termFeq * Math.log(Util.NUM_DOCUMENTS / docFreq);
+        double tf_idf = termFeq * Math.log(numDocuments / docFreq);
 
-            result.setField(0, docID);
-            result.setField(1, new StringValue(word));
-            result.setField(2, new DoubleValue(tf_idf));
-
-            collector.collect(result);
+        // the join guarantees that both records have the same term (a StringValue, or an IntValue term ID when a
+        // term dictionary is used), so the (docId, term, tf) record is reused as (docId, term, tf-idf) result
+        tfIdf.setValue(tf_idf);
+        tfRecord.setField(2, tfIdf);
+        if (emitDocumentFrequency) {
+            tfRecord.setField(3, dfRecord.getField(1, IntValue.class));
         }
-
+        metrics.count(collector).collect(tfRecord);
+        metrics.end();
     }
 }
@@ -19,18 +19,30 @@ import eu.stratosphere.api.common.Program;
 import eu.stratosphere.api.common.ProgramDescription;
 import eu.stratosphere.api.common.operators.FileDataSink;
 import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.compiler.PactCompiler;
 import eu.stratosphere.api.java.record.io.CsvOutputFormat;
-import eu.stratosphere.api.java.record.io.TextInputFormat;
+import eu.stratosphere.api.java.record.operators.CrossOperator;
 import eu.stratosphere.api.java.record.operators.JoinOperator;
 import eu.stratosphere.api.java.record.operators.MapOperator;
 import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.tutorial.cache.DatasetCache;
+import eu.stratosphere.tutorial.dictionary.TermDictionary;
+import eu.stratosphere.tutorial.dictionary.TermIdDecoder;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.pruning.VocabularyPruning;
+import eu.stratosphere.tutorial.sketch.SketchMapper;
+import eu.stratosphere.tutorial.sketch.SketchMergeReducer;
+import eu.stratosphere.tutorial.sketch.SketchTfIdfCross;
 import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
 import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
 import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.StopWords;
 import eu.stratosphere.tutorial.util.Util;
 import eu.stratosphere.types.DoubleValue;
 import eu.stratosphere.types.IntValue;
-import eu.stratosphere.types.StringValue;
+import eu.stratosphere.types.Key;
 
 /**
  * Task 3: Plan for Tf-Idf weight computation.
@@ -39,7 +51,10 @@ public class TfIdfPlan implements Program, ProgramDescription {
 
 	@Override
 	public String getDescription() {
-		return "Usage: [inputPath] [outputPath] ([numSubtasks])";
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) ([-fused]) ([-dictionary=[dictionaryPath]])"
+			+ " ([-stopWords=[path]]) ([-broadcastJoin]) ([-approximateDf]) ([-epsilon=[epsilon]]) ([-delta=[delta]])"
+			+ " ([-heavyHitters=[numTerms]]) ([-minDf=[count]]) ([-maxDfRatio=[ratio]]) ([-maxVocabulary=[numTerms]])"
+			+ " ([-cache=[cacheDir]]) ([-ngrams=[n]|[min]-[max]]) ([-hashNgrams])";
 	}
 
 	@Override
@@ -47,57 +62,243 @@ public class TfIdfPlan implements Program, ProgramDescription {
 
 		String inputPath = args.length >= 1 ? args[0] : "";
 		String outputPath = args.length >= 2 ? args[1] : "";
-		int numSubtasks = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+		int numSubtasks = Util.getNumSubtasks(args);
 
-		FileDataSource source = new FileDataSource(new TextInputFormat(), inputPath, "Input Documents");
+		FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
+		DatasetCache cache = DatasetCache.fromArgs(inputPath, numSubtasks, args);
 
-		// - Task 1: Document Frequency -------------------------------------------------------------------------------
+		Operator dfTfMatcher = buildTfIdf(source, cache, args);
 
-		MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
-			.input(source)
-			.name("Document Frequency Mapper")
+		// Terms are only decoded from their IDs right before the sink
+		Operator tfIdf = TermIdDecoder.decode(dfTfMatcher, 1, Util.getOption(args, "-dictionary", null));
+
+		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, tfIdf, "Tf-Idf Weights");
+		CsvOutputFormat.configureRecordFormat(sink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(IntValue.class, 0) // document ID
+			.field(NGrams.termType(args), 1) // term, or n-gram ID
+			.field(DoubleValue.class, 2); // tf-idf
+
+		Plan plan = new Plan(cache.sinks(sink), "Tf-Idf Computation");
+		plan.setDefaultParallelism(numSubtasks);
+
+		return plan;
+	}
+
+	/**
+	 * Builds the document frequency, term frequency and tf-idf stages on top of the given document source. The
+	 * returned matcher emits (docId, term, tf-idf) records.
+	 * <p>
+	 * With the option "-fused" the documents are tokenized only once by a {@link FrequencyMapper} instead of separately
+	 * by the {@link DocumentFrequencyMapper} and the {@link TermFrequencyMapper}.
+	 * <p>
+	 * With the option "-dictionary=[dictionaryPath]" the mappers encode every term by its ID in the
+	 * {@link TermDictionary}, so that all following stages work on IntValue keys. The emitted records then contain
+	 * term IDs, which can be decoded with {@link TermIdDecoder}.
+	 * <p>
+	 * With the option "-broadcastJoin" the matcher uses a broadcast hash join, see
+	 * {@link #configureJoinStrategy(JoinOperator, String[])}.
+	 * <p>
+	 * With the options "-minDf=[count]", "-maxDfRatio=[ratio]" and "-maxVocabulary=[numTerms]" rare and frequent terms
+	 * are dropped before the matcher, see {@link VocabularyPruning}.
+	 * <p>
+	 * With the option "-approximateDf" the document frequencies are estimated with sketches instead, see
+	 * {@link #buildApproximateTfIdf(FileDataSource, String, String[])}. The returned operator is then a cross and the
+	 * vocabulary is not pruned.
+	 * <p>
+	 * With the option "-ngrams=[n]" or "-ngrams=[min]-[max]" the terms are the n-grams of the documents, see
+	 * {@link NGrams}, and with "-hashNgrams" their 64 bit IDs, so that all following stages work on LongValue keys.
+	 * N-grams cannot be combined with a term dictionary or approximate document frequencies.
+	 * <p>
+	 * The document frequencies, term frequencies and document count are read from the {@link DatasetCache} if it has
+	 * them for the input and the mapper configuration, and are written to it otherwise. The sinks of the cache must be
+	 * added to the plan, see {@link DatasetCache#sinks(eu.stratosphere.api.common.operators.GenericDataSink)}. The
+	 * approximate tf-idf stages are not cached.
+	 */
+	public static Operator buildTfIdf(FileDataSource source, DatasetCache cache, String... args) {
+		String dictionaryPath = Util.getOption(args, "-dictionary", null);
+		Class<? extends Key> termKey = dictionaryPath == null ? NGrams.termType(args) : IntValue.class;
+
+		if ((NGrams.isEnabled(args) || NGrams.isHashed(args))
+				&& (dictionaryPath != null || Util.hasOption(args, "-approximateDf"))) {
+			throw new IllegalArgumentException("N-grams cannot be used with -dictionary or -approximateDf");
+		}
+
+		if (Util.hasOption(args, "-approximateDf")) {
+			return buildApproximateTfIdf(source, dictionaryPath, args);
+		}
+
+		String[] mapperConfig = cache.mapperConfig(args, dictionaryPath);
+		Operator dfReducer = cache.read(DatasetCache.DOCUMENT_FREQUENCIES, mapperConfig);
+		Operator tfMapper = cache.read(DatasetCache.TERM_FREQUENCIES, mapperConfig);
+		Operator countReducer = cache.read(DatasetCache.DOCUMENT_COUNT);
+
+		// operators that are not needed because their dataset is cached are not part of the plan
+		Operator dfInput;
+		Operator tfInput;
+
+		if (Util.hasOption(args, "-fused")) {
+			// - Task 1 and 2: Document and Term Frequency in a single pass -------------------------------------------
+
+			MapOperator frequencyMapper = MapOperator.builder(FrequencyMapper.class)
+				.input(source)
+				.name("Frequency Mapper")
+				.build();
+			configureMapper(frequencyMapper, dictionaryPath, args);
+
+			dfInput = TaggedRecordFilter.select(frequencyMapper, FrequencyMapper.DOCUMENT_FREQUENCY,
+				"Document Frequency Records");
+			tfInput = TaggedRecordFilter.select(frequencyMapper, FrequencyMapper.TERM_FREQUENCY,
+				"Term Frequency Records");
+		} else {
+			// - Task 1: Document Frequency ---------------------------------------------------------------------------
+
+			dfInput = MapOperator.builder(DocumentFrequencyMapper.class)
+				.input(source)
+				.name("Document Frequency Mapper")
+				.build();
+			configureMapper(dfInput, dictionaryPath, args);
+
+			// - Task 2: Term Frequency -------------------------------------------------------------------------------
+
+			tfInput = MapOperator.builder(TermFrequencyMapper.class)
+				.input(source)
+				.name("Term Frequency Mapper")
+				.build();
+			configureMapper(tfInput, dictionaryPath, args);
+		}
+
+		if (dfReducer == null) {
+			dfReducer = cache.write(DatasetCache.DOCUMENT_FREQUENCIES, mapperConfig,
+				ReduceOperator.builder(DocumentFrequencyReducer.class, termKey, 0)
+					.input(dfInput)
+					.name("Document Frequency Reducer")
+					.build());
+		}
+		if (tfMapper == null) {
+			tfMapper = cache.write(DatasetCache.TERM_FREQUENCIES, mapperConfig, tfInput);
+		}
+
+		// - Number of Documents --------------------------------------------------------------------------------------
+
+		if (countReducer == null) {
+			MapOperator countMapper = MapOperator.builder(DocumentCountMapper.class)
+				.input(source)
+				.name("Document Count Mapper")
+				.build();
+
+			countReducer = cache.write(DatasetCache.DOCUMENT_COUNT, new String[0],
+				ReduceOperator.builder(DocumentCountReducer.class)
+					.input(countMapper)
+					.name("Document Count Reducer")
+					.build());
+		}
+
+		// the single count record is broadcast, the document frequency records stay where they are
+		CrossOperator dfCount = CrossOperator.builder(DocumentCountCross.class)
+			.input1(dfReducer)
+			.input2(countReducer)
+			.name("Document Count Cross")
 			.build();
+		dfCount.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		dfCount.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT, PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+
+		// - Vocabulary Pruning ---------------------------------------------------------------------------------------
+
+		Operator dfRecords = VocabularyPruning.prune(dfCount, args);
+		Operator tfRecords = VocabularyPruning.semiJoin(tfMapper, dfRecords, dictionaryPath, args);
+
+		// - Task 3: Term and Document Frequency Match ----------------------------------------------------------------
 
-		ReduceOperator dfReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, StringValue.class, 0)
-			.input(dfMapper)
-			.name("Document Frequency Reducer")
+		JoinOperator dfTfMatcher = JoinOperator.builder(TfIdfMatcher.class, termKey, 0, 1)
+			.input1(dfRecords)
+			.input2(tfRecords)
+			.name("Tf-Idf Matcher")
 			.build();
+		configureJoinStrategy(dfTfMatcher, args);
 
-		// - Task 2: Term Frequency -----------------------------------------------------------------------------------
+		return dfTfMatcher;
+	}
 
+	/**
+	 * Builds the tf-idf stages with approximate document frequencies: every {@link SketchMapper} subtask ships a
+	 * single Count-Min sketch and heavy-hitter list of its partition instead of one record per distinct term and
+	 * document, the {@link SketchMergeReducer} merges them and the {@link SketchTfIdfCross} looks up the document
+	 * frequency of every term frequency record in the broadcast result. Neither the document frequencies nor the term
+	 * frequencies are repartitioned by term.
+	 * <p>
+	 * The error bounds are set with the options "-epsilon=[epsilon]" and "-delta=[delta]", the number of terms that
+	 * are counted exactly with "-heavyHitters=[numTerms]".
+	 */
+	private static Operator buildApproximateTfIdf(FileDataSource source, String dictionaryPath, String[] args) {
 		MapOperator tfMapper = MapOperator.builder(TermFrequencyMapper.class)
 			.input(source)
 			.name("Term Frequency Mapper")
 			.build();
+		configureMapper(tfMapper, dictionaryPath, args);
 
-		// - Task 3: Term and Document Frequency Match ----------------------------------------------------------------
+		MapOperator sketchMapper = MapOperator.builder(SketchMapper.class)
+			.input(source)
+			.name("Document Frequency Sketch Mapper")
+			.build();
+		configureMapper(sketchMapper, dictionaryPath, args);
+		sketchMapper.setParameter(SketchMapper.EPSILON, Util.getOption(args, "-epsilon", SketchMapper.DEFAULT_EPSILON));
+		sketchMapper.setParameter(SketchMapper.DELTA, Util.getOption(args, "-delta", SketchMapper.DEFAULT_DELTA));
+		String heavyHitters = Util.getOption(args, "-heavyHitters", String.valueOf(SketchMapper.DEFAULT_HEAVY_HITTERS));
+		sketchMapper.setParameter(SketchMapper.HEAVY_HITTERS, Integer.parseInt(heavyHitters));
 
-		JoinOperator dfTfMatcher = JoinOperator.builder(TfIdfMatcher.class, StringValue.class, 0, 1)
-			.input1(dfReducer)
-			.input2(tfMapper)
-			.name("Tf-Idf Matcher")
+		ReduceOperator sketchReducer = ReduceOperator.builder(SketchMergeReducer.class)
+			.input(sketchMapper)
+			.name("Document Frequency Sketch Reducer")
 			.build();
 
-		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, dfTfMatcher, "Tf-Idf Weights");
-		CsvOutputFormat.configureRecordFormat(sink)
-			.recordDelimiter('\n')
-			.fieldDelimiter(' ')
-			.field(IntValue.class, 0) // document ID
-			.field(StringValue.class, 1) // term
-			.field(DoubleValue.class, 2); // tf-idf
+		// the single merged sketch is broadcast, the term frequency records stay where they are
+		CrossOperator sketchCross = CrossOperator.builder(SketchTfIdfCross.class)
+			.input1(tfMapper)
+			.input2(sketchReducer)
+			.name("Tf-Idf Sketch Cross")
+			.build();
+		sketchCross.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		sketchCross.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT,
+			PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+		if (dictionaryPath != null) {
+			sketchCross.setParameter(TermDictionary.PATH_PARAMETER, dictionaryPath);
+		}
 
-		Plan plan = new Plan(sink, "Tf-Idf Computation");
-		plan.setDefaultParallelism(numSubtasks);
+		return sketchCross;
+	}
 
-		return plan;
+	/**
+	 * With the option "-broadcastJoin", replicates the first (document frequency) input of the matcher to all subtasks
+	 * and builds it into a hash table, which the second (term frequency) input probes without being shipped. Otherwise
+	 * the optimizer chooses the strategy, usually repartitioning both inputs by term.
+	 * <p>
+	 * The document frequency table has one record per distinct term and is small compared with the term frequency
+	 * records of all documents, so replicating it ships less data as long as the number of subtasks stays below the
+	 * ratio of both sizes.
+	 */
+	public static void configureJoinStrategy(JoinOperator matcher, String[] args) {
+		if (Util.hasOption(args, "-broadcastJoin")) {
+			matcher.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT,
+				PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+			matcher.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+			matcher.setParameter(PactCompiler.HINT_LOCAL_STRATEGY, PactCompiler.HINT_LOCAL_STRATEGY_HASH_BUILD_FIRST);
+		}
+	}
+
+	private static void configureMapper(Operator mapper, String dictionaryPath, String[] args) {
+		StopWords.configure(mapper, args);
+		NGrams.configure(mapper, args);
+		if (dictionaryPath != null) {
+			mapper.setParameter(TermDictionary.PATH_PARAMETER, dictionaryPath);
+		}
 	}
 
 	public static void main(String[] args) throws Exception {
 		// Write test input to temporary directory
 		String inputPath = Util.createTempDir("input");
 
-		Util.NUM_DOCUMENTS = 2;
-
 		Util.createTempFile("input/1.txt", "1,Big Hello to Stratosphere! :-)");
 		Util.createTempFile("input/2.txt", "2,Hello to Big Big Data.");
 
@@ -14,143 +14,383 @@
  **********************************************************************************************************************/
 package eu.stratosphere.tutorial.task4;
 
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import java.util.Vector;
 
 import eu.stratosphere.tutorial.util.Util;
-import eu.stratosphere.types.IntValue;
 import eu.stratosphere.types.Value;
-import org.eclipse.jetty.util.ArrayQueue;
 
 /**
  * This is a custom Value implementation for a weight vector, which maps terms (String) to a weight (Double).
+ * <p>
+ * The terms are kept back to back in a single char array and the weights in a double array. Both grow on demand and
+ * are reused after {@link #clear()} and by {@link #read(DataInput)}, so a vector instance that is reused for many
+ * documents does not allocate once it has reached the size of the largest document.
+ * <p>
+ * Serialized format:
+ *
+ * <pre>
+ * varint docId, byte flags, varint size, varint numBytes,
+ * numBytes x byte: size x (varint length, length x varint char, float or double weight)
+ * </pre>
+ *
+ * Terms are mostly ASCII, so a char usually takes one byte. With {@link #setSinglePrecision(boolean)} the weights are
+ * written as 4 byte floats instead of 8 byte doubles. The terms and weights are encoded into and decoded from a reused
+ * byte buffer, which is written and read with a single call instead of one call per byte.
  */
 public class WeightVector implements Value {
 
 	private static final long serialVersionUID = 1L;
-    private int docID ;
 
-    private List<String> word   = new ArrayList<String>();
-    private List<Double> value = new ArrayList<Double>();
+	private static final int FLAG_SINGLE_PRECISION = 1;
+
+	private int docId;
+
+	private int size;
+
+	private boolean singlePrecision;
 
+	// chars of term i are [termOffsets[i], termOffsets[i + 1])
+	private char[] termChars = new char[64];
+
+	private int[] termOffsets = new int[9];
+
+	private double[] weights = new double[8];
+
+	// encoded terms and weights
+	private byte[] buffer = new byte[256];
 
 	public WeightVector() {
 	}
 
 	/**
 	 * Sets the document ID.
-	 * 
+	 *
 	 * @param docId
 	 *        Document ID
 	 */
 	public void setDocId(int docId) {
-		// Implement your solution here
-        this.docID =  docId;
+		this.docId = docId;
+	}
+
+	/**
+	 * Returns the document ID.
+	 */
+	public int getDocId() {
+		return this.docId;
 	}
 
-    public int getDocID(){
-        return this.docID;
-    }
+	/**
+	 * Writes the weights as 4 byte floats instead of 8 byte doubles. Weights read back from such a vector have float
+	 * precision. This is a setting of the writer: {@link #read(DataInput)} does not change it.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	public boolean isSinglePrecision() {
+		return this.singlePrecision;
+	}
 
 	/**
 	 * Adds a term with a given weight to the vector.
-	 * 
+	 *
 	 * @param term
 	 *        Term to add
 	 * @param weight
 	 *        Weight of term
 	 */
-	public void add(String term, double weight) {
-		// Implement your solution here
-        word.add(term);
-        value.add(weight);
+	public void add(CharSequence term, double weight) {
+		int length = term.length();
+		int offset = reserve(length);
+		for (int i = 0; i < length; i++) {
+			this.termChars[offset + i] = term.charAt(i);
+		}
+		append(offset + length, weight);
+	}
+
+	/**
+	 * Adds the term given by the chars <code>[offset, offset + length)</code> with a given weight to the vector.
+	 */
+	public void add(char[] chars, int offset, int length, double weight) {
+		int termOffset = reserve(length);
+		System.arraycopy(chars, offset, this.termChars, termOffset, length);
+		append(termOffset + length, weight);
+	}
+
+	/**
+	 * Returns the number of terms in the vector.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the term at the given position as a new String.
+	 */
+	public String getTerm(int i) {
+		return new String(this.termChars, this.termOffsets[i], getTermLength(i));
+	}
+
+	/**
+	 * Returns the char array that holds all terms. The chars of term i start at {@link #getTermOffset(int)}.
+	 */
+	public char[] getTermChars() {
+		return this.termChars;
+	}
+
+	public int getTermOffset(int i) {
+		return this.termOffsets[i];
 	}
 
-    public List<Double> getWeightList(){
-         return value;
-    }
+	public int getTermLength(int i) {
+		return this.termOffsets[i + 1] - this.termOffsets[i];
+	}
+
+	/**
+	 * Returns the weight of the term at the given position.
+	 */
+	public double getWeight(int i) {
+		return this.weights[i];
+	}
 
 	/**
 	 * Clears the contents of the vector.
 	 */
 	public void clear() {
-		// Implement your solution here
-        word.clear();
-        value.clear();
+		this.docId = 0;
+		this.size = 0;
+		this.termOffsets[0] = 0;
+	}
+
+	private int reserve(int length) {
+		int offset = this.termOffsets[this.size];
+		if (offset + length > this.termChars.length) {
+			char[] chars = new char[Math.max(offset + length, 2 * this.termChars.length)];
+			System.arraycopy(this.termChars, 0, chars, 0, offset);
+			this.termChars = chars;
+		}
+		if (this.size == this.weights.length) {
+			int capacity = 2 * this.weights.length;
+
+			double[] weights = new double[capacity];
+			System.arraycopy(this.weights, 0, weights, 0, this.size);
+			this.weights = weights;
+
+			int[] offsets = new int[capacity + 1];
+			System.arraycopy(this.termOffsets, 0, offsets, 0, this.size + 1);
+			this.termOffsets = offsets;
+		}
+		return offset;
+	}
+
+	private void append(int end, double weight) {
+		this.weights[this.size] = weight;
+		this.termOffsets[++this.size] = end;
 	}
 
 	// ----------------------------------------------------------------------------------------------------------------
 
 	/**
 	 * Serializes the contents of the vector to DataOutput.
-	 * <p>
-	 * Use DataOutput to serialize the internal state.
 	 */
 	@Override
 	public void write(DataOutput out) throws IOException {
-		// Implement your solution here
-        out.writeInt(word.size());
+		int position = 0;
 
-        for (String s : word) {
-            out.writeUTF(s);
-        }
+		for (int i = 0; i < this.size; i++) {
+			int start = this.termOffsets[i];
+			int end = this.termOffsets[i + 1];
 
-        out.writeInt(value.size());
+			// a char takes at most 3 varint bytes
+			ensureBuffer(position + 5 + 3 * (end - start) + 8);
 
-        for (Double aDouble : value) {
-            out.writeDouble(aDouble);
-        }
-    }
+			position = putVarInt(end - start, position);
+			for (int c = start; c < end; c++) {
+				position = putVarInt(this.termChars[c], position);
+			}
+
+			if (this.singlePrecision) {
+				position = putLong(Float.floatToIntBits((float) this.weights[i]), 4, position);
+			} else {
+				position = putLong(Double.doubleToLongBits(this.weights[i]), 8, position);
+			}
+		}
+
+		writeVarInt(out, this.docId);
+		out.writeByte(this.singlePrecision ? FLAG_SINGLE_PRECISION : 0);
+		writeVarInt(out, this.size);
+		writeVarInt(out, position);
+		out.write(this.buffer, 0, position);
+	}
 
 	/**
-	 * Deserializes the contents of the vector from DataInput.        .
-	 * <p>
-	 * Use DataInput to deserialize to the internal state.
+	 * Deserializes the contents of the vector from DataInput. The previous contents are replaced and the internal
+	 * arrays are reused. Encoded terms and weights that do not fit into the serialized number of bytes fail with an
+	 * IOException instead of reading past them.
 	 */
 	@Override
 	public void read(DataInput in) throws IOException {
-        // Implement your solution here
-        int wordSize = in.readInt();
-
-        if (wordSize != 0) {
-            for (int i = 0 ; i < wordSize; i ++) {
-                word.add(in.readUTF());
-            }
-        }
-        int valueSize = in.readInt();
-
-        if (valueSize != 0) {
-            for (int i = 0 ; i < valueSize; i ++) {
-                value.add(in.readDouble());
-            }
-        }
-    }
+		clear();
+
+		this.docId = readVarInt(in);
+		boolean singlePrecision = (in.readByte() & FLAG_SINGLE_PRECISION) != 0;
+		int size = readVarInt(in);
+		int numBytes = readVarInt(in);
+		if (size < 0 || numBytes < 0) {
+			throw new IOException("Malformed weight vector: size " + size + ", " + numBytes + " bytes");
+		}
+
+		this.buffer = Util.readFully(in, this.buffer, numBytes);
+
+		byte[] buffer = this.buffer;
+		int weightBytes = singlePrecision ? 4 : 8;
+		int position = 0;
+
+		for (int i = 0; i < size; i++) {
+			int length = 0;
+			for (int shift = 0;; shift += 7) {
+				if (position == numBytes || shift == 35) {
+					throw new IOException("Malformed weight vector: term length at byte " + position);
+				}
+				byte b = buffer[position++];
+				length |= (b & 0x7f) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			// every char takes at least one byte
+			if (length < 0 || length > numBytes - position) {
+				throw new IOException("Malformed weight vector: term length " + length + " at byte " + position);
+			}
+
+			int offset = reserve(length);
+			for (int c = offset; c < offset + length; c++) {
+				int value = 0;
+				for (int shift = 0;; shift += 7) {
+					if (position == numBytes || shift == 35) {
+						throw new IOException("Malformed weight vector: char at byte " + position);
+					}
+					byte b = buffer[position++];
+					value |= (b & 0x7f) << shift;
+					if (b >= 0) {
+						break;
+					}
+				}
+				this.termChars[c] = (char) value;
+			}
+
+			if (numBytes - position < weightBytes) {
+				throw new IOException("Malformed weight vector: weight at byte " + position);
+			}
+			double weight;
+			if (singlePrecision) {
+				weight = Float.intBitsToFloat((int) getLong(4, position));
+			} else {
+				weight = Double.longBitsToDouble(getLong(8, position));
+			}
+			position += weightBytes;
+			append(offset + length, weight);
+		}
+
+		if (position != numBytes) {
+			throw new IOException("Malformed weight vector: " + (numBytes - position) + " trailing bytes");
+		}
+	}
+
+	private void ensureBuffer(int capacity) {
+		if (capacity > this.buffer.length) {
+			byte[] buffer = new byte[Math.max(capacity, 2 * this.buffer.length)];
+			System.arraycopy(this.buffer, 0, buffer, 0, this.buffer.length);
+			this.buffer = buffer;
+		}
+	}
+
+	private int putVarInt(int value, int position) {
+		while ((value & ~0x7f) != 0) {
+			this.buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		this.buffer[position++] = (byte) value;
+		return position;
+	}
+
+	private int putLong(long value, int numBytes, int position) {
+		for (int shift = 8 * (numBytes - 1); shift >= 0; shift -= 8) {
+			this.buffer[position++] = (byte) (value >>> shift);
+		}
+		return position;
+	}
+
+	private long getLong(int numBytes, int position) {
+		long value = 0;
+		for (int i = 0; i < numBytes; i++) {
+			value = (value << 8) | (this.buffer[position + i] & 0xff);
+		}
+		return value;
+	}
+
+	private static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
 
 	/**
-	 * String representation of this vector.
+	 * String representation of this vector as comma separated "term:weight" pairs.
 	 */
 	@Override
 	public String toString() {
-		// Implement your solution here
-                return "WeightVector["+word+","+value+"]";
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(this.termChars, this.termOffsets[i], getTermLength(i)).append(':').append(this.weights[i]);
+		}
+		return builder.toString();
 	}
 
 	// - Testing ------------------------------------------------------------------------------------------------------
 
+	/**
+	 * Checks that vectors survive a write/read round trip into a reused instance, and compares serialized size and
+	 * throughput with the previous format (int size, writeUTF per term, int size, double per weight).
+	 * <p>
+	 * Usage: [numVectors] [termsPerVector]
+	 */
 	public static void main(String[] args) throws IOException {
-		Random r = new Random();
+		int numVectors = args.length >= 1 ? Integer.parseInt(args[0]) : 1000;
+		int termsPerVector = args.length >= 2 ? Integer.parseInt(args[1]) : 200;
+
+		Random r = new Random(42);
 
 		// Use stop words as term set
 		String[] terms = new String[Util.STOP_WORDS.size()];
 		Util.STOP_WORDS.toArray(terms);
 
-		int numTerms = terms.length;
-		int numVectors = 5;
-		int maxTermsPerVector = 10;
-
 		// 1. Generate random source vectors
 		WeightVector[] sourceVectors = new WeightVector[numVectors];
 
@@ -158,33 +398,155 @@ public class WeightVector implements Value {
 			WeightVector vector = new WeightVector();
 			vector.setDocId(docId);
 
-			for (int i = 0; i < r.nextInt(maxTermsPerVector) + 1; i++) {
-				vector.add(terms[r.nextInt(numTerms)], r.nextDouble());
+			int numTerms = r.nextInt(termsPerVector) + 1;
+			for (int i = 0; i < numTerms; i++) {
+				vector.add(terms[r.nextInt(terms.length)], r.nextDouble());
 			}
 
 			sourceVectors[docId] = vector;
 		}
 
+		// 2. Round trip into a single reused vector, in double and single precision
+		ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+		DataOutputStream dos = new DataOutputStream(os);
+		WeightVector testVector = new WeightVector();
+
+		for (boolean singlePrecision : new boolean[] { false, true }) {
+			for (WeightVector vector : sourceVectors) {
+				vector.setSinglePrecision(singlePrecision);
+
+				os.reset();
+				vector.write(dos);
+				testVector.read(new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+
+				checkEquals(vector, testVector);
+			}
+		}
+		if (testVector.isSinglePrecision()) {
+			throw new IllegalStateException("Reading a single precision vector changed the precision setting");
+		}
+		System.out.println("OK   " + numVectors + " vectors");
+
+		// 3. A term length that runs past the encoded bytes: docId 0, flags 0, size 1, numBytes 3
+		byte[] malformed = { 0, 0, 1, 3, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+		try {
+			testVector.read(new DataInputStream(new ByteArrayInputStream(malformed)));
+			throw new IllegalStateException("Read a malformed vector: " + testVector);
+		} catch (IOException e) {
+			System.out.println("OK   " + e.getMessage());
+		}
+
+		// 3b. A corrupt numBytes fails at the end of the input instead of allocating 2 GB: numBytes 2^31 - 1
+		byte[] truncated = { 0, 0, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 1, 'a' };
+		try {
+			testVector.read(new DataInputStream(new ByteArrayInputStream(truncated)));
+			throw new IllegalStateException("Read a truncated vector: " + testVector);
+		} catch (IOException e) {
+			System.out.println("OK   " + e);
+		}
+
+		// 4. Serialized size and throughput compared with the previous format
+		for (int run = 0; run < 3; run++) {
+			benchmark("Previous format", sourceVectors, new LegacyCodec());
+			benchmark("Varint, double weights", sourceVectors, new VectorCodec(false));
+			benchmark("Varint, float weights", sourceVectors, new VectorCodec(true));
+		}
+	}
+
+	private static void checkEquals(WeightVector expected, WeightVector actual) {
+		if (expected.getDocId() != actual.getDocId() || expected.size() != actual.size()) {
+			throw new IllegalStateException("Expected " + expected + " but got " + actual);
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			double weight = expected.isSinglePrecision() ? (float) expected.getWeight(i) : expected.getWeight(i);
+			if (!expected.getTerm(i).equals(actual.getTerm(i)) || weight != actual.getWeight(i)) {
+				throw new IllegalStateException("Expected " + expected + " but got " + actual);
+			}
+		}
+	}
+
+	private static void benchmark(String name, WeightVector[] vectors, Codec codec) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(1 << 20);
+		DataOutputStream dos = new DataOutputStream(os);
+
+		long start = System.nanoTime();
+		for (WeightVector vector : vectors) {
+			codec.write(vector, dos);
+		}
+		long writeTime = System.nanoTime() - start;
+
+		byte[] bytes = os.toByteArray();
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
 
-		// 2. Test implementation
-		for (WeightVector vector : sourceVectors) {
-			// a) Write
-			ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
-			DataOutputStream dos = new DataOutputStream(os);
+		start = System.nanoTime();
+		for (int i = 0; i < vectors.length; i++) {
+			codec.read(dis);
+		}
+		long readTime = System.nanoTime() - start;
 
-			vector.write(dos);
+		System.out.println(String.format("%-24s %9d bytes, write %7.1f MB/s, read %7.1f MB/s", name, bytes.length,
+			bytes.length * 1000.0 / writeTime, bytes.length * 1000.0 / readTime));
+	}
+
+	private static interface Codec {
+
+		void write(WeightVector vector, DataOutput out) throws IOException;
+
+		void read(DataInput in) throws IOException;
+	}
 
-			// Read
-			ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
-			DataInputStream dis = new DataInputStream(is);
+	private static final class VectorCodec implements Codec {
 
-			WeightVector testVector = new WeightVector();
+		private final boolean singlePrecision;
 
-			testVector.read(dis);
+		private final WeightVector vector = new WeightVector();
 
-			System.out.println(vector);
-			System.out.println(testVector);
-			System.out.println("----");
+		VectorCodec(boolean singlePrecision) {
+			this.singlePrecision = singlePrecision;
+		}
+
+		@Override
+		public void write(WeightVector vector, DataOutput out) throws IOException {
+			vector.setSinglePrecision(this.singlePrecision);
+			vector.write(out);
+		}
+
+		@Override
+		public void read(DataInput in) throws IOException {
+			this.vector.read(in);
+		}
+	}
+
+	/**
+	 * The previous WeightVector format on boxed lists, which were reused by appending to them.
+	 */
+	private static final class LegacyCodec implements Codec {
+
+		@Override
+		public void write(WeightVector vector, DataOutput out) throws IOException {
+			out.writeInt(vector.size());
+			for (int i = 0; i < vector.size(); i++) {
+				out.writeUTF(vector.getTerm(i));
+			}
+			out.writeInt(vector.size());
+			for (int i = 0; i < vector.size(); i++) {
+				out.writeDouble(vector.getWeight(i));
+			}
+		}
+
+		@Override
+		public void read(DataInput in) throws IOException {
+			List<String> words = new ArrayList<String>();
+			List<Double> values = new ArrayList<Double>();
+
+			int wordSize = in.readInt();
+			for (int i = 0; i < wordSize; i++) {
+				words.add(in.readUTF());
+			}
+			int valueSize = in.readInt();
+			for (int i = 0; i < valueSize; i++) {
+				values.add(in.readDouble());
+			}
 		}
 	}
 }
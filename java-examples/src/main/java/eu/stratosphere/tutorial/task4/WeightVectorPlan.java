@@ -19,24 +19,26 @@ import eu.stratosphere.api.common.Program;
 import eu.stratosphere.api.common.ProgramDescription;
 import eu.stratosphere.api.common.operators.FileDataSink;
 import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.Operator;
 import eu.stratosphere.api.java.record.io.CsvOutputFormat;
-import eu.stratosphere.api.java.record.io.TextInputFormat;
-import eu.stratosphere.api.java.record.operators.JoinOperator;
-import eu.stratosphere.api.java.record.operators.MapOperator;
 import eu.stratosphere.api.java.record.operators.ReduceOperator;
-import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
-import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
-import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
-import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.cache.DatasetCache;
+import eu.stratosphere.tutorial.dictionary.TermIdDecoder;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.io.WeightVectorOutputFormat;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.NGrams;
 import eu.stratosphere.tutorial.util.Util;
 import eu.stratosphere.types.IntValue;
-import eu.stratosphere.types.StringValue;
 
 public class WeightVectorPlan implements Program, ProgramDescription {
 
 	@Override
 	public String getDescription() {
-		return "Usage: [inputPath] [outputPath] ([numSubtasks])";
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) ([-fused]) ([-dictionary=[dictionaryPath]])"
+			+ " ([-stopWords=[path]]) ([-broadcastJoin]) ([-singlePrecision]) ([-approximateDf]) ([-minDf=[count]])"
+			+ " ([-maxDfRatio=[ratio]]) ([-maxVocabulary=[numTerms]]) ([-binary]) ([-cache=[cacheDir]])"
+			+ " ([-ngrams=[n]|[min]-[max]])";
 	}
 
 	@Override
@@ -44,52 +46,47 @@ public class WeightVectorPlan implements Program, ProgramDescription {
 
 		String inputPath = args.length >= 1 ? args[0] : "";
 		String outputPath = args.length >= 2 ? args[1] : "";
-		int numSubtasks = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+		int numSubtasks = Util.getNumSubtasks(args);
 
-		FileDataSource source = new FileDataSource(new TextInputFormat(), inputPath, "Input Documents");
+		if (NGrams.isHashed(args)) {
+			throw new IllegalArgumentException("The weight vectors hold terms, which cannot be used with -hashNgrams");
+		}
 
-		// - Task 1: Document Frequency -------------------------------------------------------------------------------
+		FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
+		DatasetCache cache = DatasetCache.fromArgs(inputPath, numSubtasks, args);
 
-		MapOperator dfMapper = MapOperator.builder(DocumentFrequencyMapper.class)
-			.input(source)
-			.name("Document Frequency Mapper")
-			.build();
-
-		ReduceOperator dfReducer = ReduceOperator.builder(DocumentFrequencyReducer.class, StringValue.class, 0)
-			.input(dfMapper)
-			.name("Document Frequency Reducer")
-			.build();
-
-		// - Task 2: Term Frequency -----------------------------------------------------------------------------------
-
-		MapOperator tfMapper = MapOperator.builder(TermFrequencyMapper.class)
-			.input(source)
-			.name("Term Frequency Mapper")
-			.build();
+		// - Task 1 to 3: Tf-Idf --------------------------------------------------------------------------------------
 
-		// - Task 3: Term Match Tf-Idf --------------------------------------------------------------------------------
+		Operator dfTfMatcher = TfIdfPlan.buildTfIdf(source, cache, args);
 
-		JoinOperator dfTfMatcher = JoinOperator.builder(TfIdfMatcher.class, StringValue.class, 0, 1)
-			.input1(dfReducer)
-			.input2(tfMapper)
-			.name("Tf-Idf Matcher")
-			.build();
+		// The weight vectors hold the terms themselves, so term IDs are decoded before grouping by document
+		Operator tfIdf = TermIdDecoder.decode(dfTfMatcher, 1, Util.getOption(args, "-dictionary", null));
 
 		// - Task 4 and 5: WeightVector per Document ------------------------------------------------------------------
 
 		ReduceOperator weightVectorReducer = ReduceOperator.builder(WeightVectorReducer.class, IntValue.class, 0)
-			.input(dfTfMatcher)
+			.input(tfIdf)
 			.name("Weight Vector Reducer")
 			.build();
-
-		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, weightVectorReducer,
-			"Tf-Idf Weights per Document");
-		CsvOutputFormat.configureRecordFormat(sink)
-			.recordDelimiter('\n')
-			.fieldDelimiter(' ')
-			.field(WeightVector.class, 0);
-
-		Plan plan = new Plan(sink, "Tf-Idf Computation");
+		weightVectorReducer.setParameter(WeightVectorReducer.SINGLE_PRECISION,
+			Util.hasOption(args, "-singlePrecision"));
+
+		FileDataSink sink;
+		if (Util.hasOption(args, "-binary")) {
+			// compressed blocks with a docId index, see WeightVectorFile
+			sink = new FileDataSink(WeightVectorOutputFormat.class, outputPath, weightVectorReducer,
+				"Tf-Idf Weights per Document");
+		} else {
+			sink = new FileDataSink(CsvOutputFormat.class, outputPath, weightVectorReducer,
+				"Tf-Idf Weights per Document");
+			CsvOutputFormat.configureRecordFormat(sink)
+				.recordDelimiter('\n')
+				.fieldDelimiter(' ')
+				.field(IntValue.class, 0) // document ID
+				.field(WeightVector.class, 1); // term:weight pairs
+		}
+
+		Plan plan = new Plan(cache.sinks(sink), "Tf-Idf Computation");
 		plan.setDefaultParallelism(numSubtasks);
 
 		return plan;
@@ -99,8 +96,6 @@ public class WeightVectorPlan implements Program, ProgramDescription {
 		// Write test input to temporary directory
 		String inputPath = Util.createTempDir("input");
 
-		Util.NUM_DOCUMENTS = 2;
-
 		Util.createTempFile("input/1.txt", "1,Big Hello to Stratosphere! :-)");
 		Util.createTempFile("input/2.txt", "2,Hello to Big Big Data.");
 
@@ -108,7 +103,9 @@ public class WeightVectorPlan implements Program, ProgramDescription {
 		// Replace this with your own path, e.g. "file:///path/to/results/"
 		String outputPath = Util.createTempDir("results");
 
-		// Results should be: same Tf-Idf values as in task 3 as a WeightVector per Document
+		// Results should be: same Tf-Idf values as in task 3 as a WeightVector per Document, e.g.
+		// 1 big:0.0,hello:0.0,stratosphere:0.69...
+		// 2 hello:0.0,big:0.0,data:0.69...
 
 		System.out.println("Reading input from " + inputPath);
 		System.out.println("Writing output to " + outputPath);
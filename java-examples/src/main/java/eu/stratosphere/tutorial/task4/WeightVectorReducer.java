@@ -15,18 +15,60 @@
 package eu.stratosphere.tutorial.task4;
 
 import java.util.Iterator;
-import java.util.List;
 
+import eu.stratosphere.api.java.record.functions.FunctionAnnotation.ConstantFields;
 import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.api.java.record.operators.ReduceOperator.Combinable;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.util.OperatorMetrics;
 import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
 import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
 import eu.stratosphere.util.Collector;
 
 /**
  * This reducer groups by document ID and creates a {@link WeightVector} for each document.
+ * <p>
+ * The grouped records are streamed into a single reused vector, so the memory of a call is bounded by the vocabulary
+ * of the document. The reducer accepts both (docId, term, tf-idf) records and (docId, vector) records and emits
+ * (docId, vector) records, so it is also used as combiner: every subtask then ships one partial vector per document
+ * instead of one record per term.
  */
+@Combinable
+@ConstantFields(0)
 public class WeightVectorReducer extends ReduceFunction {
 
+	/**
+	 * Parameter key of the flag to serialize the weights as floats, see
+	 * {@link WeightVector#setSinglePrecision(boolean)}.
+	 */
+	public static final String SINGLE_PRECISION = "weightvector.single.precision";
+
+	private final WeightVector vector = new WeightVector();
+
+	// holders the input fields are deserialized into
+	private final StringValue term = new StringValue();
+
+	private final DoubleValue weight = new DoubleValue();
+
+	private final WeightVector partial = new WeightVector();
+
+	private final Record result = new Record(2);
+
+	private final OperatorMetrics metrics = new OperatorMetrics("WeightVectorReducer");
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.vector.setSinglePrecision(parameters.getBoolean(SINGLE_PRECISION, false));
+		this.metrics.open(this);
+	}
+
+	@Override
+	public void close() throws Exception {
+		this.metrics.close();
+	}
+
 	// ----------------------------------------------------------------------------------------------------------------
 
 	/**
@@ -34,27 +76,36 @@ public class WeightVectorReducer extends ReduceFunction {
 	 */
 	@Override
 	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
-		// Implement your solution here
-        Record record = null;
-        int docID = 0;
-        List<Double> weights;
-        Double sum = 0.0;
+		this.metrics.begin();
+		Record record = null;
 
-        while(records.hasNext()){
+		this.vector.clear();
 
-            sum = 0.0;
-            record = records.next();
-            WeightVector weightVector = record.getField(0,WeightVector.class);
-            docID = weightVector.getDocID();
-            weights = weightVector.getWeightList();
+		while (records.hasNext()) {
+			record = records.next();
+			this.metrics.recordIn();
 
-            for(int co = 0; co < weights.size(); co++){
-                 sum += weights.get(co);
+			if (record.getNumFields() == 3) {
+				// (docId, term, tf-idf)
+				StringValue term = record.getField(1, this.term);
+				double weight = record.getField(2, this.weight).getValue();
+				this.vector.add(term.getCharArray(), 0, term.length(), weight);
+			} else {
+				// (docId, vector) of a combiner
+				WeightVector partial = record.getField(1, this.partial);
+				for (int i = 0; i < partial.size(); i++) {
+					this.vector.add(partial.getTermChars(), partial.getTermOffset(i), partial.getTermLength(i),
+						partial.getWeight(i));
+				}
+			}
+		}
 
-            }
-        }
-        record.setField(docID,new DoubleValue(sum));
-        collector.collect(record);
+		IntValue docId = record.getField(0, IntValue.class);
+		this.vector.setDocId(docId.getValue());
 
+		this.result.setField(0, docId);
+		this.result.setField(1, this.vector);
+		this.metrics.count(collector).collect(this.result);
+		this.metrics.end();
 	}
 }
@@ -0,0 +1,112 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task5;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer groups the (termKey, vector) records of {@link SimilarityVectorReducer} by prefix term and emits the
+ * (docId1, docId2, similarity) pairs of the group with a cosine similarity of at least the threshold, with
+ * docId1 &lt; docId2.
+ * <p>
+ * Two documents can share several prefix terms. The pair is only verified in the group of the first term (in the
+ * global order) that both documents share, so every pair is emitted exactly once. Before the exact similarity is
+ * computed, pairs are pruned with the size bound {@link SimilarityVector#sizeBound(SimilarityVector)}.
+ */
+public class CandidatePairReducer extends ReduceFunction {
+
+	// vectors of the current group, reused across groups
+	private final List<SimilarityVector> group = new ArrayList<SimilarityVector>();
+
+	private final SimilarityVector vector = new SimilarityVector();
+
+	private final LongValue termKey = new LongValue();
+
+	private final IntValue docId1 = new IntValue();
+
+	private final IntValue docId2 = new IntValue();
+
+	private final DoubleValue similarity = new DoubleValue();
+
+	private final Record result = new Record(3);
+
+	private double threshold;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.threshold = Double.parseDouble(parameters.getString(SimilarityVectorReducer.THRESHOLD, "0.8"));
+	}
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		long term = 0;
+		int size = 0;
+
+		// the runtime reuses the records, so the vectors are copied
+		while (records.hasNext()) {
+			Record record = records.next();
+			term = record.getField(0, this.termKey).getValue();
+
+			if (size == this.group.size()) {
+				this.group.add(new SimilarityVector());
+			}
+			this.group.get(size++).copyFrom(record.getField(1, this.vector));
+		}
+
+		for (int i = 0; i < size; i++) {
+			SimilarityVector a = this.group.get(i);
+
+			for (int j = i + 1; j < size; j++) {
+				SimilarityVector b = this.group.get(j);
+
+				if (a.sizeBound(b) < this.threshold) {
+					continue;
+				}
+
+				// verify the pair only in the group of the first shared term
+				int first = a.firstCommonTerm(b);
+				if (first < 0 || a.getTerm(first) != term) {
+					continue;
+				}
+
+				double similarity = a.dot(b);
+				if (similarity >= this.threshold) {
+					emit(a.getDocId(), b.getDocId(), similarity, collector);
+				}
+			}
+		}
+	}
+
+	private void emit(int docId1, int docId2, double similarity, Collector<Record> collector) {
+		this.docId1.setValue(Math.min(docId1, docId2));
+		this.docId2.setValue(Math.max(docId1, docId2));
+		this.similarity.setValue(similarity);
+
+		this.result.setField(0, this.docId1);
+		this.result.setField(1, this.docId2);
+		this.result.setField(2, this.similarity);
+		collector.collect(this.result);
+	}
+}
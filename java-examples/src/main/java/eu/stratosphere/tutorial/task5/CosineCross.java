@@ -0,0 +1,63 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task5;
+
+import eu.stratosphere.api.java.record.functions.CrossFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Brute-force baseline of the similarity computation: computes the cosine similarity of every pair of (docId, vector)
+ * records of the cross product and emits the (docId1, docId2, similarity) pairs with a similarity of at least the
+ * threshold, with docId1 &lt; docId2.
+ */
+public class CosineCross extends CrossFunction {
+
+	private final SimilarityVector vector1 = new SimilarityVector();
+
+	private final SimilarityVector vector2 = new SimilarityVector();
+
+	private final DoubleValue similarity = new DoubleValue();
+
+	private final Record result = new Record(3);
+
+	private double threshold;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.threshold = Double.parseDouble(parameters.getString(SimilarityVectorReducer.THRESHOLD, "0.8"));
+	}
+
+	@Override
+	public void cross(Record record1, Record record2, Collector<Record> collector) throws Exception {
+		IntValue docId1 = record1.getField(0, IntValue.class);
+		IntValue docId2 = record2.getField(0, IntValue.class);
+		if (docId1.getValue() >= docId2.getValue()) {
+			return;
+		}
+
+		double similarity = record1.getField(1, this.vector1).dot(record2.getField(1, this.vector2));
+		if (similarity >= this.threshold) {
+			this.similarity.setValue(similarity);
+			this.result.setField(0, docId1);
+			this.result.setField(1, docId2);
+			this.result.setField(2, this.similarity);
+			collector.collect(this.result);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task5;
+
+import eu.stratosphere.api.common.Plan;
+import eu.stratosphere.api.common.Program;
+import eu.stratosphere.api.common.ProgramDescription;
+import eu.stratosphere.api.common.operators.FileDataSink;
+import eu.stratosphere.api.common.operators.FileDataSource;
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.api.java.record.io.CsvOutputFormat;
+import eu.stratosphere.api.java.record.operators.CrossOperator;
+import eu.stratosphere.api.java.record.operators.ReduceOperator;
+import eu.stratosphere.tutorial.cache.DatasetCache;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.tutorial.util.Util;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+
+/**
+ * Task 5: Plan for finding all pairs of documents whose tf-idf vectors have a cosine similarity of at least a
+ * threshold.
+ * <p>
+ * A naive cross product compares every pair of documents. Instead, the candidate pairs are generated from shared
+ * terms with prefix filtering: the terms of every normalized vector are ordered by ascending document frequency and
+ * only the terms of the shortest prefix, whose remaining suffix has an L2 norm below the threshold, are used to group
+ * documents. Similar documents always share a prefix term, and because the prefixes consist of the rare terms, very
+ * common terms never form huge groups. Within a group, pairs are pruned with a size bound before their similarity is
+ * computed.
+ * <p>
+ * With the option "-bruteForce" the similarities are computed with a cross product instead, as a baseline.
+ */
+public class SimilarityPlan implements Program, ProgramDescription {
+
+	@Override
+	public String getDescription() {
+		return "Usage: [inputPath] [outputPath] ([numSubtasks]) ([-threshold=[similarity]]) ([-bruteForce]) ([-fused])"
+			+ " ([-dictionary=[dictionaryPath]]) ([-stopWords=[path]]) ([-broadcastJoin]) ([-approximateDf])"
+			+ " ([-minDf=[count]]) ([-maxDfRatio=[ratio]]) ([-maxVocabulary=[numTerms]]) ([-cache=[cacheDir]])"
+			+ " ([-ngrams=[n]|[min]-[max]]) ([-hashNgrams])";
+	}
+
+	@Override
+	public Plan getPlan(String... args) {
+
+		String inputPath = args.length >= 1 ? args[0] : "";
+		String outputPath = args.length >= 2 ? args[1] : "";
+		int numSubtasks = Util.getNumSubtasks(args);
+
+		String threshold = Util.getOption(args, "-threshold", "0.8");
+		boolean bruteForce = Util.hasOption(args, "-bruteForce");
+
+		FileDataSource source = new FileDataSource(new DocumentInputFormat(), inputPath, "Input Documents");
+		DatasetCache cache = DatasetCache.fromArgs(inputPath, numSubtasks, args);
+
+		// - Task 1 to 3: Tf-Idf with document frequencies ------------------------------------------------------------
+
+		Operator dfTfMatcher = TfIdfPlan.buildTfIdf(source, cache, args);
+		dfTfMatcher.setParameter(TfIdfMatcher.EMIT_DOCUMENT_FREQUENCY, true);
+
+		// - Normalized vectors ---------------------------------------------------------------------------------------
+
+		ReduceOperator vectorReducer = ReduceOperator.builder(SimilarityVectorReducer.class, IntValue.class, 0)
+			.input(dfTfMatcher)
+			.name("Similarity Vector Reducer")
+			.build();
+		vectorReducer.setParameter(SimilarityVectorReducer.THRESHOLD, threshold);
+		vectorReducer.setParameter(SimilarityVectorReducer.PREFIX_FILTER, !bruteForce);
+		vectorReducer.setParameter(SimilarityVectorReducer.TERM_IDS, Util.getOption(args, "-dictionary", null) != null);
+		vectorReducer.setParameter(SimilarityVectorReducer.NGRAM_IDS, NGrams.isHashed(args));
+
+		// - Similar pairs --------------------------------------------------------------------------------------------
+
+		Operator pairs;
+		if (bruteForce) {
+			pairs = CrossOperator.builder(CosineCross.class)
+				.input1(vectorReducer)
+				.input2(vectorReducer)
+				.name("Cosine Cross")
+				.build();
+		} else {
+			pairs = ReduceOperator.builder(CandidatePairReducer.class, LongValue.class, 0)
+				.input(vectorReducer)
+				.name("Candidate Pair Reducer")
+				.build();
+		}
+		pairs.setParameter(SimilarityVectorReducer.THRESHOLD, threshold);
+
+		FileDataSink sink = new FileDataSink(CsvOutputFormat.class, outputPath, pairs, "Similar Documents");
+		CsvOutputFormat.configureRecordFormat(sink)
+			.recordDelimiter('\n')
+			.fieldDelimiter(' ')
+			.field(IntValue.class, 0) // document ID
+			.field(IntValue.class, 1) // document ID
+			.field(DoubleValue.class, 2); // cosine similarity
+
+		Plan plan = new Plan(cache.sinks(sink), "Document Similarity");
+		plan.setDefaultParallelism(numSubtasks);
+
+		return plan;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Write test input to temporary directory
+		String inputPath = Util.createTempDir("input");
+
+		Util.createTempFile("input/1.txt", "1,Big Hello to Stratosphere! :-)");
+		Util.createTempFile("input/2.txt", "2,Hello to Big Big Data.");
+		Util.createTempFile("input/3.txt", "3,Hello Stratosphere and big data.");
+		Util.createTempFile("input/4.txt", "4,Stratosphere says hello to big data.");
+
+		// Output
+		// Replace this with your own path, e.g. "file:///path/to/results/"
+		String outputPath = Util.createTempDir("results");
+		String bruteForcePath = Util.createTempDir("results-brute-force");
+
+		// Both results should contain the same pairs
+
+		System.out.println("Reading input from " + inputPath);
+		System.out.println("Writing output to " + outputPath + " and " + bruteForcePath);
+
+		Util.executePlan(new SimilarityPlan().getPlan(inputPath, outputPath, "1", "-threshold=0.5"));
+		Util.executePlan(new SimilarityPlan().getPlan(inputPath, bruteForcePath, "1", "-threshold=0.5", "-bruteForce"));
+
+		//Util.deleteAllTempFiles();
+	}
+}
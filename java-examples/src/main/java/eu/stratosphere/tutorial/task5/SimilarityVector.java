@@ -0,0 +1,310 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task5;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.types.Value;
+
+/**
+ * Unit length tf-idf vector of a document for the similarity computation.
+ * <p>
+ * Every entry has a term key, the document frequency of the term and the weight. After {@link #normalize()} the
+ * entries are sorted by the global order (document frequency, term key), so rare terms come first and two vectors can
+ * be intersected with a single merge pass.
+ * <p>
+ * Terms are identified by a 64 bit key: the term ID when a term dictionary is used, otherwise a hash of the term
+ * chars (see {@link #termKey(StringValue)}), for which collisions are negligible at corpus sizes.
+ */
+public class SimilarityVector implements Value {
+
+	private static final long serialVersionUID = 1L;
+
+	private int docId;
+
+	private int size;
+
+	private long[] terms = new long[16];
+
+	private int[] dfs = new int[16];
+
+	private double[] weights = new double[16];
+
+	private double maxWeight;
+
+	public int getDocId() {
+		return this.docId;
+	}
+
+	public void setDocId(int docId) {
+		this.docId = docId;
+	}
+
+	/**
+	 * Returns the number of terms.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public long getTerm(int i) {
+		return this.terms[i];
+	}
+
+	public int getDocumentFrequency(int i) {
+		return this.dfs[i];
+	}
+
+	public double getWeight(int i) {
+		return this.weights[i];
+	}
+
+	/**
+	 * Returns the largest weight of the vector.
+	 */
+	public double getMaxWeight() {
+		return this.maxWeight;
+	}
+
+	public void clear() {
+		this.docId = 0;
+		this.size = 0;
+		this.maxWeight = 0;
+	}
+
+	/**
+	 * Adds a term with its document frequency and weight.
+	 */
+	public void add(long term, int df, double weight) {
+		if (this.size == this.terms.length) {
+			int capacity = 2 * this.size;
+
+			long[] terms = new long[capacity];
+			System.arraycopy(this.terms, 0, terms, 0, this.size);
+			this.terms = terms;
+
+			int[] dfs = new int[capacity];
+			System.arraycopy(this.dfs, 0, dfs, 0, this.size);
+			this.dfs = dfs;
+
+			double[] weights = new double[capacity];
+			System.arraycopy(this.weights, 0, weights, 0, this.size);
+			this.weights = weights;
+		}
+
+		this.terms[this.size] = term;
+		this.dfs[this.size] = df;
+		this.weights[this.size] = weight;
+		this.size++;
+		this.maxWeight = Math.max(this.maxWeight, weight);
+	}
+
+	/**
+	 * Scales the vector to unit length and sorts the terms by the global order.
+	 */
+	public void normalize() {
+		double norm = 0;
+		for (int i = 0; i < this.size; i++) {
+			norm += this.weights[i] * this.weights[i];
+		}
+		norm = Math.sqrt(norm);
+
+		if (norm > 0) {
+			for (int i = 0; i < this.size; i++) {
+				this.weights[i] /= norm;
+			}
+			this.maxWeight /= norm;
+		}
+
+		sort(0, this.size - 1);
+	}
+
+	/**
+	 * Returns the length of the prefix for the given similarity threshold. The prefix consists of the first (rarest)
+	 * terms, such that the remaining suffix has an L2 norm below the threshold: two unit vectors with a cosine
+	 * similarity of at least the threshold share at least one term that is part of both prefixes.
+	 */
+	public int prefixLength(double threshold) {
+		double suffix = 0;
+		int length = this.size;
+		while (length > 0 && suffix + this.weights[length - 1] * this.weights[length - 1] < threshold * threshold) {
+			suffix += this.weights[length - 1] * this.weights[length - 1];
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns an upper bound of the cosine similarity with the other vector, based only on the sizes and the largest
+	 * weights of both vectors.
+	 */
+	public double sizeBound(SimilarityVector other) {
+		return Math.min(this.size, other.size) * this.maxWeight * other.maxWeight;
+	}
+
+	/**
+	 * Returns the index of the first term (in the global order) that this vector shares with the other vector, or -1.
+	 */
+	public int firstCommonTerm(SimilarityVector other) {
+		int i = 0;
+		int j = 0;
+		while (i < this.size && j < other.size) {
+			int c = compare(this.dfs[i], this.terms[i], other.dfs[j], other.terms[j]);
+			if (c == 0) {
+				return i;
+			} else if (c < 0) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the dot product with the other vector, which is the cosine similarity of two normalized vectors.
+	 */
+	public double dot(SimilarityVector other) {
+		double dot = 0;
+		int i = 0;
+		int j = 0;
+		while (i < this.size && j < other.size) {
+			int c = compare(this.dfs[i], this.terms[i], other.dfs[j], other.terms[j]);
+			if (c == 0) {
+				dot += this.weights[i++] * other.weights[j++];
+			} else if (c < 0) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return dot;
+	}
+
+	/**
+	 * Replaces the contents of this vector by the contents of the other vector.
+	 */
+	public void copyFrom(SimilarityVector other) {
+		clear();
+		this.docId = other.docId;
+		for (int i = 0; i < other.size; i++) {
+			add(other.terms[i], other.dfs[i], other.weights[i]);
+		}
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the 64 bit key of a term.
+	 */
+	public static long termKey(StringValue term) {
+		char[] chars = term.getCharArray();
+
+		// FNV-1a followed by the MurmurHash3 finalizer
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < term.length(); i++) {
+			h = (h ^ chars[i]) * 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static int compare(int df1, long term1, int df2, long term2) {
+		if (df1 != df2) {
+			return df1 < df2 ? -1 : 1;
+		}
+		return term1 < term2 ? -1 : (term1 == term2 ? 0 : 1);
+	}
+
+	private void sort(int from, int to) {
+		while (from < to) {
+			int pivot = (from + to) >>> 1;
+			int pivotDf = this.dfs[pivot];
+			long pivotTerm = this.terms[pivot];
+
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (compare(this.dfs[i], this.terms[i], pivotDf, pivotTerm) < 0) {
+					i++;
+				}
+				while (compare(this.dfs[j], this.terms[j], pivotDf, pivotTerm) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+
+			// recurse into the smaller part
+			if (j - from < to - i) {
+				sort(from, j);
+				from = i;
+			} else {
+				sort(i, to);
+				to = j;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		long term = this.terms[i];
+		this.terms[i] = this.terms[j];
+		this.terms[j] = term;
+
+		int df = this.dfs[i];
+		this.dfs[i] = this.dfs[j];
+		this.dfs[j] = df;
+
+		double weight = this.weights[i];
+		this.weights[i] = this.weights[j];
+		this.weights[j] = weight;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.docId);
+		out.writeInt(this.size);
+		for (int i = 0; i < this.size; i++) {
+			out.writeLong(this.terms[i]);
+			out.writeInt(this.dfs[i]);
+			out.writeDouble(this.weights[i]);
+		}
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		clear();
+		this.docId = in.readInt();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			add(in.readLong(), in.readInt(), in.readDouble());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SimilarityVector[" + this.docId + ", " + this.size + " terms]";
+	}
+}
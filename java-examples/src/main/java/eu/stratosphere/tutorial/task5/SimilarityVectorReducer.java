@@ -0,0 +1,136 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.task5;
+
+import java.util.Iterator;
+
+import eu.stratosphere.api.java.record.functions.ReduceFunction;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.util.NGrams;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * This reducer groups the (docId, term, tf-idf, df) records of {@link TfIdfMatcher} by document ID and builds the
+ * normalized {@link SimilarityVector} of each document.
+ * <p>
+ * With prefix filtering, it emits a (termKey, vector) record for every term in the prefix of the vector (see
+ * {@link SimilarityVector#prefixLength(double)}), so that only documents that share a rare term meet in the
+ * {@link CandidatePairReducer}. Without, it emits a single (docId, vector) record for the brute-force
+ * {@link CosineCross}.
+ */
+public class SimilarityVectorReducer extends ReduceFunction {
+
+	/**
+	 * Parameter key of the similarity threshold.
+	 */
+	public static final String THRESHOLD = "similarity.threshold";
+
+	/**
+	 * Parameter key of the flag to emit one record per prefix term instead of one record per document.
+	 */
+	public static final String PREFIX_FILTER = "similarity.prefix.filter";
+
+	/**
+	 * Parameter key of the flag that the terms are IntValue term IDs instead of StringValue terms.
+	 */
+	public static final String TERM_IDS = "similarity.term.ids";
+
+	/**
+	 * Parameter key of the flag that the terms are LongValue n-gram IDs, see {@link NGrams}, which serve as term keys
+	 * directly.
+	 */
+	public static final String NGRAM_IDS = "similarity.ngram.ids";
+
+	private final SimilarityVector vector = new SimilarityVector();
+
+	private final IntValue docId = new IntValue();
+
+	private final LongValue termKey = new LongValue();
+
+	private final Record result = new Record(2);
+
+	// holders the input fields are deserialized into
+	private final StringValue term = new StringValue();
+
+	private final IntValue termId = new IntValue();
+
+	private final LongValue ngramId = new LongValue();
+
+	private final DoubleValue weight = new DoubleValue();
+
+	private final IntValue df = new IntValue();
+
+	private double threshold;
+
+	private boolean prefixFilter;
+
+	private boolean termIds;
+
+	private boolean ngramIds;
+
+	@Override
+	public void open(Configuration parameters) throws Exception {
+		this.threshold = Double.parseDouble(parameters.getString(THRESHOLD, "0.8"));
+		this.prefixFilter = parameters.getBoolean(PREFIX_FILTER, true);
+		this.termIds = parameters.getBoolean(TERM_IDS, false);
+		this.ngramIds = parameters.getBoolean(NGRAM_IDS, false);
+	}
+
+	@Override
+	public void reduce(Iterator<Record> records, Collector<Record> collector) throws Exception {
+		Record record = null;
+
+		this.vector.clear();
+
+		while (records.hasNext()) {
+			record = records.next();
+
+			long key;
+			if (this.ngramIds) {
+				key = record.getField(1, this.ngramId).getValue();
+			} else if (this.termIds) {
+				key = record.getField(1, this.termId).getValue();
+			} else {
+				key = SimilarityVector.termKey(record.getField(1, this.term));
+			}
+
+			this.vector.add(key, record.getField(3, this.df).getValue(), record.getField(2, this.weight).getValue());
+		}
+
+		this.docId.setValue(record.getField(0, IntValue.class).getValue());
+		this.vector.setDocId(this.docId.getValue());
+		this.vector.normalize();
+
+		this.result.setField(1, this.vector);
+
+		if (this.prefixFilter) {
+			int prefixLength = this.vector.prefixLength(this.threshold);
+			for (int i = 0; i < prefixLength; i++) {
+				this.termKey.setValue(this.vector.getTerm(i));
+				this.result.setField(0, this.termKey);
+				collector.collect(this.result);
+			}
+		} else {
+			this.result.setField(0, this.docId);
+			collector.collect(this.result);
+		}
+	}
+}
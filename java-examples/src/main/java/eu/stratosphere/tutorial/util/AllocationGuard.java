@@ -0,0 +1,400 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Random;
+
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.io.DocumentInputFormat;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyMapper;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyReducer;
+import eu.stratosphere.tutorial.task2.TermFrequencyMapper;
+import eu.stratosphere.tutorial.task3.DocumentCountCross;
+import eu.stratosphere.tutorial.task3.DocumentCountMapper;
+import eu.stratosphere.tutorial.task3.DocumentCountReducer;
+import eu.stratosphere.tutorial.task3.FrequencyMapper;
+import eu.stratosphere.tutorial.task3.TaggedRecordFilter;
+import eu.stratosphere.tutorial.task3.TfIdfMatcher;
+import eu.stratosphere.tutorial.task4.WeightVectorReducer;
+import eu.stratosphere.types.DoubleValue;
+import eu.stratosphere.types.IntValue;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.types.StringValue;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Guards the record-producing UDFs against allocations on their per-record paths.
+ * <p>
+ * Every check drives a UDF directly with a collector that only keeps the last record. After a warm-up, in which the
+ * reused holders and buffers grow to their final size, the bytes allocated by the current thread are measured with
+ * the HotSpot specific <code>com.sun.management.ThreadMXBean</code> and divided by the number of emitted records. A
+ * single value object per emitted record already costs at least 16 bytes, so the budget is one byte per record.
+ * <p>
+ * Run the main method after changing a UDF. It fails with an exception if a UDF exceeds its budget.
+ */
+public final class AllocationGuard {
+
+	/**
+	 * Allowed number of allocated bytes per emitted record.
+	 */
+	public static final double BYTES_PER_RECORD = 1.0;
+
+	/**
+	 * A repeatable piece of work that emits its records to the given collector.
+	 */
+	public static abstract class Workload {
+
+		public abstract void run(Collector<Record> collector) throws Exception;
+	}
+
+	private AllocationGuard() {
+	}
+
+	/**
+	 * Returns true if the JVM can measure the bytes allocated per thread.
+	 */
+	public static boolean isSupported() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof com.sun.management.ThreadMXBean
+			&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far.
+	 */
+	public static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Runs the workload <code>numRuns</code> times to warm up and <code>numRuns</code> times measured, and returns the
+	 * allocated bytes per emitted record of the measured runs.
+	 */
+	public static double bytesPerRecord(Workload workload, int numRuns) throws Exception {
+		LastRecordCollector collector = new LastRecordCollector();
+
+		for (int i = 0; i < numRuns; i++) {
+			workload.run(collector);
+		}
+		collector.count = 0;
+
+		long before = allocatedBytes();
+		for (int i = 0; i < numRuns; i++) {
+			workload.run(collector);
+		}
+		long bytes = allocatedBytes() - before;
+
+		if (collector.count == 0) {
+			throw new IllegalStateException("Workload did not emit any records");
+		}
+		return (double) bytes / collector.count;
+	}
+
+	/**
+	 * Fails if the workload allocates more than {@link #BYTES_PER_RECORD} bytes per emitted record.
+	 */
+	public static void check(String name, Workload workload, int numRuns) throws Exception {
+		double bytes = bytesPerRecord(workload, numRuns);
+
+		if (bytes > BYTES_PER_RECORD) {
+			throw new IllegalStateException(String.format("%s allocates %.2f bytes per record (budget: %.2f)", name,
+				bytes, BYTES_PER_RECORD));
+		}
+		System.out.println(String.format("OK   %-28s %.4f bytes per record", name, bytes));
+	}
+
+	/**
+	 * Keeps the last collected record, so that the emitted records escape and their allocations cannot be removed by
+	 * the JIT compiler.
+	 */
+	private static final class LastRecordCollector implements Collector<Record> {
+
+		private Record last;
+
+		private long count;
+
+		@Override
+		public void collect(Record record) {
+			this.last = record;
+			this.count++;
+		}
+
+		@Override
+		public void close() {
+			this.last = null;
+		}
+	}
+
+	/**
+	 * Iterates the same records again after every {@link #reset()}, as the runtime does for the records of a group.
+	 */
+	private static final class RecordIterator implements Iterator<Record> {
+
+		private final Record[] records;
+
+		private int next;
+
+		RecordIterator(Record[] records) {
+			this.records = records;
+		}
+
+		RecordIterator reset() {
+			this.next = 0;
+			return this;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next < this.records.length;
+		}
+
+		@Override
+		public Record next() {
+			return this.records[this.next++];
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws Exception {
+		if (!isSupported()) {
+			System.out.println("Allocated bytes per thread cannot be measured on this JVM, skipping checks");
+			return;
+		}
+
+		final Record[] documents = createDocuments(new Random(42), 200, 300);
+		int numRuns = 50;
+
+		// 1. Mappers
+		final DocumentFrequencyMapper dfMapper = new DocumentFrequencyMapper();
+		dfMapper.open(new Configuration());
+		check("DocumentFrequencyMapper", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (Record document : documents) {
+					dfMapper.map(document, collector);
+				}
+			}
+		}, numRuns);
+
+		final TermFrequencyMapper tfMapper = new TermFrequencyMapper();
+		tfMapper.open(new Configuration());
+		check("TermFrequencyMapper", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (Record document : documents) {
+					tfMapper.map(document, collector);
+				}
+			}
+		}, numRuns);
+
+		final FrequencyMapper frequencyMapper = new FrequencyMapper();
+		frequencyMapper.open(new Configuration());
+		check("FrequencyMapper", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (Record document : documents) {
+					frequencyMapper.map(document, collector);
+				}
+			}
+		}, numRuns);
+
+		for (final boolean hashed : new boolean[] { false, true }) {
+			Configuration trigrams = new Configuration();
+			trigrams.setInteger(NGrams.MAX_SIZE, 3);
+			trigrams.setBoolean(NGrams.HASHED, hashed);
+			final DocumentFrequencyMapper ngramMapper = new DocumentFrequencyMapper();
+			ngramMapper.open(trigrams);
+			check(hashed ? "NGrams, hashed" : "NGrams", new Workload() {
+				@Override
+				public void run(Collector<Record> collector) {
+					for (Record document : documents) {
+						ngramMapper.map(document, collector);
+					}
+				}
+			}, numRuns);
+		}
+
+		final DocumentCountMapper countMapper = new DocumentCountMapper();
+		check("DocumentCountMapper", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (Record document : documents) {
+					countMapper.map(document, collector);
+				}
+			}
+		}, numRuns);
+
+		// 2. Tagged record filter, which strips the tag of the selected records
+		final TaggedRecordFilter filter = new TaggedRecordFilter();
+		filter.open(new Configuration());
+		final IntValue tag = new IntValue(-1);
+		final Record tagged = new Record(new StringValue("term"), new IntValue(1));
+		check("TaggedRecordFilter", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (int i = 0; i < 10000; i++) {
+					tagged.setField(2, tag);
+					filter.map(tagged, collector);
+				}
+			}
+		}, numRuns);
+
+		// 3. Reducers and the count cross
+		final IntValue one = new IntValue(1);
+		final Record[] group = new Record[100];
+		for (int i = 0; i < group.length; i++) {
+			group[i] = new Record(new StringValue("term"), one);
+		}
+		final RecordIterator groupIterator = new RecordIterator(group);
+
+		final DocumentFrequencyReducer dfReducer = new DocumentFrequencyReducer();
+		check("DocumentFrequencyReducer", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) throws Exception {
+				for (int i = 0; i < 1000; i++) {
+					for (Record record : group) {
+						record.setField(1, one);
+					}
+					dfReducer.reduce(groupIterator.reset(), collector);
+				}
+			}
+		}, numRuns);
+
+		final LongValue oneDocument = new LongValue(1);
+		final Record[] counts = new Record[100];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new Record(oneDocument);
+		}
+		final RecordIterator countIterator = new RecordIterator(counts);
+
+		final DocumentCountReducer countReducer = new DocumentCountReducer();
+		check("DocumentCountReducer", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) throws Exception {
+				for (int i = 0; i < 1000; i++) {
+					for (Record record : counts) {
+						record.setField(0, oneDocument);
+					}
+					countReducer.reduce(countIterator.reset(), collector);
+				}
+			}
+		}, numRuns);
+
+		final DocumentCountCross countCross = new DocumentCountCross();
+		final Record dfRecord = new Record(new StringValue("term"), new IntValue(3));
+		final Record countRecord = new Record(new LongValue(1000));
+		check("DocumentCountCross", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) throws Exception {
+				for (int i = 0; i < 10000; i++) {
+					countCross.cross(dfRecord, countRecord, collector);
+				}
+			}
+		}, numRuns);
+
+		// 4. Tf-idf matcher, which replaces the tf of the (docId, term, tf) record by the tf-idf weight
+		final TfIdfMatcher matcher = new TfIdfMatcher();
+		final Record dfCountRecord = new Record(3);
+		dfCountRecord.setField(0, new StringValue("term"));
+		dfCountRecord.setField(1, new IntValue(3));
+		dfCountRecord.setField(2, new LongValue(1000));
+		final IntValue tf = new IntValue(2);
+		final Record tfRecord = new Record(3);
+		tfRecord.setField(0, new IntValue(1));
+		tfRecord.setField(1, new StringValue("term"));
+		tfRecord.setField(2, tf);
+		check("TfIdfMatcher", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) throws Exception {
+				for (int i = 0; i < 10000; i++) {
+					tfRecord.setField(2, tf);
+					matcher.join(dfCountRecord, tfRecord, collector);
+				}
+			}
+		}, numRuns);
+
+		// 5. Weight vector reducer, which collects the (docId, term, tf-idf) records of a document in a reused vector
+		final WeightVectorReducer vectorReducer = new WeightVectorReducer();
+		vectorReducer.open(new Configuration());
+		final Record[] weights = new Record[100];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = new Record(3);
+			weights[i].setField(0, new IntValue(1));
+			weights[i].setField(1, new StringValue("term" + i));
+			weights[i].setField(2, new DoubleValue(0.5));
+		}
+		final RecordIterator weightIterator = new RecordIterator(weights);
+		check("WeightVectorReducer", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) throws Exception {
+				for (int i = 0; i < 1000; i++) {
+					vectorReducer.reduce(weightIterator.reset(), collector);
+				}
+			}
+		}, numRuns);
+
+		// 6. Document input format, which parses the (docId, body) records from the line bytes
+		final DocumentInputFormat format = new DocumentInputFormat();
+		final byte[][] lines = new byte[documents.length][];
+		for (int i = 0; i < documents.length; i++) {
+			lines[i] = (documents[i].getField(0, IntValue.class).getValue() + ","
+				+ documents[i].getField(1, StringValue.class)).getBytes("UTF-8");
+		}
+		final Record line = new Record();
+		check("DocumentInputFormat", new Workload() {
+			@Override
+			public void run(Collector<Record> collector) {
+				for (byte[] bytes : lines) {
+					format.readRecord(line, bytes, 0, bytes.length);
+					collector.collect(line);
+				}
+			}
+		}, numRuns);
+	}
+
+	/**
+	 * Creates (docId, document contents) records of the {@link DocumentInputFormat} from a random vocabulary.
+	 */
+	private static Record[] createDocuments(Random random, int numDocuments, int numTerms) {
+		String[] vocabulary = new String[2000];
+		for (int i = 0; i < vocabulary.length; i++) {
+			char[] term = new char[3 + random.nextInt(8)];
+			for (int j = 0; j < term.length; j++) {
+				term[j] = (char) ('a' + random.nextInt(26));
+			}
+			vocabulary[i] = new String(term);
+		}
+
+		Record[] documents = new Record[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			StringBuilder document = new StringBuilder().append(i).append(',');
+			for (int j = 0; j < numTerms; j++) {
+				document.append(j == 0 ? "" : " ").append(vocabulary[random.nextInt(vocabulary.length)]);
+			}
+			documents[i] = DocumentInputFormat.createRecord(document);
+		}
+		return documents;
+	}
+}
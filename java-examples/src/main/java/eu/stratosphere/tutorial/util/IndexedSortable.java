@@ -0,0 +1,32 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+/**
+ * Entries addressed by index, typically the same index of a few parallel primitive arrays, that {@link QuickSort} and
+ * {@link MinHeap} reorder without boxing them.
+ */
+public interface IndexedSortable {
+
+	/**
+	 * Compares the entries i and j like {@link java.util.Comparator#compare(Object, Object)}.
+	 */
+	int compare(int i, int j);
+
+	/**
+	 * Swaps the entries i and j.
+	 */
+	void swap(int i, int j);
+}
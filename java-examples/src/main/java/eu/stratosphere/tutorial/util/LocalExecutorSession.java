@@ -0,0 +1,302 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eu.stratosphere.api.common.Plan;
+import eu.stratosphere.client.LocalExecutor;
+import eu.stratosphere.nephele.client.JobExecutionResult;
+import eu.stratosphere.tutorial.task1.DocumentFrequencyPlan;
+import eu.stratosphere.tutorial.task2.TermFrequencyPlan;
+import eu.stratosphere.tutorial.task3.TfIdfPlan;
+import eu.stratosphere.tutorial.task4.WeightVectorPlan;
+
+/**
+ * A local runtime that is started once and runs any number of plans before it is shut down, so that a batch of plans
+ * pays the startup and teardown of the {@link LocalExecutor} only once:
+ *
+ * <pre>
+ * try (LocalExecutorSession session = LocalExecutorSession.start()) {
+ *     for (PlanRun run : session.runAll(plans, 2)) {
+ *         System.out.println(run);
+ *     }
+ * }
+ * </pre>
+ *
+ * Plans that run concurrently share the task manager of the local runtime.
+ */
+public final class LocalExecutorSession implements Closeable {
+
+	/**
+	 * Outcome of a plan run by the session.
+	 */
+	public static final class PlanRun {
+
+		private final String name;
+
+		private final long runtime;
+
+		private final JobExecutionResult result;
+
+		private final Exception failure;
+
+		PlanRun(String name, long runtime, JobExecutionResult result, Exception failure) {
+			this.name = name;
+			this.runtime = runtime;
+			this.result = result;
+			this.failure = failure;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the wall-clock time of the run in milliseconds, from the submission of the plan to its result.
+		 */
+		public long getRuntime() {
+			return this.runtime;
+		}
+
+		/**
+		 * Returns the result of the job, or null if the plan failed.
+		 */
+		public JobExecutionResult getResult() {
+			return this.result;
+		}
+
+		/**
+		 * Returns the exception the plan failed with, or null.
+		 */
+		public Exception getFailure() {
+			return this.failure;
+		}
+
+		public boolean isSuccessful() {
+			return this.failure == null;
+		}
+
+		/**
+		 * Returns the report of the {@link OperatorMetrics} of the job, or null if the plan failed.
+		 */
+		public MetricsReport getMetrics() {
+			return this.result == null ? null : MetricsReport.fromAccumulators(this.result.getAllAccumulatorResults(),
+				this.result.getNetRuntime());
+		}
+
+		@Override
+		public String toString() {
+			if (this.failure != null) {
+				return String.format("%-40s failed after %d ms: %s", this.name, this.runtime, this.failure);
+			}
+			return String.format("%-40s %6d ms (net %d ms)", this.name, this.runtime, this.result.getNetRuntime());
+		}
+	}
+
+	private final LocalExecutor executor;
+
+	private final long startupTime;
+
+	private boolean closed;
+
+	private LocalExecutorSession(LocalExecutor executor, long startupTime) {
+		this.executor = executor;
+		this.startupTime = startupTime;
+	}
+
+	/**
+	 * Starts the local runtime of a new session.
+	 */
+	public static LocalExecutorSession start() throws Exception {
+		long start = System.nanoTime();
+		LocalExecutor executor = new LocalExecutor();
+		executor.start();
+		return new LocalExecutorSession(executor, (System.nanoTime() - start) / 1000000);
+	}
+
+	/**
+	 * Returns the time it took to start the local runtime, in milliseconds.
+	 */
+	public long getStartupTime() {
+		return this.startupTime;
+	}
+
+	/**
+	 * Runs a plan and waits for its result. Unlike {@link #runAll(List, int)}, a failure of the plan is thrown.
+	 */
+	public PlanRun run(Plan plan) throws Exception {
+		PlanRun run = execute(plan);
+		if (run.getFailure() != null) {
+			throw run.getFailure();
+		}
+		return run;
+	}
+
+	/**
+	 * Runs the plans, at most <code>concurrency</code> at a time, and returns their runs in the order of the plans. A
+	 * failed plan does not stop the others; its run has the failure.
+	 */
+	public List<PlanRun> runAll(List<Plan> plans, int concurrency) throws InterruptedException {
+		if (this.closed) {
+			throw new IllegalStateException("The session has been closed");
+		}
+
+		ExecutorService threads = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, plans.size())));
+		try {
+			List<Future<PlanRun>> futures = new ArrayList<Future<PlanRun>>();
+			for (final Plan plan : plans) {
+				futures.add(threads.submit(new Callable<PlanRun>() {
+					@Override
+					public PlanRun call() {
+						return execute(plan);
+					}
+				}));
+			}
+
+			List<PlanRun> runs = new ArrayList<PlanRun>();
+			for (Future<PlanRun> future : futures) {
+				try {
+					runs.add(future.get());
+				} catch (ExecutionException e) {
+					// execute catches the failures of the plans
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return runs;
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	private PlanRun execute(Plan plan) {
+		if (this.closed) {
+			throw new IllegalStateException("The session has been closed");
+		}
+
+		long start = System.nanoTime();
+		JobExecutionResult result = null;
+		Exception failure = null;
+		try {
+			result = this.executor.executePlan(plan);
+		} catch (Exception e) {
+			failure = e;
+		}
+		return new PlanRun(plan.getJobName(), (System.nanoTime() - start) / 1000000, result, failure);
+	}
+
+	/**
+	 * Shuts the local runtime down. The checked exceptions of {@link LocalExecutor#stop()} are thrown as the cause of
+	 * an IOException.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!this.closed) {
+			this.closed = true;
+			try {
+				this.executor.stop();
+			} catch (IOException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				if (e instanceof InterruptedException) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IOException("Cannot shut the local runtime down", e);
+			}
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Runs the document frequency, term frequency, tf-idf, and weight vector plans on a small input, first with a new
+	 * local executor per plan, as {@link Util#executePlan(Plan)} does, then sequentially and concurrently in one
+	 * session, and prints the runtime of every plan and the startup and shutdown times.
+	 * <p>
+	 * Usage: ([concurrency])
+	 */
+	public static void main(String[] args) throws Exception {
+		int concurrency = args.length >= 1 ? Integer.parseInt(args[0]) : 2;
+
+		String inputPath = Util.createTempDir("session/input");
+		// documents of 50 terms with log-uniform ranks, about Zipf distributed
+		Random random = new Random(42);
+		for (int i = 1; i <= 4; i++) {
+			StringBuilder documents = new StringBuilder();
+			for (int docId = 100 * i; docId < 100 * i + 100; docId++) {
+				documents.append(docId).append(',');
+				for (int j = 0; j < 50; j++) {
+					documents.append(' ').append(Integer.toString((int) Math.pow(10000, random.nextDouble()), 36));
+				}
+				documents.append('\n');
+			}
+			Util.createTempFile("session/input/" + i + ".txt", documents.toString());
+		}
+
+		// 1. a new executor for every plan
+		long totalStartup = 0;
+		long totalShutdown = 0;
+		long start = System.nanoTime();
+		for (Plan plan : suite(inputPath, "separate")) {
+			LocalExecutorSession session = start();
+			totalStartup += session.getStartupTime();
+			System.out.println(session.run(plan));
+			long shutdown = System.nanoTime();
+			session.close();
+			totalShutdown += (System.nanoTime() - shutdown) / 1000000;
+		}
+		long separateTime = (System.nanoTime() - start) / 1000000;
+		System.out.println(String.format("separate executors: %d ms, of which startup %d ms, shutdown %d ms%n",
+			separateTime, totalStartup, totalShutdown));
+
+		// 2. one session, sequentially and concurrently
+		for (int threads : new int[] { 1, concurrency }) {
+			start = System.nanoTime();
+			LocalExecutorSession session = start();
+			for (PlanRun run : session.runAll(suite(inputPath, "session" + threads), threads)) {
+				System.out.println(run);
+			}
+			long shutdown = System.nanoTime();
+			session.close();
+			System.out.println(String.format(
+				"one session, %d at a time: %d ms, of which startup %d ms, shutdown %d ms%n", threads,
+				(System.nanoTime() - start) / 1000000, session.getStartupTime(),
+				(System.nanoTime() - shutdown) / 1000000));
+		}
+
+		Util.deleteAllTempFiles();
+	}
+
+	private static List<Plan> suite(String inputPath, String name) throws Exception {
+		String outputPath = Util.createTempDir("session/" + name);
+		return Arrays.asList(
+			new DocumentFrequencyPlan().getPlan(inputPath, outputPath + "/df", "2"),
+			new TermFrequencyPlan().getPlan(inputPath, outputPath + "/tf", "2"),
+			new TfIdfPlan().getPlan(inputPath, outputPath + "/tfidf", "2"),
+			new WeightVectorPlan().getPlan(inputPath, outputPath + "/vectors", "2"));
+	}
+}
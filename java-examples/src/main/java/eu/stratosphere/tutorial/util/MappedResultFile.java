@@ -0,0 +1,643 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+
+/**
+ * Memory-mapped random access to the results of the {@link eu.stratosphere.tutorial.task1.DocumentFrequencyPlan} and
+ * the {@link eu.stratosphere.tutorial.task3.TfIdfPlan}.
+ * <p>
+ * The text output of a plan is converted once with {@link #convertDocumentFrequencies(String, String)} or
+ * {@link #convertTfIdf(String, String)} into a local file with fixed-stride tables, which is then opened with
+ * {@link #open(String)}:
+ *
+ * <pre>
+ * header       magic, numTerms, numRecords, table offsets
+ * term table   numTerms x (long heap offset, int length, int df), sorted by the UTF-8 bytes of the terms
+ * record table numRecords x (int docId, int term index, double tf-idf), sorted by (docId, term index)
+ * term heap    UTF-8 bytes of the terms
+ * </pre>
+ *
+ * The term table is the offset table into the term heap. A term is found by binary search in the term table, comparing
+ * the query chars with the heap bytes as they are encoded, and a (docId, term) pair by a second binary search for the
+ * (docId, term index) key in the record table. Lookups read the mapped buffers with absolute gets, so they allocate
+ * nothing and the file can be shared by any number of threads.
+ * <p>
+ * The file is mapped in segments of 1 GB, as a single {@link MappedByteBuffer} cannot exceed 2 GB. Consecutive segments
+ * overlap by the size of a long, so every primitive is read from one segment.
+ */
+public final class MappedResultFile implements Closeable {
+
+	private static final int MAGIC = 0x4d524631;
+
+	private static final int HEADER_SIZE = 64;
+
+	private static final int TERM_ENTRY_SIZE = 16;
+
+	private static final int RECORD_ENTRY_SIZE = 16;
+
+	private static final int DEFAULT_SEGMENT_SHIFT = 30;
+
+	private static final int SEGMENT_OVERLAP = 8;
+
+	private final int segmentShift;
+
+	private final long segmentMask;
+
+	private MappedByteBuffer[] segments;
+
+	private final int numTerms;
+
+	private final long numRecords;
+
+	private final long termTableOffset;
+
+	private final long recordTableOffset;
+
+	private final long heapOffset;
+
+	private MappedResultFile(File file, int segmentShift) throws IOException {
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1L << segmentShift) - 1;
+
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+
+			int numSegments = (int) ((size + this.segmentMask) >>> segmentShift);
+			this.segments = new MappedByteBuffer[Math.max(numSegments, 1)];
+			for (int i = 0; i < this.segments.length; i++) {
+				long start = (long) i << segmentShift;
+				long length = Math.min((1L << segmentShift) + SEGMENT_OVERLAP, size - start);
+				this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(length, 0));
+			}
+		} finally {
+			// the mappings stay valid after the channel is closed
+			input.close();
+		}
+
+		if (getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a mapped result file");
+		}
+		this.numTerms = getInt(4);
+		this.numRecords = getLong(8);
+		this.termTableOffset = getLong(16);
+		this.recordTableOffset = getLong(24);
+		this.heapOffset = getLong(32);
+	}
+
+	/**
+	 * Returns the number of distinct terms.
+	 */
+	public int numTerms() {
+		return this.numTerms;
+	}
+
+	/**
+	 * Returns the number of (docId, term, tf-idf) records, 0 for a file of document frequencies.
+	 */
+	public long numRecords() {
+		return this.numRecords;
+	}
+
+	/**
+	 * Returns the index of the term in the term table, or -1 if the file does not contain the term.
+	 */
+	public int indexOf(CharSequence term) {
+		int low = 0;
+		int high = this.numTerms - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int c = compareTerm(middle, term);
+			if (c < 0) {
+				low = middle + 1;
+			} else if (c > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the document frequency of the term, or 0 if the file does not contain the term. For a converted tf-idf
+	 * result, this is the number of documents with a record of the term.
+	 */
+	public int getDocumentFrequency(CharSequence term) {
+		int index = indexOf(term);
+		return index < 0 ? 0 : getInt(this.termTableOffset + (long) index * TERM_ENTRY_SIZE + 12);
+	}
+
+	/**
+	 * Returns the tf-idf weight of the term in the document, or 0 if the file has no record of the pair.
+	 */
+	public double getWeight(int docId, CharSequence term) {
+		int index = indexOf(term);
+		if (index < 0) {
+			return 0;
+		}
+
+		long key = key(docId, index);
+		long low = 0;
+		long high = this.numRecords - 1;
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			long entry = this.recordTableOffset + middle * RECORD_ENTRY_SIZE;
+			long middleKey = getLong(entry);
+			if (middleKey < key) {
+				low = middle + 1;
+			} else if (middleKey > key) {
+				high = middle - 1;
+			} else {
+				return getDouble(entry + 8);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the term at the given index of the term table. Unlike the lookups, this decodes the term into a new
+	 * String.
+	 */
+	public String getTerm(int index) {
+		long entry = this.termTableOffset + (long) index * TERM_ENTRY_SIZE;
+		long offset = this.heapOffset + getLong(entry);
+		byte[] bytes = new byte[getInt(entry + 8)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = getByte(offset + i);
+		}
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Releases the mapped segments. The memory is unmapped when the buffers are garbage collected.
+	 */
+	@Override
+	public void close() {
+		this.segments = null;
+	}
+
+	/**
+	 * Compares the term at the given index with the query, as the UTF-8 bytes of both would compare.
+	 */
+	private int compareTerm(int index, CharSequence term) {
+		long entry = this.termTableOffset + (long) index * TERM_ENTRY_SIZE;
+		long offset = this.heapOffset + getLong(entry);
+		int length = getInt(entry + 8);
+
+		int position = 0;
+		int i = 0;
+		while (i < term.length()) {
+			int codePoint = term.charAt(i++);
+			if (Character.isHighSurrogate((char) codePoint) && i < term.length()
+				&& Character.isLowSurrogate(term.charAt(i))) {
+				codePoint = Character.toCodePoint((char) codePoint, term.charAt(i++));
+			}
+
+			int numBytes = utf8Length(codePoint);
+			for (int k = 0; k < numBytes; k++) {
+				if (position == length) {
+					return -1;
+				}
+				int stored = getByte(offset + position++) & 0xff;
+				int query = utf8Byte(codePoint, numBytes, k);
+				if (stored != query) {
+					return stored < query ? -1 : 1;
+				}
+			}
+		}
+		return position < length ? 1 : 0;
+	}
+
+	private byte getByte(long position) {
+		return this.segments[(int) (position >>> this.segmentShift)].get((int) (position & this.segmentMask));
+	}
+
+	private int getInt(long position) {
+		return this.segments[(int) (position >>> this.segmentShift)].getInt((int) (position & this.segmentMask));
+	}
+
+	private long getLong(long position) {
+		return this.segments[(int) (position >>> this.segmentShift)].getLong((int) (position & this.segmentMask));
+	}
+
+	private double getDouble(long position) {
+		return this.segments[(int) (position >>> this.segmentShift)].getDouble((int) (position & this.segmentMask));
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Opens a converted file. The file must be on the local file system.
+	 */
+	public static MappedResultFile open(String path) throws IOException {
+		return new MappedResultFile(new File(path), DEFAULT_SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Converts the "term df" output of the {@link eu.stratosphere.tutorial.task1.DocumentFrequencyPlan}, a file or a
+	 * directory of files, into a local file for {@link #open(String)}.
+	 */
+	public static void convertDocumentFrequencies(String inputPath, String outputFile) throws IOException {
+		final Map<String, Integer> dfs = new HashMap<String, Integer>();
+		read(inputPath, new LineHandler() {
+			@Override
+			void handle(String line) {
+				int separator = line.lastIndexOf(' ');
+				if (separator > 0) {
+					dfs.put(line.substring(0, separator), Integer.parseInt(line.substring(separator + 1)));
+				}
+			}
+		});
+
+		byte[][] terms = sortedTerms(dfs.keySet());
+		int[] termDfs = new int[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			termDfs[i] = dfs.get(new String(terms[i], "UTF-8"));
+		}
+		write(outputFile, terms, termDfs, new long[0], new double[0], 0);
+	}
+
+	/**
+	 * Converts the "docId term tf-idf" output of the {@link eu.stratosphere.tutorial.task3.TfIdfPlan}, a file or a
+	 * directory of files, into a local file for {@link #open(String)}.
+	 * <p>
+	 * The records are sorted in memory, in primitive arrays of 16 bytes per record.
+	 */
+	public static void convertTfIdf(String inputPath, String outputFile) throws IOException {
+		final Map<String, Integer> termIds = new HashMap<String, Integer>();
+		final List<String> termList = new ArrayList<String>();
+		final long[][] keys = { new long[1024] };
+		final double[][] weights = { new double[1024] };
+		final int[] numRecords = { 0 };
+
+		read(inputPath, new LineHandler() {
+			@Override
+			void handle(String line) {
+				int first = line.indexOf(' ');
+				int last = line.lastIndexOf(' ');
+				if (first <= 0 || last <= first) {
+					return;
+				}
+
+				String term = line.substring(first + 1, last);
+				Integer termId = termIds.get(term);
+				if (termId == null) {
+					termId = termList.size();
+					termIds.put(term, termId);
+					termList.add(term);
+				}
+
+				if (numRecords[0] == keys[0].length) {
+					keys[0] = Arrays.copyOf(keys[0], 2 * numRecords[0]);
+					weights[0] = Arrays.copyOf(weights[0], 2 * numRecords[0]);
+				}
+				keys[0][numRecords[0]] = key(Integer.parseInt(line.substring(0, first)), termId);
+				weights[0][numRecords[0]] = Double.parseDouble(line.substring(last + 1));
+				numRecords[0]++;
+			}
+		});
+
+		// replace the term IDs of the keys by the term indexes in the sorted term table
+		byte[][] terms = sortedTerms(termList);
+		int[] indexes = new int[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			indexes[termIds.get(new String(terms[i], "UTF-8"))] = i;
+		}
+		int[] dfs = new int[terms.length];
+		for (int i = 0; i < numRecords[0]; i++) {
+			int index = indexes[(int) keys[0][i]];
+			dfs[index]++;
+			keys[0][i] = key((int) (keys[0][i] >> 32), index);
+		}
+
+		final long[] sortKeys = keys[0];
+		final double[] sortWeights = weights[0];
+		QuickSort.sort(new IndexedSortable() {
+			@Override
+			public int compare(int i, int j) {
+				return sortKeys[i] < sortKeys[j] ? -1 : sortKeys[i] == sortKeys[j] ? 0 : 1;
+			}
+
+			@Override
+			public void swap(int i, int j) {
+				long key = sortKeys[i];
+				sortKeys[i] = sortKeys[j];
+				sortKeys[j] = key;
+				double weight = sortWeights[i];
+				sortWeights[i] = sortWeights[j];
+				sortWeights[j] = weight;
+			}
+		}, 0, numRecords[0] - 1);
+		write(outputFile, terms, dfs, sortKeys, sortWeights, numRecords[0]);
+	}
+
+	/**
+	 * Returns the record table key of a (docId, term index) pair, which orders by docId first.
+	 */
+	private static long key(int docId, int termIndex) {
+		return (long) docId << 32 | (termIndex & 0xffffffffL);
+	}
+
+	private static byte[][] sortedTerms(Iterable<String> terms) {
+		List<byte[]> bytes = new ArrayList<byte[]>();
+		for (String term : terms) {
+			bytes.add(utf8(term));
+		}
+		byte[][] sorted = bytes.toArray(new byte[bytes.size()][]);
+		Arrays.sort(sorted, new Comparator<byte[]>() {
+			@Override
+			public int compare(byte[] term1, byte[] term2) {
+				for (int i = 0; i < term1.length && i < term2.length; i++) {
+					if (term1[i] != term2[i]) {
+						return (term1[i] & 0xff) < (term2[i] & 0xff) ? -1 : 1;
+					}
+				}
+				return term1.length - term2.length;
+			}
+		});
+		return sorted;
+	}
+
+	private static void write(String outputFile, byte[][] terms, int[] dfs, long[] keys, double[] weights,
+			int numRecords) throws IOException {
+		long termTableOffset = HEADER_SIZE;
+		long recordTableOffset = termTableOffset + (long) terms.length * TERM_ENTRY_SIZE;
+		long heapOffset = recordTableOffset + (long) numRecords * RECORD_ENTRY_SIZE;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(terms.length);
+			out.writeLong(numRecords);
+			out.writeLong(termTableOffset);
+			out.writeLong(recordTableOffset);
+			out.writeLong(heapOffset);
+			out.write(new byte[HEADER_SIZE - 40]);
+
+			long termOffset = 0;
+			for (int i = 0; i < terms.length; i++) {
+				out.writeLong(termOffset);
+				out.writeInt(terms[i].length);
+				out.writeInt(dfs[i]);
+				termOffset += terms[i].length;
+			}
+			for (int i = 0; i < numRecords; i++) {
+				out.writeLong(keys[i]);
+				out.writeDouble(weights[i]);
+			}
+			for (byte[] term : terms) {
+				out.write(term);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	// - UTF-8 --------------------------------------------------------------------------------------------------------
+
+	// the conversion encodes the terms itself, so that unpaired surrogates are encoded exactly as the lookups do
+
+	private static int utf8Length(int codePoint) {
+		return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+	}
+
+	private static int utf8Byte(int codePoint, int numBytes, int k) {
+		if (numBytes == 1) {
+			return codePoint;
+		}
+		if (k == 0) {
+			return ((0xf00 >> numBytes) & 0xff) | (codePoint >> (6 * (numBytes - 1)));
+		}
+		return 0x80 | ((codePoint >> (6 * (numBytes - 1 - k))) & 0x3f);
+	}
+
+	private static byte[] utf8(String term) {
+		byte[] bytes = new byte[4 * term.length()];
+		int length = 0;
+		int i = 0;
+		while (i < term.length()) {
+			int codePoint = term.charAt(i++);
+			if (Character.isHighSurrogate((char) codePoint) && i < term.length()
+				&& Character.isLowSurrogate(term.charAt(i))) {
+				codePoint = Character.toCodePoint((char) codePoint, term.charAt(i++));
+			}
+			int numBytes = utf8Length(codePoint);
+			for (int k = 0; k < numBytes; k++) {
+				bytes[length++] = (byte) utf8Byte(codePoint, numBytes, k);
+			}
+		}
+		return Arrays.copyOf(bytes, length);
+	}
+
+	// - Reading the Plan Output --------------------------------------------------------------------------------------
+
+	private static abstract class LineHandler {
+
+		abstract void handle(String line);
+	}
+
+	private static void read(String path, LineHandler handler) throws IOException {
+		Path inputPath = new Path(path);
+		FileSystem fs = FileSystem.get(inputPath.toUri());
+
+		FileStatus status = fs.getFileStatus(inputPath);
+		FileStatus[] files = status.isDir() ? fs.listStatus(inputPath) : new FileStatus[] { status };
+
+		for (FileStatus file : files) {
+			String name = file.getPath().getName();
+			if (file.isDir() || name.startsWith(".") || name.startsWith("_")) {
+				continue;
+			}
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(file.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					handler.handle(line);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Writes generated plan output, converts it, and checks and times the lookups with segments of 64 KB, so that the
+	 * tables and terms cross segment boundaries as they do in files above 2 GB.
+	 * <p>
+	 * Usage: ([numDocuments])
+	 */
+	public static void main(String[] args) throws Exception {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+
+		File directory = File.createTempFile("results", "");
+		directory.delete();
+		directory.mkdirs();
+		directory.deleteOnExit();
+
+		// documents of 100 terms with log-uniform ranks, about Zipf distributed, including terms outside of ASCII
+		Random random = new Random(42);
+		Map<String, Double> expectedWeights = new HashMap<String, Double>();
+		Map<String, Integer> expectedDfs = new HashMap<String, Integer>();
+		List<String> queries = new ArrayList<String>();
+		for (int docId = 0; docId < numDocuments; docId++) {
+			Map<String, Double> document = new HashMap<String, Double>();
+			for (int i = 0; i < 100; i++) {
+				int rank = (int) Math.pow(100000, random.nextDouble()) - 1;
+				String term = Integer.toString(rank, 36);
+				if (rank % 100 == 1) {
+					term += "\u00e9\u4e2d\ud83d\ude00";
+				}
+				document.put(term, (1 + random.nextInt(3)) * Math.log(100000.0 / (rank + 1)));
+			}
+			for (Map.Entry<String, Double> entry : document.entrySet()) {
+				expectedWeights.put(docId + " " + entry.getKey(), entry.getValue());
+				Integer df = expectedDfs.get(entry.getKey());
+				expectedDfs.put(entry.getKey(), df == null ? 1 : df + 1);
+				if (random.nextInt(50) == 0) {
+					queries.add(docId + " " + entry.getKey());
+				}
+			}
+		}
+
+		File tfIdfOutput = new File(directory, "tfidf");
+		File dfOutput = new File(directory, "df");
+		tfIdfOutput.mkdirs();
+		dfOutput.mkdirs();
+		PrintWriter[] tfIdfWriters = new PrintWriter[2];
+		for (int i = 0; i < tfIdfWriters.length; i++) {
+			File file = new File(tfIdfOutput, String.valueOf(i + 1));
+			file.deleteOnExit();
+			tfIdfWriters[i] = new PrintWriter(file, "UTF-8");
+		}
+		for (Map.Entry<String, Double> entry : expectedWeights.entrySet()) {
+			tfIdfWriters[random.nextInt(2)].print(entry.getKey() + " " + entry.getValue() + "\n");
+		}
+		for (PrintWriter writer : tfIdfWriters) {
+			writer.close();
+		}
+		File dfFile = new File(dfOutput, "1");
+		dfFile.deleteOnExit();
+		PrintWriter dfWriter = new PrintWriter(dfFile, "UTF-8");
+		for (Map.Entry<String, Integer> entry : expectedDfs.entrySet()) {
+			dfWriter.print(entry.getKey() + " " + entry.getValue() + "\n");
+		}
+		dfWriter.close();
+
+		File tfIdfFile = new File(directory, "tfidf.bin");
+		File dfBinary = new File(directory, "df.bin");
+		tfIdfFile.deleteOnExit();
+		dfBinary.deleteOnExit();
+		tfIdfOutput.deleteOnExit();
+		dfOutput.deleteOnExit();
+
+		long start = System.nanoTime();
+		convertTfIdf(tfIdfOutput.toURI().toString(), tfIdfFile.getPath());
+		convertDocumentFrequencies(dfOutput.toURI().toString(), dfBinary.getPath());
+		long conversionTime = (System.nanoTime() - start) / 1000000;
+
+		MappedResultFile tfIdf = new MappedResultFile(tfIdfFile, 16);
+		MappedResultFile dfs = new MappedResultFile(dfBinary, 16);
+		if (tfIdf.numRecords() != expectedWeights.size() || dfs.numTerms() != expectedDfs.size()) {
+			throw new IllegalStateException("Wrong number of records or terms");
+		}
+
+		int[] queryDocIds = new int[queries.size()];
+		String[] queryTerms = new String[queries.size()];
+		double[] queryWeights = new double[queries.size()];
+		for (int i = 0; i < queryDocIds.length; i++) {
+			String query = queries.get(i);
+			int separator = query.indexOf(' ');
+			queryDocIds[i] = Integer.parseInt(query.substring(0, separator));
+			queryTerms[i] = query.substring(separator + 1);
+			queryWeights[i] = expectedWeights.get(query);
+		}
+
+		for (int i = 0; i < queryDocIds.length; i++) {
+			if (tfIdf.getWeight(queryDocIds[i], queryTerms[i]) != queryWeights[i]) {
+				throw new IllegalStateException("Wrong weight of (" + queries.get(i) + ")");
+			}
+			int df = expectedDfs.get(queryTerms[i]);
+			if (dfs.getDocumentFrequency(queryTerms[i]) != df || tfIdf.getDocumentFrequency(queryTerms[i]) != df) {
+				throw new IllegalStateException("Wrong document frequency of " + queryTerms[i]);
+			}
+		}
+		for (int i = 0; i < dfs.numTerms(); i++) {
+			if (dfs.indexOf(dfs.getTerm(i)) != i) {
+				throw new IllegalStateException("Term " + dfs.getTerm(i) + " not found at " + i);
+			}
+		}
+		if (tfIdf.getWeight(numDocuments, queryTerms[0]) != 0 || dfs.getDocumentFrequency("\u00e9\u00e9\u00e9") != 0
+			|| dfs.getDocumentFrequency("") != 0) {
+			throw new IllegalStateException("Found a record that does not exist");
+		}
+
+		// warm up, then measure time and allocations
+		double sum = 0;
+		for (int run = 0; run < 5; run++) {
+			for (int i = 0; i < queryDocIds.length; i++) {
+				sum += tfIdf.getWeight(queryDocIds[i], queryTerms[i]) + dfs.getDocumentFrequency(queryTerms[i]);
+			}
+		}
+		boolean measureAllocations = AllocationGuard.isSupported();
+		long allocated = measureAllocations ? AllocationGuard.allocatedBytes() : 0;
+		start = System.nanoTime();
+		for (int i = 0; i < queryDocIds.length; i++) {
+			sum += tfIdf.getWeight(queryDocIds[i], queryTerms[i]) + dfs.getDocumentFrequency(queryTerms[i]);
+		}
+		long lookupTime = System.nanoTime() - start;
+		allocated = measureAllocations ? AllocationGuard.allocatedBytes() - allocated : -1;
+
+		tfIdf.close();
+		dfs.close();
+
+		System.out.println(String.format("%d records, %d terms: %d KB, converted in %d ms", expectedWeights.size(),
+			expectedDfs.size(), (tfIdfFile.length() + dfBinary.length()) / 1024, conversionTime));
+		System.out.println(String.format("%d lookups of weight and df: %.2f us each, %d bytes allocated (%.1f)",
+			queryDocIds.length, lookupTime / 1000.0 / queryDocIds.length, allocated, sum));
+	}
+}
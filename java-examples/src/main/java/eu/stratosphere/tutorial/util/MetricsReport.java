@@ -0,0 +1,252 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Per-operator report of the {@link OperatorMetrics} accumulators of a job.
+ * <p>
+ * The counters of all subtasks of an operator are summed up by the accumulators, so the time of an operator is the
+ * time spent in its UDF by all its subtasks (and combiners). The operators are ordered by their time per instance,
+ * which approximates the wall-clock time of the operator; the first operator is reported as the bottleneck.
+ */
+public final class MetricsReport {
+
+	private final long netRuntime;
+
+	// operators by descending time per instance
+	private final List<String> operators;
+
+	private final Map<String, long[]> counters;
+
+	private MetricsReport(long netRuntime, Map<String, long[]> counters) {
+		this.netRuntime = netRuntime;
+		this.counters = counters;
+
+		this.operators = new ArrayList<String>(counters.keySet());
+		Collections.sort(this.operators, new Comparator<String>() {
+			@Override
+			public int compare(String operator1, String operator2) {
+				double time1 = getTimePerInstance(operator1);
+				double time2 = getTimePerInstance(operator2);
+				return time1 != time2 ? (time1 > time2 ? -1 : 1) : operator1.compareTo(operator2);
+			}
+		});
+	}
+
+	/**
+	 * Creates the report from the accumulator results of a job. Accumulators without the
+	 * {@link OperatorMetrics#PREFIX} are ignored.
+	 */
+	public static MetricsReport fromAccumulators(Map<String, Object> results, long netRuntime) {
+		Map<String, long[]> counters = new HashMap<String, long[]>();
+		if (results != null) {
+			for (Map.Entry<String, Object> result : results.entrySet()) {
+				String name = result.getKey();
+				if (!name.startsWith(OperatorMetrics.PREFIX) || !(result.getValue() instanceof Number)) {
+					continue;
+				}
+				for (int i = 0; i < OperatorMetrics.COUNTERS.length; i++) {
+					String suffix = "." + OperatorMetrics.COUNTERS[i];
+					if (name.endsWith(suffix)) {
+						int end = name.length() - suffix.length();
+						String operator = name.substring(OperatorMetrics.PREFIX.length(), end);
+						long[] values = counters.get(operator);
+						if (values == null) {
+							values = new long[OperatorMetrics.COUNTERS.length];
+							counters.put(operator, values);
+						}
+						values[i] = ((Number) result.getValue()).longValue();
+						break;
+					}
+				}
+			}
+		}
+		return new MetricsReport(netRuntime, counters);
+	}
+
+	/**
+	 * Returns the operators, ordered by descending time per instance.
+	 */
+	public List<String> getOperators() {
+		return Collections.unmodifiableList(this.operators);
+	}
+
+	/**
+	 * Returns the operator with the largest time per instance, or null if the job has no instrumented operator.
+	 */
+	public String getBottleneck() {
+		return this.operators.isEmpty() ? null : this.operators.get(0);
+	}
+
+	/**
+	 * Returns the value of a counter of {@link OperatorMetrics} of the operator, or 0 if it has not been reported.
+	 */
+	public long get(String operator, String counter) {
+		long[] values = this.counters.get(operator);
+		if (values != null) {
+			for (int i = 0; i < OperatorMetrics.COUNTERS.length; i++) {
+				if (OperatorMetrics.COUNTERS[i].equals(counter)) {
+					return values[i];
+				}
+			}
+		}
+		return 0;
+	}
+
+	private double getTimePerInstance(String operator) {
+		long instances = Math.max(1, get(operator, OperatorMetrics.INSTANCES));
+		return (double) get(operator, OperatorMetrics.TIME_NANOS) / instances;
+	}
+
+	/**
+	 * Returns the number of items per second of UDF time of the operator.
+	 */
+	private double perSecond(String operator, String counter) {
+		long nanos = get(operator, OperatorMetrics.TIME_NANOS);
+		return nanos == 0 ? 0 : get(operator, counter) * 1e9 / nanos;
+	}
+
+	private double timeShare(String operator) {
+		long total = 0;
+		for (String other : this.operators) {
+			total += get(other, OperatorMetrics.TIME_NANOS);
+		}
+		return total == 0 ? 0 : (double) get(operator, OperatorMetrics.TIME_NANOS) / total;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Prints the report as a table.
+	 */
+	public void print(PrintStream out) {
+		out.println(String.format("%-26s %5s %11s %11s %11s %11s %10s %6s %12s", "operator", "inst", "calls",
+			"records in", "records out", "tokens", "UDF ms", "share", "tokens/s"));
+		for (String operator : this.operators) {
+			out.println(String.format("%-26s %5d %11d %11d %11d %11d %10.1f %5.1f%% %12.0f", operator,
+				get(operator, OperatorMetrics.INSTANCES), get(operator, OperatorMetrics.CALLS),
+				get(operator, OperatorMetrics.RECORDS_IN), get(operator, OperatorMetrics.RECORDS_OUT),
+				get(operator, OperatorMetrics.TOKENS), get(operator, OperatorMetrics.TIME_NANOS) / 1e6,
+				100 * timeShare(operator), perSecond(operator, OperatorMetrics.TOKENS)));
+		}
+		if (getBottleneck() != null) {
+			out.println("bottleneck: " + getBottleneck());
+		}
+		for (String operator : this.operators) {
+			long unknownTerms = get(operator, OperatorMetrics.UNKNOWN_TERMS);
+			if (unknownTerms > 0) {
+				out.println("warning:    " + operator + " dropped " + unknownTerms
+					+ " terms that are missing from the term dictionary, the dictionary is stale");
+			}
+		}
+	}
+
+	/**
+	 * Returns the report as a JSON object.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"netRuntimeMs\": ").append(this.netRuntime);
+		json.append(",\n  \"bottleneck\": ");
+		appendString(json, getBottleneck());
+		json.append(",\n  \"operators\": [");
+		for (int i = 0; i < this.operators.size(); i++) {
+			String operator = this.operators.get(i);
+			json.append(i == 0 ? "\n" : ",\n").append("    {\"name\": ");
+			appendString(json, operator);
+			json.append(", \"instances\": ").append(get(operator, OperatorMetrics.INSTANCES));
+			json.append(", \"calls\": ").append(get(operator, OperatorMetrics.CALLS));
+			json.append(", \"recordsIn\": ").append(get(operator, OperatorMetrics.RECORDS_IN));
+			json.append(", \"recordsOut\": ").append(get(operator, OperatorMetrics.RECORDS_OUT));
+			json.append(", \"tokens\": ").append(get(operator, OperatorMetrics.TOKENS));
+			json.append(", \"charsIn\": ").append(get(operator, OperatorMetrics.CHARS_IN));
+			json.append(", \"unknownTerms\": ").append(get(operator, OperatorMetrics.UNKNOWN_TERMS));
+			json.append(", \"timeNs\": ").append(get(operator, OperatorMetrics.TIME_NANOS));
+			json.append(", \"timeShare\": ").append(String.format(Locale.ROOT, "%.4f", timeShare(operator)));
+			json.append(", \"recordsOutPerSecond\": ").append(
+				String.format(Locale.ROOT, "%.0f", perSecond(operator, OperatorMetrics.RECORDS_OUT)));
+			json.append(", \"tokensPerSecond\": ").append(
+				String.format(Locale.ROOT, "%.0f", perSecond(operator, OperatorMetrics.TOKENS)));
+			json.append("}");
+		}
+		json.append(this.operators.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Writes the JSON report to a local file.
+	 */
+	public void writeJson(File file) throws IOException {
+		Files.write(toJson(), file, Charsets.UTF_8);
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws Exception {
+		// accumulator results of a tf-idf job with 4 subtasks, as the runtime reports them
+		Map<String, Object> results = new HashMap<String, Object>();
+		String[] operators = {
+			"DocumentFrequencyMapper", "TermFrequencyMapper", "TfIdfMatcher", "WeightVectorReducer" };
+		long[][] values = {
+			{ 20000, 20000, 1310000, 2000000, 12400000, 2100000000L, 4, 0 },
+			{ 20000, 20000, 1310000, 2000000, 12400000, 2600000000L, 4, 37 },
+			{ 1310000, 1310000, 1310000, 0, 0, 900000000L, 4, 0 },
+			{ 20000, 1310000, 20000, 0, 0, 1500000000L, 8, 0 } };
+		for (int i = 0; i < operators.length; i++) {
+			for (int j = 0; j < OperatorMetrics.COUNTERS.length; j++) {
+				results.put(OperatorMetrics.PREFIX + operators[i] + "." + OperatorMetrics.COUNTERS[j], values[i][j]);
+			}
+		}
+		results.put("other.accumulator", 42L);
+
+		// the bottleneck should be the TermFrequencyMapper, with a warning about its 37 unknown terms
+		MetricsReport report = fromAccumulators(results, 3200);
+		report.print(System.out);
+		System.out.print(report.toJson());
+	}
+}
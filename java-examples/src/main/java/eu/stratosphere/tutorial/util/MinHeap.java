@@ -0,0 +1,108 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Binary min-heap operations on the entries <code>[0, size)</code> of an {@link IndexedSortable}, whose root, entry 0,
+ * is the smallest entry.
+ * <p>
+ * A bounded heap keeps the k largest entries of a stream: while it has fewer than k entries, a new entry is appended
+ * and {@link #siftUp(IndexedSortable, int)}, otherwise it replaces the root if it is larger and is
+ * {@link #siftDown(IndexedSortable, int, int)}, so every entry is compared with the root only.
+ */
+public final class MinHeap {
+
+	private MinHeap() {
+	}
+
+	/**
+	 * Restores the heap after entry i has been appended or decreased.
+	 */
+	public static void siftUp(IndexedSortable entries, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (entries.compare(parent, i) <= 0) {
+				return;
+			}
+			entries.swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Restores the heap of the given size after entry i has been replaced or increased.
+	 */
+	public static void siftDown(IndexedSortable entries, int i, int size) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				return;
+			}
+			if (child + 1 < size && entries.compare(child + 1, child) < 0) {
+				child++;
+			}
+			if (entries.compare(i, child) <= 0) {
+				return;
+			}
+			entries.swap(i, child);
+			i = child;
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		final int k = 100;
+		final int[] heap = new int[k];
+		IndexedSortable entries = new IndexedSortable() {
+			@Override
+			public int compare(int i, int j) {
+				return heap[i] < heap[j] ? -1 : heap[i] == heap[j] ? 0 : 1;
+			}
+
+			@Override
+			public void swap(int i, int j) {
+				int value = heap[i];
+				heap[i] = heap[j];
+				heap[j] = value;
+			}
+		};
+
+		Random random = new Random(42);
+		int[] values = new int[100000];
+		int size = 0;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(1000000);
+			if (size < k) {
+				heap[size] = values[i];
+				siftUp(entries, size++);
+			} else if (values[i] > heap[0]) {
+				heap[0] = values[i];
+				siftDown(entries, 0, size);
+			}
+		}
+
+		Arrays.sort(values);
+		int[] kept = heap.clone();
+		Arrays.sort(kept);
+		if (!Arrays.equals(kept, Arrays.copyOfRange(values, values.length - k, values.length))) {
+			throw new IllegalStateException("Heap does not hold the " + k + " largest values");
+		}
+		System.out.println("kept the " + k + " largest values");
+	}
+}
@@ -0,0 +1,271 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.tutorial.sketch.CountMinSketch;
+import eu.stratosphere.types.Key;
+import eu.stratosphere.types.LongValue;
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Rolling window over the token stream of a document that yields the n-grams (shingles) ending at every token without
+ * building intermediate Strings.
+ * <p>
+ * The window holds the chars of the last {@link #maxSize()} tokens, separated by single spaces, in one buffer that is
+ * reused for all documents. The n-grams ending at the newest token are therefore suffixes of the buffer and can be
+ * counted in a {@link TermIntMap} directly:
+ *
+ * <pre>
+ * ngrams.reset();
+ * while (tokenizer.next()) {
+ *     ngrams.add(tokenizer.buffer(), 0, tokenizer.length());
+ *     for (int i = 0; i &lt; ngrams.size(); i++) {
+ *         terms.add(ngrams.buffer(), ngrams.offset(i), ngrams.length(i), 1);
+ *     }
+ * }
+ * </pre>
+ *
+ * The mappers are configured with the option "-ngrams=[n]" for the n-grams of 1 to n tokens, or "-ngrams=[min]-[max]".
+ * Stop words are removed before the window, so an n-gram may span a removed stop word. With the option "-hashNgrams"
+ * the mappers emit the 64 bit {@link #id(char[], int, int)} of every n-gram as a LongValue instead of its text, which
+ * makes the shuffled keys 8 bytes regardless of n.
+ */
+public final class NGrams {
+
+	/**
+	 * Parameter key of the minimum number of tokens of an n-gram.
+	 */
+	public static final String MIN_SIZE = "ngrams.min";
+
+	/**
+	 * Parameter key of the maximum number of tokens of an n-gram.
+	 */
+	public static final String MAX_SIZE = "ngrams.max";
+
+	/**
+	 * Parameter key of the flag that makes the mappers emit hashed n-gram IDs.
+	 */
+	public static final String HASHED = "ngrams.hashed";
+
+	private final int minSize;
+
+	private final int maxSize;
+
+	// chars of the tokens in the window, oldest first, separated by single spaces
+	private char[] chars = new char[64];
+
+	private int length;
+
+	// start of every token of the window in chars
+	private final int[] starts;
+
+	private int numTokens;
+
+	public NGrams(int minSize, int maxSize) {
+		if (minSize < 1 || maxSize < minSize) {
+			throw new IllegalArgumentException("Invalid n-gram sizes " + minSize + " to " + maxSize);
+		}
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.starts = new int[maxSize];
+	}
+
+	/**
+	 * Returns the window of the {@link #MIN_SIZE} and {@link #MAX_SIZE} parameters, or null if the mapper emits only
+	 * unigrams.
+	 */
+	public static NGrams fromParameters(Configuration parameters) {
+		int minSize = parameters.getInteger(MIN_SIZE, 1);
+		int maxSize = parameters.getInteger(MAX_SIZE, 1);
+		return minSize == 1 && maxSize == 1 ? null : new NGrams(minSize, maxSize);
+	}
+
+	/**
+	 * Passes the n-gram sizes of the option "-ngrams=[n]" or "-ngrams=[min]-[max]" and the option "-hashNgrams" to
+	 * the given mapper, if they are set.
+	 */
+	public static void configure(Operator mapper, String[] args) {
+		// validates the sizes while the plan is built
+		NGrams ngrams = fromArgs(args);
+		if (ngrams != null) {
+			mapper.setParameter(MIN_SIZE, ngrams.minSize);
+			mapper.setParameter(MAX_SIZE, ngrams.maxSize);
+		}
+		if (isHashed(args)) {
+			mapper.setParameter(HASHED, true);
+		}
+	}
+
+	/**
+	 * Returns the window of the option "-ngrams=[n]" or "-ngrams=[min]-[max]", or null if the mappers emit only
+	 * unigrams, for client side code that tokenizes the documents as the mappers do.
+	 */
+	public static NGrams fromArgs(String[] args) {
+		String sizes = Util.getOption(args, "-ngrams", null);
+		if (sizes == null) {
+			return null;
+		}
+		int separator = sizes.indexOf('-');
+		int minSize = separator < 0 ? 1 : Integer.parseInt(sizes.substring(0, separator));
+		int maxSize = Integer.parseInt(sizes.substring(separator + 1));
+		NGrams ngrams = new NGrams(minSize, maxSize);
+		return minSize == 1 && maxSize == 1 ? null : ngrams;
+	}
+
+	/**
+	 * Returns true if the option "-ngrams=..." is set.
+	 */
+	public static boolean isEnabled(String[] args) {
+		return Util.getOption(args, "-ngrams", null) != null;
+	}
+
+	/**
+	 * Returns true if the option "-hashNgrams" is set.
+	 */
+	public static boolean isHashed(String[] args) {
+		return Util.hasOption(args, "-hashNgrams");
+	}
+
+	/**
+	 * Returns the type of the terms emitted by the mappers without a term dictionary: LongValue with the option
+	 * "-hashNgrams", StringValue otherwise.
+	 */
+	public static Class<? extends Key> termType(String[] args) {
+		return isHashed(args) ? LongValue.class : StringValue.class;
+	}
+
+	/**
+	 * Returns the 64 bit ID of the n-gram <code>[offset, offset + length)</code>, the key of its chars that
+	 * {@link CountMinSketch} and the Bloom filters of the pruning use as well.
+	 */
+	public static long id(char[] chars, int offset, int length) {
+		return CountMinSketch.key(chars, offset, length);
+	}
+
+	public int minSize() {
+		return this.minSize;
+	}
+
+	public int maxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Empties the window for the next document.
+	 */
+	public void reset() {
+		this.length = 0;
+		this.numTokens = 0;
+	}
+
+	/**
+	 * Appends a token to the window, dropping the oldest token if the window is full.
+	 */
+	public void add(char[] token, int offset, int tokenLength) {
+		if (this.numTokens == this.maxSize) {
+			if (this.maxSize == 1) {
+				this.length = 0;
+			} else {
+				// moves the remaining tokens to the front, a few chars
+				int drop = this.starts[1];
+				System.arraycopy(this.chars, drop, this.chars, 0, this.length - drop);
+				this.length -= drop;
+				for (int i = 1; i < this.numTokens; i++) {
+					this.starts[i - 1] = this.starts[i] - drop;
+				}
+			}
+			this.numTokens--;
+		}
+
+		int separator = this.numTokens > 0 ? 1 : 0;
+		if (this.length + separator + tokenLength > this.chars.length) {
+			char[] grown = new char[Math.max(2 * this.chars.length, this.length + separator + tokenLength)];
+			System.arraycopy(this.chars, 0, grown, 0, this.length);
+			this.chars = grown;
+		}
+		if (separator != 0) {
+			this.chars[this.length++] = ' ';
+		}
+		this.starts[this.numTokens++] = this.length;
+		System.arraycopy(token, offset, this.chars, this.length, tokenLength);
+		this.length += tokenLength;
+	}
+
+	/**
+	 * Returns the number of n-grams that end at the newest token: one per size from {@link #minSize()} to
+	 * {@link #maxSize()} that the window has enough tokens for.
+	 */
+	public int size() {
+		return Math.max(0, Math.min(this.maxSize, this.numTokens) - this.minSize + 1);
+	}
+
+	/**
+	 * Returns the buffer holding the n-grams. It is overwritten by the next call of {@link #add(char[], int, int)}.
+	 */
+	public char[] buffer() {
+		return this.chars;
+	}
+
+	/**
+	 * Returns the offset in the buffer of the i-th n-gram ending at the newest token, which has
+	 * <code>minSize() + i</code> tokens.
+	 */
+	public int offset(int i) {
+		return this.starts[this.numTokens - this.minSize - i];
+	}
+
+	/**
+	 * Returns the number of chars of the i-th n-gram ending at the newest token.
+	 */
+	public int length(int i) {
+		return this.length - offset(i);
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		Tokenizer tokenizer = new Tokenizer();
+		NGrams ngrams = new NGrams(1, 3);
+
+		// Results should be:
+		// big | big data | data | big data is | data is | is | data is big | is big | big
+		StringBuilder result = new StringBuilder();
+		tokenizer.reset(new StringValue("Big Data is big!"));
+		ngrams.reset();
+		while (tokenizer.next()) {
+			ngrams.add(tokenizer.buffer(), 0, tokenizer.length());
+			for (int i = ngrams.size() - 1; i >= 0; i--) {
+				result.append(result.length() == 0 ? "" : " | ");
+				result.append(ngrams.buffer(), ngrams.offset(i), ngrams.length(i));
+			}
+		}
+		System.out.println(result);
+
+		// bigrams only, the first token has none
+		NGrams bigrams = new NGrams(2, 2);
+		tokenizer.reset(new StringValue("hello stratosphere"));
+		bigrams.reset();
+		while (tokenizer.next()) {
+			bigrams.add(tokenizer.buffer(), 0, tokenizer.length());
+			for (int i = 0; i < bigrams.size(); i++) {
+				String bigram = new String(bigrams.buffer(), bigrams.offset(i), bigrams.length(i));
+				System.out.println(bigram + " -> " + Long.toHexString(id(bigrams.buffer(), bigrams.offset(i),
+					bigrams.length(i))));
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import eu.stratosphere.api.common.accumulators.LongCounter;
+import eu.stratosphere.api.common.functions.AbstractFunction;
+import eu.stratosphere.api.common.functions.RuntimeContext;
+import eu.stratosphere.types.Record;
+import eu.stratosphere.util.Collector;
+
+/**
+ * Instrumentation of a UDF, published as accumulators named "metrics.[operator].[counter]" and collected into a
+ * {@link MetricsReport} by {@link Util#executePlan(eu.stratosphere.api.common.Plan)}.
+ * <p>
+ * The UDF counts into primitive fields on its per-record path and adds them to the accumulators once in
+ * {@link #close()}, so the instrumentation neither allocates nor boxes per record. Every {@link #TIMING_INTERVAL}-th
+ * call is timed and the time of all calls is extrapolated from them, which keeps the cost of
+ * <code>System.nanoTime()</code> off most records:
+ *
+ * <pre>
+ * public void map(Record record, Collector&lt;Record&gt; collector) {
+ *     metrics.begin();
+ *     collector = metrics.count(collector);
+ *     ...
+ *     metrics.end();
+ * }
+ * </pre>
+ *
+ * UDFs that are driven directly, e.g. by benchmarks, have no runtime context; their metrics are only counted.
+ */
+public final class OperatorMetrics {
+
+	/**
+	 * Prefix of the accumulator names.
+	 */
+	public static final String PREFIX = "metrics.";
+
+	/**
+	 * Counter of the UDF calls (map, join, or reduce).
+	 */
+	public static final String CALLS = "calls";
+
+	/**
+	 * Counter of the records read by the calls.
+	 */
+	public static final String RECORDS_IN = "records.in";
+
+	/**
+	 * Counter of the records emitted by the calls.
+	 */
+	public static final String RECORDS_OUT = "records.out";
+
+	/**
+	 * Counter of the tokens of the input documents, for the mappers.
+	 */
+	public static final String TOKENS = "tokens";
+
+	/**
+	 * Counter of the chars of the input documents, for the mappers.
+	 */
+	public static final String CHARS_IN = "chars.in";
+
+	/**
+	 * Counter of the estimated nanoseconds spent in the calls.
+	 */
+	public static final String TIME_NANOS = "time.ns";
+
+	/**
+	 * Counter of the subtasks (or combiners) that ran the UDF.
+	 */
+	public static final String INSTANCES = "instances";
+
+	/**
+	 * Counter of the terms that the mappers dropped because the term dictionary lacks them. A non-zero count means
+	 * that the dictionary is stale, which changes the document and term frequencies of the job.
+	 */
+	public static final String UNKNOWN_TERMS = "terms.unknown";
+
+	static final String[] COUNTERS = {
+		CALLS, RECORDS_IN, RECORDS_OUT, TOKENS, CHARS_IN, TIME_NANOS, INSTANCES, UNKNOWN_TERMS };
+
+	/**
+	 * One out of this many calls is timed.
+	 */
+	public static final int TIMING_INTERVAL = 16;
+
+	private final String operator;
+
+	private LongCounter[] counters;
+
+	private long calls;
+
+	private long recordsIn;
+
+	private long recordsOut;
+
+	private long tokens;
+
+	private long charsIn;
+
+	private long unknownTerms;
+
+	private long timedNanos;
+
+	private long start;
+
+	private final CountingCollector countingCollector = new CountingCollector();
+
+	/**
+	 * Creates the metrics of the given operator, e.g. "DocumentFrequencyMapper".
+	 */
+	public OperatorMetrics(String operator) {
+		this.operator = operator;
+	}
+
+	/**
+	 * Resets the counts and registers the accumulators of the UDF, if it runs in a task. Called by the open method of
+	 * the UDF.
+	 */
+	public void open(AbstractFunction function) {
+		this.calls = 0;
+		this.recordsIn = 0;
+		this.recordsOut = 0;
+		this.tokens = 0;
+		this.charsIn = 0;
+		this.unknownTerms = 0;
+		this.timedNanos = 0;
+		this.start = 0;
+
+		RuntimeContext context;
+		try {
+			context = function.getRuntimeContext();
+		} catch (IllegalStateException e) {
+			context = null;
+		}
+		if (context == null) {
+			this.counters = null;
+			return;
+		}
+
+		this.counters = new LongCounter[COUNTERS.length];
+		for (int i = 0; i < COUNTERS.length; i++) {
+			this.counters[i] = new LongCounter();
+			context.addAccumulator(PREFIX + this.operator + "." + COUNTERS[i], this.counters[i]);
+		}
+	}
+
+	/**
+	 * Starts a call; every {@link #TIMING_INTERVAL}-th call is timed until {@link #end()}.
+	 */
+	public void begin() {
+		if (this.calls++ % TIMING_INTERVAL == 0) {
+			this.start = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Ends the call started by {@link #begin()}.
+	 */
+	public void end() {
+		if (this.start != 0) {
+			this.timedNanos += System.nanoTime() - this.start;
+			this.start = 0;
+		}
+	}
+
+	/**
+	 * Returns a collector that counts the emitted records and forwards them to the given collector. The same counting
+	 * collector is returned by every call.
+	 */
+	public Collector<Record> count(Collector<Record> target) {
+		this.countingCollector.target = target;
+		return this.countingCollector;
+	}
+
+	public void recordIn() {
+		this.recordsIn++;
+	}
+
+	public void tokens(int count) {
+		this.tokens += count;
+	}
+
+	public void chars(int count) {
+		this.charsIn += count;
+	}
+
+	public void unknownTerm() {
+		this.unknownTerms++;
+	}
+
+	public long getCalls() {
+		return this.calls;
+	}
+
+	public long getRecordsIn() {
+		return this.recordsIn;
+	}
+
+	public long getRecordsOut() {
+		return this.recordsOut;
+	}
+
+	public long getTokens() {
+		return this.tokens;
+	}
+
+	public long getUnknownTerms() {
+		return this.unknownTerms;
+	}
+
+	/**
+	 * Returns the estimated time of all calls so far: the time of the timed calls, scaled to all calls.
+	 */
+	public long getTimeNanos() {
+		long timedCalls = (this.calls + TIMING_INTERVAL - 1) / TIMING_INTERVAL;
+		return timedCalls == 0 ? 0 : (long) ((double) this.timedNanos * this.calls / timedCalls);
+	}
+
+	/**
+	 * Adds the counts to the accumulators. Called by the close method of the UDF.
+	 */
+	public void close() {
+		if (this.counters == null) {
+			return;
+		}
+		long[] values = {
+			this.calls, this.recordsIn, this.recordsOut, this.tokens, this.charsIn, getTimeNanos(), 1, this.unknownTerms };
+		for (int i = 0; i < values.length; i++) {
+			this.counters[i].add(values[i]);
+		}
+	}
+
+	private final class CountingCollector implements Collector<Record> {
+
+		private Collector<Record> target;
+
+		@Override
+		public void collect(Record record) {
+			OperatorMetrics.this.recordsOut++;
+			this.target.collect(record);
+		}
+
+		@Override
+		public void close() {
+			this.target.close();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * In-place quicksort of {@link IndexedSortable} entries, for parallel arrays that {@link Arrays#sort(int[])} cannot
+ * sort together.
+ * <p>
+ * The sort is not stable. Both scans of a partition stop at entries equal to the pivot, so many equal entries are
+ * split evenly, and only the smaller part is sorted recursively, so the stack depth stays logarithmic.
+ */
+public final class QuickSort {
+
+	private QuickSort() {
+	}
+
+	/**
+	 * Sorts the entries <code>[from, to]</code> in ascending order.
+	 */
+	public static void sort(IndexedSortable entries, int from, int to) {
+		while (from < to) {
+			// the pivot is kept at from while the rest is partitioned
+			entries.swap(from, (from + to) >>> 1);
+			int i = from;
+			int j = to + 1;
+			while (true) {
+				do {
+					i++;
+				} while (i < to && entries.compare(i, from) < 0);
+				do {
+					j--;
+				} while (entries.compare(from, j) < 0);
+				if (i >= j) {
+					break;
+				}
+				entries.swap(i, j);
+			}
+			entries.swap(from, j);
+
+			// recurse into the smaller part
+			if (j - from < to - j) {
+				sort(entries, from, j - 1);
+				from = j + 1;
+			} else {
+				sort(entries, j + 1, to);
+				to = j - 1;
+			}
+		}
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		for (int n : new int[] { 0, 1, 2, 3, 10, 1000, 100000 }) {
+			for (int range : new int[] { 2, 100, Integer.MAX_VALUE }) {
+				final int[] keys = new int[n];
+				final int[] values = new int[n];
+				for (int i = 0; i < n; i++) {
+					keys[i] = random.nextInt(range);
+					values[i] = keys[i] * 31;
+				}
+				int[] expected = keys.clone();
+				Arrays.sort(expected);
+
+				sort(new IndexedSortable() {
+					@Override
+					public int compare(int i, int j) {
+						return keys[i] < keys[j] ? -1 : keys[i] == keys[j] ? 0 : 1;
+					}
+
+					@Override
+					public void swap(int i, int j) {
+						int key = keys[i];
+						keys[i] = keys[j];
+						keys[j] = key;
+						int value = values[i];
+						values[i] = values[j];
+						values[j] = value;
+					}
+				}, 0, n - 1);
+
+				if (!Arrays.equals(keys, expected)) {
+					throw new IllegalStateException("Keys of " + n + " entries in [0, " + range + ") not sorted");
+				}
+				for (int i = 0; i < n; i++) {
+					if (values[i] != keys[i] * 31) {
+						throw new IllegalStateException("Value " + i + " not moved with its key");
+					}
+				}
+			}
+		}
+		System.out.println("sorted");
+	}
+}
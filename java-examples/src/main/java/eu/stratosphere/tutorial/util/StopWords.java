@@ -0,0 +1,331 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import eu.stratosphere.api.common.operators.Operator;
+import eu.stratosphere.configuration.Configuration;
+import eu.stratosphere.core.fs.FileStatus;
+import eu.stratosphere.core.fs.FileSystem;
+import eu.stratosphere.core.fs.Path;
+
+/**
+ * Immutable set of stop words with allocation-free lookups on char slices.
+ * <p>
+ * The words are stored in a minimal perfect hash table built with the "hash, displace and compress" scheme: every word
+ * is first hashed into a small bucket, and each bucket stores the seed of a second hash function that places all words
+ * of the bucket into distinct slots of a table with exactly one slot per word. A lookup therefore computes two hashes
+ * and compares the token with the single word stored in its slot.
+ * <p>
+ * Lists are loaded from a file with one word per line ('#' starts a comment line) that is given to the mappers with
+ * the {@link #PATH_PARAMETER} parameter. Without a file, the default English list of {@link Util#STOP_WORDS} is used.
+ * Every entry is split into terms by the {@link Tokenizer}, which keeps only the chars [a-zA-Z_0-9], so an entry
+ * with an apostrophe or a non-ASCII letter stops the terms that the tokenizer yields for it in the documents.
+ */
+public final class StopWords {
+
+	/**
+	 * Parameter key of the stop word file. If not set, the default list is used.
+	 */
+	public static final String PATH_PARAMETER = "stopwords.path";
+
+	private static final int MAX_SEED = 1 << 16;
+
+	private static final StopWords DEFAULT = new StopWords(Util.STOP_WORDS);
+
+	// per bucket: seed of the hash function that maps the words of the bucket to their slots
+	private final int[] seeds;
+
+	// words by slot: chars of slot i are [offsets[i], offsets[i + 1])
+	private final char[] chars;
+
+	private final int[] offsets;
+
+	public StopWords(Collection<String> words) {
+		// entries are split like the documents, so that "don't" removes the terms "don" and "t" it is tokenized into
+		Set<String> distinct = new HashSet<String>();
+		Tokenizer tokenizer = new Tokenizer();
+		for (String word : words) {
+			tokenizer.reset(word.toCharArray(), 0, word.length());
+			while (tokenizer.next()) {
+				distinct.add(new String(tokenizer.buffer(), 0, tokenizer.length()));
+			}
+		}
+
+		String[] keys = distinct.toArray(new String[distinct.size()]);
+
+		int numBuckets = Math.max(1, keys.length / 2);
+		int[] seeds;
+		String[] slots;
+
+		while (true) {
+			seeds = new int[numBuckets];
+			slots = new String[keys.length];
+			if (place(keys, seeds, slots)) {
+				break;
+			}
+			// extremely unlikely: some bucket found no seed, retry with smaller buckets
+			numBuckets *= 2;
+		}
+
+		int totalChars = 0;
+		for (String key : keys) {
+			totalChars += key.length();
+		}
+
+		this.seeds = seeds;
+		this.chars = new char[totalChars];
+		this.offsets = new int[keys.length + 1];
+
+		int offset = 0;
+		for (int slot = 0; slot < slots.length; slot++) {
+			this.offsets[slot] = offset;
+			slots[slot].getChars(0, slots[slot].length(), this.chars, offset);
+			offset += slots[slot].length();
+		}
+		this.offsets[slots.length] = offset;
+	}
+
+	/**
+	 * Returns true if the chars <code>[offset, offset + length)</code> are a stop word.
+	 */
+	public boolean contains(char[] text, int offset, int length) {
+		int size = this.offsets.length - 1;
+		if (size == 0) {
+			return false;
+		}
+
+		int bucket = index(hash(text, offset, length, 0), this.seeds.length);
+		int slot = index(hash(text, offset, length, this.seeds[bucket]), size);
+
+		int start = this.offsets[slot];
+		if (this.offsets[slot + 1] - start != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (this.chars[start + i] != text[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of stop words.
+	 */
+	public int size() {
+		return this.offsets.length - 1;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the default English stop words.
+	 */
+	public static StopWords getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns the stop words of the file given by the {@link #PATH_PARAMETER} parameter, or the default stop words.
+	 */
+	public static StopWords fromParameters(Configuration parameters) throws IOException {
+		String path = parameters.getString(PATH_PARAMETER, null);
+		return path == null ? DEFAULT : load(path);
+	}
+
+	/**
+	 * Passes the stop word file of the option "-stopWords=[path]" to the given mapper, if the option is set.
+	 */
+	public static void configure(Operator mapper, String[] args) {
+		String path = Util.getOption(args, "-stopWords", null);
+		if (path != null) {
+			mapper.setParameter(PATH_PARAMETER, path);
+		}
+	}
+
+	/**
+	 * Loads the stop words from a file with one word per line. Lines starting with '#' are ignored.
+	 */
+	public static StopWords load(String path) throws IOException {
+		Path stopWordsPath = new Path(path);
+		FileSystem fs = FileSystem.get(stopWordsPath.toUri());
+
+		List<String> words = new ArrayList<String>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(stopWordsPath), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith("#")) {
+					words.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return new StopWords(words);
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Assigns every key to a slot. Buckets are processed from the largest to the smallest, trying seeds until all keys
+	 * of the bucket fall into distinct free slots.
+	 */
+	private static boolean place(String[] keys, int[] seeds, String[] slots) {
+		int numBuckets = seeds.length;
+
+		final List<List<String>> buckets = new ArrayList<List<String>>(numBuckets);
+		for (int i = 0; i < numBuckets; i++) {
+			buckets.add(new ArrayList<String>());
+		}
+		for (String key : keys) {
+			buckets.get(index(hash(key, 0), numBuckets)).add(key);
+		}
+
+		Integer[] order = new Integer[numBuckets];
+		for (int i = 0; i < numBuckets; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return buckets.get(b).size() - buckets.get(a).size();
+			}
+		});
+
+		int[] candidateSlots = new int[keys.length];
+
+		for (int bucket : order) {
+			List<String> bucketKeys = buckets.get(bucket);
+			if (bucketKeys.isEmpty()) {
+				break;
+			}
+
+			boolean placed = false;
+			for (int seed = 1; seed < MAX_SEED && !placed; seed++) {
+				placed = true;
+				for (int i = 0; i < bucketKeys.size() && placed; i++) {
+					int slot = index(hash(bucketKeys.get(i), seed), slots.length);
+					if (slots[slot] != null) {
+						placed = false;
+					}
+					for (int j = 0; j < i && placed; j++) {
+						if (candidateSlots[j] == slot) {
+							placed = false;
+						}
+					}
+					candidateSlots[i] = slot;
+				}
+
+				if (placed) {
+					seeds[bucket] = seed;
+					for (int i = 0; i < bucketKeys.size(); i++) {
+						slots[candidateSlots[i]] = bucketKeys.get(i);
+					}
+				}
+			}
+
+			if (!placed) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(String key, int seed) {
+		return hash(key.toCharArray(), 0, key.length(), seed);
+	}
+
+	private static int hash(char[] text, int offset, int length, int seed) {
+		int h = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+		for (int i = offset; i < offset + length; i++) {
+			h = (h ^ text[i]) * 0x01000193;
+		}
+
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int index(int hash, int size) {
+		return (hash & 0x7fffffff) % size;
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		// 1. Default list
+		checkMembership(new ArrayList<String>(Util.STOP_WORDS), DEFAULT);
+
+		// 2. Large random list, e.g. a per-corpus list with thousands of entries
+		Random random = new Random(42);
+		Set<String> words = new HashSet<String>();
+		while (words.size() < 20000) {
+			char[] word = new char[2 + random.nextInt(10)];
+			for (int i = 0; i < word.length; i++) {
+				word[i] = (char) ('a' + random.nextInt(26));
+			}
+			words.add(new String(word));
+		}
+
+		long start = System.nanoTime();
+		StopWords large = new StopWords(words);
+		System.out.println("Built " + large.size() + " stop words in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		checkMembership(new ArrayList<String>(words), large);
+
+		// 3. Entries are tokenized like the documents
+		StopWords published = new StopWords(Arrays.asList("Don't", "  it's ", "f\u00fcr", "#", ""));
+		checkMembership(Arrays.asList("don", "t", "it", "s", "f", "r"), published);
+		if (published.size() != 6) {
+			throw new IllegalStateException("Expected 6 stop words, got " + published.size());
+		}
+	}
+
+	private static void checkMembership(List<String> words, StopWords stopWords) {
+		Set<String> members = new HashSet<String>(words);
+
+		for (String word : words) {
+			if (!stopWords.contains(word.toCharArray(), 0, word.length())) {
+				throw new IllegalStateException("Missing stop word '" + word + "'");
+			}
+
+			// neighbours of members are (almost always) no members
+			String other = word + "x";
+			if (stopWords.contains(other.toCharArray(), 0, other.length()) != members.contains(other)) {
+				throw new IllegalStateException("Wrong result for '" + other + "'");
+			}
+		}
+
+		System.out.println("OK   " + stopWords.size() + " stop words");
+	}
+}
@@ -0,0 +1,405 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Open addressing hash map from terms (char sequences) to primitive ints.
+ * <p>
+ * The keys are copied into one shared char array and all per-entry data is kept in parallel int arrays, so adding a
+ * term neither creates a String nor boxes the value. The map is meant to be reused: {@link #clear()} only resets the
+ * slots that are in use and keeps all arrays, so counting the terms of the next document does not allocate anything
+ * unless it has more distinct terms than any document before.
+ * <p>
+ * Entries are numbered in insertion order from 0 to {@link #size()} - 1, which is also how they are iterated:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; map.size(); i++) {
+ *     map.copyKeyTo(i, term);
+ *     int count = map.value(i);
+ * }
+ * </pre>
+ */
+public final class TermIntMap {
+
+	private static final float MAX_LOAD_FACTOR = 0.5f;
+
+	// slot -> entry index + 1, 0 marks a free slot
+	private int[] slots;
+
+	private int mask;
+
+	// entry data
+	private char[] keyChars;
+
+	private int keyCharsUsed;
+
+	private int[] keyOffsets;
+
+	private int[] keyLengths;
+
+	private int[] hashes;
+
+	private int[] values;
+
+	private int size;
+
+	public TermIntMap() {
+		this(64);
+	}
+
+	public TermIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+
+		int entries = (int) (capacity * MAX_LOAD_FACTOR);
+		this.keyChars = new char[entries * 8];
+		this.keyOffsets = new int[entries];
+		this.keyLengths = new int[entries];
+		this.hashes = new int[entries];
+		this.values = new int[entries];
+	}
+
+	/**
+	 * Adds delta to the value of the term given by the chars <code>[offset, offset + length)</code>. Terms that are
+	 * not contained yet start with a value of 0.
+	 *
+	 * @return the new value of the term
+	 */
+	public int add(char[] chars, int offset, int length, int delta) {
+		int hash = hash(chars, offset, length);
+		int slot = findSlot(chars, offset, length, hash);
+		int entry = this.slots[slot] - 1;
+
+		if (entry < 0) {
+			entry = insert(slot, chars, offset, length, hash, delta);
+		} else {
+			this.values[entry] += delta;
+		}
+		return this.values[entry];
+	}
+
+	/**
+	 * Sets the value of the term given by the chars <code>[offset, offset + length)</code>.
+	 */
+	public void put(char[] chars, int offset, int length, int value) {
+		int hash = hash(chars, offset, length);
+		int slot = findSlot(chars, offset, length, hash);
+		int entry = this.slots[slot] - 1;
+
+		if (entry < 0) {
+			insert(slot, chars, offset, length, hash, value);
+		} else {
+			this.values[entry] = value;
+		}
+	}
+
+	/**
+	 * Returns the value of the term given by the chars <code>[offset, offset + length)</code>, or the default value if
+	 * the map does not contain the term.
+	 */
+	public int get(char[] chars, int offset, int length, int defaultValue) {
+		int entry = this.slots[findSlot(chars, offset, length, hash(chars, offset, length))] - 1;
+		return entry < 0 ? defaultValue : this.values[entry];
+	}
+
+	/**
+	 * Returns the value of the term, or the default value if the map does not contain the term.
+	 */
+	public int get(StringValue term, int defaultValue) {
+		return get(term.getCharArray(), 0, term.length(), defaultValue);
+	}
+
+	/**
+	 * Returns the number of terms in the map.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes all terms but keeps the allocated memory for reuse.
+	 */
+	public void clear() {
+		if (this.size * 4 < this.slots.length) {
+			// only reset the slots in use; probing skips over slots of earlier entries that are already reset
+			for (int entry = 0; entry < this.size; entry++) {
+				int slot = this.hashes[entry] & this.mask;
+				while (this.slots[slot] != entry + 1) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.slots[slot] = 0;
+			}
+		} else {
+			Arrays.fill(this.slots, 0);
+		}
+
+		this.size = 0;
+		this.keyCharsUsed = 0;
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the array holding the key chars of all entries. Use it with {@link #keyOffset(int)} and
+	 * {@link #keyLength(int)}.
+	 */
+	public char[] keyChars() {
+		return this.keyChars;
+	}
+
+	public int keyOffset(int entry) {
+		return this.keyOffsets[entry];
+	}
+
+	public int keyLength(int entry) {
+		return this.keyLengths[entry];
+	}
+
+	public int value(int entry) {
+		return this.values[entry];
+	}
+
+	/**
+	 * Copies the key of the given entry into the (reused) value.
+	 */
+	public void copyKeyTo(int entry, StringValue target) {
+		target.setValue(this.keyChars, this.keyOffsets[entry], this.keyLengths[entry]);
+	}
+
+	/**
+	 * Returns the key of the given entry as a new String.
+	 */
+	public String keyToString(int entry) {
+		return new String(this.keyChars, this.keyOffsets[entry], this.keyLengths[entry]);
+	}
+
+	// ----------------------------------------------------------------------------------------------------------------
+
+	private int findSlot(char[] chars, int offset, int length, int hash) {
+		int slot = hash & this.mask;
+
+		while (true) {
+			int entry = this.slots[slot] - 1;
+			if (entry < 0 || (this.hashes[entry] == hash && keyEquals(entry, chars, offset, length))) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private boolean keyEquals(int entry, char[] chars, int offset, int length) {
+		if (this.keyLengths[entry] != length) {
+			return false;
+		}
+
+		char[] keyChars = this.keyChars;
+		int keyOffset = this.keyOffsets[entry];
+		for (int i = 0; i < length; i++) {
+			if (keyChars[keyOffset + i] != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int insert(int slot, char[] chars, int offset, int length, int hash, int value) {
+		if (this.size == this.values.length) {
+			growEntries();
+		}
+		if (this.keyCharsUsed + length > this.keyChars.length) {
+			this.keyChars = Arrays.copyOf(this.keyChars, Math.max(this.keyChars.length * 2, this.keyCharsUsed + length));
+		}
+
+		int entry = this.size++;
+		System.arraycopy(chars, offset, this.keyChars, this.keyCharsUsed, length);
+		this.keyOffsets[entry] = this.keyCharsUsed;
+		this.keyLengths[entry] = length;
+		this.hashes[entry] = hash;
+		this.values[entry] = value;
+		this.keyCharsUsed += length;
+
+		if (this.size > this.slots.length * MAX_LOAD_FACTOR) {
+			rehash(this.slots.length * 2);
+		} else {
+			this.slots[slot] = entry + 1;
+		}
+		return entry;
+	}
+
+	private void growEntries() {
+		int capacity = this.values.length * 2;
+		this.keyOffsets = Arrays.copyOf(this.keyOffsets, capacity);
+		this.keyLengths = Arrays.copyOf(this.keyLengths, capacity);
+		this.hashes = Arrays.copyOf(this.hashes, capacity);
+		this.values = Arrays.copyOf(this.values, capacity);
+	}
+
+	private void rehash(int capacity) {
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+
+		for (int entry = 0; entry < this.size; entry++) {
+			int slot = this.hashes[entry] & this.mask;
+			while (this.slots[slot] != 0) {
+				slot = (slot + 1) & this.mask;
+			}
+			this.slots[slot] = entry + 1;
+		}
+	}
+
+	/**
+	 * Hash of the chars <code>[offset, offset + length)</code>: String.hashCode() followed by the MurmurHash3
+	 * finalizer, which spreads the bits for the power-of-two table.
+	 */
+	public static int hash(char[] chars, int offset, int length) {
+		int h = 0;
+		for (int i = offset; i < offset + length; i++) {
+			h = 31 * h + chars[i];
+		}
+
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Counts the terms of long synthetic documents with a large vocabulary, once with a new HashMap per document (as
+	 * the TermFrequencyMapper did before) and once with a reused TermIntMap, and prints time and GC activity.
+	 * <p>
+	 * Usage: [numDocuments] [termsPerDocument] [vocabularySize]
+	 */
+	public static void main(String[] args) {
+		int numDocuments = args.length >= 1 ? Integer.parseInt(args[0]) : 200;
+		int termsPerDocument = args.length >= 2 ? Integer.parseInt(args[1]) : 100000;
+		int vocabularySize = args.length >= 3 ? Integer.parseInt(args[2]) : 500000;
+
+		Random random = new Random(42);
+
+		// vocabulary of random lower case words
+		char[][] vocabulary = new char[vocabularySize][];
+		for (int i = 0; i < vocabularySize; i++) {
+			char[] word = new char[3 + random.nextInt(10)];
+			for (int j = 0; j < word.length; j++) {
+				word[j] = (char) ('a' + random.nextInt(26));
+			}
+			vocabulary[i] = word;
+		}
+
+		// documents as term indexes, skewed towards the beginning of the vocabulary
+		int[][] documents = new int[numDocuments][termsPerDocument];
+		for (int[] document : documents) {
+			for (int i = 0; i < termsPerDocument; i++) {
+				double skewed = random.nextDouble();
+				document[i] = (int) (skewed * skewed * skewed * vocabularySize);
+			}
+		}
+
+		// correctness check against HashMap
+		TermIntMap map = new TermIntMap();
+		for (int[] document : documents) {
+			Map<String, Integer> expected = new HashMap<String, Integer>();
+			map.clear();
+			for (int term : document) {
+				String key = new String(vocabulary[term]);
+				Integer count = expected.get(key);
+				expected.put(key, count == null ? 1 : count + 1);
+				map.add(vocabulary[term], 0, vocabulary[term].length, 1);
+			}
+
+			if (expected.size() != map.size()) {
+				throw new IllegalStateException("Size " + map.size() + " but expected " + expected.size());
+			}
+			for (int entry = 0; entry < map.size(); entry++) {
+				if (expected.get(map.keyToString(entry)) != map.value(entry)) {
+					throw new IllegalStateException("Wrong count for " + map.keyToString(entry));
+				}
+			}
+		}
+
+		for (int run = 0; run < 3; run++) {
+			// a) new HashMap per document
+			long gcBefore = gcCount();
+			long gcTimeBefore = gcTime();
+			long start = System.nanoTime();
+			long checksum = 0;
+
+			for (int[] document : documents) {
+				Map<String, Integer> counts = new HashMap<String, Integer>();
+				for (int term : document) {
+					String key = new String(vocabulary[term]);
+					Integer count = counts.get(key);
+					counts.put(key, count == null ? 1 : count + 1);
+				}
+				for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+					checksum += entry.getValue();
+				}
+			}
+
+			System.out.println(String.format("HashMap<String,Integer>: %6d ms, %4d GCs (%5d ms)  [%d]",
+				(System.nanoTime() - start) / 1000000, gcCount() - gcBefore, gcTime() - gcTimeBefore, checksum));
+
+			// b) reused TermIntMap
+			gcBefore = gcCount();
+			gcTimeBefore = gcTime();
+			start = System.nanoTime();
+			checksum = 0;
+
+			for (int[] document : documents) {
+				map.clear();
+				for (int term : document) {
+					map.add(vocabulary[term], 0, vocabulary[term].length, 1);
+				}
+				for (int entry = 0; entry < map.size(); entry++) {
+					checksum += map.value(entry);
+				}
+			}
+
+			System.out.println(String.format("TermIntMap:              %6d ms, %4d GCs (%5d ms)  [%d]",
+				(System.nanoTime() - start) / 1000000, gcCount() - gcBefore, gcTime() - gcTimeBefore, checksum));
+		}
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += gc.getCollectionCount();
+		}
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += gc.getCollectionTime();
+		}
+		return time;
+	}
+}
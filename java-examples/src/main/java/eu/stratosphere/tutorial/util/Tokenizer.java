@@ -0,0 +1,199 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2013 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+package eu.stratosphere.tutorial.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import eu.stratosphere.types.StringValue;
+
+/**
+ * Splits text into lower cased terms without creating intermediate Strings.
+ * <p>
+ * A term is a maximal run of word characters ([a-zA-Z_0-9]), which is exactly what
+ * <code>text.replaceAll("\\W", " ").toLowerCase()</code> followed by a {@link StringTokenizer} produces. The
+ * tokenizer scans the char buffer of a {@link StringValue} in place and copies each term, lower cased, into an
+ * internal buffer that is reused for the next term.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * tokenizer.reset(document);
+ * while (tokenizer.next()) {
+ *     // use tokenizer.buffer() from 0 to tokenizer.length(), or tokenizer.copyTo(term)
+ * }
+ * </pre>
+ *
+ * Instances are not thread-safe; every UDF instance should hold its own tokenizer.
+ */
+public final class Tokenizer {
+
+	private char[] text;
+
+	private int position;
+
+	private int end;
+
+	private char[] term = new char[32];
+
+	private int termLength;
+
+	/**
+	 * Starts tokenizing the complete contents of the given value.
+	 */
+	public void reset(StringValue value) {
+		reset(value, 0, value.length());
+	}
+
+	/**
+	 * Starts tokenizing the characters <code>[from, to)</code> of the given value.
+	 */
+	public void reset(StringValue value, int from, int to) {
+		reset(value.getCharArray(), from, to);
+	}
+
+	/**
+	 * Starts tokenizing the characters <code>[from, to)</code> of the given array. The array is not copied and must
+	 * not be modified until tokenizing is finished.
+	 */
+	public void reset(char[] chars, int from, int to) {
+		this.text = chars;
+		this.position = from;
+		this.end = to;
+		this.termLength = 0;
+	}
+
+	/**
+	 * Advances to the next term.
+	 *
+	 * @return <code>true</code> if a term was found, <code>false</code> if the end of the text has been reached
+	 */
+	public boolean next() {
+		final char[] text = this.text;
+		final int end = this.end;
+		int pos = this.position;
+
+		while (pos < end && !isWordChar(text[pos])) {
+			pos++;
+		}
+
+		if (pos == end) {
+			this.position = pos;
+			this.termLength = 0;
+			return false;
+		}
+
+		int length = 0;
+		while (pos < end) {
+			char c = text[pos];
+			if (!isWordChar(c)) {
+				break;
+			}
+			if (length == this.term.length) {
+				char[] grown = new char[length * 2];
+				System.arraycopy(this.term, 0, grown, 0, length);
+				this.term = grown;
+			}
+			this.term[length++] = toLowerCase(c);
+			pos++;
+		}
+
+		this.position = pos;
+		this.termLength = length;
+		return true;
+	}
+
+	/**
+	 * Returns the buffer holding the current term from index 0 to {@link #length()}. The buffer is overwritten by the
+	 * next call to {@link #next()}.
+	 */
+	public char[] buffer() {
+		return this.term;
+	}
+
+	/**
+	 * Returns the length of the current term.
+	 */
+	public int length() {
+		return this.termLength;
+	}
+
+	/**
+	 * Copies the current term into the given (reused) value.
+	 */
+	public void copyTo(StringValue target) {
+		target.setValue(this.term, 0, this.termLength);
+	}
+
+	/**
+	 * Returns true if the character is matched by the regular expression <code>\w</code>.
+	 */
+	public static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	private static char toLowerCase(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	// - Testing ------------------------------------------------------------------------------------------------------
+
+	public static void main(String[] args) {
+		String[] documents = {
+			"Big Hello to Stratosphere! :-)",
+			"Hello to Big Big Data.",
+			"Gartner's definition (the 3Vs) is still widely used",
+			"  leading and trailing   whitespace\t\n",
+			"snake_case, CamelCase & digits 42x; \u00dcMLAUTS sind \u00fcber-cool",
+			"",
+			"!!!"
+		};
+
+		Tokenizer tokenizer = new Tokenizer();
+		StringValue value = new StringValue();
+		StringValue term = new StringValue();
+		boolean allEqual = true;
+
+		for (String document : documents) {
+			// Reference: the String based tokenization the mappers used before
+			List<String> expected = new ArrayList<String>();
+			StringTokenizer reference = new StringTokenizer(document.replaceAll("\\W", " ").toLowerCase());
+			while (reference.hasMoreTokens()) {
+				expected.add(reference.nextToken());
+			}
+
+			List<String> actual = new ArrayList<String>();
+			value.setValue(document);
+			tokenizer.reset(value);
+			while (tokenizer.next()) {
+				tokenizer.copyTo(term);
+				actual.add(term.toString());
+			}
+
+			boolean equal = expected.equals(actual);
+			allEqual &= equal;
+
+			System.out.println((equal ? "OK   " : "FAIL ") + actual);
+			if (!equal) {
+				System.out.println("     expected " + expected);
+			}
+		}
+
+		if (!allEqual) {
+			throw new IllegalStateException("Tokenizer output differs from the reference tokenization.");
+		}
+	}
+}
@@ -14,6 +14,7 @@
  **********************************************************************************************************************/
 package eu.stratosphere.tutorial.util;
 
+import java.io.DataInput;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -26,15 +27,15 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
 import eu.stratosphere.api.common.Plan;
-import eu.stratosphere.client.LocalExecutor;
-import eu.stratosphere.nephele.client.JobExecutionResult;
+import eu.stratosphere.types.StringValue;
 
 
 public class Util {
 
 	private static final List<File> tempFiles = new ArrayList<File>();
 
-	public static double NUM_DOCUMENTS = 2;
+	// number of bytes that readFully reads before it grows its buffer again
+	private static final int READ_CHUNK = 64 * 1024;
 
 	public static final HashSet<String> STOP_WORDS = new HashSet<String>();
 
@@ -165,12 +166,102 @@ public class Util {
 		STOP_WORDS.add("yourselves");
 	}
 
-	public static void executePlan(Plan toExecute) throws Exception {
-		LocalExecutor executor = new LocalExecutor();
-		executor.start();
-		JobExecutionResult res = executor.executePlan(toExecute);
-		System.out.println("runtime:  " + res.getNetRuntime());
-		executor.stop();
+	/**
+	 * Executes the plan like {@link #executePlan(Plan, File)}, writing the metrics to "metrics.json" in the temp
+	 * directory.
+	 */
+	public static MetricsReport executePlan(Plan toExecute) throws Exception {
+		return executePlan(toExecute, new File(System.getProperty("java.io.tmpdir"), "metrics.json"));
+	}
+
+	/**
+	 * Executes the plan in a new {@link LocalExecutorSession} and prints its runtime and the {@link MetricsReport} of
+	 * the {@link OperatorMetrics} of its UDFs. The report is also written as JSON to the given file.
+	 */
+	public static MetricsReport executePlan(Plan toExecute, File metricsFile) throws Exception {
+		LocalExecutorSession session = LocalExecutorSession.start();
+		LocalExecutorSession.PlanRun run;
+		try {
+			run = session.run(toExecute);
+		} finally {
+			session.close();
+		}
+		System.out.println("runtime:  " + run.getResult().getNetRuntime());
+
+		MetricsReport report = run.getMetrics();
+		report.print(System.out);
+		report.writeJson(metricsFile);
+		System.out.println("metrics:  " + metricsFile.getAbsolutePath());
+		return report;
+	}
+
+	/**
+	 * Returns the [numSubtasks] plan argument after [inputPath] [outputPath], or 1 if it has been omitted, e.g. with
+	 * the arguments [inputPath] [outputPath] -fused.
+	 */
+	public static int getNumSubtasks(String[] args) {
+		return args.length >= 3 && !args[2].startsWith("-") ? Integer.parseInt(args[2]) : 1;
+	}
+
+	/**
+	 * Returns true if the given option (e.g. "-fused") is one of the plan arguments. Options may follow the positional
+	 * plan arguments in any order, and [numSubtasks] may be omitted before them.
+	 */
+	public static boolean hasOption(String[] args, String name) {
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the value of an option passed as "name=value" (e.g. "-dictionary=file:///tmp/dictionary") among the plan
+	 * arguments, or the default value if the option has not been passed.
+	 */
+	public static String getOption(String[] args, String name, String defaultValue) {
+		String prefix = name + "=";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith(prefix)) {
+				return args[i].substring(prefix.length());
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of the given character at or after <code>from</code>, or -1 if the
+	 * value does not contain the character.
+	 */
+	public static int indexOf(StringValue value, char c, int from) {
+		char[] chars = value.getCharArray();
+		for (int i = from; i < value.length(); i++) {
+			if (chars[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the given number of bytes into the buffer, or into a larger copy of it that is returned. The buffer grows
+	 * only with the bytes actually read, so a corrupt length fails with an EOFException at the end of the input
+	 * instead of allocating its buffer up front.
+	 */
+	public static byte[] readFully(DataInput in, byte[] buffer, int numBytes) throws IOException {
+		int position = 0;
+		while (position < numBytes) {
+			if (position == buffer.length) {
+				byte[] grown = new byte[Math.min(numBytes, Math.max(2 * buffer.length, READ_CHUNK))];
+				System.arraycopy(buffer, 0, grown, 0, position);
+				buffer = grown;
+			}
+			int chunk = Math.min(numBytes, buffer.length) - position;
+			in.readFully(buffer, position, chunk);
+			position += chunk;
+		}
+		return buffer;
 	}
 
 	public static String createTempFile(String fileName, String contents) throws IOException {